@@ -0,0 +1,38 @@
+package de.westemeyer.openingtimes.api;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.BitSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Asynchronous counterpart of {@link HolidayResolver}, for holidays kept in a remote store. Instead of blocking the calling
+ * thread, the holidays are delivered by a future.
+ * 
+ * @author Sebastian Westemeyer
+ *
+ */
+public interface AsyncHolidayResolver {
+	/**
+	 * Determines the local holidays in a range of dates.
+	 * 
+	 * @param from first date of the range
+	 * @param toExclusive first date after the range
+	 * @param zone time zone of the dates
+	 * @return future of one bit per date of the range, starting with bit 0 for the first date, set for local holidays.
+	 */
+	CompletableFuture<BitSet> holidaysBetweenAsync(LocalDate from, LocalDate toExclusive, ZoneId zone);
+
+	/**
+	 * Adapt a blocking resolver, asking it for the holidays on an executor.
+	 * 
+	 * @param resolver the blocking resolver
+	 * @param executor executor to wait for the resolver on
+	 * @return the asynchronous resolver.
+	 */
+	static AsyncHolidayResolver of(final HolidayResolver resolver, final Executor executor) {
+		return (from, toExclusive, zone) -> CompletableFuture.supplyAsync(() -> resolver.holidaysBetween(from, toExclusive, zone),
+				executor);
+	}
+}
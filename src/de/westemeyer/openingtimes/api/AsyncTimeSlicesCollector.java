@@ -0,0 +1,61 @@
+package de.westemeyer.openingtimes.api;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Asynchronous counterpart of {@link TimeSlicesCollector}, for time slices kept in a remote store. Instead of blocking the
+ * calling thread, the time slices are delivered by a future.
+ * 
+ * @author Sebastian Westemeyer
+ *
+ */
+public interface AsyncTimeSlicesCollector {
+	/**
+	 * Provides the time slices valid on any date of a range. More time slices may be provided, for example all available ones,
+	 * but none of the range must be missing.
+	 * 
+	 * @param from first date of the range
+	 * @param toExclusive first date after the range
+	 * @param zone time zone of the dates
+	 * @return future of the time slices.
+	 */
+	CompletableFuture<List<TimeSlice>> getTimeSlicesAsync(LocalDate from, LocalDate toExclusive, ZoneId zone);
+
+	/**
+	 * Provides the revision of the time slices, which has to change whenever the time slices change, see
+	 * {@link TimeSlicesCollector#getRevision()}. It is checked for every query, so it has to be known without asking the store,
+	 * for example as the last revision announced by the store. The default revision never changes.
+	 * 
+	 * @return the revision of the time slices.
+	 */
+	default long getRevision() {
+		return 0;
+	}
+
+	/**
+	 * Adapt a blocking collector, asking it for all available time slices on an executor. The revision is taken from the
+	 * blocking collector.
+	 * 
+	 * @param collector the blocking collector
+	 * @param executor executor to wait for the collector on
+	 * @return the asynchronous collector.
+	 */
+	static AsyncTimeSlicesCollector of(final TimeSlicesCollector collector, final Executor executor) {
+		return new AsyncTimeSlicesCollector() {
+			@Override
+			public CompletableFuture<List<TimeSlice>> getTimeSlicesAsync(final LocalDate from, final LocalDate toExclusive,
+					final ZoneId zone) {
+				return CompletableFuture.supplyAsync(collector::getTimeSlices, executor);
+			}
+
+			@Override
+			public long getRevision() {
+				return collector.getRevision();
+			}
+		};
+	}
+}
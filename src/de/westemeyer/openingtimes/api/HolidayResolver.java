@@ -1,6 +1,10 @@
 package de.westemeyer.openingtimes.api;
 
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
 import java.time.ZonedDateTime;
+import java.util.BitSet;
 
 /**
  * Holiday resolver interface.
@@ -10,10 +14,33 @@ import java.time.ZonedDateTime;
  */
 public interface HolidayResolver {
 	/**
-	 * Determines, whether a date is a local holiday.
+	 * Determines, whether a date is a local holiday. Only the local date of the test date is relevant, its time of day may
+	 * vary between calls for the same date.
 	 * 
 	 * @param testDate test date
 	 * @return whether a date is a local holiday
 	 */
 	boolean isHoliday(ZonedDateTime testDate);
+
+	/**
+	 * Determines the local holidays in a range of dates. The default implementation checks every date separately, resolvers
+	 * that can answer a range of dates more cheaply should override it.
+	 * 
+	 * @param from first date of the range
+	 * @param toExclusive first date after the range
+	 * @param zone time zone of the dates
+	 * @return one bit per date of the range, starting with bit 0 for the first date, set for local holidays.
+	 */
+	default BitSet holidaysBetween(final LocalDate from, final LocalDate toExclusive, final ZoneId zone) {
+		final BitSet holidays = new BitSet();
+		int index = 0;
+		for (LocalDate date = from; date.isBefore(toExclusive); date = date.plusDays(1)) {
+			// noon is in the middle of the day for any offset
+			if (isHoliday(ZonedDateTime.of(date, LocalTime.NOON, zone))) {
+				holidays.set(index);
+			}
+			index++;
+		}
+		return holidays;
+	}
 }
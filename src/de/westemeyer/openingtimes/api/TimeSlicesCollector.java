@@ -16,4 +16,14 @@ public interface TimeSlicesCollector {
 	 * @return all available time slices.
 	 */
 	List<TimeSlice> getTimeSlices();
+
+	/**
+	 * Provides the revision of the time slices, which has to change whenever the time slices change. Caches of results compare
+	 * revisions to detect outdated entries. The default revision never changes.
+	 * 
+	 * @return the revision of the time slices.
+	 */
+	default long getRevision() {
+		return 0;
+	}
 }
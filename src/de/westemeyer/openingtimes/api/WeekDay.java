@@ -27,6 +27,9 @@ public enum WeekDay {
 	/** Bank holiday. */
 	HOLIDAY(null);
 
+	/** Weekdays in order of their day of week, without bank holiday. */
+	private static final WeekDay[] DAYS_OF_WEEK = { MONDAY, TUESDAY, WEDNESDAY, THURSDAY, FRIDAY, SATURDAY, SUNDAY };
+
 	/** Day of week for all except "bank holiday". */
 	private final DayOfWeek dayOfWeek;
 
@@ -45,11 +48,6 @@ public enum WeekDay {
 		if (isHoliday) {
 			return HOLIDAY;
 		}
-		for (final WeekDay dayOfWeek : values()) {
-			if (dayOfWeek.dayOfWeek.equals(day)) {
-				return dayOfWeek;
-			}
-		}
-		return null;
+		return day == null ? null : DAYS_OF_WEEK[day.ordinal()];
 	}
 }
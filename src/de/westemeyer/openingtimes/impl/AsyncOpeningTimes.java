@@ -0,0 +1,351 @@
+package de.westemeyer.openingtimes.impl;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import de.westemeyer.openingtimes.api.AsyncHolidayResolver;
+import de.westemeyer.openingtimes.api.AsyncTimeSlicesCollector;
+import de.westemeyer.openingtimes.api.HolidayResolver;
+import de.westemeyer.openingtimes.api.TimeSlice;
+
+/**
+ * Non-blocking counterpart of {@link OpeningTimes}, for time slices and holidays kept in a remote store.
+ * <p>
+ * Test dates are grouped into windows of {@value #WINDOW_DAYS} local days. The time slices and holidays needed for the test
+ * dates of a window are requested from the asynchronous collector and resolver at the same time, and compiled once both have
+ * arrived. Each query composes the future of its window with the evaluation, so no thread waits for the store: a small executor
+ * or the threads completing the requests of the store are enough, and callers on virtual threads may simply join the result.
+ * Optionally, the next window is requested as soon as a window is used, so that queries moving forward in time find their data
+ * already fetched.
+ * <p>
+ * The futures of the windows are cached, up to a maximum number of windows of all time zones. Once the cache is full, the
+ * window used least recently is evicted, so that queries of periods far apart, such as "now" and "next month", keep their
+ * windows. Failed requests are dropped from the cache, so the next query asks again. All cached windows are dropped as soon as
+ * {@link AsyncTimeSlicesCollector#getRevision()} changes. Call {@link #clear()} after changing the holidays.
+ *
+ * @author Sebastian Westemeyer
+ *
+ */
+public class AsyncOpeningTimes {
+	/** Number of local days of test dates sharing a window. */
+	public static final int WINDOW_DAYS = ScheduleEvaluator.DAYS;
+	/** Default maximum number of cached windows. */
+	public static final int DEFAULT_MAXIMUM_WINDOWS = 64;
+
+	/** Supplier of the time slices. */
+	private final AsyncTimeSlicesCollector collector;
+	/** Supplier of the holidays. */
+	private final AsyncHolidayResolver holidayResolver;
+	/** Whether to request the next window in advance. */
+	private final boolean prefetch;
+	/** Maximum number of cached windows. */
+	private final int maximumWindows;
+	/** Cached windows of the current revision. */
+	private final AtomicReference<Generation> generation;
+
+	/**
+	 * Create new asynchronous opening times without prefetching.
+	 *
+	 * @param collector Supplier of the time slices.
+	 * @param holidayResolver Supplier of the holidays.
+	 */
+	public AsyncOpeningTimes(final AsyncTimeSlicesCollector collector, final AsyncHolidayResolver holidayResolver) {
+		this(collector, holidayResolver, false);
+	}
+
+	/**
+	 * Create new asynchronous opening times, caching up to {@link #DEFAULT_MAXIMUM_WINDOWS} windows.
+	 *
+	 * @param collector Supplier of the time slices.
+	 * @param holidayResolver Supplier of the holidays.
+	 * @param prefetch whether to request the next window as soon as a window is used
+	 */
+	public AsyncOpeningTimes(final AsyncTimeSlicesCollector collector, final AsyncHolidayResolver holidayResolver,
+			final boolean prefetch) {
+		this(collector, holidayResolver, prefetch, DEFAULT_MAXIMUM_WINDOWS);
+	}
+
+	/**
+	 * Create new asynchronous opening times.
+	 *
+	 * @param collector Supplier of the time slices.
+	 * @param holidayResolver Supplier of the holidays.
+	 * @param prefetch whether to request the next window as soon as a window is used
+	 * @param maximumWindows maximum number of cached windows
+	 * @throws IllegalArgumentException if the maximum number of windows is less than one.
+	 */
+	public AsyncOpeningTimes(final AsyncTimeSlicesCollector collector, final AsyncHolidayResolver holidayResolver,
+			final boolean prefetch, final int maximumWindows) {
+		if (maximumWindows < 1) {
+			throw new IllegalArgumentException("Maximum number of windows has to be at least one");
+		}
+		this.collector = collector;
+		this.holidayResolver = holidayResolver;
+		this.prefetch = prefetch;
+		this.maximumWindows = maximumWindows;
+		this.generation = new AtomicReference<>(new Generation(collector.getRevision()));
+	}
+
+	/**
+	 * The actual check for upcoming opening times, without blocking. The result is the same as for
+	 * {@link OpeningTimes#createOpenType(ZonedDateTime)} with the time slices and holidays of the store. The evaluation runs on
+	 * the thread completing the last request of the window, or on the calling thread if the window has been fetched already.
+	 *
+	 * @param date The test date.
+	 * @return future of the opening type (open, opening soon or closed), completed exceptionally if the store fails.
+	 */
+	public CompletableFuture<OpenType> createOpenTypeAsync(final ZonedDateTime date) {
+		final Generation current = current();
+		final ZoneId zone = date.getZone();
+		final long index = Math.floorDiv(date.toLocalDate().toEpochDay(), WINDOW_DAYS);
+		final CompletableFuture<OpeningTimes> window = current.window(new WindowKey(zone, index));
+		if (prefetch) {
+			current.window(new WindowKey(zone, index + 1));
+		}
+		return window.thenApply(openingTimes -> openingTimes.createOpenType(date));
+	}
+
+	/**
+	 * Remove all cached windows, for example after the holidays of the store have changed.
+	 */
+	public void clear() {
+		generation.set(new Generation(collector.getRevision()));
+	}
+
+	/**
+	 * Get the number of cached windows, including windows still being requested.
+	 *
+	 * @return number of cached windows.
+	 */
+	public int size() {
+		return generation.get().windows.size();
+	}
+
+	/**
+	 * Get the cached windows of the current revision, dropping the windows of older revisions.
+	 *
+	 * @return the cached windows.
+	 */
+	private Generation current() {
+		final long revision = collector.getRevision();
+		Generation current = generation.get();
+		while (current.revision != revision) {
+			final Generation next = new Generation(revision);
+			if (generation.compareAndSet(current, next)) {
+				return next;
+			}
+			current = generation.get();
+		}
+		return current;
+	}
+
+	/**
+	 * Request the time slices and holidays of a window and compile them.
+	 *
+	 * @param key time zone and index of the window
+	 * @return future of the opening times of the window.
+	 */
+	private CompletableFuture<OpeningTimes> load(final WindowKey key) {
+		final ZoneId zone = key.zone;
+		// the test dates of the window check up to a week after their day
+		final LocalDate from = LocalDate.ofEpochDay(key.index * WINDOW_DAYS);
+		final LocalDate toExclusive = from.plusDays(2 * WINDOW_DAYS + 1);
+		try {
+			final CompletableFuture<List<TimeSlice>> slices = collector.getTimeSlicesAsync(from, toExclusive, zone);
+			final CompletableFuture<BitSet> holidays = holidayResolver.holidaysBetweenAsync(from, toExclusive, zone);
+			return slices.thenCombine(holidays, (list, bits) -> new OpeningTimes(new CompiledSchedule(list),
+					new WindowHolidays(from.toEpochDay(), toExclusive.toEpochDay(), bits)));
+		} catch (final RuntimeException e) {
+			final CompletableFuture<OpeningTimes> failed = new CompletableFuture<>();
+			failed.completeExceptionally(e);
+			return failed;
+		}
+	}
+
+	/**
+	 * Cached windows for a single revision of the time slices. Windows requested while the revision changes end up in the
+	 * dropped generation, they never mix with the windows of the new revision.
+	 */
+	private final class Generation {
+		/** Revision of the time slices. */
+		private final long revision;
+		/** Cached windows by time zone and index. */
+		private final ConcurrentHashMap<WindowKey, Window> windows = new ConcurrentHashMap<>();
+		/** Counter of the uses of windows, to find the window used least recently. */
+		private final AtomicLong uses = new AtomicLong();
+
+		/**
+		 * Create new, empty generation.
+		 *
+		 * @param revision revision of the time slices
+		 */
+		Generation(final long revision) {
+			this.revision = revision;
+		}
+
+		/**
+		 * Get the future of a window, requesting it unless it is cached, and mark it as used.
+		 *
+		 * @param key time zone and index of the window
+		 * @return future of the opening times of the window.
+		 */
+		CompletableFuture<OpeningTimes> window(final WindowKey key) {
+			final Window cached = windows.get(key);
+			if (cached != null) {
+				cached.used = uses.incrementAndGet();
+				return cached.future;
+			}
+			// claim the window first, so that the store is asked only once
+			final Window window = new Window(uses.incrementAndGet());
+			final Window other = windows.putIfAbsent(key, window);
+			if (other != null) {
+				other.used = uses.incrementAndGet();
+				return other.future;
+			}
+			evict(key);
+			load(key).whenComplete((openingTimes, failure) -> {
+				if (failure != null) {
+					windows.remove(key, window);
+					window.future.completeExceptionally(failure);
+				} else {
+					window.future.complete(openingTimes);
+				}
+			});
+			return window.future;
+		}
+
+		/**
+		 * Evict the windows used least recently, until no more than the maximum number of windows are cached. The added window
+		 * itself is never evicted.
+		 *
+		 * @param added key of the added window
+		 */
+		private void evict(final WindowKey added) {
+			while (windows.size() > maximumWindows) {
+				Map.Entry<WindowKey, Window> eldest = null;
+				for (final Map.Entry<WindowKey, Window> entry : windows.entrySet()) {
+					if (!entry.getKey().equals(added) && (eldest == null || entry.getValue().used < eldest.getValue().used)) {
+						eldest = entry;
+					}
+				}
+				if (eldest == null) {
+					return;
+				}
+				windows.remove(eldest.getKey(), eldest.getValue());
+			}
+		}
+	}
+
+	/**
+	 * Time zone and index of a window, counted in windows of epoch days.
+	 */
+	private static final class WindowKey {
+		/** The time zone. */
+		private final ZoneId zone;
+		/** Index of the window. */
+		private final long index;
+
+		/**
+		 * Create new key.
+		 *
+		 * @param zone the time zone
+		 * @param index index of the window
+		 */
+		WindowKey(final ZoneId zone, final long index) {
+			this.zone = zone;
+			this.index = index;
+		}
+
+		@Override
+		public boolean equals(final Object obj) {
+			if (!(obj instanceof WindowKey)) {
+				return false;
+			}
+			final WindowKey other = (WindowKey) obj;
+			return index == other.index && zone.equals(other.zone);
+		}
+
+		@Override
+		public int hashCode() {
+			return zone.hashCode() * 31 + Long.hashCode(index);
+		}
+	}
+
+	/**
+	 * A cached window.
+	 */
+	private static final class Window {
+		/** Future of the opening times of the window. */
+		private final CompletableFuture<OpeningTimes> future = new CompletableFuture<>();
+		/** Number of the last use of the window, higher numbers are used more recently. */
+		private volatile long used;
+
+		/**
+		 * Create new window, requested by a use.
+		 *
+		 * @param used number of the use
+		 */
+		Window(final long used) {
+			this.used = used;
+		}
+	}
+
+	/**
+	 * Holidays of a window, as fetched from the store.
+	 */
+	private static final class WindowHolidays implements HolidayResolver {
+		/** First day of the window as epoch day. */
+		private final long first;
+		/** First day after the window as epoch day. */
+		private final long end;
+		/** Holidays of the window, one bit per day from the first day. */
+		private final BitSet holidays;
+
+		/**
+		 * Create holidays of a window.
+		 *
+		 * @param first first day of the window as epoch day
+		 * @param end first day after the window as epoch day
+		 * @param holidays holidays of the window, one bit per day from the first day
+		 */
+		WindowHolidays(final long first, final long end, final BitSet holidays) {
+			this.first = first;
+			this.end = end;
+			this.holidays = holidays;
+		}
+
+		@Override
+		public boolean isHoliday(final ZonedDateTime testDate) {
+			final long day = testDate.toLocalDate().toEpochDay();
+			check(day, day + 1);
+			return holidays.get((int) (day - first));
+		}
+
+		@Override
+		public BitSet holidaysBetween(final LocalDate from, final LocalDate toExclusive, final ZoneId zone) {
+			check(from.toEpochDay(), toExclusive.toEpochDay());
+			return holidays.get((int) (from.toEpochDay() - first), (int) (toExclusive.toEpochDay() - first));
+		}
+
+		/**
+		 * Check that a range of days is part of the window.
+		 *
+		 * @param from first day of the range as epoch day
+		 * @param toExclusive first day after the range as epoch day
+		 * @throws IllegalStateException if the range is not part of the window.
+		 */
+		private void check(final long from, final long toExclusive) {
+			if (from < first || toExclusive > end) {
+				throw new IllegalStateException("Holidays outside of the fetched window");
+			}
+		}
+	}
+}
@@ -0,0 +1,248 @@
+package de.westemeyer.openingtimes.impl;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.BitSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import de.westemeyer.openingtimes.api.HolidayResolver;
+
+/**
+ * Holiday resolver decorator, caching the results of another resolver.
+ * <p>
+ * On first use of a year in a time zone, all days of that year are resolved and stored as bit set, so later lookups are a
+ * single bit test, and ranges of dates are copied from the bit sets. The number of cached years per time zone is bounded, the
+ * year used least recently is evicted first, so lookups of a past year interleaved with current ones keep both years. Lookups
+ * of cached years do not lock, so the resolver can be shared between threads.
+ *
+ * @author Sebastian Westemeyer
+ *
+ */
+public class CachingHolidayResolver implements HolidayResolver {
+	/** Default number of years to cache per time zone. */
+	public static final int DEFAULT_MAX_YEARS = 4;
+
+	/** The resolver to ask for holidays. */
+	private final HolidayResolver delegate;
+	/** Maximum number of years to cache per time zone. */
+	private final int maxYears;
+	/** Cached years, by time zone. */
+	private final ConcurrentHashMap<ZoneId, ZoneYears> zones = new ConcurrentHashMap<>();
+
+	/**
+	 * Create new caching resolver, caching up to {@link #DEFAULT_MAX_YEARS} years per time zone.
+	 *
+	 * @param delegate The resolver to ask for holidays.
+	 */
+	public CachingHolidayResolver(final HolidayResolver delegate) {
+		this(delegate, DEFAULT_MAX_YEARS);
+	}
+
+	/**
+	 * Create new caching resolver.
+	 *
+	 * @param delegate The resolver to ask for holidays.
+	 * @param maxYears Maximum number of years to cache per time zone.
+	 */
+	public CachingHolidayResolver(final HolidayResolver delegate, final int maxYears) {
+		if (maxYears < 1) {
+			throw new IllegalArgumentException("At least one year has to be cached");
+		}
+		this.delegate = delegate;
+		this.maxYears = maxYears;
+	}
+
+	@Override
+	public boolean isHoliday(final ZonedDateTime testDate) {
+		return isHoliday(testDate.getZone(), testDate.getYear(), testDate.getDayOfYear());
+	}
+
+	@Override
+	public BitSet holidaysBetween(final LocalDate from, final LocalDate toExclusive, final ZoneId zone) {
+		final BitSet holidays = new BitSet();
+		int index = 0;
+		for (LocalDate date = from; date.isBefore(toExclusive);) {
+			// check all dates of the range in the year of the current date
+			final HolidayYear holidayYear = zoneYears(zone).get(date.getYear());
+			final int lastDay = date.getYear() == toExclusive.getYear() ? toExclusive.getDayOfYear() - 1 : date.lengthOfYear();
+			for (int day = date.getDayOfYear(); day <= lastDay; day++) {
+				if (holidayYear.isHoliday(day)) {
+					holidays.set(index);
+				}
+				index++;
+			}
+			date = LocalDate.of(date.getYear() + 1, 1, 1);
+		}
+		return holidays;
+	}
+
+	/**
+	 * Determines, whether a day of a year is a local holiday.
+	 *
+	 * @param zone time zone of the day
+	 * @param year the year
+	 * @param dayOfYear day of the year, starting with 1
+	 * @return whether the day is a local holiday.
+	 */
+	public boolean isHoliday(final ZoneId zone, final int year, final int dayOfYear) {
+		return zoneYears(zone).get(year).isHoliday(dayOfYear);
+	}
+
+	/**
+	 * Remove all cached years, for example after the holidays of the underlying resolver have changed.
+	 */
+	public void clear() {
+		zones.clear();
+	}
+
+	/**
+	 * Get the cached years of a time zone.
+	 *
+	 * @param zone the time zone
+	 * @return the cached years.
+	 */
+	private ZoneYears zoneYears(final ZoneId zone) {
+		final ZoneYears zoneYears = zones.get(zone);
+		return zoneYears != null ? zoneYears : zones.computeIfAbsent(zone, ZoneYears::new);
+	}
+
+	/**
+	 * Holidays of one year, one bit per day.
+	 */
+	private static final class HolidayYear {
+		/** The year. */
+		private final int year;
+		/** Holiday bits, bit 0 is the first of january. */
+		private final long[] bits = new long[6];
+		/** Number of the last use of the year, higher numbers are used more recently. */
+		private volatile long used;
+
+		/**
+		 * Resolve the holidays of a year.
+		 *
+		 * @param delegate The resolver to ask for holidays.
+		 * @param zone time zone for the checked dates
+		 * @param year the year
+		 */
+		HolidayYear(final HolidayResolver delegate, final ZoneId zone, final int year) {
+			this.year = year;
+			for (LocalDate date = LocalDate.of(year, 1, 1); date.getYear() == year; date = date.plusDays(1)) {
+				// noon is in the middle of the day for any offset
+				if (delegate.isHoliday(ZonedDateTime.of(date, LocalTime.NOON, zone))) {
+					final int day = date.getDayOfYear() - 1;
+					bits[day >>> 6] |= 1L << day;
+				}
+			}
+		}
+
+		/**
+		 * Check bit for a day.
+		 *
+		 * @param dayOfYear day of the year, starting with 1
+		 * @return whether the day is a holiday.
+		 */
+		boolean isHoliday(final int dayOfYear) {
+			final int day = dayOfYear - 1;
+			return (bits[day >>> 6] & (1L << day)) != 0;
+		}
+	}
+
+	/**
+	 * Cached years of one time zone. Readers scan an immutable array, writers replace it.
+	 */
+	private final class ZoneYears {
+		/** The time zone. */
+		private final ZoneId zone;
+		/** Cached years. */
+		private volatile HolidayYear[] years = new HolidayYear[0];
+		/** Counter of the uses of years, to find the year used least recently. */
+		private final AtomicLong uses = new AtomicLong();
+
+		/**
+		 * Create empty cache for a time zone.
+		 *
+		 * @param zone the time zone
+		 */
+		ZoneYears(final ZoneId zone) {
+			this.zone = zone;
+		}
+
+		/**
+		 * Get the holidays of a year, resolving them on first use, and mark the year as used.
+		 *
+		 * @param year the year
+		 * @return holidays of the year.
+		 */
+		HolidayYear get(final int year) {
+			final HolidayYear cached = find(years, year);
+			if (cached == null) {
+				return load(year);
+			}
+			// repeated lookups of the same year leave the counter alone
+			if (cached.used != uses.get()) {
+				cached.used = uses.incrementAndGet();
+			}
+			return cached;
+		}
+
+		/**
+		 * Resolve the holidays of a year and add them to the cache, evicting the year used least recently if necessary.
+		 *
+		 * @param year the year
+		 * @return holidays of the year.
+		 */
+		private synchronized HolidayYear load(final int year) {
+			final HolidayYear[] current = years;
+			HolidayYear result = find(current, year);
+			if (result == null) {
+				result = new HolidayYear(delegate, zone, year);
+				result.used = uses.incrementAndGet();
+				final HolidayYear[] updated;
+				if (current.length < maxYears) {
+					updated = new HolidayYear[current.length + 1];
+					System.arraycopy(current, 0, updated, 0, current.length);
+				} else {
+					updated = current.clone();
+				}
+				updated[current.length < maxYears ? current.length : leastRecentlyUsed(current)] = result;
+				years = updated;
+			}
+			return result;
+		}
+
+		/**
+		 * Find a year in an array of cached years.
+		 *
+		 * @param candidates cached years
+		 * @param year the year
+		 * @return holidays of the year, or null if not cached.
+		 */
+		private HolidayYear find(final HolidayYear[] candidates, final int year) {
+			for (final HolidayYear candidate : candidates) {
+				if (candidate.year == year) {
+					return candidate;
+				}
+			}
+			return null;
+		}
+
+		/**
+		 * Find the year used least recently in an array of cached years.
+		 *
+		 * @param candidates cached years
+		 * @return index of the year used least recently.
+		 */
+		private int leastRecentlyUsed(final HolidayYear[] candidates) {
+			int result = 0;
+			for (int i = 1; i < candidates.length; i++) {
+				if (candidates[i].used < candidates[result].used) {
+					result = i;
+				}
+			}
+			return result;
+		}
+	}
+}
@@ -0,0 +1,124 @@
+package de.westemeyer.openingtimes.impl;
+
+import de.westemeyer.openingtimes.api.OpenStatus;
+import de.westemeyer.openingtimes.api.TimeSlice;
+
+/**
+ * Compact, reusable result of a check for upcoming opening times, holding primitive epoch milliseconds instead of date/time
+ * objects.
+ * <p>
+ * It is filled by {@link OpeningTimes#createOpenType(long, java.time.ZoneId, CompactOpenType)} with the same result as an
+ * {@link OpenType}. The result also keeps the state of the last checked period, so that checking many test dates with the
+ * same result object creates no objects for test dates on the same day in the same time zone. A result object must not be
+ * shared between threads.
+ *
+ * @author Sebastian Westemeyer
+ *
+ */
+public final class CompactOpenType {
+	/** Marker for instants that are not set. */
+	public static final long NONE = Long.MIN_VALUE;
+
+	/** State of the last checked period. */
+	ScheduleEvaluator.Week week;
+	/** The compiled time slices that have been checked. */
+	private CompiledSchedule schedule;
+	/** The opening status. */
+	private OpenStatus status = OpenStatus.CLOSED;
+	/** Index of the time slice in the compiled time slices, -1 if closed. */
+	private int sliceIndex = -1;
+	/** Opening date/time in epoch milliseconds. */
+	private long opening = NONE;
+	/** Closing date/time in epoch milliseconds. */
+	private long closing = NONE;
+	/** Next opening date/time in epoch milliseconds. */
+	private long nextOpening = NONE;
+	/** Instant in epoch milliseconds until which the result holds. */
+	private long validUntil = NONE;
+
+	/**
+	 * Set the result of a check.
+	 *
+	 * @param schedule the compiled time slices that have been checked
+	 * @param status the opening status
+	 * @param sliceIndex index of the time slice in the compiled time slices, -1 if closed
+	 * @param opening opening date/time in epoch milliseconds
+	 * @param closing closing date/time in epoch milliseconds
+	 * @param nextOpening next opening date/time in epoch milliseconds
+	 * @param validUntil instant in epoch milliseconds until which the result holds
+	 */
+	void set(final CompiledSchedule schedule, final OpenStatus status, final int sliceIndex, final long opening, final long closing,
+			final long nextOpening, final long validUntil) {
+		this.schedule = schedule;
+		this.status = status;
+		this.sliceIndex = sliceIndex;
+		this.opening = opening;
+		this.closing = closing;
+		this.nextOpening = nextOpening;
+		this.validUntil = validUntil;
+	}
+
+	/**
+	 * Returns the opening status, see {@link OpenType#getStatus()}.
+	 *
+	 * @return the opening status.
+	 */
+	public OpenStatus getStatus() {
+		return status;
+	}
+
+	/**
+	 * Returns the index of the time slice in the compiled time slices, see {@link CompiledSchedule#getTimeSlices()}.
+	 *
+	 * @return the index of the time slice, or -1 if closed.
+	 */
+	public int getSliceIndex() {
+		return sliceIndex;
+	}
+
+	/**
+	 * Returns the time slice, see {@link OpenType#getTimeSlice()}.
+	 *
+	 * @return the time slice, or null if closed.
+	 */
+	public TimeSlice getTimeSlice() {
+		return sliceIndex < 0 ? null : schedule.slice(sliceIndex);
+	}
+
+	/**
+	 * Returns the opening date/time, see {@link OpenType#getDateTime()}.
+	 *
+	 * @return the opening date/time in epoch milliseconds, or {@link #NONE} if closed.
+	 */
+	public long getOpeningMillis() {
+		return opening;
+	}
+
+	/**
+	 * Returns the closing date/time, see {@link OpenType#getClosingDateTime()}.
+	 *
+	 * @return the closing date/time in epoch milliseconds, or {@link #NONE} if closed.
+	 */
+	public long getClosingMillis() {
+		return closing;
+	}
+
+	/**
+	 * Returns the next opening date/time, see {@link OpenType#getNextOpening()}.
+	 *
+	 * @return the next opening date/time in epoch milliseconds, or {@link #NONE} if there is none.
+	 */
+	public long getNextOpeningMillis() {
+		return nextOpening;
+	}
+
+	/**
+	 * Returns the instant until which the result holds, the earliest instant at which the result may change, see
+	 * {@link OpenType#getValidUntil()}.
+	 *
+	 * @return the instant in epoch milliseconds, or {@link #NONE} if nothing has been checked yet.
+	 */
+	public long getValidUntilMillis() {
+		return validUntil;
+	}
+}
@@ -0,0 +1,602 @@
+package de.westemeyer.openingtimes.impl;
+
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+
+import de.westemeyer.openingtimes.api.TimeSlice;
+import de.westemeyer.openingtimes.api.TimeSlicesCollector;
+import de.westemeyer.openingtimes.api.WeekDay;
+
+/**
+ * Immutable, indexed set of time slices, compiled once from a {@link TimeSlicesCollector}.
+ * <p>
+ * Slices are kept sorted by their "from" member, together with their validity bounds in epoch seconds and a running maximum
+ * of the "to" bounds. Both arrays are sorted, so the slices overlapping any date range can be found with two binary searches
+ * instead of filtering and sorting all slices for every query. Slice bounds are evaluated with second precision. Start and end
+ * times are parsed once to minutes of the day (see {@link TimeOfDay}), weekdays are stored as bit mask with one bit per
+ * {@link WeekDay} ordinal, and both are packed into a single value per slice. Slices of a {@link TimeSlicePool} are compiled
+ * already and copied without parsing. A {@link Builder} appends slices one at a time, for imports without an intermediate list.
+ * <p>
+ * As a {@link TimeSlicesCollector} itself, a compiled schedule can be passed to {@link OpeningTimes} in place of the original
+ * collector. It keeps the revision of that collector. Changes are compiled into a new schedule with the next revision, see
+ * {@link ScheduleStore}.
+ *
+ * @author Sebastian Westemeyer
+ *
+ */
+public class CompiledSchedule implements TimeSlicesCollector {
+	/** Order of the slices, by "from" member. */
+	private static final Comparator<TimeSlice> ORDER = CompiledSchedule::compareFrom;
+	/** Bits of a minute of the day in packed slice values. */
+	private static final int MINUTE_BITS = 11;
+	/** Mask of a minute of the day in packed slice values. */
+	private static final int MINUTE_MASK = (1 << MINUTE_BITS) - 1;
+
+	/** Time slices, sorted by "from" member. */
+	private final TimeSlice[] slices;
+	/** Start of validity for each slice in epoch seconds. */
+	private final long[] from;
+	/** End of validity for each slice in epoch seconds. */
+	private final long[] to;
+	/** Running maximum of the end of validity, used to find the first slice that may still be valid. */
+	private final long[] maxTo;
+	/** Opening time, closing time and weekday mask of each slice, packed into a single value, see {@link #pack(int, int, int)}. */
+	private final int[] packed;
+	/** Unmodifiable view on the sorted slices. */
+	private final List<TimeSlice> sliceList;
+	/** Revision of the time slices. */
+	private final long revision;
+
+	/**
+	 * Compile the time slices provided by a collector.
+	 *
+	 * @param collector Supplier of the time slices to compile.
+	 */
+	public CompiledSchedule(final TimeSlicesCollector collector) {
+		this(collector.getTimeSlices(), collector.getRevision());
+	}
+
+	/**
+	 * Compile a list of time slices.
+	 *
+	 * @param timeSlices List of time slices to compile.
+	 * @throws IllegalArgumentException if a start or end time is malformed.
+	 */
+	public CompiledSchedule(final List<TimeSlice> timeSlices) {
+		this(timeSlices, 0);
+	}
+
+	/**
+	 * Compile a list of time slices with a revision.
+	 *
+	 * @param timeSlices List of time slices to compile.
+	 * @param revision revision of the time slices
+	 * @throws IllegalArgumentException if a start or end time is malformed.
+	 */
+	CompiledSchedule(final List<TimeSlice> timeSlices, final long revision) {
+		this.revision = revision;
+		// stable sort, so slices with equal "from" members keep their original order
+		slices = timeSlices.toArray(new TimeSlice[timeSlices.size()]);
+		Arrays.sort(slices, ORDER);
+
+		from = new long[slices.length];
+		to = new long[slices.length];
+		maxTo = new long[slices.length];
+		packed = new int[slices.length];
+		long max = Long.MIN_VALUE;
+		for (int i = 0; i < slices.length; i++) {
+			compile(slices[i], from, to, packed, i);
+			max = Math.max(max, to[i]);
+			maxTo[i] = max;
+		}
+		sliceList = Collections.unmodifiableList(Arrays.asList(slices));
+	}
+
+	/**
+	 * Create a schedule from compiled arrays of the given length, to be filled by the caller. Subclasses keeping the compiled
+	 * slices elsewhere pass a length of zero and override all accessors of the compiled slices.
+	 *
+	 * @param length number of slices
+	 * @param revision revision of the time slices
+	 */
+	CompiledSchedule(final int length, final long revision) {
+		this.revision = revision;
+		slices = new TimeSlice[length];
+		from = new long[length];
+		to = new long[length];
+		maxTo = new long[length];
+		packed = new int[length];
+		sliceList = Collections.unmodifiableList(Arrays.asList(slices));
+	}
+
+	@Override
+	public List<TimeSlice> getTimeSlices() {
+		return sliceList;
+	}
+
+	@Override
+	public long getRevision() {
+		return revision;
+	}
+
+	/**
+	 * Compile changes of the time slices into a new schedule with the next revision, leaving this schedule unchanged. Only the
+	 * added slices are parsed and sorted, then merged into the compiled slices. Slices before the first change keep their
+	 * compiled values, so changes of later seasons touch only the end of the arrays. The result is the same as compiling the
+	 * remaining slices followed by the added ones.
+	 *
+	 * @param removed slices to remove, compared by identity, slices not contained in the schedule are ignored
+	 * @param added slices to add
+	 * @return the new schedule, or this schedule if nothing changes.
+	 * @throws IllegalArgumentException if a start or end time of an added slice is malformed.
+	 */
+	CompiledSchedule update(final Collection<? extends TimeSlice> removed, final Collection<? extends TimeSlice> added) {
+		final int size = size();
+		final boolean[] dropped = new boolean[size];
+		int droppedCount = 0;
+		// index of the first slice that changes
+		int first = size;
+		for (final TimeSlice slice : removed) {
+			final int index = indexOf(slice);
+			if (index >= 0 && !dropped[index]) {
+				dropped[index] = true;
+				droppedCount++;
+				first = Math.min(first, index);
+			}
+		}
+		if (droppedCount == 0 && added.isEmpty()) {
+			return this;
+		}
+		final CompiledSchedule insert = new CompiledSchedule(new ArrayList<>(added));
+		if (insert.slices.length > 0) {
+			first = Math.min(first, insertionIndex(insert.slices[0]));
+		}
+
+		final CompiledSchedule result = new CompiledSchedule(size - droppedCount + insert.slices.length, revision + 1);
+		for (int index = 0; index < first; index++) {
+			result.copy(index, this, index);
+		}
+		// merge the remaining slices and the added ones, keeping remaining slices first for equal "from" members
+		int next = first;
+		int inserted = 0;
+		for (int index = first; index < result.slices.length; index++) {
+			while (next < size && dropped[next]) {
+				next++;
+			}
+			if (inserted == insert.slices.length || (next < size && ORDER.compare(slice(next), insert.slices[inserted]) <= 0)) {
+				result.copy(index, this, next++);
+			} else {
+				result.copy(index, insert, inserted++);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Copy a compiled slice into this schedule, which has to be created from compiled arrays, updating the running maximum of
+	 * the end of validity.
+	 *
+	 * @param index index to copy to
+	 * @param source schedule to copy from
+	 * @param sourceIndex index to copy from
+	 */
+	private void copy(final int index, final CompiledSchedule source, final int sourceIndex) {
+		slices[index] = source.slice(sourceIndex);
+		from[index] = source.from(sourceIndex);
+		to[index] = source.to(sourceIndex);
+		maxTo[index] = index > 0 ? Math.max(maxTo[index - 1], to[index]) : to[index];
+		packed[index] = pack(source.startMinute(sourceIndex), source.endMinute(sourceIndex), source.weekdayMask(sourceIndex));
+	}
+
+	/**
+	 * Compile the validity bounds, opening time, closing time and weekdays of a slice into arrays.
+	 *
+	 * @param slice the slice
+	 * @param from start of validity of the slices in epoch seconds
+	 * @param to end of validity of the slices in epoch seconds
+	 * @param packed opening time, closing time and weekday mask of the slices
+	 * @param index index to compile the slice to
+	 * @throws IllegalArgumentException if a start or end time is malformed.
+	 */
+	private static void compile(final TimeSlice slice, final long[] from, final long[] to, final int[] packed, final int index) {
+		if (slice instanceof TimeSlicePool.Slice) {
+			// pooled slices are compiled already
+			final TimeSlicePool.Slice pooled = (TimeSlicePool.Slice) slice;
+			from[index] = pooled.from;
+			to[index] = pooled.to;
+			packed[index] = pooled.shape.packed;
+		} else {
+			from[index] = slice.getFrom().toEpochSecond();
+			// a missing "to" member denotes an open end
+			to[index] = slice.getTo() == null ? Long.MAX_VALUE : slice.getTo().toEpochSecond();
+			packed[index] = pack(TimeOfDay.parse(slice.getStartTime()), TimeOfDay.parse(slice.getEndTime()),
+					weekdayMaskOf(slice.getWeekdays()));
+		}
+	}
+
+	/**
+	 * Find a slice by identity.
+	 *
+	 * @param slice the slice to look for
+	 * @return index of the slice, or -1 if it is not contained in the schedule.
+	 */
+	int indexOf(final TimeSlice slice) {
+		final long epochSecond = slice.getFrom().toEpochSecond();
+		for (int index = endIndex(epochSecond - 1); index < size() && from(index) == epochSecond; index++) {
+			if (slice(index) == slice) {
+				return index;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Get the index at which a slice would be inserted, after all slices with an equal "from" member.
+	 *
+	 * @param slice the slice to insert
+	 * @return the insertion index.
+	 */
+	private int insertionIndex(final TimeSlice slice) {
+		int index = endIndex(slice.getFrom().toEpochSecond() - 1);
+		while (index < size() && ORDER.compare(slice(index), slice) <= 0) {
+			index++;
+		}
+		return index;
+	}
+
+	/**
+	 * Get the compiled schedule of a collector, compiling its time slices unless it is compiled already. For a
+	 * {@link ScheduleStore}, this is its current snapshot.
+	 *
+	 * @param collector Supplier of the time slices.
+	 * @return the compiled schedule.
+	 */
+	static CompiledSchedule of(final TimeSlicesCollector collector) {
+		if (collector instanceof CompiledSchedule) {
+			return (CompiledSchedule) collector;
+		}
+		if (collector instanceof ScheduleStore) {
+			return ((ScheduleStore) collector).snapshot();
+		}
+		return new CompiledSchedule(collector);
+	}
+
+	/**
+	 * Get all time slices overlapping a date range, sorted by "from" member.
+	 *
+	 * @param lowerBound lower bound date (inclusive)
+	 * @param upperBound upper bound date (inclusive)
+	 * @return the overlapping time slices sorted by "from" member.
+	 */
+	public List<TimeSlice> relevantSlices(final ZonedDateTime lowerBound, final ZonedDateTime upperBound) {
+		final long lower = ceilEpochSecond(lowerBound);
+		final long upper = upperBound.toEpochSecond();
+		final List<TimeSlice> result = new ArrayList<>();
+		for (int i = firstIndex(lower), end = endIndex(upper); i < end; i++) {
+			if (to(i) >= lower) {
+				result.add(slice(i));
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Number of compiled slices.
+	 *
+	 * @return number of compiled slices.
+	 */
+	public int size() {
+		return slices.length;
+	}
+
+	/**
+	 * Index of the first slice that might still be valid at the given instant. No slice before this index is valid at or after
+	 * the instant.
+	 *
+	 * @param epochSecond instant in epoch seconds
+	 * @return index of the first slice with an end of validity at or after the instant.
+	 */
+	int firstIndex(final long epochSecond) {
+		int low = 0;
+		int high = maxTo.length;
+		while (low < high) {
+			final int mid = (low + high) >>> 1;
+			if (maxTo[mid] < epochSecond) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * Index after the last slice that begins at or before the given instant.
+	 *
+	 * @param epochSecond instant in epoch seconds
+	 * @return index after the last slice with a start of validity at or before the instant.
+	 */
+	int endIndex(final long epochSecond) {
+		int low = 0;
+		int high = from.length;
+		while (low < high) {
+			final int mid = (low + high) >>> 1;
+			if (from[mid] <= epochSecond) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * Get the time slice at an index.
+	 *
+	 * @param index slice index
+	 * @return the time slice at the index.
+	 */
+	TimeSlice slice(final int index) {
+		return slices[index];
+	}
+
+	/**
+	 * Get the start of validity of a slice.
+	 *
+	 * @param index slice index
+	 * @return start of validity in epoch seconds.
+	 */
+	long from(final int index) {
+		return from[index];
+	}
+
+	/**
+	 * Get the end of validity of a slice.
+	 *
+	 * @param index slice index
+	 * @return end of validity in epoch seconds.
+	 */
+	long to(final int index) {
+		return to[index];
+	}
+
+	/**
+	 * Get the opening time of a slice.
+	 *
+	 * @param index slice index
+	 * @return opening time in minutes of the day.
+	 */
+	int startMinute(final int index) {
+		return startMinuteOf(packed[index]);
+	}
+
+	/**
+	 * Get the closing time of a slice.
+	 *
+	 * @param index slice index
+	 * @return closing time in minutes of the day.
+	 */
+	int endMinute(final int index) {
+		return endMinuteOf(packed[index]);
+	}
+
+	/**
+	 * Get the weekdays of a slice.
+	 *
+	 * @param index slice index
+	 * @return weekdays as bit mask, one bit per {@link WeekDay} ordinal.
+	 */
+	int weekdayMask(final int index) {
+		return weekdayMaskOf(packed[index]);
+	}
+
+	/**
+	 * Pack opening time, closing time and weekday mask of a slice into a single value: eleven bits for each time, followed by
+	 * the weekday mask.
+	 *
+	 * @param startMinute opening time in minutes of the day
+	 * @param endMinute closing time in minutes of the day
+	 * @param weekdayMask weekdays as bit mask
+	 * @return the packed value.
+	 */
+	static int pack(final int startMinute, final int endMinute, final int weekdayMask) {
+		return startMinute | (endMinute << MINUTE_BITS) | (weekdayMask << (2 * MINUTE_BITS));
+	}
+
+	/**
+	 * Get the opening time from a packed value.
+	 *
+	 * @param packed the packed value, see {@link #pack(int, int, int)}
+	 * @return opening time in minutes of the day.
+	 */
+	static int startMinuteOf(final int packed) {
+		return packed & MINUTE_MASK;
+	}
+
+	/**
+	 * Get the closing time from a packed value.
+	 *
+	 * @param packed the packed value, see {@link #pack(int, int, int)}
+	 * @return closing time in minutes of the day.
+	 */
+	static int endMinuteOf(final int packed) {
+		return (packed >>> MINUTE_BITS) & MINUTE_MASK;
+	}
+
+	/**
+	 * Get the weekday mask from a packed value.
+	 *
+	 * @param packed the packed value, see {@link #pack(int, int, int)}
+	 * @return weekdays as bit mask.
+	 */
+	static int weekdayMaskOf(final int packed) {
+		return packed >>> (2 * MINUTE_BITS);
+	}
+
+	/**
+	 * Convert weekdays to a bit mask.
+	 *
+	 * @param weekdays the weekdays
+	 * @return weekdays as bit mask, one bit per {@link WeekDay} ordinal.
+	 */
+	static int weekdayMaskOf(final Set<WeekDay> weekdays) {
+		int mask = 0;
+		for (final WeekDay weekDay : weekdays) {
+			mask |= 1 << weekDay.ordinal();
+		}
+		return mask;
+	}
+
+	/**
+	 * Compare two slices by their "from" members, without creating date/time objects for pooled slices.
+	 *
+	 * @param first the first slice
+	 * @param second the second slice
+	 * @return the result of comparing the "from" members.
+	 */
+	private static int compareFrom(final TimeSlice first, final TimeSlice second) {
+		if (first instanceof TimeSlicePool.Slice && second instanceof TimeSlicePool.Slice) {
+			final TimeSlicePool.Slice firstSlice = (TimeSlicePool.Slice) first;
+			final TimeSlicePool.Slice secondSlice = (TimeSlicePool.Slice) second;
+			// equal instants in different time zones are ordered by their local date/time
+			if (firstSlice.from != secondSlice.from || firstSlice.shape.fromZone.equals(secondSlice.shape.fromZone)) {
+				return Long.compare(firstSlice.from, secondSlice.from);
+			}
+		}
+		return first.getFrom().compareTo(second.getFrom());
+	}
+
+	/**
+	 * Round a date up to full epoch seconds, so that comparisons with second precision slice bounds stay exact.
+	 *
+	 * @param date date to convert
+	 * @return the smallest epoch second not before the date.
+	 */
+	static long ceilEpochSecond(final ZonedDateTime date) {
+		return date.getNano() == 0 ? date.toEpochSecond() : date.toEpochSecond() + 1;
+	}
+
+	/**
+	 * Builder for schedules, compiling slices as they are added. The compiled values are appended to growing arrays and sorted
+	 * once when the schedule is built, unless the slices have been added in order. The result is the same as compiling a list
+	 * of the added slices.
+	 */
+	static final class Builder {
+		/** Added slices. */
+		private TimeSlice[] slices = new TimeSlice[16];
+		/** Start of validity for each slice in epoch seconds. */
+		private long[] from = new long[16];
+		/** End of validity for each slice in epoch seconds. */
+		private long[] to = new long[16];
+		/** Opening time, closing time and weekday mask of each slice. */
+		private int[] packed = new int[16];
+		/** Number of added slices. */
+		private int size;
+		/** Whether the slices have been added in order. */
+		private boolean sorted = true;
+
+		/**
+		 * Add a slice.
+		 *
+		 * @param slice the slice
+		 * @return this builder.
+		 * @throws IllegalArgumentException if a start or end time is malformed.
+		 */
+		Builder add(final TimeSlice slice) {
+			if (size == slices.length) {
+				slices = Arrays.copyOf(slices, size * 2);
+				from = Arrays.copyOf(from, size * 2);
+				to = Arrays.copyOf(to, size * 2);
+				packed = Arrays.copyOf(packed, size * 2);
+			}
+			slices[size] = slice;
+			compile(slice, from, to, packed, size);
+			if (size > 0 && sorted && compare(size - 1, size) > 0) {
+				sorted = false;
+			}
+			size++;
+			return this;
+		}
+
+		/**
+		 * Get the number of added slices.
+		 *
+		 * @return number of added slices.
+		 */
+		int size() {
+			return size;
+		}
+
+		/**
+		 * Create the schedule of all slices added so far.
+		 *
+		 * @return the compiled schedule.
+		 */
+		CompiledSchedule build() {
+			final int[] order = sorted ? null : order();
+			final CompiledSchedule schedule = new CompiledSchedule(size, 0);
+			long max = Long.MIN_VALUE;
+			for (int i = 0; i < size; i++) {
+				final int index = order == null ? i : order[i];
+				schedule.slices[i] = slices[index];
+				schedule.from[i] = from[index];
+				schedule.to[i] = to[index];
+				schedule.packed[i] = packed[index];
+				max = Math.max(max, to[index]);
+				schedule.maxTo[i] = max;
+			}
+			return schedule;
+		}
+
+		/**
+		 * Compare two added slices by their "from" members, using the compiled values unless they are equal.
+		 *
+		 * @param first index of the first slice
+		 * @param second index of the second slice
+		 * @return the result of comparing the "from" members.
+		 */
+		private int compare(final int first, final int second) {
+			final int result = Long.compare(from[first], from[second]);
+			return result != 0 ? result : ORDER.compare(slices[first], slices[second]);
+		}
+
+		/**
+		 * Sort the indexes of the added slices by "from" member with a stable bottom-up merge sort, so slices with equal "from"
+		 * members keep the order they have been added in.
+		 *
+		 * @return indexes of the added slices in sorted order.
+		 */
+		private int[] order() {
+			int[] order = new int[size];
+			for (int i = 0; i < size; i++) {
+				order[i] = i;
+			}
+			int[] merged = new int[size];
+			for (int width = 1; width < size; width *= 2) {
+				for (int low = 0; low < size; low += 2 * width) {
+					final int middle = Math.min(low + width, size);
+					final int high = Math.min(low + 2 * width, size);
+					int left = low;
+					int right = middle;
+					for (int i = low; i < high; i++) {
+						if (right == high || (left < middle && compare(order[left], order[right]) <= 0)) {
+							merged[i] = order[left++];
+						} else {
+							merged[i] = order[right++];
+						}
+					}
+				}
+				final int[] swap = order;
+				order = merged;
+				merged = swap;
+			}
+			return order;
+		}
+	}
+}
@@ -0,0 +1,434 @@
+package de.westemeyer.openingtimes.impl;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Immutable, compressed set of non-negative ints, laid out like a roaring bitmap.
+ * <p>
+ * Values are grouped by their upper 16 bits. Each group is stored either as sorted array of its lower 16 bits, if it holds
+ * at most {@value #ARRAY_LIMIT} values, or as plain bitmap of 65536 bits otherwise. Sparse sets take two bytes per value,
+ * dense sets one bit per possible value, and set operations work on whole groups at a time.
+ *
+ * @author Sebastian Westemeyer
+ *
+ */
+final class CompressedBitmap {
+	/** The empty set. */
+	static final CompressedBitmap EMPTY = new CompressedBitmap(new char[0], new Object[0]);
+	/** Maximum number of values in a group stored as array. */
+	private static final int ARRAY_LIMIT = 4096;
+	/** Number of words in a group stored as bitmap. */
+	private static final int WORDS = 1024;
+
+	/** Upper 16 bits of the groups, sorted. */
+	private final char[] keys;
+	/** Lower 16 bits of the values in each group, either as sorted char array or as long array with {@link #WORDS} words. */
+	private final Object[] containers;
+
+	/**
+	 * Create new bitmap.
+	 *
+	 * @param keys upper 16 bits of the groups, sorted
+	 * @param containers values of each group
+	 */
+	private CompressedBitmap(final char[] keys, final Object[] containers) {
+		this.keys = keys;
+		this.containers = containers;
+	}
+
+	/**
+	 * Get the number of values.
+	 *
+	 * @return number of values.
+	 */
+	int cardinality() {
+		int cardinality = 0;
+		for (final Object container : containers) {
+			cardinality += cardinality(container);
+		}
+		return cardinality;
+	}
+
+	/**
+	 * Check whether the set is empty.
+	 *
+	 * @return whether the set is empty.
+	 */
+	boolean isEmpty() {
+		return keys.length == 0;
+	}
+
+	/**
+	 * Check whether a value is contained.
+	 *
+	 * @param value the value
+	 * @return whether the value is contained.
+	 */
+	boolean contains(final int value) {
+		final int index = Arrays.binarySearch(keys, (char) (value >>> 16));
+		return index >= 0 && contains(containers[index], (char) value);
+	}
+
+	/**
+	 * Pass all values to a consumer, in ascending order.
+	 *
+	 * @param consumer consumer of the values
+	 */
+	void forEach(final IntConsumer consumer) {
+		for (int i = 0; i < keys.length; i++) {
+			final int high = keys[i] << 16;
+			if (containers[i] instanceof char[]) {
+				for (final char low : (char[]) containers[i]) {
+					consumer.accept(high | low);
+				}
+			} else {
+				final long[] words = (long[]) containers[i];
+				for (int word = 0; word < WORDS; word++) {
+					for (long bits = words[word]; bits != 0; bits &= bits - 1) {
+						consumer.accept(high | (word << 6) | Long.numberOfTrailingZeros(bits));
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Get the union with another set.
+	 *
+	 * @param other the other set
+	 * @return values contained in either set.
+	 */
+	CompressedBitmap or(final CompressedBitmap other) {
+		if (other.isEmpty()) {
+			return this;
+		}
+		if (isEmpty()) {
+			return other;
+		}
+		final char[] resultKeys = new char[keys.length + other.keys.length];
+		final Object[] resultContainers = new Object[resultKeys.length];
+		int size = 0;
+		int i = 0;
+		int j = 0;
+		while (i < keys.length || j < other.keys.length) {
+			if (j == other.keys.length || (i < keys.length && keys[i] < other.keys[j])) {
+				resultKeys[size] = keys[i];
+				resultContainers[size++] = containers[i++];
+			} else if (i == keys.length || other.keys[j] < keys[i]) {
+				resultKeys[size] = other.keys[j];
+				resultContainers[size++] = other.containers[j++];
+			} else {
+				resultKeys[size] = keys[i];
+				resultContainers[size++] = or(containers[i++], other.containers[j++]);
+			}
+		}
+		return new CompressedBitmap(Arrays.copyOf(resultKeys, size), Arrays.copyOf(resultContainers, size));
+	}
+
+	/**
+	 * Get the intersection with another set.
+	 *
+	 * @param other the other set
+	 * @return values contained in both sets.
+	 */
+	CompressedBitmap and(final CompressedBitmap other) {
+		final char[] resultKeys = new char[Math.min(keys.length, other.keys.length)];
+		final Object[] resultContainers = new Object[resultKeys.length];
+		int size = 0;
+		int i = 0;
+		int j = 0;
+		while (i < keys.length && j < other.keys.length) {
+			if (keys[i] < other.keys[j]) {
+				i++;
+			} else if (other.keys[j] < keys[i]) {
+				j++;
+			} else {
+				final Object container = and(containers[i], other.containers[j]);
+				if (container != null) {
+					resultKeys[size] = keys[i];
+					resultContainers[size++] = container;
+				}
+				i++;
+				j++;
+			}
+		}
+		return size == 0 ? EMPTY : new CompressedBitmap(Arrays.copyOf(resultKeys, size), Arrays.copyOf(resultContainers, size));
+	}
+
+	/**
+	 * Get the difference to another set.
+	 *
+	 * @param other the other set
+	 * @return values contained in this set, but not in the other one.
+	 */
+	CompressedBitmap andNot(final CompressedBitmap other) {
+		if (isEmpty() || other.isEmpty()) {
+			return this;
+		}
+		final char[] resultKeys = new char[keys.length];
+		final Object[] resultContainers = new Object[keys.length];
+		int size = 0;
+		int j = 0;
+		for (int i = 0; i < keys.length; i++) {
+			while (j < other.keys.length && other.keys[j] < keys[i]) {
+				j++;
+			}
+			final Object container = j < other.keys.length && other.keys[j] == keys[i] ? andNot(containers[i], other.containers[j])
+					: containers[i];
+			if (container != null) {
+				resultKeys[size] = keys[i];
+				resultContainers[size++] = container;
+			}
+		}
+		return size == 0 ? EMPTY : new CompressedBitmap(Arrays.copyOf(resultKeys, size), Arrays.copyOf(resultContainers, size));
+	}
+
+	/**
+	 * Get the union of two groups.
+	 *
+	 * @param a first group
+	 * @param b second group
+	 * @return the union.
+	 */
+	private static Object or(final Object a, final Object b) {
+		if (a instanceof char[] && b instanceof char[]) {
+			final char[] x = (char[]) a;
+			final char[] y = (char[]) b;
+			final char[] merged = new char[x.length + y.length];
+			int size = 0;
+			int i = 0;
+			int j = 0;
+			while (i < x.length || j < y.length) {
+				if (j == y.length || (i < x.length && x[i] < y[j])) {
+					merged[size++] = x[i++];
+				} else if (i == x.length || y[j] < x[i]) {
+					merged[size++] = y[j++];
+				} else {
+					merged[size++] = x[i++];
+					j++;
+				}
+			}
+			return size <= ARRAY_LIMIT ? Arrays.copyOf(merged, size) : toWords(merged, size);
+		}
+		// at least one of the groups is dense, so is the union
+		final long[] words = a instanceof long[] ? ((long[]) a).clone() : toWords((char[]) a, ((char[]) a).length);
+		if (b instanceof char[]) {
+			for (final char low : (char[]) b) {
+				words[low >>> 6] |= 1L << low;
+			}
+		} else {
+			final long[] other = (long[]) b;
+			for (int word = 0; word < WORDS; word++) {
+				words[word] |= other[word];
+			}
+		}
+		return words;
+	}
+
+	/**
+	 * Get the intersection of two groups.
+	 *
+	 * @param a first group
+	 * @param b second group
+	 * @return the intersection, or null if empty.
+	 */
+	private static Object and(final Object a, final Object b) {
+		if (a instanceof char[]) {
+			return filter((char[]) a, b, true);
+		}
+		if (b instanceof char[]) {
+			return filter((char[]) b, a, true);
+		}
+		final long[] x = (long[]) a;
+		final long[] y = (long[]) b;
+		final long[] words = new long[WORDS];
+		for (int word = 0; word < WORDS; word++) {
+			words[word] = x[word] & y[word];
+		}
+		return compact(words);
+	}
+
+	/**
+	 * Get the difference of two groups.
+	 *
+	 * @param a first group
+	 * @param b second group
+	 * @return values of the first group not contained in the second, or null if empty.
+	 */
+	private static Object andNot(final Object a, final Object b) {
+		if (a instanceof char[]) {
+			return filter((char[]) a, b, false);
+		}
+		final long[] words = ((long[]) a).clone();
+		if (b instanceof char[]) {
+			for (final char low : (char[]) b) {
+				words[low >>> 6] &= ~(1L << low);
+			}
+		} else {
+			final long[] other = (long[]) b;
+			for (int word = 0; word < WORDS; word++) {
+				words[word] &= ~other[word];
+			}
+		}
+		return compact(words);
+	}
+
+	/**
+	 * Filter the values of a sparse group by their membership in another group.
+	 *
+	 * @param values values of the sparse group
+	 * @param other the other group
+	 * @param keep whether to keep values contained in the other group, or values not contained in it
+	 * @return the filtered group, or null if empty.
+	 */
+	private static char[] filter(final char[] values, final Object other, final boolean keep) {
+		final char[] filtered = new char[values.length];
+		int size = 0;
+		for (final char value : values) {
+			if (contains(other, value) == keep) {
+				filtered[size++] = value;
+			}
+		}
+		return size == 0 ? null : size == values.length ? values : Arrays.copyOf(filtered, size);
+	}
+
+	/**
+	 * Store a dense group as array, if it has become sparse.
+	 *
+	 * @param words the dense group
+	 * @return the group, either dense or sparse, or null if empty.
+	 */
+	private static Object compact(final long[] words) {
+		final int cardinality = cardinality(words);
+		if (cardinality > ARRAY_LIMIT) {
+			return words;
+		}
+		if (cardinality == 0) {
+			return null;
+		}
+		final char[] values = new char[cardinality];
+		int size = 0;
+		for (int word = 0; word < WORDS; word++) {
+			for (long bits = words[word]; bits != 0; bits &= bits - 1) {
+				values[size++] = (char) ((word << 6) | Long.numberOfTrailingZeros(bits));
+			}
+		}
+		return values;
+	}
+
+	/**
+	 * Convert sparse values to a dense group.
+	 *
+	 * @param values sorted values
+	 * @param size number of values
+	 * @return the dense group.
+	 */
+	private static long[] toWords(final char[] values, final int size) {
+		final long[] words = new long[WORDS];
+		for (int i = 0; i < size; i++) {
+			words[values[i] >>> 6] |= 1L << values[i];
+		}
+		return words;
+	}
+
+	/**
+	 * Check whether a group contains a value.
+	 *
+	 * @param container the group
+	 * @param low lower 16 bits of the value
+	 * @return whether the value is contained.
+	 */
+	private static boolean contains(final Object container, final char low) {
+		if (container instanceof char[]) {
+			return Arrays.binarySearch((char[]) container, low) >= 0;
+		}
+		return (((long[]) container)[low >>> 6] & (1L << low)) != 0;
+	}
+
+	/**
+	 * Get the number of values in a group.
+	 *
+	 * @param container the group
+	 * @return number of values.
+	 */
+	private static int cardinality(final Object container) {
+		if (container instanceof char[]) {
+			return ((char[]) container).length;
+		}
+		int cardinality = 0;
+		for (final long word : (long[]) container) {
+			cardinality += Long.bitCount(word);
+		}
+		return cardinality;
+	}
+
+	/**
+	 * Builder for bitmaps, taking values in ascending order.
+	 */
+	static final class Builder {
+		/** Upper 16 bits of the groups. */
+		private char[] keys = new char[4];
+		/** Values of the groups. */
+		private Object[] containers = new Object[4];
+		/** Number of completed groups. */
+		private int size;
+		/** Upper 16 bits of the current group, or -1 if there is none. */
+		private int currentKey = -1;
+		/** Lower 16 bits of the values in the current group. */
+		private char[] current = new char[16];
+		/** Number of values in the current group. */
+		private int currentSize;
+		/** Last value added. */
+		private int last = -1;
+
+		/**
+		 * Add a value.
+		 *
+		 * @param value the value, greater than all values added before
+		 * @return this builder.
+		 * @throws IllegalArgumentException if the value is negative or not greater than the previous one.
+		 */
+		Builder add(final int value) {
+			if (value <= last) {
+				throw new IllegalArgumentException("Values have to be non-negative and added in ascending order");
+			}
+			last = value;
+			if (value >>> 16 != currentKey) {
+				flush();
+				currentKey = value >>> 16;
+			}
+			if (currentSize == current.length) {
+				current = Arrays.copyOf(current, currentSize * 2);
+			}
+			current[currentSize++] = (char) value;
+			return this;
+		}
+
+		/**
+		 * Create the bitmap of all values added so far.
+		 *
+		 * @return the bitmap.
+		 */
+		CompressedBitmap build() {
+			flush();
+			return size == 0 ? EMPTY : new CompressedBitmap(Arrays.copyOf(keys, size), Arrays.copyOf(containers, size));
+		}
+
+		/**
+		 * Complete the current group.
+		 */
+		private void flush() {
+			if (currentSize == 0) {
+				return;
+			}
+			if (size == keys.length) {
+				keys = Arrays.copyOf(keys, size * 2);
+				containers = Arrays.copyOf(containers, size * 2);
+			}
+			keys[size] = (char) currentKey;
+			containers[size++] = currentSize <= ARRAY_LIMIT ? Arrays.copyOf(current, currentSize) : toWords(current, currentSize);
+			currentSize = 0;
+		}
+	}
+}
@@ -0,0 +1,236 @@
+package de.westemeyer.openingtimes.impl;
+
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.AbstractList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import de.westemeyer.openingtimes.api.TimeSlice;
+import de.westemeyer.openingtimes.api.WeekDay;
+
+/**
+ * Compiled schedule evaluated straight from a buffer in the binary format of {@link ScheduleFile}, usually a memory-mapped
+ * file.
+ * <p>
+ * All accessors of the compiled slices read from the buffer with absolute positions, so the buffer is shared by all threads.
+ * Time slices are created on first access only, for example for the result of a query, and kept, so that each index always
+ * returns the same time slice.
+ *
+ * @author Sebastian Westemeyer
+ *
+ */
+final class MappedSchedule extends CompiledSchedule {
+	/** Bytes per slice: three bounds of eight bytes, five values of two bytes. */
+	static final int BYTES_PER_SLICE = 3 * 8 + 5 * 2;
+
+	/** The buffer holding the compiled slices. */
+	private final ByteBuffer buffer;
+	/** Number of slices. */
+	private final int size;
+	/** Position of the "from" column. */
+	private final int fromColumn;
+	/** Position of the "to" column. */
+	private final int toColumn;
+	/** Position of the column with the running maximum of the "to" bounds. */
+	private final int maxToColumn;
+	/** Position of the opening time column. */
+	private final int startMinuteColumn;
+	/** Position of the closing time column. */
+	private final int endMinuteColumn;
+	/** Position of the weekday mask column. */
+	private final int weekdayMaskColumn;
+	/** Position of the column with the time zones of the "from" bounds. */
+	private final int fromZoneColumn;
+	/** Position of the column with the time zones of the "to" bounds. */
+	private final int toZoneColumn;
+	/** The zone table. */
+	private final ZoneId[] zones;
+	/** Time slices created so far, by index. */
+	private final AtomicReferenceArray<TimeSlice> slices;
+	/** Unmodifiable view on the time slices, creating them on access. */
+	private final List<TimeSlice> sliceList;
+
+	/**
+	 * Create new schedule on a buffer.
+	 *
+	 * @param buffer the buffer holding the binary format
+	 * @param columns position of the first column
+	 * @param size number of slices
+	 * @param revision revision of the time slices
+	 * @param zones the zone table
+	 */
+	MappedSchedule(final ByteBuffer buffer, final int columns, final int size, final long revision, final ZoneId[] zones) {
+		super(0, revision);
+		this.buffer = buffer;
+		this.size = size;
+		this.fromColumn = columns;
+		this.toColumn = fromColumn + 8 * size;
+		this.maxToColumn = toColumn + 8 * size;
+		this.startMinuteColumn = maxToColumn + 8 * size;
+		this.endMinuteColumn = startMinuteColumn + 2 * size;
+		this.weekdayMaskColumn = endMinuteColumn + 2 * size;
+		this.fromZoneColumn = weekdayMaskColumn + 2 * size;
+		this.toZoneColumn = fromZoneColumn + 2 * size;
+		this.zones = zones;
+		this.slices = new AtomicReferenceArray<>(size);
+		this.sliceList = Collections.unmodifiableList(new AbstractList<TimeSlice>() {
+			@Override
+			public TimeSlice get(final int index) {
+				return slice(index);
+			}
+
+			@Override
+			public int size() {
+				return size;
+			}
+		});
+	}
+
+	@Override
+	public List<TimeSlice> getTimeSlices() {
+		return sliceList;
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	int firstIndex(final long epochSecond) {
+		int low = 0;
+		int high = size;
+		while (low < high) {
+			final int mid = (low + high) >>> 1;
+			if (buffer.getLong(maxToColumn + 8 * mid) < epochSecond) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+	@Override
+	int endIndex(final long epochSecond) {
+		int low = 0;
+		int high = size;
+		while (low < high) {
+			final int mid = (low + high) >>> 1;
+			if (buffer.getLong(fromColumn + 8 * mid) <= epochSecond) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+	@Override
+	TimeSlice slice(final int index) {
+		final TimeSlice slice = slices.get(index);
+		if (slice != null) {
+			return slice;
+		}
+		// keep the first slice created for the index
+		slices.compareAndSet(index, null, new MappedTimeSlice(index));
+		return slices.get(index);
+	}
+
+	@Override
+	long from(final int index) {
+		return buffer.getLong(fromColumn + 8 * index);
+	}
+
+	@Override
+	long to(final int index) {
+		return buffer.getLong(toColumn + 8 * index);
+	}
+
+	@Override
+	int startMinute(final int index) {
+		return buffer.getShort(startMinuteColumn + 2 * index);
+	}
+
+	@Override
+	int endMinute(final int index) {
+		return buffer.getShort(endMinuteColumn + 2 * index);
+	}
+
+	@Override
+	int weekdayMask(final int index) {
+		return buffer.getShort(weekdayMaskColumn + 2 * index);
+	}
+
+	/**
+	 * Time slice created from the compiled values of an index.
+	 */
+	private final class MappedTimeSlice implements TimeSlice {
+		/** Start date/time of the time slice. */
+		private final ZonedDateTime from;
+		/** End date/time of the time slice, null for an open end. */
+		private final ZonedDateTime to;
+		/** Time of day when we will be open. */
+		private final String startTime;
+		/** Time of day when we will be closing. */
+		private final String endTime;
+		/** Weekdays of the time slice. */
+		private final Set<WeekDay> weekdays;
+
+		/**
+		 * Create time slice from the compiled values of an index.
+		 *
+		 * @param index slice index
+		 */
+		MappedTimeSlice(final int index) {
+			from = ZonedDateTime.ofInstant(Instant.ofEpochSecond(from(index)), zones[buffer.getShort(fromZoneColumn + 2 * index)]);
+			final int toZone = buffer.getShort(toZoneColumn + 2 * index);
+			to = toZone == ScheduleFile.NO_ZONE ? null : ZonedDateTime.ofInstant(Instant.ofEpochSecond(to(index)), zones[toZone]);
+			startTime = TimeOfDay.format(startMinute(index));
+			endTime = TimeOfDay.format(endMinute(index));
+			final EnumSet<WeekDay> days = EnumSet.noneOf(WeekDay.class);
+			for (final WeekDay weekDay : WeekDay.values()) {
+				if ((weekdayMask(index) & (1 << weekDay.ordinal())) != 0) {
+					days.add(weekDay);
+				}
+			}
+			weekdays = Collections.unmodifiableSet(days);
+		}
+
+		@Override
+		public ZonedDateTime getFrom() {
+			return from;
+		}
+
+		@Override
+		public ZonedDateTime getTo() {
+			return to;
+		}
+
+		@Override
+		public String getStartTime() {
+			return startTime;
+		}
+
+		@Override
+		public String getEndTime() {
+			return endTime;
+		}
+
+		@Override
+		public Set<WeekDay> getWeekdays() {
+			return weekdays;
+		}
+
+		@Override
+		public String toString() {
+			return from + " - " + to + ": " + startTime + " - " + endTime + ": " + weekdays;
+		}
+	}
+}
@@ -0,0 +1,278 @@
+package de.westemeyer.openingtimes.impl;
+
+import java.time.DayOfWeek;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+
+import de.westemeyer.openingtimes.api.HolidayResolver;
+import de.westemeyer.openingtimes.api.OpenStatus;
+import de.westemeyer.openingtimes.api.TimeSlice;
+import de.westemeyer.openingtimes.api.WeekDay;
+
+/**
+ * Open intervals of a venue over a range of instants, to answer aggregate queries such as the total opening hours of a month
+ * without sampling test dates.
+ * <p>
+ * The range is split into segments with the same result by following the validity of each result (see
+ * {@link OpenType#getValidUntil()}), so holidays and zone rules are applied exactly as for
+ * {@link OpeningTimes#createOpenType(ZonedDateTime)}. Consecutive open segments of the same time slice are merged into a single
+ * interval. The intervals are kept in sorted primitive arrays of epoch seconds, together with the prefix sums of their lengths,
+ * so the open time within any part of the range is found with two binary searches. The time an instant is open is counted
+ * from its second on, a result holding for a single instant adds no time.
+ * <p>
+ * The open time is also summed up per hour of the week, in the local time of the range. Hours repeated or skipped by daylight
+ * saving time transitions count as they occur.
+ *
+ * @author Sebastian Westemeyer
+ *
+ */
+public final class Occupancy {
+	/** Number of hours per week. */
+	public static final int HOURS_PER_WEEK = 7 * 24;
+
+	/** Time zone of the range. */
+	private final ZoneId zone;
+	/** Start of the range in epoch seconds. */
+	private final long from;
+	/** End of the range in epoch seconds, exclusive. */
+	private final long to;
+	/** First day of the range. */
+	private final LocalDate firstDate;
+	/** Holidays of the days of the range, one bit per day from the first day. */
+	private final BitSet holidays;
+	/** Starts of the open intervals in epoch seconds, ascending. */
+	private long[] starts = new long[16];
+	/** Ends of the open intervals in epoch seconds, exclusive. */
+	private long[] ends = new long[16];
+	/** Time slice of each open interval. */
+	private TimeSlice[] slices = new TimeSlice[16];
+	/** Number of open intervals. */
+	private int size;
+	/** Open seconds of all intervals before each interval, and of all intervals at the end. */
+	private final long[] prefix;
+	/** Open seconds per hour of the week, starting on monday at midnight. */
+	private final long[] openPerHour = new long[HOURS_PER_WEEK];
+	/** Seconds of the range per hour of the week, starting on monday at midnight. */
+	private final long[] rangePerHour = new long[HOURS_PER_WEEK];
+
+	/**
+	 * Find the open intervals of a venue within a range.
+	 *
+	 * @param openingTimes opening times of the venue
+	 * @param holidayResolver Object to check dates for holidays.
+	 * @param start start of the range, its time zone is the time zone of the range
+	 * @param end end of the range, exclusive
+	 * @throws IllegalArgumentException if the end is before the start.
+	 */
+	Occupancy(final OpeningTimes openingTimes, final HolidayResolver holidayResolver, final ZonedDateTime start,
+			final ZonedDateTime end) {
+		if (end.isBefore(start)) {
+			throw new IllegalArgumentException("End of range is before its start");
+		}
+		this.zone = start.getZone();
+		this.from = start.toEpochSecond();
+		this.to = end.toEpochSecond();
+		this.firstDate = start.toLocalDate();
+		this.holidays = holidayResolver.holidaysBetween(firstDate, end.withZoneSameInstant(zone).toLocalDate().plusDays(1), zone);
+
+		// the open segment of the previous result, its slice is null if closed
+		final long[] segmentStart = { from };
+		final TimeSlice[] segmentSlice = new TimeSlice[1];
+		final ZonedDateTime last = openingTimes.walk(start, to, (date, openType) -> {
+			add(segmentStart[0], date.toEpochSecond(), segmentSlice[0]);
+			segmentStart[0] = date.toEpochSecond();
+			segmentSlice[0] = openType.getStatus() == OpenStatus.OPEN ? openType.getTimeSlice() : null;
+		});
+		add(segmentStart[0], Math.min(last.toEpochSecond(), to), segmentSlice[0]);
+
+		prefix = new long[size + 1];
+		for (int i = 0; i < size; i++) {
+			prefix[i + 1] = prefix[i] + ends[i] - starts[i];
+			addPerHour(starts[i], ends[i], openPerHour);
+		}
+		addPerHour(from, to, rangePerHour);
+	}
+
+	/**
+	 * Get the time zone of the range.
+	 *
+	 * @return the time zone.
+	 */
+	public ZoneId getZone() {
+		return zone;
+	}
+
+	/**
+	 * Get the number of open intervals.
+	 *
+	 * @return number of open intervals.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Get the total open time of the range.
+	 *
+	 * @return the open time.
+	 */
+	public Duration getOpenDuration() {
+		return Duration.ofSeconds(prefix[size]);
+	}
+
+	/**
+	 * Get the open time within a part of the range, for example a month. Instants outside the range are not counted.
+	 *
+	 * @param start start of the part
+	 * @param end end of the part, exclusive
+	 * @return the open time, zero if the end is not after the start.
+	 */
+	public Duration getOpenDuration(final ZonedDateTime start, final ZonedDateTime end) {
+		final long first = Math.max(start.toEpochSecond(), from);
+		final long second = Math.min(end.toEpochSecond(), to);
+		return Duration.ofSeconds(second <= first ? 0 : openBefore(second) - openBefore(first));
+	}
+
+	/**
+	 * Get the opening periods of a day of the range, in the time zone of the range. Opening periods are cut at the bounds of the
+	 * range.
+	 *
+	 * @param date the day
+	 * @return the opening periods in order, empty if the venue is closed all day or the day is outside the range.
+	 */
+	public List<OpenInterval> getOpenIntervals(final LocalDate date) {
+		final long dayStart = date.atStartOfDay(zone).toEpochSecond();
+		final long dayEnd = date.plusDays(1).atStartOfDay(zone).toEpochSecond();
+		final List<OpenInterval> intervals = new ArrayList<>();
+		if (dayEnd <= from || dayStart >= to) {
+			return intervals;
+		}
+		final boolean holiday = holidays.get((int) (date.toEpochDay() - firstDate.toEpochDay()));
+		final WeekDay weekday = WeekDay.valueOf(date.getDayOfWeek(), holiday);
+		// first interval ending after the start of the day
+		int index = Arrays.binarySearch(ends, 0, size, dayStart);
+		index = index < 0 ? -index - 1 : index + 1;
+		for (; index < size && starts[index] < dayEnd; index++) {
+			intervals.add(new OpenInterval(dateTime(Math.max(starts[index], dayStart)), dateTime(Math.min(ends[index], dayEnd)),
+					weekday, slices[index]));
+		}
+		return intervals;
+	}
+
+	/**
+	 * Get the open time per hour of the week, summed up over the range.
+	 *
+	 * @return the open seconds per hour of the week, starting with the hour after midnight on monday.
+	 */
+	public long[] getOpenSecondsPerHourOfWeek() {
+		return openPerHour.clone();
+	}
+
+	/**
+	 * Get the share of each hour of the week the venue has been open within the range. The shares of several venues add up to
+	 * the average number of open venues per hour of the week, see {@link #hourOfWeekHistogram(Collection)}.
+	 *
+	 * @return the share of each hour of the week between 0 and 1, starting with the hour after midnight on monday, 0 for hours
+	 *         not within the range.
+	 */
+	public double[] getHourOfWeekHistogram() {
+		final double[] histogram = new double[HOURS_PER_WEEK];
+		for (int hour = 0; hour < HOURS_PER_WEEK; hour++) {
+			histogram[hour] = rangePerHour[hour] == 0 ? 0 : (double) openPerHour[hour] / rangePerHour[hour];
+		}
+		return histogram;
+	}
+
+	/**
+	 * Get the average number of open venues per hour of the week, for venues evaluated over the same range.
+	 *
+	 * @param occupancies the open intervals of the venues
+	 * @return the average number of open venues per hour of the week, starting with the hour after midnight on monday.
+	 */
+	public static double[] hourOfWeekHistogram(final Collection<Occupancy> occupancies) {
+		final double[] histogram = new double[HOURS_PER_WEEK];
+		for (final Occupancy occupancy : occupancies) {
+			final double[] shares = occupancy.getHourOfWeekHistogram();
+			for (int hour = 0; hour < HOURS_PER_WEEK; hour++) {
+				histogram[hour] += shares[hour];
+			}
+		}
+		return histogram;
+	}
+
+	/**
+	 * Add an open interval, merging it with the previous one if it continues it with the same time slice.
+	 *
+	 * @param start start of the interval in epoch seconds
+	 * @param end end of the interval in epoch seconds, exclusive
+	 * @param slice the time slice, null if closed
+	 */
+	private void add(final long start, final long end, final TimeSlice slice) {
+		if (slice == null || end <= start) {
+			return;
+		}
+		if (size > 0 && ends[size - 1] == start && slices[size - 1] == slice) {
+			ends[size - 1] = end;
+			return;
+		}
+		if (size == starts.length) {
+			starts = Arrays.copyOf(starts, size * 2);
+			ends = Arrays.copyOf(ends, size * 2);
+			slices = Arrays.copyOf(slices, size * 2);
+		}
+		starts[size] = start;
+		ends[size] = end;
+		slices[size] = slice;
+		size++;
+	}
+
+	/**
+	 * Get the open time of the range before an instant.
+	 *
+	 * @param instant the instant in epoch seconds, within the range
+	 * @return the open seconds before the instant.
+	 */
+	private long openBefore(final long instant) {
+		// number of intervals starting before the instant
+		int count = Arrays.binarySearch(starts, 0, size, instant);
+		count = count < 0 ? -count - 1 : count;
+		return count == 0 ? 0 : prefix[count] - Math.max(0, ends[count - 1] - instant);
+	}
+
+	/**
+	 * Add the seconds of an interval to the hours of the week they fall into.
+	 *
+	 * @param start start of the interval in epoch seconds
+	 * @param end end of the interval in epoch seconds, exclusive
+	 * @param perHour seconds per hour of the week
+	 */
+	private void addPerHour(final long start, final long end, final long[] perHour) {
+		long current = start;
+		while (current < end) {
+			final ZonedDateTime local = dateTime(current);
+			final DayOfWeek dayOfWeek = local.getDayOfWeek();
+			final long next = Math.min(local.truncatedTo(ChronoUnit.HOURS).plusHours(1).toEpochSecond(), end);
+			perHour[(dayOfWeek.getValue() - 1) * 24 + local.getHour()] += next - current;
+			current = next;
+		}
+	}
+
+	/**
+	 * Get an instant in the time zone of the range.
+	 *
+	 * @param epochSecond the instant in epoch seconds
+	 * @return the date/time.
+	 */
+	private ZonedDateTime dateTime(final long epochSecond) {
+		return ZonedDateTime.ofInstant(Instant.ofEpochSecond(epochSecond), zone);
+	}
+}
@@ -0,0 +1,74 @@
+package de.westemeyer.openingtimes.impl;
+
+import java.time.ZonedDateTime;
+
+import de.westemeyer.openingtimes.api.TimeSlice;
+import de.westemeyer.openingtimes.api.WeekDay;
+
+/**
+ * Opening period of a single day.
+ * 
+ * @author Sebastian Westemeyer
+ *
+ */
+public class OpenInterval {
+	/** Opening date/time. */
+	private final ZonedDateTime start;
+	/** Closing date/time. */
+	private final ZonedDateTime end;
+	/** The weekday, {@link WeekDay#HOLIDAY} on bank holidays. */
+	private final WeekDay weekday;
+	/** The time slice that caused the opening period. */
+	private final TimeSlice slice;
+
+	/**
+	 * Construct new OpenInterval object.
+	 * 
+	 * @param start Opening date/time.
+	 * @param end Closing date/time.
+	 * @param weekday The weekday.
+	 * @param slice The time slice that caused the opening period.
+	 */
+	public OpenInterval(final ZonedDateTime start, final ZonedDateTime end, final WeekDay weekday, final TimeSlice slice) {
+		this.start = start;
+		this.end = end;
+		this.weekday = weekday;
+		this.slice = slice;
+	}
+
+	/**
+	 * Returns the opening date/time.
+	 * 
+	 * @return the opening date/time.
+	 */
+	public ZonedDateTime getStart() {
+		return start;
+	}
+
+	/**
+	 * Returns the closing date/time.
+	 * 
+	 * @return the closing date/time.
+	 */
+	public ZonedDateTime getEnd() {
+		return end;
+	}
+
+	/**
+	 * Returns the weekday of the opening period.
+	 * 
+	 * @return the weekday, {@link WeekDay#HOLIDAY} on bank holidays.
+	 */
+	public WeekDay getWeekday() {
+		return weekday;
+	}
+
+	/**
+	 * Returns the time slice that caused the opening period.
+	 * 
+	 * @return the time slice that caused the opening period.
+	 */
+	public TimeSlice getTimeSlice() {
+		return slice;
+	}
+}
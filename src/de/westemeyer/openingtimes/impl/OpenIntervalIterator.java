@@ -0,0 +1,163 @@
+package de.westemeyer.openingtimes.impl;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import de.westemeyer.openingtimes.api.HolidayResolver;
+import de.westemeyer.openingtimes.api.WeekDay;
+
+/**
+ * Lazy iterator over the opening periods of successive days, starting with the day of a test date.
+ * <p>
+ * The first day is checked at the test date, exactly like {@link OpeningTimes#createOpenType(ZonedDateTime)} checks the first
+ * day of its week, and yields its opening period unless it has already ended. Every following day is checked at its start,
+ * so its opening period is the one reported for a test date at the beginning of that day. Each call scans the slices of a
+ * single day, and the iterator ends once all slices have ended. Holidays are fetched for {@link ScheduleEvaluator#DAYS}
+ * days at once.
+ * <p>
+ * Off-season periods are skipped: if no slice is valid at the start of a day, the iterator jumps straight to the day on which
+ * the next slice starts, found in the slices sorted by their "from" member.
+ *
+ * @author Sebastian Westemeyer
+ *
+ */
+final class OpenIntervalIterator implements Iterator<OpenInterval> {
+	/** Compiled time slices. */
+	private final CompiledSchedule schedule;
+	/** The holiday resolver. */
+	private final HolidayResolver holidayResolver;
+	/** The time zone. */
+	private final ZoneId zone;
+	/** Offsets of the time zone. */
+	private final ZoneOffsets offsets;
+	/** Next day to check as epoch day. */
+	private long day;
+	/** Instant to check the next day at, in epoch seconds. */
+	private long checked;
+	/** Minute of the day to check the next day at. */
+	private int checkedMinute;
+	/** First day of the fetched holidays as epoch day. */
+	private long holidaysStart = Long.MIN_VALUE;
+	/** Fetched holidays, one bit per day from the first day. */
+	private BitSet holidays;
+	/** The next opening period, null if not yet found. */
+	private OpenInterval next;
+
+	/**
+	 * Create new iterator.
+	 *
+	 * @param schedule compiled time slices
+	 * @param holidayResolver Object to check dates for holidays.
+	 * @param date The test date.
+	 */
+	OpenIntervalIterator(final CompiledSchedule schedule, final HolidayResolver holidayResolver, final ZonedDateTime date) {
+		this.schedule = schedule;
+		this.holidayResolver = holidayResolver;
+		this.zone = date.getZone();
+		this.offsets = ZoneOffsets.of(zone);
+		this.day = date.toLocalDate().toEpochDay();
+		this.checked = date.toEpochSecond();
+		this.checkedMinute = date.getHour() * 60 + date.getMinute();
+	}
+
+	@Override
+	public boolean hasNext() {
+		return next(Long.MAX_VALUE) != null;
+	}
+
+	/**
+	 * Find the next opening period, checking days up to a last day.
+	 *
+	 * @param lastDay last day to check as epoch day
+	 * @return the next opening period, without moving past it, or null if there is none up to the last day.
+	 */
+	OpenInterval next(final long lastDay) {
+		// stop once no slice is valid after the instant to check
+		while (next == null && day <= lastDay && !isExhausted()) {
+			next = nextDay();
+		}
+		return next;
+	}
+
+	/**
+	 * Check whether all slices have ended before the next day to check.
+	 *
+	 * @return whether there are no more opening periods.
+	 */
+	boolean isExhausted() {
+		return next == null && schedule.firstIndex(checked + 1) >= schedule.size();
+	}
+
+	/**
+	 * Get the next day to check.
+	 *
+	 * @return the next day to check as epoch day.
+	 */
+	long day() {
+		return day;
+	}
+
+	@Override
+	public OpenInterval next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		final OpenInterval result = next;
+		next = null;
+		return result;
+	}
+
+	/**
+	 * Check the next day and move on to the day after.
+	 *
+	 * @return the opening period of the day, or null if it has none or if it has already ended.
+	 */
+	private OpenInterval nextDay() {
+		final int started = schedule.endIndex(checked);
+		if (schedule.firstIndex(checked + 1) >= started) {
+			// no slice is valid at the instant to check, skip to the day on which the next slice starts
+			final long from = schedule.from(started);
+			final long fromDay = Math.floorDiv(from + offsets.offsetAt(from), ScheduleEvaluator.SECONDS_PER_DAY);
+			if (fromDay > day) {
+				day = fromDay;
+				checked = offsets.dayStart(fromDay);
+				checkedMinute = offsets.minuteOfDay(checked);
+				return null;
+			}
+		}
+		final long nextStart = offsets.dayStart(day + 1);
+		// epoch day 0 is a thursday
+		final int dayOfWeek = (int) Math.floorMod(day + 3, 7);
+		final boolean holiday = isHoliday();
+		final int index = ScheduleEvaluator.dayWinner(schedule, checked, nextStart,
+				1 << dayOfWeek | (holiday ? ScheduleEvaluator.HOLIDAY_BIT : 0));
+		OpenInterval interval = null;
+		if (index >= 0 && (schedule.startMinute(index) >= checkedMinute || schedule.endMinute(index) >= checkedMinute)) {
+			interval = new OpenInterval(offsets.dateTime(day, schedule.startMinute(index)), offsets.dateTime(day, schedule.endMinute(index)),
+					WeekDay.valueOf(DayOfWeek.of(dayOfWeek + 1), holiday), schedule.slice(index));
+		}
+		day++;
+		checked = nextStart;
+		checkedMinute = offsets.minuteOfDay(nextStart);
+		return interval;
+	}
+
+	/**
+	 * Check whether the next day is a holiday, fetching the holidays of the following days if necessary.
+	 *
+	 * @return whether the day is a holiday.
+	 */
+	private boolean isHoliday() {
+		if (day < holidaysStart || day >= holidaysStart + ScheduleEvaluator.DAYS) {
+			holidaysStart = day;
+			holidays = holidayResolver.holidaysBetween(LocalDate.ofEpochDay(day), LocalDate.ofEpochDay(day + ScheduleEvaluator.DAYS),
+					zone);
+		}
+		return holidays.get((int) (day - holidaysStart));
+	}
+}
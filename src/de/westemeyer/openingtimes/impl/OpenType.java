@@ -1,5 +1,6 @@
 package de.westemeyer.openingtimes.impl;
 
+import java.time.Instant;
 import java.time.ZonedDateTime;
 
 import de.westemeyer.openingtimes.api.OpenStatus;
@@ -23,6 +24,12 @@ public class OpenType {
 	private final TimeSlice slice;
 	/** the date that has been used to check for next opening times. */
 	private final ZonedDateTime checkedDate;
+	/** The closing date/time of the opening period. */
+	private final ZonedDateTime closing;
+	/** The opening date/time of the next opening period. */
+	private final ZonedDateTime nextOpening;
+	/** Instant in epoch seconds until which the result holds, {@link Long#MIN_VALUE} if unknown. */
+	private final long validUntil;
 
 	/**
 	 * Construct new OpenType object.
@@ -33,11 +40,41 @@ public class OpenType {
 	 */
 	public OpenType(final WeekDay weekday, final ZonedDateTime date, final ZonedDateTime checkedDate, final TimeSlice slice,
 			final OpenStatus status) {
+		this(weekday, date, checkedDate, slice, status, null, null, Long.MIN_VALUE);
+	}
+
+	/**
+	 * Construct new OpenType object with closing and next opening, holding until a given instant.
+	 * 
+	 * @param weekday Weekday for this open type.
+	 * @param date The date.
+	 * @param checkedDate The date that has been checked.
+	 * @param slice The time slice that caused the setting.
+	 * @param status Whether it is currently open.
+	 * @param closing The closing date/time of the opening period.
+	 * @param nextOpening The opening date/time of the next opening period.
+	 * @param validUntil Instant in epoch seconds until which the result holds.
+	 */
+	OpenType(final WeekDay weekday, final ZonedDateTime date, final ZonedDateTime checkedDate, final TimeSlice slice,
+			final OpenStatus status, final ZonedDateTime closing, final ZonedDateTime nextOpening, final long validUntil) {
 		this.weekday = weekday;
 		this.date = date;
 		this.slice = slice;
 		this.status = status;
 		this.checkedDate = checkedDate;
+		this.closing = closing;
+		this.nextOpening = nextOpening;
+		this.validUntil = validUntil;
+	}
+
+	/**
+	 * Construct "closed" type, holding until a given instant.
+	 * 
+	 * @param validUntil Instant in epoch seconds until which the result holds.
+	 * @return the closed type.
+	 */
+	static OpenType closed(final long validUntil) {
+		return new OpenType(null, null, null, null, OpenStatus.CLOSED, null, null, validUntil);
 	}
 
 	/**
@@ -91,4 +128,69 @@ public class OpenType {
 	public ZonedDateTime getCheckedDate() {
 		return checkedDate;
 	}
+
+	/**
+	 * Returns the closing date/time of the opening period the date/time belongs to: the end time of its time slice on that
+	 * day, where "24:00" is midnight of the next day.
+	 * 
+	 * @return the closing date/time, or null if closed or unknown.
+	 */
+	public ZonedDateTime getClosingDateTime() {
+		return closing;
+	}
+
+	/**
+	 * Returns the opening date/time of the next opening period after the one the date/time belongs to, on one of the following
+	 * days of the checked period. Days are selected the same way as the date/time itself, so the earliest slice of each day
+	 * wins.
+	 * 
+	 * @return the next opening date/time, or null if there is none in the checked period or if unknown.
+	 */
+	public ZonedDateTime getNextOpening() {
+		return nextOpening;
+	}
+
+	/**
+	 * Returns the instant until which this result holds: checking any date from the checked date up to, but excluding, this
+	 * instant in the same time zone yields the same status, weekday, date/time and time slice. The next change may happen
+	 * later than this instant, but never earlier.
+	 * 
+	 * @return the instant until which this result holds, or null if unknown.
+	 */
+	public Instant getValidUntil() {
+		return validUntil == Long.MIN_VALUE ? null : Instant.ofEpochSecond(validUntil);
+	}
+
+	/**
+	 * Check whether this result holds for a later date in the same time zone as the checked date.
+	 * 
+	 * @param laterDate a date at or after the checked date
+	 * @return whether the result holds.
+	 */
+	boolean isValidAt(final ZonedDateTime laterDate) {
+		return laterDate.toEpochSecond() < validUntil;
+	}
+
+	/**
+	 * Create a copy of this result for another checked date within its validity.
+	 * 
+	 * @param laterDate a date at or after the checked date, before the end of validity
+	 * @return the copy, or this result if it has no checked date.
+	 */
+	OpenType withCheckedDate(final ZonedDateTime laterDate) {
+		if (checkedDate == null) {
+			return this;
+		}
+		return new OpenType(weekday, date, laterDate, slice, status, closing, nextOpening, validUntil);
+	}
+
+	/**
+	 * Create a copy of this result holding until another instant.
+	 * 
+	 * @param until Instant in epoch seconds until which the copy holds.
+	 * @return the copy.
+	 */
+	OpenType withValidUntil(final long until) {
+		return new OpenType(weekday, date, checkedDate, slice, status, closing, nextOpening, until);
+	}
 }
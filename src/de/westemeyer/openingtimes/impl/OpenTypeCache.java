@@ -0,0 +1,238 @@
+package de.westemeyer.openingtimes.impl;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+import de.westemeyer.openingtimes.api.HolidayResolver;
+import de.westemeyer.openingtimes.api.TimeSlicesCollector;
+
+/**
+ * Concurrent cache of opening types for a single schedule, keyed by their validity intervals.
+ * <p>
+ * Every opening type holds from its checked date until {@link OpenType#getValidUntil()}. A test date falling into the validity
+ * interval of a cached result in the same time zone is answered from the cache, with the test date as checked date, without
+ * evaluating the time slices again. Results are kept per time zone, sorted by their checked dates. Once the cache holds more
+ * than its maximum number of results, the result cached first is evicted, whichever time zone it belongs to, so that results
+ * of one time zone cannot crowd out those of another one.
+ * <p>
+ * The whole cache is dropped as soon as {@link TimeSlicesCollector#getRevision()} changes. Call {@link #invalidate()} after
+ * changing the holidays.
+ *
+ * @author Sebastian Westemeyer
+ *
+ */
+public class OpenTypeCache {
+	/** Default maximum number of cached results. */
+	public static final int DEFAULT_MAXIMUM_SIZE = 10000;
+
+	/** Supplier of the time slices, checked for changes of its revision. */
+	private final TimeSlicesCollector timeSlicesCollector;
+	/** Opening times to evaluate test dates missing the cache. */
+	private final OpeningTimes openingTimes;
+	/** Maximum number of cached results. */
+	private final int maximumSize;
+	/** Cached results of the current revision. */
+	private final AtomicReference<Generation> generation;
+	/** Number of test dates answered from the cache. */
+	private final LongAdder hits = new LongAdder();
+	/** Number of test dates evaluated. */
+	private final LongAdder misses = new LongAdder();
+
+	/**
+	 * Create new cache with the default maximum size.
+	 *
+	 * @param timeSlicesCollector Supplier of the time slices.
+	 * @param holidayResolver Object to check dates for holidays.
+	 */
+	public OpenTypeCache(final TimeSlicesCollector timeSlicesCollector, final HolidayResolver holidayResolver) {
+		this(timeSlicesCollector, holidayResolver, DEFAULT_MAXIMUM_SIZE);
+	}
+
+	/**
+	 * Create new cache.
+	 *
+	 * @param timeSlicesCollector Supplier of the time slices.
+	 * @param holidayResolver Object to check dates for holidays.
+	 * @param maximumSize maximum number of cached results
+	 * @throws IllegalArgumentException if the maximum size is less than one.
+	 */
+	public OpenTypeCache(final TimeSlicesCollector timeSlicesCollector, final HolidayResolver holidayResolver,
+			final int maximumSize) {
+		if (maximumSize < 1) {
+			throw new IllegalArgumentException("Maximum size has to be at least one");
+		}
+		this.timeSlicesCollector = timeSlicesCollector;
+		this.openingTimes = new OpeningTimes(timeSlicesCollector, holidayResolver);
+		this.maximumSize = maximumSize;
+		this.generation = new AtomicReference<>(new Generation(timeSlicesCollector.getRevision()));
+	}
+
+	/**
+	 * Check a date for upcoming opening times, answering from the cache if possible.
+	 *
+	 * @param date The test date.
+	 * @return The opening type (open, opening soon or closed).
+	 */
+	public OpenType createOpenType(final ZonedDateTime date) {
+		final Generation current = current();
+		final Instant instant = date.toInstant();
+		final ConcurrentNavigableMap<Instant, OpenType> entries = current.entries(date.getZone());
+		final Map.Entry<Instant, OpenType> entry = entries.floorEntry(instant);
+		if (entry != null && entry.getValue().isValidAt(date)) {
+			hits.increment();
+			return entry.getValue().withCheckedDate(date);
+		}
+		misses.increment();
+		final OpenType openType = openingTimes.createOpenType(date);
+		// results holding only for the test date itself are not worth caching
+		if (openType.isValidAt(date)) {
+			current.put(entries, instant, openType);
+		}
+		return openType;
+	}
+
+	/**
+	 * Drop all cached results.
+	 */
+	public void invalidate() {
+		generation.set(new Generation(timeSlicesCollector.getRevision()));
+	}
+
+	/**
+	 * Get the number of test dates answered from the cache.
+	 *
+	 * @return number of cache hits.
+	 */
+	public long getHits() {
+		return hits.sum();
+	}
+
+	/**
+	 * Get the number of test dates that had to be evaluated.
+	 *
+	 * @return number of cache misses.
+	 */
+	public long getMisses() {
+		return misses.sum();
+	}
+
+	/**
+	 * Get the number of cached results.
+	 *
+	 * @return number of cached results.
+	 */
+	public int size() {
+		return generation.get().size.get();
+	}
+
+	/**
+	 * Get the cached results of the current revision, dropping the results of older revisions.
+	 *
+	 * @return the cached results.
+	 */
+	private Generation current() {
+		final long revision = timeSlicesCollector.getRevision();
+		Generation current = generation.get();
+		while (current.revision != revision) {
+			final Generation next = new Generation(revision);
+			if (generation.compareAndSet(current, next)) {
+				return next;
+			}
+			current = generation.get();
+		}
+		return current;
+	}
+
+	/**
+	 * Cached results for a single revision of the time slices. Results evaluated while the revision changes end up in the
+	 * dropped generation, they never mix with the results of the new revision.
+	 */
+	private final class Generation {
+		/** Revision of the time slices. */
+		private final long revision;
+		/** Cached results by time zone, sorted by their checked dates. */
+		private final Map<ZoneId, ConcurrentNavigableMap<Instant, OpenType>> zones = new ConcurrentHashMap<>();
+		/** Number of cached results. */
+		private final AtomicInteger size = new AtomicInteger();
+		/** Cached results of all time zones, in the order they have been cached. */
+		private final ConcurrentLinkedQueue<Cached> order = new ConcurrentLinkedQueue<>();
+
+		/**
+		 * Create new, empty generation.
+		 *
+		 * @param revision revision of the time slices
+		 */
+		Generation(final long revision) {
+			this.revision = revision;
+		}
+
+		/**
+		 * Get the cached results of a time zone.
+		 *
+		 * @param zone the time zone
+		 * @return the cached results, sorted by their checked dates.
+		 */
+		ConcurrentNavigableMap<Instant, OpenType> entries(final ZoneId zone) {
+			return zones.computeIfAbsent(zone, z -> new ConcurrentSkipListMap<>());
+		}
+
+		/**
+		 * Add a result, evicting the result cached first if the cache is full. The added result itself is never evicted.
+		 *
+		 * @param entries cached results of the time zone
+		 * @param checked the checked date
+		 * @param openType the result
+		 */
+		void put(final ConcurrentNavigableMap<Instant, OpenType> entries, final Instant checked, final OpenType openType) {
+			if (entries.put(checked, openType) != null) {
+				return;
+			}
+			final Cached added = new Cached(entries, checked);
+			order.add(added);
+			if (size.incrementAndGet() <= maximumSize) {
+				return;
+			}
+			for (Cached oldest = order.poll(); oldest != null; oldest = order.poll()) {
+				if (oldest == added) {
+					// other threads have evicted all older results meanwhile
+					order.add(added);
+					return;
+				}
+				if (oldest.entries.remove(oldest.checked) != null) {
+					size.decrementAndGet();
+					return;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Position of a cached result, in the order results have been cached.
+	 */
+	private static final class Cached {
+		/** Cached results of the time zone of the result. */
+		private final ConcurrentNavigableMap<Instant, OpenType> entries;
+		/** Checked date of the result. */
+		private final Instant checked;
+
+		/**
+		 * Create new position.
+		 *
+		 * @param entries cached results of the time zone of the result
+		 * @param checked checked date of the result
+		 */
+		Cached(final ConcurrentNavigableMap<Instant, OpenType> entries, final Instant checked) {
+			this.entries = entries;
+			this.checked = checked;
+		}
+	}
+}
@@ -1,22 +1,23 @@
 package de.westemeyer.openingtimes.impl;
 
-import java.time.DayOfWeek;
-import java.time.LocalDate;
-import java.time.LocalTime;
+import java.time.Instant;
 import java.time.Period;
+import java.time.ZoneId;
 import java.time.ZonedDateTime;
-import java.time.format.DateTimeFormatter;
-import java.util.Comparator;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.SortedSet;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.BiConsumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import de.westemeyer.openingtimes.api.HolidayResolver;
-import de.westemeyer.openingtimes.api.OpenStatus;
 import de.westemeyer.openingtimes.api.TimeSlice;
 import de.westemeyer.openingtimes.api.TimeSlicesCollector;
-import de.westemeyer.openingtimes.api.WeekDay;
 
 /**
  * 
@@ -30,9 +31,11 @@ public class OpeningTimes {
 	private final TimeSlicesCollector timeSlicesCollector;
 	/** The holiday resolver. */
 	private final HolidayResolver holidayResolver;
+	/** The evaluation engine. */
+	private final ScheduleEvaluator evaluator;
 
 	/**
-	 * Creates a new OpeningTimes object.
+	 * Creates a new OpeningTimes object. Pass a {@link CompiledSchedule} to avoid re-indexing the time slices for every query.
 	 * 
 	 * @param slices List of time slices.
 	 * @param holidayResolver Object to check dates for holidays.
@@ -40,6 +43,7 @@ public class OpeningTimes {
 	public OpeningTimes(final TimeSlicesCollector slices, final HolidayResolver holidayResolver) {
 		this.timeSlicesCollector = slices;
 		this.holidayResolver = holidayResolver;
+		this.evaluator = new ScheduleEvaluator(holidayResolver);
 	}
 
 	/**
@@ -49,92 +53,132 @@ public class OpeningTimes {
 	 * @return The opening type (open, opening soon or closed).
 	 */
 	public OpenType createOpenType(final ZonedDateTime date) {
-		// one week from today
-		final ZonedDateTime nextWeek = addDays(date, 8);
-		// get relevant slices
-		List<TimeSlice> slices = relevantSlices(date);
-
-		// keep current time as reference
-		DateTimeFormatter timeFormatter = DateTimeFormatter.ofPattern("HH:mm");
-		String currentTime = timeFormatter.format(date);
-
-		final Map<LocalDate, TimeSlice> currentMap = new HashMap<>();
-		// iterate all slices
-		for (final TimeSlice slice : slices) {
-			// have to use same instant
-			ZonedDateTime fromDate = slice.getFrom().withZoneSameInstant(date.getZone());
-			// check one week of dates
-			for (ZonedDateTime dateIter = laterDate(date, fromDate); dateIter.isBefore(nextWeek); dateIter = addDays(dateIter, 1)) {
-				// we have not yet reached end of slice
-				if (dateIter.isBefore(slice.getTo())) {
-					// weekday
-					final DayOfWeek currentDay = dateIter.getDayOfWeek();
-
-					for (final WeekDay dayOfWeek : slice.getWeekdays()) {
-						// check for matches
-						if ((dayOfWeek.getDayOfWeek() != null && dayOfWeek.getDayOfWeek().equals(currentDay))
-								|| (dayOfWeek == WeekDay.HOLIDAY && holidayResolver.isHoliday(dateIter))) {
-							// date part of the iterator
-							LocalDate localDate = dateIter.toLocalDate();
-							// get already set last matching slice
-							final TimeSlice previouslySetSlice = currentMap.get(localDate);
-							// if storage object at index is null, store current slice
-							if (previouslySetSlice == null) {
-								currentMap.put(localDate, slice);
-							} else {
-								// check, whether new object would be "earlier match"
-								if (previouslySetSlice.getStartTime().compareTo(slice.getStartTime()) > 0) {
-									currentMap.put(localDate, slice);
-								}
-							}
-						}
-
-					}
-				}
-			}
-		}
+		return evaluator.evaluate(schedule(), date);
+	}
+
+	/**
+	 * The actual check for upcoming opening times, for a test date given as epoch milliseconds.
+	 * 
+	 * @param epochMillis The test date in epoch milliseconds.
+	 * @param zone time zone of the test date
+	 * @return The opening type (open, opening soon or closed).
+	 */
+	public OpenType createOpenType(final long epochMillis, final ZoneId zone) {
+		return createOpenType(ZonedDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), zone));
+	}
 
-		// check one week of dates for the earliest
-		for (ZonedDateTime dateIter = date; dateIter.isBefore(nextWeek); dateIter = addDays(dateIter, 1)) {
-
-			// check for a slice matching the date
-			final TimeSlice slice = currentMap.get(dateIter.toLocalDate());
-
-			// is there a matching open type for the date?
-			if (slice != null) {
-				// determine day of week (monday to sunday, or bank holiday)
-				final WeekDay dayOfWeek = WeekDay.valueOf(dateIter.getDayOfWeek(), holidayResolver.isHoliday(dateIter));
-				// compile timestamp for checks
-				ZonedDateTime openingDateTime = ZonedDateTime.of(dateIter.toLocalDate(),
-						LocalTime.parse(slice.getStartTime(), timeFormatter), dateIter.getZone());
-				// either we will be opening today...
-				if (!dateIter.isEqual(date) || slice.getStartTime().compareTo(currentTime) >= 0) {
-					return new OpenType(dayOfWeek, openingDateTime, date, slice, OpenStatus.OPENING_SOON);
-				} else if (slice.getStartTime().compareTo(currentTime) < 0 && (slice.getEndTime().compareTo(currentTime) >= 0)) {
-					// ... or we are already open
-					return new OpenType(dayOfWeek, openingDateTime, date, slice, OpenStatus.OPEN);
-				}
-
-				// ...otherwise, if none of the conditions match, we are already closed for today.
-			}
+	/**
+	 * The actual check for upcoming opening times, for a test date given as epoch milliseconds, filling a compact result
+	 * instead of creating an {@link OpenType}. The result is the same as for {@link #createOpenType(long, ZoneId)}. Reuse the
+	 * result object for many test dates to avoid creating objects, see {@link CompactOpenType}.
+	 * 
+	 * @param epochMillis The test date in epoch milliseconds.
+	 * @param zone time zone of the test date
+	 * @param result the result to fill
+	 * @return the filled result.
+	 */
+	public CompactOpenType createOpenType(final long epochMillis, final ZoneId zone, final CompactOpenType result) {
+		evaluator.evaluate(schedule(), epochMillis, zone, result);
+		return result;
+	}
 
+	/**
+	 * Check for upcoming opening times within a configurable number of days, for example to find the reopening date of a
+	 * venue closed for the season. Within the first {@link ScheduleEvaluator#DAYS} days, the result is the same as for
+	 * {@link #createOpenType(ZonedDateTime)}. Later days are checked at their start, jumping straight to the start of the next
+	 * season instead of walking through closed days.
+	 * 
+	 * @param date The test date.
+	 * @param days number of days after the test date to look for opening times, up to years
+	 * @return The opening type (open, opening soon or closed).
+	 * @throws IllegalArgumentException if the number of days is less than one.
+	 */
+	public OpenType createOpenType(final ZonedDateTime date, final int days) {
+		if (days < 1) {
+			throw new IllegalArgumentException("Number of days has to be at least one");
 		}
-		// end of season/closed
-		return new OpenType();
+		return evaluator.evaluate(schedule(), date, days);
 	}
 
 	/**
-	 * Compare two dates and return the later date of the two candidates.
+	 * Check many test dates for upcoming opening times in a single pass. The results are the same as for calling
+	 * {@link #createOpenType(ZonedDateTime)} for each test date, but the time slices are only compiled once, and test dates on
+	 * the same day share their zone offsets and holidays.
 	 * 
-	 * @param date1 first date in comparison
-	 * @param date2 second date in comparison
-	 * @return the later date of the two candidates.
+	 * @param dates The test dates.
+	 * @return The opening types, in the order of the test dates.
 	 */
-	private ZonedDateTime laterDate(final ZonedDateTime date1, final ZonedDateTime date2) {
-		if (date1.isAfter(date2)) {
-			return date1;
+	public List<OpenType> createOpenTypes(final SortedSet<ZonedDateTime> dates) {
+		final ZonedDateTime[] array = dates.toArray(new ZonedDateTime[dates.size()]);
+		final OpenType[] results = new OpenType[array.length];
+		createOpenTypes(array, results);
+		return Arrays.asList(results);
+	}
+
+	/**
+	 * Check many test dates for upcoming opening times in a single pass, see {@link #createOpenTypes(SortedSet)}. The test dates
+	 * do not need to be sorted.
+	 * 
+	 * @param dates The test dates.
+	 * @param results Array to store the opening type of each test date at its index.
+	 * @throws IllegalArgumentException if the result array is shorter than the array of test dates.
+	 */
+	public void createOpenTypes(final ZonedDateTime[] dates, final OpenType[] results) {
+		if (results.length < dates.length) {
+			throw new IllegalArgumentException("Result array is shorter than the array of test dates");
 		}
-		return date2;
+		evaluator.evaluate(schedule(), dates, results);
+	}
+
+	/**
+	 * Get the upcoming opening periods, one per day, starting with the day of the test date. The first day is checked at the
+	 * test date and skipped if its opening period has already ended, every following day is checked at its start. Days are
+	 * checked lazily, one at a time, and the iterator ends once all time slices have ended. The time slices are compiled once
+	 * for the iterator.
+	 * 
+	 * @param date The test date.
+	 * @return iterator over the upcoming opening periods.
+	 */
+	public Iterator<OpenInterval> openIntervalIterator(final ZonedDateTime date) {
+		return new OpenIntervalIterator(schedule(), holidayResolver, date);
+	}
+
+	/**
+	 * Get the upcoming opening periods as lazy, sequential stream, see {@link #openIntervalIterator(ZonedDateTime)}. Open-ended
+	 * time slices make an infinite stream, so limit it with a short-circuiting operation.
+	 * 
+	 * @param date The test date.
+	 * @return stream of the upcoming opening periods.
+	 */
+	public Stream<OpenInterval> openIntervals(final ZonedDateTime date) {
+		return StreamSupport.stream(Spliterators.spliteratorUnknownSize(openIntervalIterator(date),
+				Spliterator.ORDERED | Spliterator.NONNULL | Spliterator.IMMUTABLE), false);
+	}
+
+	/**
+	 * Materialise the results of a number of days ahead of time, see {@link TransitionTimeline}. The timeline extends itself on
+	 * the common fork/join pool.
+	 * 
+	 * @param start The first test date of the timeline, its time zone is the time zone of the timeline.
+	 * @param days number of days to materialise
+	 * @return the timeline.
+	 * @throws IllegalArgumentException if the number of days is less than one.
+	 */
+	public TransitionTimeline createTimeline(final ZonedDateTime start, final int days) {
+		return new TransitionTimeline(this, start, days, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Find the open intervals within a range of instants, to sum up opening hours without sampling test dates, see
+	 * {@link Occupancy}.
+	 * 
+	 * @param start start of the range, its time zone is the time zone of the range
+	 * @param end end of the range, exclusive
+	 * @return the open intervals of the range.
+	 * @throws IllegalArgumentException if the end is before the start.
+	 */
+	public Occupancy occupancy(final ZonedDateTime start, final ZonedDateTime end) {
+		return new Occupancy(this, holidayResolver, start, end);
 	}
 
 	/**
@@ -144,24 +188,38 @@ public class OpeningTimes {
 	 * @return the relevant time slices sorted by "from" member.
 	 */
 	public List<TimeSlice> relevantSlices(final ZonedDateTime date) {
-		final ZonedDateTime nextWeek = addDays(date, 8);
-		return timeSlicesCollector.getTimeSlices().stream()
-				.filter(s -> isInRange(s.getFrom(), date, nextWeek) || isInRange(s.getTo(), date, nextWeek)
-						|| (s.getFrom().isBefore(date) && s.getTo().isAfter(nextWeek)))
-				.sorted(Comparator.comparing(TimeSlice::getFrom)).collect(Collectors.toList());
+		return schedule().relevantSlices(date, addDays(date, ScheduleEvaluator.DAYS));
+	}
+
+	/**
+	 * Walk the results from a start date up to an end instant, continuing each result at the end of its validity.
+	 * 
+	 * @param start the first test date
+	 * @param end end of the walk in epoch seconds, exclusive
+	 * @param results consumer of each test date and its result, in order of the test dates
+	 * @return the test date following the last result, at or after the end.
+	 */
+	ZonedDateTime walk(final ZonedDateTime start, final long end, final BiConsumer<ZonedDateTime, OpenType> results) {
+		return evaluator.walk(schedule(), start, end, results);
+	}
+
+	/**
+	 * Get the revision of the time slices.
+	 * 
+	 * @return the revision of the time slices.
+	 */
+	long revision() {
+		return timeSlicesCollector.getRevision();
 	}
 
 	/**
-	 * Check whether a supplied date is in the range between two other dates.
+	 * Get the compiled schedule to evaluate. A plain collector is compiled for each query, so changes of its time slices
+	 * are always taken into account.
 	 * 
-	 * @param testDate test date which is supposed to be in between the other ones.
-	 * @param lowerBound lower bound date (from)
-	 * @param upperBound upper bound date (to)
-	 * @return whether or not, test date is in range of the two dates.
+	 * @return the compiled schedule.
 	 */
-	private boolean isInRange(final ZonedDateTime testDate, final ZonedDateTime lowerBound, final ZonedDateTime upperBound) {
-		return (testDate.isAfter(lowerBound) || testDate.isEqual(lowerBound))
-				&& (testDate.isBefore(upperBound) || testDate.isEqual(upperBound));
+	private CompiledSchedule schedule() {
+		return CompiledSchedule.of(timeSlicesCollector);
 	}
 
 	/**
@@ -0,0 +1,236 @@
+package de.westemeyer.openingtimes.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import de.westemeyer.openingtimes.api.TimeSlice;
+import de.westemeyer.openingtimes.api.TimeSlicesCollector;
+import de.westemeyer.openingtimes.api.WeekDay;
+
+/**
+ * Time slices with overlaps resolved once when building the schedule: slices that are fully shadowed by others are dropped and
+ * reported.
+ * <p>
+ * When several slices cover a day, the slice with the earliest start time wins, and of slices with equal start times the first
+ * one in the order of the {@link CompiledSchedule}. A slice is shadowed by another slice that wins against it on every day it
+ * could be selected for: the other slice matches all of its weekdays, starts at the same time of day or earlier, and is valid
+ * whenever it is. As slices are checked at the time of day of the test date, the other slice has to start at the same instant
+ * or at least two days earlier, and end at least two days later, unless both start at the same instant, which covers any
+ * daylight saving time transitions and time zones of test dates. Shadowed slices never win, so the schedule of effective slices
+ * yields the same opening types as all slices, only the instants until which they hold may be later, see
+ * {@link OpenType#getValidUntil()}.
+ * <p>
+ * Piles of slices hidden behind a longer slice or a duplicate cost nothing at query time after resolving. Slices overlapping
+ * only in part are kept, as their winners depend on the day.
+ *
+ * @author Sebastian Westemeyer
+ *
+ */
+public final class ResolvedSchedule {
+	/** Minimum distance of the bounds of a shadowing slice that does not start at the same instant, two days in seconds. */
+	private static final long MARGIN = 2 * 24 * 60 * 60;
+	/** Number of distinct weekday masks. */
+	private static final int MASKS = 1 << WeekDay.values().length;
+
+	/** The compiled effective slices. */
+	private final CompiledSchedule schedule;
+	/** The shadowed slices, in order of the compiled slices. */
+	private final List<TimeSlice> shadowedSlices;
+	/** Effective slice shadowing each shadowed slice. */
+	private final Map<TimeSlice, TimeSlice> shadowing = new IdentityHashMap<>();
+
+	/**
+	 * Resolve the overlaps of the time slices provided by a collector.
+	 *
+	 * @param collector Supplier of the time slices to resolve.
+	 * @throws IllegalArgumentException if a start or end time is malformed.
+	 */
+	public ResolvedSchedule(final TimeSlicesCollector collector) {
+		final CompiledSchedule compiled = collector instanceof CompiledSchedule ? (CompiledSchedule) collector
+				: new CompiledSchedule(collector);
+		final int size = compiled.size();
+		final int[] shadowedBy = new int[size];
+		Arrays.fill(shadowedBy, -1);
+		shadowSameStart(compiled, shadowedBy);
+		shadowEarlierStart(compiled, shadowedBy);
+
+		final List<TimeSlice> effective = new ArrayList<>();
+		final List<TimeSlice> shadowed = new ArrayList<>();
+		for (int index = 0; index < size; index++) {
+			if (shadowedBy[index] < 0) {
+				effective.add(compiled.slice(index));
+				continue;
+			}
+			// report the effective slice at the end of a chain of shadowing slices
+			int winner = shadowedBy[index];
+			while (shadowedBy[winner] >= 0) {
+				winner = shadowedBy[winner];
+			}
+			shadowed.add(compiled.slice(index));
+			shadowing.put(compiled.slice(index), compiled.slice(winner));
+		}
+		schedule = new CompiledSchedule(effective, compiled.getRevision());
+		shadowedSlices = Collections.unmodifiableList(shadowed);
+	}
+
+	/**
+	 * Get the compiled effective slices, with the revision of the original slices.
+	 *
+	 * @return the compiled effective slices.
+	 */
+	public CompiledSchedule getSchedule() {
+		return schedule;
+	}
+
+	/**
+	 * Get the slices that are fully shadowed by others and never win.
+	 *
+	 * @return the shadowed slices, in order of their "from" members.
+	 */
+	public List<TimeSlice> getShadowedSlices() {
+		return shadowedSlices;
+	}
+
+	/**
+	 * Get the effective slice shadowing a slice.
+	 *
+	 * @param slice one of the original slices
+	 * @return the effective slice winning against the slice on all of its days, or null if the slice is effective.
+	 */
+	public TimeSlice getShadowingSlice(final TimeSlice slice) {
+		return shadowing.get(slice);
+	}
+
+	/**
+	 * Find slices shadowed by slices starting at the same instant, which are valid at the same instants up to their end.
+	 *
+	 * @param compiled the compiled slices
+	 * @param shadowedBy shadowing slice of each slice, -1 if not shadowed
+	 */
+	private static void shadowSameStart(final CompiledSchedule compiled, final int[] shadowedBy) {
+		for (int first = 0, end = 0; first < compiled.size(); first = end) {
+			while (end < compiled.size() && compiled.from(end) == compiled.from(first)) {
+				end++;
+			}
+			for (int index = first; index < end; index++) {
+				for (int other = first; other < end && shadowedBy[index] < 0; other++) {
+					if (other != index && compiled.to(other) >= compiled.to(index) && wins(compiled, other, index)) {
+						shadowedBy[index] = other;
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Find slices shadowed by slices starting at least {@link #MARGIN} earlier and ending at least {@link #MARGIN} later. Earlier
+	 * slices are kept in a tree per weekday mask, holding the latest end for each start time, so each slice is checked against
+	 * the masks matching all of its weekdays instead of all earlier slices.
+	 *
+	 * @param compiled the compiled slices
+	 * @param shadowedBy shadowing slice of each slice, -1 if not shadowed
+	 */
+	private static void shadowEarlierStart(final CompiledSchedule compiled, final int[] shadowedBy) {
+		final LatestEnd[] trees = new LatestEnd[MASKS];
+		int added = 0;
+		for (int index = 0; index < compiled.size(); index++) {
+			final long from = compiled.from(index);
+			while (compiled.from(added) <= from - MARGIN) {
+				final int mask = compiled.weekdayMask(added);
+				if (trees[mask] == null) {
+					trees[mask] = new LatestEnd();
+				}
+				trees[mask].add(compiled.startMinute(added), added, compiled.to(added));
+				added++;
+			}
+			if (shadowedBy[index] >= 0) {
+				continue;
+			}
+			final long to = compiled.to(index);
+			// open-ended slices are shadowed by open-ended slices only
+			final long required = to > Long.MAX_VALUE - MARGIN ? Long.MAX_VALUE : to + MARGIN;
+			final int weekdays = compiled.weekdayMask(index);
+			// all masks containing the weekdays of the slice
+			for (int mask = weekdays; mask < MASKS && shadowedBy[index] < 0; mask = (mask + 1) | weekdays) {
+				if (trees[mask] != null) {
+					final int other = trees[mask].latest(compiled.startMinute(index));
+					if (other >= 0 && compiled.to(other) >= required) {
+						shadowedBy[index] = other;
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Check whether a slice wins against another one on all days of the other one.
+	 *
+	 * @param compiled the compiled slices
+	 * @param index index of the slice
+	 * @param other index of the other slice
+	 * @return whether the slice matches all weekdays of the other slice and starts earlier, or at the same time and comes first.
+	 */
+	private static boolean wins(final CompiledSchedule compiled, final int index, final int other) {
+		final int startMinute = compiled.startMinute(index);
+		final int otherStartMinute = compiled.startMinute(other);
+		return (compiled.weekdayMask(other) & ~compiled.weekdayMask(index)) == 0
+				&& (startMinute < otherStartMinute || (startMinute == otherStartMinute && index < other));
+	}
+
+	/**
+	 * Fenwick tree of slices by start time, finding the slice with the latest end of all slices starting at or before a time of
+	 * day.
+	 */
+	private static final class LatestEnd {
+		/** Latest end of the slices in each node. */
+		private final long[] ends = new long[TimeOfDay.END_OF_DAY + 2];
+		/** Index of the slice with the latest end in each node, -1 for none. */
+		private final int[] indexes = new int[TimeOfDay.END_OF_DAY + 2];
+
+		/**
+		 * Create new, empty tree.
+		 */
+		LatestEnd() {
+			Arrays.fill(ends, Long.MIN_VALUE);
+			Arrays.fill(indexes, -1);
+		}
+
+		/**
+		 * Add a slice.
+		 *
+		 * @param startMinute start time of the slice in minutes of the day
+		 * @param index index of the slice
+		 * @param to end of the slice in epoch seconds
+		 */
+		void add(final int startMinute, final int index, final long to) {
+			for (int node = startMinute + 1; node < ends.length; node += node & -node) {
+				if (to > ends[node]) {
+					ends[node] = to;
+					indexes[node] = index;
+				}
+			}
+		}
+
+		/**
+		 * Find the slice with the latest end of all slices starting at or before a time of day.
+		 *
+		 * @param startMinute the time of day in minutes
+		 * @return index of the slice, or -1 if there is none.
+		 */
+		int latest(final int startMinute) {
+			long end = Long.MIN_VALUE;
+			int index = -1;
+			for (int node = startMinute + 1; node > 0; node -= node & -node) {
+				if (ends[node] > end) {
+					end = ends[node];
+					index = indexes[node];
+				}
+			}
+			return index;
+		}
+	}
+}
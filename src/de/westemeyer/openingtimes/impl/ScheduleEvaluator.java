@@ -0,0 +1,755 @@
+package de.westemeyer.openingtimes.impl;
+
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.Period;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+import de.westemeyer.openingtimes.api.HolidayResolver;
+import de.westemeyer.openingtimes.api.OpenStatus;
+import de.westemeyer.openingtimes.api.WeekDay;
+
+/**
+ * Evaluation engine for compiled schedules.
+ * <p>
+ * The upcoming week is walked as epoch days, using primitive epoch seconds for all comparisons and a fixed array with the
+ * winning slice of each day. Zone offsets are resolved by arithmetic on local epoch seconds and the offset transitions near the
+ * checked period, taken from the table of the time zone shared through {@link ZoneOffsets}, or skipped entirely if there is no
+ * such transition. Opening dates/times are created from their instants, without looking up the zone rules of local times.
+ * Holidays of the whole week are fetched with a single call of {@link HolidayResolver#holidaysBetween}, if needed at all. Apart
+ * from that, objects are only created for the final {@link OpenType}, or not at all for a {@link CompactOpenType}.
+ * <p>
+ * Batches of test dates are checked in order of their instants. Test dates of a time zone share the holidays of the whole
+ * batch, and test dates within the validity of the previous result share that result.
+ * <p>
+ * Each result carries the instant until which it holds (see {@link OpenType#getValidUntil()}). The result of a test date can
+ * only change at the next local midnight, when the current minute passes the opening or closing time of the first day's
+ * winning slice, when the test date reaches the start of a slice, or when the time of day of the test date reaches the end of
+ * a slice on one of the checked days. Near zone offset transitions, the bound is shortened to the next transition, and the end
+ * of a slice is located using the offsets around it.
+ *
+ * @author Sebastian Westemeyer
+ *
+ */
+final class ScheduleEvaluator {
+	/** Number of days to check for upcoming opening times, starting with the day of the test date. */
+	static final int DAYS = 8;
+	/** Seconds per day. */
+	static final int SECONDS_PER_DAY = 86400;
+	/** Bit of the bank holiday in weekday masks. */
+	static final int HOLIDAY_BIT = 1 << WeekDay.HOLIDAY.ordinal();
+	/** Bits of all days in the checked period. */
+	private static final int ALL_DAYS = (1 << DAYS) - 1;
+	/** Bits of monday to sunday in weekday masks. */
+	private static final int WEEKDAY_BITS = HOLIDAY_BIT - 1;
+	/** Maximum number of days of holidays to fetch at once for a batch of test dates. */
+	private static final int BATCH_HOLIDAY_DAYS = 366;
+	/** Marker for holidays that have not yet been fetched. */
+	private static final int UNKNOWN = -1;
+	/** Preferred offset matching no valid offset, so that local times in an overlap use the earlier offset. */
+	private static final int NO_PREFERRED_OFFSET = ZoneOffsets.NO_PREFERRED_OFFSET;
+	/** Maximum distance of a local time from its instant, bounds the search for zone offset transitions. */
+	private static final int MAX_OFFSET_SECONDS = ZoneOffsets.MAX_OFFSET_SECONDS;
+
+	/** The holiday resolver. */
+	private final HolidayResolver holidayResolver;
+
+	/**
+	 * Create new evaluator.
+	 *
+	 * @param holidayResolver Object to check dates for holidays.
+	 */
+	ScheduleEvaluator(final HolidayResolver holidayResolver) {
+		this.holidayResolver = holidayResolver;
+	}
+
+	/**
+	 * The actual check for upcoming opening times. For every day, the matching slice with the earliest start time wins.
+	 *
+	 * @param schedule compiled time slices
+	 * @param date The test date.
+	 * @return The opening type (open, opening soon or closed).
+	 */
+	OpenType evaluate(final CompiledSchedule schedule, final ZonedDateTime date) {
+		return evaluate(schedule, date, new Week(date.getZone()));
+	}
+
+	/**
+	 * Check for upcoming opening times within a number of days. Beyond the checked period of {@link #DAYS} days, the opening
+	 * periods of the following days are searched, skipping off-season periods (see {@link OpenIntervalIterator}).
+	 *
+	 * @param schedule compiled time slices
+	 * @param date The test date.
+	 * @param days number of days after the test date to look for opening times
+	 * @return The opening type (open, opening soon or closed).
+	 */
+	OpenType evaluate(final CompiledSchedule schedule, final ZonedDateTime date, final int days) {
+		final OpenType openType = evaluate(schedule, date);
+		final ZonedDateTime horizon = date.plus(Period.ofDays(days));
+		final long validUntil = openType.getValidUntil().getEpochSecond();
+		if (openType.getStatus() != OpenStatus.CLOSED) {
+			if (openType.getDateTime().isAfter(horizon)) {
+				return OpenType.closed(Math.min(validUntil, horizonReaches(openType.getDateTime(), days)));
+			}
+			final ZonedDateTime nextOpening = openType.getNextOpening();
+			if (nextOpening != null && nextOpening.isAfter(horizon)) {
+				return new OpenType(openType.getWeekday(), openType.getDateTime(), date, openType.getTimeSlice(), openType.getStatus(),
+						openType.getClosingDateTime(), null, Math.min(validUntil, horizonReaches(nextOpening, days)));
+			}
+			return openType;
+		}
+		if (days <= DAYS) {
+			return openType;
+		}
+		// continue after the checked period, the opening periods found there do not depend on the time of the test date
+		final ZoneId zone = date.getZone();
+		final long lastDay = horizon.toLocalDate().toEpochDay();
+		final OpenIntervalIterator intervals = new OpenIntervalIterator(schedule, holidayResolver,
+				date.toLocalDate().plusDays(DAYS).atStartOfDay(zone));
+		final OpenInterval interval = intervals.next(lastDay);
+		if (interval == null || interval.getStart().isAfter(horizon)) {
+			return OpenType.closed(Math.min(validUntil, horizonReaches(intervals, interval, days, zone)));
+		}
+		intervals.next();
+		final OpenInterval following = intervals.next(lastDay);
+		if (following != null && !following.getStart().isAfter(horizon)) {
+			return new OpenType(interval.getWeekday(), interval.getStart(), date, interval.getTimeSlice(), OpenStatus.OPENING_SOON,
+					interval.getEnd(), following.getStart(), validUntil);
+		}
+		return new OpenType(interval.getWeekday(), interval.getStart(), date, interval.getTimeSlice(), OpenStatus.OPENING_SOON,
+				interval.getEnd(), null, Math.min(validUntil, horizonReaches(intervals, following, days, zone)));
+	}
+
+	/**
+	 * Get an instant before which a horizon of a number of days after the test date does not yet reach the next opening
+	 * period of an iterator.
+	 *
+	 * @param intervals iterator, stopped at the next opening period or after the last day of the horizon
+	 * @param interval the next opening period, or null if there is none up to the last day of the horizon
+	 * @param days number of days of the horizon
+	 * @param zone the time zone
+	 * @return the instant in epoch seconds.
+	 */
+	private static long horizonReaches(final OpenIntervalIterator intervals, final OpenInterval interval, final int days,
+			final ZoneId zone) {
+		if (interval != null) {
+			return horizonReaches(interval.getStart(), days);
+		}
+		if (intervals.isExhausted()) {
+			return Long.MAX_VALUE;
+		}
+		// the next opening period starts on the next day to check at the earliest
+		return horizonReaches(LocalDate.ofEpochDay(intervals.day()).atStartOfDay(zone), days);
+	}
+
+	/**
+	 * Get an instant before which a horizon of a number of days after the test date does not yet reach a date, taking zone
+	 * offset changes into account.
+	 *
+	 * @param date the date to reach
+	 * @param days number of days of the horizon
+	 * @return the instant in epoch seconds.
+	 */
+	private static long horizonReaches(final ZonedDateTime date, final int days) {
+		return date.toEpochSecond() - (long) days * SECONDS_PER_DAY - 2 * MAX_OFFSET_SECONDS;
+	}
+
+	/**
+	 * Check many test dates in order of their instants. Test dates in the same time zone share the state of their checked
+	 * periods: the holidays of all checked periods are fetched with a single call of the holiday resolver, and the checked
+	 * period moves forward day by day over them. A test date within the validity of the previous result of its time zone gets
+	 * that result, without selecting the slices again.
+	 *
+	 * @param schedule compiled time slices
+	 * @param dates The test dates.
+	 * @param results Array to store the opening type of each test date at its index.
+	 */
+	void evaluate(final CompiledSchedule schedule, final ZonedDateTime[] dates, final OpenType[] results) {
+		final long[] order = order(dates);
+		final Map<ZoneId, Week> weeks = new HashMap<>();
+		for (final ZonedDateTime date : dates) {
+			final Week week = weeks.computeIfAbsent(date.getZone(), Week::new);
+			// the holidays are fetched up to the checked period of the latest test date
+			week.holidaysUntil = Math.max(week.holidaysUntil,
+					Math.floorDiv(date.toEpochSecond() + date.getOffset().getTotalSeconds(), SECONDS_PER_DAY));
+		}
+		for (final long key : order) {
+			final int i = (int) key;
+			final ZonedDateTime date = dates[i];
+			final Week week = weeks.get(date.getZone());
+			final OpenType previous = week.previous;
+			if (previous != null && previous.isValidAt(date) && (date.toEpochSecond() > week.previousSecond
+					|| (date.toEpochSecond() == week.previousSecond && date.getNano() >= week.previousNano))) {
+				results[i] = previous.withCheckedDate(date);
+			} else {
+				results[i] = evaluate(schedule, date, week);
+				week.previous = results[i];
+				week.previousSecond = date.toEpochSecond();
+				week.previousNano = date.getNano();
+			}
+		}
+	}
+
+	/**
+	 * Sort the indexes of test dates by their instants, without creating objects per test date. Each sort key holds the
+	 * distance of a test date from the earliest one in its upper half and the index in its lower half. Distances beyond the
+	 * upper half are shortened, so that test dates far apart are still sorted, those close to each other may be in any order.
+	 *
+	 * @param dates The test dates.
+	 * @return sort keys in ascending order, the index of each test date in the lower 32 bits.
+	 */
+	private static long[] order(final ZonedDateTime[] dates) {
+		long earliest = Long.MAX_VALUE;
+		long latest = Long.MIN_VALUE;
+		for (final ZonedDateTime date : dates) {
+			earliest = Math.min(earliest, date.toEpochSecond());
+			latest = Math.max(latest, date.toEpochSecond());
+		}
+		// bits of the distances that do not fit into 31 bits
+		final int shift = dates.length == 0 ? 0 : Math.max(0, 33 - Long.numberOfLeadingZeros(latest - earliest));
+		final long[] keys = new long[dates.length];
+		for (int i = 0; i < keys.length; i++) {
+			keys[i] = (dates[i].toEpochSecond() - earliest) >>> shift << 32 | i;
+		}
+		Arrays.sort(keys);
+		return keys;
+	}
+
+	/**
+	 * Walk the results from a start date up to an end instant, continuing each result at the end of its validity. A result
+	 * holding for its test date only is continued one nanosecond later.
+	 *
+	 * @param schedule compiled time slices
+	 * @param start the first test date
+	 * @param end end of the walk in epoch seconds, exclusive
+	 * @param results consumer of each test date and its result, in order of the test dates
+	 * @return the test date following the last result, at or after the end.
+	 */
+	ZonedDateTime walk(final CompiledSchedule schedule, final ZonedDateTime start, final long end,
+			final BiConsumer<ZonedDateTime, OpenType> results) {
+		final Week week = new Week(start.getZone());
+		ZonedDateTime date = start;
+		while (date.toEpochSecond() < end) {
+			final OpenType openType = evaluate(schedule, date, week);
+			results.accept(date, openType);
+			final Instant validUntil = openType.getValidUntil();
+			date = validUntil.isAfter(date.toInstant()) ? validUntil.atZone(date.getZone()) : date.plusNanos(1);
+		}
+		return date;
+	}
+
+	/**
+	 * Check a test date, reusing the state of the previous test date if its checked period has started on the same day.
+	 *
+	 * @param schedule compiled time slices
+	 * @param date The test date.
+	 * @param week state of the checked period, in the time zone of the test date
+	 * @return The opening type (open, opening soon or closed).
+	 */
+	private OpenType evaluate(final CompiledSchedule schedule, final ZonedDateTime date, final Week week) {
+		final int day = select(schedule, date.toEpochSecond(), date.getNano(), date.getOffset().getTotalSeconds(), week);
+		if (day < 0) {
+			// end of season/closed
+			return OpenType.closed(week.validUntil);
+		}
+		final long firstDay = week.firstDay;
+		final int index = week.winners[day];
+		// epoch day 0 is a thursday
+		final WeekDay dayOfWeek = WeekDay.valueOf(DayOfWeek.of((int) Math.floorMod(firstDay + day + 3, 7) + 1),
+				(week.holidays() & (1 << day)) != 0);
+		final int next = nextWinner(week.winners, day);
+		return new OpenType(dayOfWeek, week.dateTime(day, schedule.startMinute(index)), date, schedule.slice(index), week.status,
+				week.dateTime(day, schedule.endMinute(index)),
+				next < 0 ? null : week.dateTime(next, schedule.startMinute(week.winners[next])), week.validUntil);
+	}
+
+	/**
+	 * Check a test date given as epoch milliseconds, filling a compact result instead of creating objects. The state of the
+	 * checked period is kept in the result, so that checking test dates on the same day with the same result object shares
+	 * the zone offsets and holidays of their checked period.
+	 *
+	 * @param schedule compiled time slices
+	 * @param epochMillis The test date in epoch milliseconds.
+	 * @param zone time zone of the test date
+	 * @param result the result to fill
+	 */
+	void evaluate(final CompiledSchedule schedule, final long epochMillis, final ZoneId zone, final CompactOpenType result) {
+		Week week = result.week;
+		if (week == null || !week.belongsTo(this, zone)) {
+			week = new Week(zone);
+			result.week = week;
+		}
+		final long querySecond = Math.floorDiv(epochMillis, 1000);
+		final int queryNano = (int) Math.floorMod(epochMillis, 1000) * 1000000;
+		final int day = select(schedule, querySecond, queryNano, week.offsetAt(querySecond), week);
+		if (day < 0) {
+			result.set(schedule, OpenStatus.CLOSED, -1, Long.MIN_VALUE, Long.MIN_VALUE, Long.MIN_VALUE, week.validUntil * 1000);
+			return;
+		}
+		final int index = week.winners[day];
+		final int next = nextWinner(week.winners, day);
+		result.set(schedule, week.status, index, localMillis(week, day, schedule.startMinute(index)),
+				localMillis(week, day, schedule.endMinute(index)),
+				next < 0 ? Long.MIN_VALUE : localMillis(week, next, schedule.startMinute(week.winners[next])), week.validUntil * 1000);
+	}
+
+	/**
+	 * Convert a time of day of the checked period to epoch milliseconds, the same way as {@link #openingDateTime}, using the
+	 * earlier offset in an overlap.
+	 *
+	 * @param week state of the checked period
+	 * @param day the day of the checked period
+	 * @param minuteOfDay minutes of the day, up to the end of the day
+	 * @return the instant in epoch milliseconds.
+	 */
+	private static long localMillis(final Week week, final int day, final int minuteOfDay) {
+		return week.toEpochSecond((week.firstDay + day) * SECONDS_PER_DAY + minuteOfDay * 60L, NO_PREFERRED_OFFSET) * 1000;
+	}
+
+	/**
+	 * Find the winning slices of the checked period of a test date, see {@link #evaluate(CompiledSchedule, ZonedDateTime)}. The
+	 * status and the instant until which the result holds are left in the state of the checked period.
+	 *
+	 * @param schedule compiled time slices
+	 * @param querySecond the test date in epoch seconds
+	 * @param queryNano nanoseconds of the test date
+	 * @param queryOffset zone offset of the test date in seconds
+	 * @param week state of the checked period, in the time zone of the test date
+	 * @return the day of the checked period with the selected opening period, or -1 if closed.
+	 */
+	private int select(final CompiledSchedule schedule, final long querySecond, final int queryNano, final int queryOffset,
+			final Week week) {
+		// the test date as epoch day and second of the day
+		final long localQuery = querySecond + queryOffset;
+		final long firstDay = Math.floorDiv(localQuery, SECONDS_PER_DAY);
+		final int querySecondOfDay = (int) Math.floorMod(localQuery, SECONDS_PER_DAY);
+		final int currentMinute = querySecondOfDay / 60;
+		// epoch day 0 is a thursday
+		final int firstDayOfWeek = (int) Math.floorMod(firstDay + 3, 7);
+		week.moveTo(firstDay);
+		// end of the checked period, same time of day, one week from tomorrow
+		final long nextWeek = week.toEpochSecond((firstDay + DAYS) * SECONDS_PER_DAY + querySecondOfDay, queryOffset);
+		// range of slices relevant for the upcoming week
+		final long lowerBound = queryNano == 0 ? querySecond : querySecond + 1;
+		final int endIndex = schedule.endIndex(nextWeek);
+
+		// winning slice for each day
+		final int[] winners = week.winners;
+		Arrays.fill(winners, -1);
+		// instant until which the result holds, at most up to the next day or the next offset transition
+		long validUntil = Math.min(week.toEpochSecond((firstDay + 1) * SECONDS_PER_DAY, queryOffset),
+				week.nextTransition(querySecond));
+
+		for (int index = schedule.firstIndex(lowerBound); index < endIndex; index++) {
+			final long to = schedule.to(index);
+			// skip slices that have ended before the test date
+			if (to < lowerBound) {
+				continue;
+			}
+			// days of the checked period matching the weekdays of the slice
+			final int weekdays = schedule.weekdayMask(index);
+			int days = matchingDays(weekdays, firstDayOfWeek);
+			if ((weekdays & HOLIDAY_BIT) != 0 && days != ALL_DAYS) {
+				days |= week.holidays();
+			}
+			if (days == 0) {
+				continue;
+			}
+			final long from = schedule.from(index);
+			// iterate the days from the later one of test date and start of slice, keeping its time of day
+			final int startDay;
+			final long startInstant;
+			final int secondOfDay;
+			final int nano;
+			final int preferredOffset;
+			if (querySecond > from || (querySecond == from && queryNano > 0)) {
+				startDay = 0;
+				startInstant = querySecond;
+				secondOfDay = querySecondOfDay;
+				nano = queryNano;
+				preferredOffset = queryOffset;
+				// the slice drops its days once the time of day of the test date reaches its end
+				if (to != Long.MAX_VALUE) {
+					validUntil = Math.min(validUntil, week.endReached(to, querySecond, queryOffset));
+				}
+			} else {
+				// the slice is walked from its start until the test date reaches it
+				validUntil = Math.min(validUntil, from);
+				preferredOffset = week.offset(from);
+				final long localFrom = from + preferredOffset;
+				startDay = (int) (Math.floorDiv(localFrom, SECONDS_PER_DAY) - firstDay);
+				startInstant = from;
+				secondOfDay = (int) Math.floorMod(localFrom, SECONDS_PER_DAY);
+				nano = 0;
+			}
+			final int startMinute = schedule.startMinute(index);
+			for (int remaining = days & (ALL_DAYS << startDay); remaining != 0; remaining &= remaining - 1) {
+				final int day = Integer.numberOfTrailingZeros(remaining);
+				// keep the current slice of the day, if it is an "earlier match"
+				if (winners[day] >= 0 && schedule.startMinute(winners[day]) <= startMinute) {
+					continue;
+				}
+				final long instant = day == startDay ? startInstant
+						: week.toEpochSecond((firstDay + day) * SECONDS_PER_DAY + secondOfDay, preferredOffset);
+				// stop at end of slice and end of checked period, instants grow with the days
+				if (instant >= to || instant > nextWeek || (instant == nextWeek && nano >= queryNano)) {
+					break;
+				}
+				winners[day] = index;
+			}
+		}
+
+		// the status changes once the current minute passes the opening or closing time of the first day
+		if (winners[0] >= 0) {
+			final int startMinute = schedule.startMinute(winners[0]);
+			final int endMinute = schedule.endMinute(winners[0]);
+			final int change = startMinute >= currentMinute ? startMinute + 1 : endMinute >= currentMinute ? endMinute + 1 : TimeOfDay.END_OF_DAY;
+			if (change < TimeOfDay.END_OF_DAY) {
+				validUntil = Math.min(validUntil, week.toEpochSecond(firstDay * SECONDS_PER_DAY + change * 60L, queryOffset));
+			}
+		}
+
+		// check one week of dates for the earliest
+		for (int day = 0; day < DAYS; day++) {
+			final int index = winners[day];
+			if (index < 0) {
+				continue;
+			}
+			final int startMinute = schedule.startMinute(index);
+			final OpenStatus status;
+			if (day > 0 || startMinute >= currentMinute) {
+				// either we will be opening today or on one of the next days...
+				status = OpenStatus.OPENING_SOON;
+			} else if (schedule.endMinute(index) >= currentMinute) {
+				// ... or we are already open
+				status = OpenStatus.OPEN;
+			} else {
+				// ...otherwise we are already closed for today.
+				continue;
+			}
+			week.status = status;
+			week.validUntil = validUntil;
+			return day;
+		}
+		// end of season/closed
+		week.status = OpenStatus.CLOSED;
+		week.validUntil = validUntil;
+		return -1;
+	}
+
+	/**
+	 * Get the first day after a day of the checked period with a winning slice.
+	 *
+	 * @param winners winning slice for each day
+	 * @param day the day of the checked period
+	 * @return the next day with a winning slice, or -1 if there is none.
+	 */
+	private static int nextWinner(final int[] winners, final int day) {
+		for (int next = day + 1; next < DAYS; next++) {
+			if (winners[next] >= 0) {
+				return next;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Find the winning slice of a single day, checked at an instant on that day, the same way as the first day of a checked
+	 * period: the slice has to be valid at the instant or start later on the day, and the earliest start time wins.
+	 *
+	 * @param schedule compiled time slices
+	 * @param checked instant to check the day at, in epoch seconds
+	 * @param nextDay start of the next day in epoch seconds
+	 * @param dayBits bit of the day of week, plus {@link #HOLIDAY_BIT} on holidays
+	 * @return index of the winning slice, or -1 if no slice matches.
+	 */
+	static int dayWinner(final CompiledSchedule schedule, final long checked, final long nextDay, final int dayBits) {
+		int winner = -1;
+		for (int index = schedule.firstIndex(checked + 1), end = schedule.endIndex(nextDay - 1); index < end; index++) {
+			if (schedule.to(index) > Math.max(schedule.from(index), checked) && (schedule.weekdayMask(index) & dayBits) != 0
+					&& (winner < 0 || schedule.startMinute(index) < schedule.startMinute(winner))) {
+				winner = index;
+			}
+		}
+		return winner;
+	}
+
+	/**
+	 * Get the days of the checked period on which a weekday mask matches, not taking holidays into account.
+	 *
+	 * @param weekdays weekday mask of a slice
+	 * @param firstDayOfWeek day of week of the first day in the checked period, monday is 0
+	 * @return matching days, one bit per day of the checked period.
+	 */
+	static int matchingDays(final int weekdays, final int firstDayOfWeek) {
+		// rotate the days of week, so that bit 0 is the first day
+		final int daysOfWeek = weekdays & WEEKDAY_BITS;
+		final int rotated = ((daysOfWeek >>> firstDayOfWeek) | (daysOfWeek << (7 - firstDayOfWeek))) & WEEKDAY_BITS;
+		// the last day has the same day of week as the first one
+		return rotated | ((rotated & 1) << 7);
+	}
+
+	/**
+	 * Create the opening date/time for a day.
+	 *
+	 * @param epochDay the epoch day
+	 * @param minuteOfDay opening time in minutes of the day, "24:00" is midnight of the next day
+	 * @param zone time zone of the result
+	 * @return the opening date/time.
+	 */
+	static ZonedDateTime openingDateTime(final long epochDay, final int minuteOfDay, final ZoneId zone) {
+		return ZoneOffsets.of(zone).dateTime(epochDay, minuteOfDay);
+	}
+
+	/**
+	 * State of the checked period of a test date, shared by test dates on the same day in the same time zone: the winning
+	 * slices, the holidays and, if there is no offset transition nearby, the fixed zone offset.
+	 */
+	final class Week {
+		/** The time zone. */
+		private final ZoneId zone;
+		/** Offsets of the time zone, shared by all states of the zone. */
+		private final ZoneOffsets zoneOffsets;
+		/** Offsets covering the checked period. */
+		private ZoneOffsets offsets;
+		/** Winning slice for each day. */
+		private final int[] winners = new int[DAYS];
+		/** First day of the checked period as epoch day. */
+		private long firstDay = Long.MIN_VALUE;
+		/** Whether the zone offset is the same for all local times of the checked period. */
+		private boolean fixedOffset;
+		/** The zone offset in seconds, if fixed. */
+		private int offset;
+		/** Index of the first offset transition near the checked period. */
+		private int firstTransition;
+		/** Number of offset transitions near the checked period. */
+		private int transitionCount;
+		/** Holidays of the checked period, one bit per day, fetched on first use. */
+		private int holidays;
+		/** Last first day of the checked periods to fetch holidays for at once, for batches of test dates. */
+		private long holidaysUntil = Long.MIN_VALUE;
+		/** First day of the fetched holidays as epoch day. */
+		private long fetchedFrom;
+		/** First day after the fetched holidays as epoch day. */
+		private long fetchedTo;
+		/** Fetched holidays, one bit per day from the first day, or null if none have been fetched. */
+		private BitSet fetched;
+		/** Result of the previous test date of a batch. */
+		private OpenType previous;
+		/** The previous test date of a batch in epoch seconds. */
+		private long previousSecond;
+		/** Nanoseconds of the previous test date of a batch. */
+		private int previousNano;
+		/** Status selected for the last test date. */
+		private OpenStatus status;
+		/** Instant until which the result of the last test date holds, in epoch seconds. */
+		private long validUntil;
+
+		/**
+		 * Create new state for a time zone.
+		 *
+		 * @param zone the time zone
+		 */
+		Week(final ZoneId zone) {
+			this.zone = zone;
+			this.zoneOffsets = ZoneOffsets.of(zone);
+			this.offsets = zoneOffsets;
+		}
+
+		/**
+		 * Move to a checked period, if it starts on another day than the current one.
+		 *
+		 * @param day first day of the checked period as epoch day
+		 */
+		void moveTo(final long day) {
+			if (day == firstDay) {
+				return;
+			}
+			firstDay = day;
+			holidays = UNKNOWN;
+			// local times up to the end of the checked period are converted using offsets up to 18 hours around them
+			final long start = day * SECONDS_PER_DAY - 2 * MAX_OFFSET_SECONDS;
+			final long end = (day + DAYS + 1) * SECONDS_PER_DAY + 2 * MAX_OFFSET_SECONDS;
+			offsets = zoneOffsets.covers(start, end) ? zoneOffsets : ZoneOffsets.between(zone, start, end);
+			offset = offsets.offsetAt(start);
+			firstTransition = offsets.indexAfter(start);
+			transitionCount = offsets.indexAfter(end) - firstTransition;
+			fixedOffset = transitionCount == 0;
+		}
+
+		/**
+		 * Get the earliest instant after a test date at which the time of day of the test date reaches the end of a slice on one
+		 * of the checked days, so that the slice no longer covers that day. Before the next offset transition, the test date
+		 * keeps its zone offset.
+		 *
+		 * @param to end of the slice in epoch seconds
+		 * @param querySecond the test date in epoch seconds
+		 * @param queryOffset zone offset of the test date in seconds
+		 * @return the instant in epoch seconds, or {@link Long#MAX_VALUE} if the slice has already ended.
+		 */
+		long endReached(final long to, final long querySecond, final int queryOffset) {
+			if (to <= querySecond) {
+				return Long.MAX_VALUE;
+			}
+			// a later day reaches the end between its local time converted using the smallest and the largest offset around it
+			int minOffset = offset;
+			int maxOffset = offset;
+			if (!fixedOffset) {
+				minOffset = offsetAt(to - 2 * MAX_OFFSET_SECONDS);
+				maxOffset = minOffset;
+				for (int i = firstTransition; i < firstTransition + transitionCount; i++) {
+					final long transition = offsets.transition(i);
+					if (transition > to - 2 * MAX_OFFSET_SECONDS && transition <= to + 2 * MAX_OFFSET_SECONDS) {
+						minOffset = Math.min(minOffset, offsets.offsetAfter(i));
+						maxOffset = Math.max(maxOffset, offsets.offsetAfter(i));
+					}
+				}
+			}
+			// later days are reached earlier, so the first day reached after the test date is the latest one still ahead
+			for (int day = DAYS - 1; day > 0; day--) {
+				final long earliest = to + minOffset - queryOffset - day * SECONDS_PER_DAY;
+				if (earliest > querySecond) {
+					return earliest;
+				}
+				long high = earliest + maxOffset - minOffset;
+				if (high > querySecond && !reached(querySecond, day, to, queryOffset)) {
+					// the day is reached within the range of offsets, search the exact instant
+					long low = querySecond;
+					while (high - low > 1) {
+						final long middle = (low + high) >>> 1;
+						if (reached(middle, day, to, queryOffset)) {
+							high = middle;
+						} else {
+							low = middle;
+						}
+					}
+					return high;
+				}
+			}
+			// the first day reaches the end at the end itself
+			return to;
+		}
+
+		/**
+		 * Check whether a day of the checked period, at the time of day of a test date, has reached the end of a slice.
+		 *
+		 * @param epochSecond the test date in epoch seconds
+		 * @param day the day of the checked period, relative to the test date
+		 * @param to end of the slice in epoch seconds
+		 * @param queryOffset zone offset of the test date in seconds
+		 * @return whether the day has reached the end.
+		 */
+		private boolean reached(final long epochSecond, final int day, final long to, final int queryOffset) {
+			return toEpochSecond(epochSecond + queryOffset + day * SECONDS_PER_DAY, queryOffset) >= to;
+		}
+
+		/**
+		 * Check whether this state has been created by an evaluator for a time zone.
+		 *
+		 * @param evaluator the evaluator
+		 * @param timeZone the time zone
+		 * @return whether the state belongs to the evaluator and time zone.
+		 */
+		boolean belongsTo(final ScheduleEvaluator evaluator, final ZoneId timeZone) {
+			return ScheduleEvaluator.this == evaluator && zone.equals(timeZone);
+		}
+
+		/**
+		 * Get the zone offset valid at an instant, using the offset transitions of the current checked period if the instant
+		 * lies within its range, so that local times of the checked period are converted without creating objects.
+		 *
+		 * @param epochSecond instant in epoch seconds
+		 * @return the offset in seconds.
+		 */
+		int offsetAt(final long epochSecond) {
+			if (firstDay == Long.MIN_VALUE || epochSecond < firstDay * SECONDS_PER_DAY - 2 * MAX_OFFSET_SECONDS
+					|| epochSecond > (firstDay + DAYS + 1) * SECONDS_PER_DAY + 2 * MAX_OFFSET_SECONDS) {
+				return zoneOffsets.offsetAt(epochSecond);
+			}
+			int result = offset;
+			for (int i = firstTransition; i < firstTransition + transitionCount && offsets.transition(i) <= epochSecond; i++) {
+				result = offsets.offsetAfter(i);
+			}
+			return result;
+		}
+
+		/**
+		 * Get the first offset transition of the checked period after an instant.
+		 *
+		 * @param epochSecond instant in epoch seconds
+		 * @return instant of the transition in epoch seconds, or {@link Long#MAX_VALUE} if there is none.
+		 */
+		long nextTransition(final long epochSecond) {
+			for (int i = firstTransition; i < firstTransition + transitionCount; i++) {
+				if (offsets.transition(i) > epochSecond) {
+					return offsets.transition(i);
+				}
+			}
+			return Long.MAX_VALUE;
+		}
+
+		/**
+		 * Get the zone offset valid at an instant of the checked period.
+		 *
+		 * @param epochSecond instant in epoch seconds
+		 * @return the offset in seconds.
+		 */
+		int offset(final long epochSecond) {
+			return fixedOffset ? offset : offsetAt(epochSecond);
+		}
+
+		/**
+		 * Convert a local time of the checked period to an instant, following the rules of {@link ZonedDateTime#ofLocal}: a
+		 * local time in a gap is moved forward by the length of the gap, in an overlap the preferred offset is used if valid,
+		 * otherwise the earlier one.
+		 *
+		 * @param localSecond local date and time in epoch seconds
+		 * @param preferredOffset preferred offset in seconds
+		 * @return the instant in epoch seconds.
+		 */
+		long toEpochSecond(final long localSecond, final int preferredOffset) {
+			return fixedOffset ? localSecond - offset : offsets.toEpochSecond(localSecond, preferredOffset);
+		}
+
+		/**
+		 * Create the date/time of a time of day of the checked period, the same as {@link #openingDateTime}.
+		 *
+		 * @param day the day of the checked period
+		 * @param minuteOfDay minutes of the day, up to the end of the day
+		 * @return the date/time.
+		 */
+		ZonedDateTime dateTime(final int day, final int minuteOfDay) {
+			return offsets.dateTime(toEpochSecond((firstDay + day) * SECONDS_PER_DAY + minuteOfDay * 60L, NO_PREFERRED_OFFSET));
+		}
+
+		/**
+		 * Get the holidays of the checked period, fetched with a single call of the holiday resolver. For batches, the holidays
+		 * of the checked periods up to {@link #holidaysUntil}, at most {@value #BATCH_HOLIDAY_DAYS} days ahead, are fetched at
+		 * once, and later checked periods take theirs from the fetched ones.
+		 *
+		 * @return holidays of the checked period, one bit per day.
+		 */
+		int holidays() {
+			if (holidays == UNKNOWN) {
+				if (fetched == null || firstDay < fetchedFrom || firstDay + DAYS > fetchedTo) {
+					fetchedFrom = firstDay;
+					fetchedTo = Math.min(Math.max(firstDay, holidaysUntil), firstDay + BATCH_HOLIDAY_DAYS) + DAYS;
+					fetched = holidayResolver.holidaysBetween(LocalDate.ofEpochDay(fetchedFrom), LocalDate.ofEpochDay(fetchedTo), zone);
+				}
+				final int first = (int) (firstDay - fetchedFrom);
+				holidays = 0;
+				for (int day = fetched.nextSetBit(first); day >= 0 && day < first + DAYS; day = fetched.nextSetBit(day + 1)) {
+					holidays |= 1 << (day - first);
+				}
+			}
+			return holidays;
+		}
+	}
+}
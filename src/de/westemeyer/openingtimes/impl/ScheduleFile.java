@@ -0,0 +1,211 @@
+package de.westemeyer.openingtimes.impl;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import de.westemeyer.openingtimes.api.TimeSlice;
+
+/**
+ * Versioned binary file format for compiled schedules, to load large schedules without parsing time slices.
+ * <p>
+ * A file starts with a header: the magic number {@link #MAGIC}, the format version, the number of slices, the revision of the
+ * schedule and a table of the time zone ids used by the slice bounds. The compiled slices follow column by column, in the
+ * order of the {@link CompiledSchedule}, starting at the next multiple of eight bytes: "from" and "to" bounds in epoch
+ * seconds, the running maximum of the "to" bounds, then opening time, closing time and weekday mask as 16 bit values, and the
+ * time zones of the bounds as indexes into the zone table. All values are big-endian.
+ * <p>
+ * {@link #read(Path)} maps the file into memory and evaluates straight from the mapped buffer, see {@link MappedSchedule}.
+ * Slice bounds are stored with second precision.
+ *
+ * @author Sebastian Westemeyer
+ *
+ */
+public final class ScheduleFile {
+	/** Magic number at the start of every file, "OTSC". */
+	public static final int MAGIC = 0x4F545343;
+	/** Version of the file format written by this class. */
+	public static final int VERSION = 1;
+	/** Zone index of open-ended slices. */
+	static final int NO_ZONE = -1;
+
+	/**
+	 * Hide constructor, static methods only.
+	 */
+	private ScheduleFile() {
+	}
+
+	/**
+	 * Write a compiled schedule to a file, replacing the file if it exists.
+	 *
+	 * @param schedule the compiled schedule
+	 * @param path the file to write
+	 * @throws IOException if the file cannot be written.
+	 * @throws IllegalArgumentException if the slice bounds use more than 32767 time zones.
+	 */
+	public static void write(final CompiledSchedule schedule, final Path path) throws IOException {
+		final int size = schedule.size();
+		// table of time zones, in order of first use
+		final Map<ZoneId, Integer> zones = new HashMap<>();
+		final List<ZoneId> zoneTable = new ArrayList<>();
+		final int[] fromZones = new int[size];
+		final int[] toZones = new int[size];
+		for (int i = 0; i < size; i++) {
+			final TimeSlice slice = schedule.slice(i);
+			fromZones[i] = zoneIndex(slice.getFrom().getZone(), zones, zoneTable);
+			toZones[i] = slice.getTo() == null ? NO_ZONE : zoneIndex(slice.getTo().getZone(), zones, zoneTable);
+		}
+		if (zoneTable.size() > Short.MAX_VALUE) {
+			throw new IllegalArgumentException("Too many time zones: " + zoneTable.size());
+		}
+
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(size);
+			out.writeLong(schedule.getRevision());
+			out.writeInt(zoneTable.size());
+			for (final ZoneId zone : zoneTable) {
+				final byte[] id = zone.getId().getBytes(StandardCharsets.UTF_8);
+				out.writeShort(id.length);
+				out.write(id);
+			}
+			pad(out);
+			long max = Long.MIN_VALUE;
+			for (int i = 0; i < size; i++) {
+				out.writeLong(schedule.from(i));
+			}
+			for (int i = 0; i < size; i++) {
+				out.writeLong(schedule.to(i));
+			}
+			for (int i = 0; i < size; i++) {
+				max = Math.max(max, schedule.to(i));
+				out.writeLong(max);
+			}
+			for (int i = 0; i < size; i++) {
+				out.writeShort(schedule.startMinute(i));
+			}
+			for (int i = 0; i < size; i++) {
+				out.writeShort(schedule.endMinute(i));
+			}
+			for (int i = 0; i < size; i++) {
+				out.writeShort(schedule.weekdayMask(i));
+			}
+			for (int i = 0; i < size; i++) {
+				out.writeShort(fromZones[i]);
+			}
+			for (int i = 0; i < size; i++) {
+				out.writeShort(toZones[i]);
+			}
+		}
+	}
+
+	/**
+	 * Read a compiled schedule from a file, mapping it into memory. The file is not read into the heap, and time slices are
+	 * only created for the results of queries. The file must not be changed while the schedule is in use.
+	 *
+	 * @param path the file to read
+	 * @return the compiled schedule, evaluated from the mapped file.
+	 * @throws IOException if the file cannot be read, is not a schedule file or has an unsupported version.
+	 */
+	public static CompiledSchedule read(final Path path) throws IOException {
+		final ByteBuffer buffer;
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			// the mapping stays valid after closing the channel
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+		return read(buffer);
+	}
+
+	/**
+	 * Read a compiled schedule from a buffer in the binary format, without copying it.
+	 *
+	 * @param buffer the buffer, starting at its position
+	 * @return the compiled schedule, evaluated from the buffer.
+	 * @throws IOException if the buffer does not contain a schedule or has an unsupported version.
+	 */
+	static CompiledSchedule read(final ByteBuffer buffer) throws IOException {
+		final ByteBuffer data = buffer.slice();
+		try {
+			if (data.getInt() != MAGIC) {
+				throw new IOException("Not a schedule file");
+			}
+			final int version = data.getInt();
+			if (version != VERSION) {
+				throw new IOException("Unsupported schedule file version: " + version);
+			}
+			final int size = data.getInt();
+			final long revision = data.getLong();
+			final int zoneCount = data.getInt();
+			if (size < 0 || zoneCount < 0) {
+				throw new IOException("Corrupt schedule file");
+			}
+			final ZoneId[] zones = new ZoneId[zoneCount];
+			for (int i = 0; i < zoneCount; i++) {
+				final byte[] id = new byte[data.getShort() & 0xFFFF];
+				data.get(id);
+				zones[i] = ZoneId.of(new String(id, StandardCharsets.UTF_8));
+			}
+			final int columns = align(data.position());
+			if (data.limit() != columns + (long) size * MappedSchedule.BYTES_PER_SLICE) {
+				throw new IOException("Corrupt schedule file");
+			}
+			return new MappedSchedule(data, columns, size, revision, zones);
+		} catch (final RuntimeException e) {
+			// buffer underflow, invalid zone id
+			throw new IOException("Corrupt schedule file", e);
+		}
+	}
+
+	/**
+	 * Get the index of a time zone in the zone table, adding it if necessary.
+	 *
+	 * @param zone the time zone
+	 * @param zones indexes of the time zones in the table
+	 * @param zoneTable the zone table
+	 * @return index of the time zone.
+	 */
+	private static int zoneIndex(final ZoneId zone, final Map<ZoneId, Integer> zones, final List<ZoneId> zoneTable) {
+		Integer index = zones.get(zone);
+		if (index == null) {
+			index = zoneTable.size();
+			zones.put(zone, index);
+			zoneTable.add(zone);
+		}
+		return index;
+	}
+
+	/**
+	 * Pad the output to a multiple of eight bytes.
+	 *
+	 * @param out the output
+	 * @throws IOException if the output cannot be written.
+	 */
+	private static void pad(final DataOutputStream out) throws IOException {
+		final int padding = align(out.size()) - out.size();
+		for (int i = 0; i < padding; i++) {
+			out.writeByte(0);
+		}
+	}
+
+	/**
+	 * Round a position up to a multiple of eight bytes.
+	 *
+	 * @param position the position
+	 * @return the aligned position.
+	 */
+	private static int align(final int position) {
+		return (position + 7) & ~7;
+	}
+}
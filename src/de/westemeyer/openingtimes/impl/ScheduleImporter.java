@@ -0,0 +1,702 @@
+package de.westemeyer.openingtimes.impl;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.TemporalAccessor;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+import de.westemeyer.openingtimes.api.TimeSlice;
+import de.westemeyer.openingtimes.api.WeekDay;
+
+/**
+ * Streaming importer for time slices in CSV or JSON Lines format, for bulk loads of millions of rows.
+ * <p>
+ * Rows are read one at a time and handed to a consumer before the next row is read, so reading never runs ahead of the
+ * consumer, and no more than a single row is held in memory by the importer. Each row is validated and converted to a time
+ * slice of a {@link TimeSlicePool}, so equal opening times, weekdays and time zones are shared by all imported slices.
+ * {@link #readSchedule(InputStream)} compiles the slices into a single schedule, {@link #readVenues(InputStream, VenueRegistry,
+ * String)} registers a schedule for each venue. Both append each slice to the compiled values of its schedule right away, see
+ * {@link CompiledSchedule.Builder}, without collecting the slices in lists first.
+ * <p>
+ * A row has the fields "venue" (optional, required for venue imports), "from", "to" (empty or null for an open end),
+ * "startTime", "endTime" (both "HH:mm", see {@link TimeOfDay}) and "weekdays" ({@link WeekDay} names). In CSV files, the first
+ * line names the fields, in any order, and weekdays are separated by "|", ";" or spaces. In JSON Lines files, each line holds
+ * an object with these fields, weekdays as array of strings. Dates are ISO dates or date/times, with optional offset and time
+ * zone id, and a space is accepted in place of the "T". Date/times without offset or time zone are in the time zone of the
+ * importer, dates denote its local midnight. Blank lines are skipped.
+ * <p>
+ * An importer counts the rows and measures the time of its last import, see {@link #getRowsPerSecond()}. It must not be used
+ * by several threads at once.
+ *
+ * @author Sebastian Westemeyer
+ *
+ */
+public final class ScheduleImporter {
+	/** Name of the venue field. */
+	public static final String VENUE = "venue";
+	/** Name of the "from" field. */
+	public static final String FROM = "from";
+	/** Name of the "to" field. */
+	public static final String TO = "to";
+	/** Name of the opening time field. */
+	public static final String START_TIME = "startTime";
+	/** Name of the closing time field. */
+	public static final String END_TIME = "endTime";
+	/** Name of the weekdays field. */
+	public static final String WEEKDAYS = "weekdays";
+	/** Names of all fields, by field index. */
+	private static final String[] FIELDS = { VENUE, FROM, TO, START_TIME, END_TIME, WEEKDAYS };
+	/** Index of the venue field. */
+	private static final int VENUE_FIELD = 0;
+	/** Index of the "from" field. */
+	private static final int FROM_FIELD = 1;
+	/** Index of the "to" field. */
+	private static final int TO_FIELD = 2;
+	/** Index of the opening time field. */
+	private static final int START_TIME_FIELD = 3;
+	/** Index of the closing time field. */
+	private static final int END_TIME_FIELD = 4;
+	/** Index of the weekdays field. */
+	private static final int WEEKDAYS_FIELD = 5;
+	/** Length of an ISO date without time. */
+	private static final int DATE_LENGTH = 10;
+	/** Length of an ISO date/time with minutes. */
+	private static final int MINUTES_LENGTH = 16;
+	/** Length of an ISO date/time with seconds. */
+	private static final int SECONDS_LENGTH = 19;
+	/** Length of an offset "+HH:mm". */
+	private static final int OFFSET_LENGTH = 6;
+	/** Nanoseconds per second. */
+	private static final double NANOS_PER_SECOND = 1e9;
+
+	/**
+	 * Supported input formats.
+	 */
+	public enum Format {
+		/** Comma separated values with a header line. */
+		CSV,
+		/** One JSON object per line. */
+		JSON_LINES
+	}
+
+	/** The input format. */
+	private final Format format;
+	/** Time zone of dates without offset or time zone. */
+	private final ZoneId zone;
+	/** Pool for the imported time slices. */
+	private final TimeSlicePool pool;
+	/** Values of the current row, by field index. */
+	private final String[] values = new String[FIELDS.length];
+	/** Weekdays of the current row. */
+	private final EnumSet<WeekDay> weekdays = EnumSet.noneOf(WeekDay.class);
+	/** Number of rows of the last import. */
+	private long rowCount;
+	/** Duration of the last import in nanoseconds. */
+	private long elapsedNanos;
+
+	/**
+	 * Create new importer with a pool of its own.
+	 *
+	 * @param format the input format
+	 * @param zone time zone of dates without offset or time zone
+	 */
+	public ScheduleImporter(final Format format, final ZoneId zone) {
+		this(format, zone, new TimeSlicePool());
+	}
+
+	/**
+	 * Create new importer.
+	 *
+	 * @param format the input format
+	 * @param zone time zone of dates without offset or time zone
+	 * @param pool pool for the imported time slices, to share them with other imports
+	 */
+	public ScheduleImporter(final Format format, final ZoneId zone, final TimeSlicePool pool) {
+		this.format = format;
+		this.zone = zone;
+		this.pool = pool;
+	}
+
+	/**
+	 * Read time slices, passing each one to a consumer before reading the next row. The stream is read up to its end, but not
+	 * closed.
+	 *
+	 * @param in the input
+	 * @param consumer consumer of the venue id, null if the input has none, and the time slice of each row
+	 * @return number of rows.
+	 * @throws IOException if the input cannot be read or a row is invalid, with the line number in the message.
+	 */
+	public long read(final InputStream in, final BiConsumer<String, TimeSlice> consumer) throws IOException {
+		final long start = System.nanoTime();
+		rowCount = 0;
+		final BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+		int[] columns = null;
+		int lineNumber = 0;
+		for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+			lineNumber++;
+			if (line.trim().isEmpty()) {
+				continue;
+			}
+			try {
+				if (format == Format.JSON_LINES) {
+					new JsonLine(line).readObject();
+				} else if (columns == null) {
+					columns = header(line);
+					continue;
+				} else {
+					csvRow(line, columns);
+				}
+				consumer.accept(values[VENUE_FIELD], slice());
+			} catch (final IllegalArgumentException | DateTimeException e) {
+				throw new IOException("Line " + lineNumber + ": " + e.getMessage(), e);
+			}
+			rowCount++;
+		}
+		elapsedNanos = System.nanoTime() - start;
+		return rowCount;
+	}
+
+	/**
+	 * Read time slices and compile them into a single schedule, ignoring any venue ids.
+	 *
+	 * @param in the input
+	 * @return the compiled schedule.
+	 * @throws IOException if the input cannot be read or a row is invalid, with the line number in the message.
+	 */
+	public CompiledSchedule readSchedule(final InputStream in) throws IOException {
+		final long start = System.nanoTime();
+		final CompiledSchedule.Builder builder = new CompiledSchedule.Builder();
+		read(in, (venue, slice) -> builder.add(slice));
+		final CompiledSchedule schedule = builder.build();
+		elapsedNanos = System.nanoTime() - start;
+		return schedule;
+	}
+
+	/**
+	 * Read time slices of many venues and register a compiled schedule for each venue, replacing venues registered with the same
+	 * id. Venues are registered after all rows have been read, so an invalid row leaves the registry unchanged.
+	 *
+	 * @param in the input
+	 * @param registry the registry
+	 * @param region name of the region the venues belong to
+	 * @return number of venues.
+	 * @throws IOException if the input cannot be read or a row is invalid or has no venue id, with the line number in the
+	 *             message.
+	 * @throws IllegalArgumentException if the region is unknown.
+	 */
+	public int readVenues(final InputStream in, final VenueRegistry registry, final String region) throws IOException {
+		final long start = System.nanoTime();
+		final Map<String, CompiledSchedule.Builder> venues = new LinkedHashMap<>();
+		read(in, (venue, slice) -> {
+			if (venue == null || venue.isEmpty()) {
+				throw new IllegalArgumentException("Missing " + VENUE);
+			}
+			venues.computeIfAbsent(venue, id -> new CompiledSchedule.Builder()).add(slice);
+		});
+		for (final Map.Entry<String, CompiledSchedule.Builder> venue : venues.entrySet()) {
+			registry.register(venue.getKey(), region, venue.getValue().build());
+		}
+		elapsedNanos = System.nanoTime() - start;
+		return venues.size();
+	}
+
+	/**
+	 * Returns the number of rows of the last import.
+	 *
+	 * @return the number of rows.
+	 */
+	public long getRowCount() {
+		return rowCount;
+	}
+
+	/**
+	 * Returns the duration of the last import, including compiling the schedules.
+	 *
+	 * @return the duration in nanoseconds.
+	 */
+	public long getElapsedNanos() {
+		return elapsedNanos;
+	}
+
+	/**
+	 * Returns the throughput of the last import.
+	 *
+	 * @return rows per second, or zero if nothing has been imported.
+	 */
+	public double getRowsPerSecond() {
+		return elapsedNanos == 0 ? 0 : rowCount * NANOS_PER_SECOND / elapsedNanos;
+	}
+
+	/**
+	 * Validate the values of the current row and create its time slice.
+	 *
+	 * @return the time slice.
+	 * @throws IllegalArgumentException if a value is missing or invalid.
+	 * @throws DateTimeException if a date is malformed.
+	 */
+	private TimeSlice slice() {
+		final ZonedDateTime from = dateTime(required(FROM_FIELD));
+		final String to = values[TO_FIELD];
+		final ZonedDateTime toDateTime = to == null || to.isEmpty() ? null : dateTime(to);
+		if (toDateTime != null && !from.isBefore(toDateTime)) {
+			throw new IllegalArgumentException("\"" + FROM + "\" has to be before \"" + TO + "\"");
+		}
+		if (weekdays.isEmpty()) {
+			throw new IllegalArgumentException("Missing " + WEEKDAYS);
+		}
+		return pool.create(from, toDateTime, required(START_TIME_FIELD), required(END_TIME_FIELD), weekdays);
+	}
+
+	/**
+	 * Get a value of the current row that must not be empty.
+	 *
+	 * @param field index of the field
+	 * @return the value.
+	 * @throws IllegalArgumentException if the value is missing.
+	 */
+	private String required(final int field) {
+		final String value = values[field];
+		if (value == null || value.isEmpty()) {
+			throw new IllegalArgumentException("Missing " + FIELDS[field]);
+		}
+		return value;
+	}
+
+	/**
+	 * Parse a date or date/time.
+	 *
+	 * @param text the text to parse
+	 * @return the date/time, at local midnight for dates.
+	 * @throws DateTimeException if the text is malformed.
+	 */
+	private ZonedDateTime dateTime(final String text) {
+		final String iso = text.replace(' ', 'T');
+		if (iso.length() == DATE_LENGTH) {
+			return LocalDate.parse(iso).atStartOfDay(zone);
+		}
+		final ZonedDateTime fast = fastDateTime(iso);
+		if (fast != null) {
+			return fast;
+		}
+		final TemporalAccessor parsed = DateTimeFormatter.ISO_DATE_TIME.parseBest(iso, ZonedDateTime::from, LocalDateTime::from);
+		return parsed instanceof ZonedDateTime ? (ZonedDateTime) parsed : ((LocalDateTime) parsed).atZone(zone);
+	}
+
+	/**
+	 * Parse the common layouts "yyyy-MM-ddTHH:mm" and "yyyy-MM-ddTHH:mm:ss", followed by nothing, "Z" or an offset "+HH:mm",
+	 * without the overhead of a {@link DateTimeFormatter}.
+	 *
+	 * @param iso the text to parse
+	 * @return the date/time, or null if the text has another layout.
+	 */
+	private ZonedDateTime fastDateTime(final String iso) {
+		if (iso.length() < MINUTES_LENGTH || iso.charAt(4) != '-' || iso.charAt(7) != '-' || iso.charAt(10) != 'T'
+				|| iso.charAt(13) != ':') {
+			return null;
+		}
+		int end = MINUTES_LENGTH;
+		int second = 0;
+		if (iso.length() >= SECONDS_LENGTH && iso.charAt(MINUTES_LENGTH) == ':') {
+			second = number(iso, 17, 2);
+			end = SECONDS_LENGTH;
+		}
+		final int year = number(iso, 0, 4);
+		final int month = number(iso, 5, 2);
+		final int day = number(iso, 8, 2);
+		final int hour = number(iso, 11, 2);
+		final int minute = number(iso, 14, 2);
+		if ((year | month | day | hour | minute | second) < 0) {
+			return null;
+		}
+		final String offset = iso.substring(end);
+		final ZoneId dateZone;
+		if (offset.isEmpty()) {
+			dateZone = zone;
+		} else if (offset.equals("Z")) {
+			dateZone = ZoneOffset.UTC;
+		} else if (offset.length() == OFFSET_LENGTH && (offset.charAt(0) == '+' || offset.charAt(0) == '-')) {
+			dateZone = ZoneOffset.of(offset);
+		} else {
+			return null;
+		}
+		return ZonedDateTime.of(year, month, day, hour, minute, second, 0, dateZone);
+	}
+
+	/**
+	 * Parse a fixed number of decimal digits.
+	 *
+	 * @param text the text
+	 * @param start position of the first digit
+	 * @param length number of digits
+	 * @return the number, or -1 if not all characters are digits.
+	 */
+	private static int number(final String text, final int start, final int length) {
+		int number = 0;
+		for (int i = start; i < start + length; i++) {
+			final char c = text.charAt(i);
+			if (c < '0' || c > '9') {
+				return -1;
+			}
+			number = number * 10 + c - '0';
+		}
+		return number;
+	}
+
+	/**
+	 * Add a weekday to the current row.
+	 *
+	 * @param name name of the weekday
+	 * @throws IllegalArgumentException if there is no weekday with this name.
+	 */
+	private void addWeekday(final String name) {
+		try {
+			weekdays.add(WeekDay.valueOf(name.toUpperCase(Locale.ROOT)));
+		} catch (final IllegalArgumentException e) {
+			throw new IllegalArgumentException("Invalid weekday: " + name, e);
+		}
+	}
+
+	/**
+	 * Clear the values of the current row.
+	 */
+	private void clearRow() {
+		Arrays.fill(values, null);
+		weekdays.clear();
+	}
+
+	/**
+	 * Parse the header line of a CSV file.
+	 *
+	 * @param line the header line
+	 * @return field index of each column, -1 for unknown columns.
+	 * @throws IllegalArgumentException if a required column is missing.
+	 */
+	private static int[] header(final String line) {
+		final List<String> names = csvCells(line);
+		final int[] columns = new int[names.size()];
+		final boolean[] present = new boolean[FIELDS.length];
+		for (int i = 0; i < columns.length; i++) {
+			columns[i] = field(names.get(i).trim());
+			if (columns[i] >= 0) {
+				present[columns[i]] = true;
+			}
+		}
+		for (int field = FROM_FIELD; field < FIELDS.length; field++) {
+			if (!present[field] && field != TO_FIELD) {
+				throw new IllegalArgumentException("Missing column: " + FIELDS[field]);
+			}
+		}
+		return columns;
+	}
+
+	/**
+	 * Parse a CSV line into the values of the current row.
+	 *
+	 * @param line the line
+	 * @param columns field index of each column
+	 */
+	private void csvRow(final String line, final int[] columns) {
+		clearRow();
+		final List<String> cells = csvCells(line);
+		for (int i = 0; i < Math.min(columns.length, cells.size()); i++) {
+			if (columns[i] < 0) {
+				continue;
+			}
+			final String cell = cells.get(i).trim();
+			if (columns[i] == WEEKDAYS_FIELD) {
+				for (final String name : cell.split("[|; ]+")) {
+					if (!name.isEmpty()) {
+						addWeekday(name);
+					}
+				}
+			} else {
+				values[columns[i]] = cell;
+			}
+		}
+	}
+
+	/**
+	 * Split a CSV line into cells. Cells may be quoted with double quotes, a double quote within a quoted cell is written twice.
+	 *
+	 * @param line the line
+	 * @return the cells.
+	 */
+	private static List<String> csvCells(final String line) {
+		final List<String> cells = new ArrayList<>();
+		final StringBuilder cell = new StringBuilder();
+		boolean quoted = false;
+		for (int i = 0; i < line.length(); i++) {
+			final char c = line.charAt(i);
+			if (quoted) {
+				if (c != '"') {
+					cell.append(c);
+				} else if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+					cell.append(c);
+					i++;
+				} else {
+					quoted = false;
+				}
+			} else if (c == '"') {
+				quoted = true;
+			} else if (c == ',') {
+				cells.add(cell.toString());
+				cell.setLength(0);
+			} else {
+				cell.append(c);
+			}
+		}
+		cells.add(cell.toString());
+		return cells;
+	}
+
+	/**
+	 * Get the index of a field by name.
+	 *
+	 * @param name name of the field
+	 * @return index of the field, or -1 for unknown fields.
+	 */
+	private static int field(final String name) {
+		for (int field = 0; field < FIELDS.length; field++) {
+			if (FIELDS[field].equalsIgnoreCase(name)) {
+				return field;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Parser of a single line holding a flat JSON object, filling the values of the current row. Unknown fields are skipped.
+	 */
+	private final class JsonLine {
+		/** The line. */
+		private final String line;
+		/** Current position. */
+		private int position;
+
+		/**
+		 * Create new parser.
+		 *
+		 * @param line the line
+		 */
+		JsonLine(final String line) {
+			this.line = line;
+		}
+
+		/**
+		 * Parse the object into the values of the current row.
+		 *
+		 * @throws IllegalArgumentException if the line is no valid JSON object or a field has the wrong type.
+		 */
+		void readObject() {
+			clearRow();
+			expect('{');
+			if (peek() == '}') {
+				position++;
+			} else {
+				do {
+					final int field = field(readString());
+					expect(':');
+					if (field == WEEKDAYS_FIELD) {
+						readWeekdays();
+					} else if (field >= 0) {
+						values[field] = readValue();
+					} else {
+						skipValue();
+					}
+				} while (next(',', '}') == ',');
+			}
+			if (peek() != 0) {
+				throw invalid();
+			}
+		}
+
+		/**
+		 * Parse an array of weekday names.
+		 */
+		private void readWeekdays() {
+			expect('[');
+			if (peek() == ']') {
+				position++;
+				return;
+			}
+			do {
+				addWeekday(readString());
+			} while (next(',', ']') == ',');
+		}
+
+		/**
+		 * Parse a string or null value.
+		 *
+		 * @return the value, null for null.
+		 */
+		private String readValue() {
+			if (peek() == 'n') {
+				literal("null");
+				return null;
+			}
+			return readString();
+		}
+
+		/**
+		 * Skip any value.
+		 */
+		private void skipValue() {
+			final char c = peek();
+			if (c == '"') {
+				readString();
+			} else if (c == '[' || c == '{') {
+				position++;
+				if (peek() == (c == '[' ? ']' : '}')) {
+					position++;
+					return;
+				}
+				do {
+					if (c == '{') {
+						readString();
+						expect(':');
+					}
+					skipValue();
+				} while (next(',', c == '[' ? ']' : '}') == ',');
+			} else {
+				// number, boolean or null
+				final int start = position;
+				while (position < line.length() && "{}[],: \t\"".indexOf(line.charAt(position)) < 0) {
+					position++;
+				}
+				if (position == start) {
+					throw invalid();
+				}
+			}
+		}
+
+		/**
+		 * Parse a string.
+		 *
+		 * @return the string.
+		 */
+		private String readString() {
+			expect('"');
+			final StringBuilder builder = new StringBuilder();
+			while (position < line.length()) {
+				final char c = line.charAt(position++);
+				if (c == '"') {
+					return builder.toString();
+				}
+				if (c != '\\') {
+					builder.append(c);
+				} else if (position < line.length()) {
+					final char escaped = line.charAt(position++);
+					switch (escaped) {
+					case 'b':
+						builder.append('\b');
+						break;
+					case 'f':
+						builder.append('\f');
+						break;
+					case 'n':
+						builder.append('\n');
+						break;
+					case 'r':
+						builder.append('\r');
+						break;
+					case 't':
+						builder.append('\t');
+						break;
+					case 'u':
+						if (position + 4 > line.length()) {
+							throw invalid();
+						}
+						try {
+							builder.append((char) Integer.parseInt(line.substring(position, position + 4), 16));
+						} catch (final NumberFormatException e) {
+							throw invalid();
+						}
+						position += 4;
+						break;
+					default:
+						builder.append(escaped);
+					}
+				}
+			}
+			throw invalid();
+		}
+
+		/**
+		 * Expect a literal.
+		 *
+		 * @param literal the literal
+		 */
+		private void literal(final String literal) {
+			if (!line.startsWith(literal, position)) {
+				throw invalid();
+			}
+			position += literal.length();
+		}
+
+		/**
+		 * Expect a character, skipping whitespace.
+		 *
+		 * @param expected the expected character
+		 */
+		private void expect(final char expected) {
+			if (peek() != expected) {
+				throw invalid();
+			}
+			position++;
+		}
+
+		/**
+		 * Expect one of two characters, skipping whitespace.
+		 *
+		 * @param first the first character
+		 * @param second the second character
+		 * @return the character found.
+		 */
+		private char next(final char first, final char second) {
+			final char c = peek();
+			if (c != first && c != second) {
+				throw invalid();
+			}
+			position++;
+			return c;
+		}
+
+		/**
+		 * Skip whitespace and return the next character without consuming it.
+		 *
+		 * @return the next character, 0 at the end of the line.
+		 */
+		private char peek() {
+			while (position < line.length() && Character.isWhitespace(line.charAt(position))) {
+				position++;
+			}
+			return position < line.length() ? line.charAt(position) : 0;
+		}
+
+		/**
+		 * Create the exception for invalid JSON.
+		 *
+		 * @return the exception.
+		 */
+		private IllegalArgumentException invalid() {
+			return new IllegalArgumentException("Invalid JSON at column " + (position + 1));
+		}
+	}
+}
@@ -0,0 +1,139 @@
+package de.westemeyer.openingtimes.impl;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import de.westemeyer.openingtimes.api.TimeSlice;
+import de.westemeyer.openingtimes.api.TimeSlicesCollector;
+
+/**
+ * Mutable set of time slices, published as immutable, versioned {@link CompiledSchedule} snapshots.
+ * <p>
+ * The current snapshot is held by an atomic reference. Readers take the snapshot without locking, so a query always sees a
+ * consistent set of time slices, even while they are being edited. Writers compile each change into a new snapshot with the
+ * next revision and publish it with a compare-and-set, retrying if another writer has published first. Only the changed slices
+ * are compiled, see {@link CompiledSchedule}. Time slices are compared by identity, so edit a slice by replacing it with a new
+ * instance, never in place.
+ * <p>
+ * Pass the store to {@link OpeningTimes} to evaluate its current snapshot. As {@link #getRevision()} changes with every
+ * snapshot, an {@link OpenTypeCache} or {@link TransitionTimeline} on top of it drops results as soon as the slices change.
+ *
+ * @author Sebastian Westemeyer
+ *
+ */
+public class ScheduleStore implements TimeSlicesCollector {
+	/** The current snapshot. */
+	private final AtomicReference<CompiledSchedule> snapshot;
+
+	/**
+	 * Create new, empty store.
+	 */
+	public ScheduleStore() {
+		this(Collections.<TimeSlice> emptyList());
+	}
+
+	/**
+	 * Create new store with initial time slices.
+	 *
+	 * @param timeSlices List of time slices.
+	 * @throws IllegalArgumentException if a start or end time is malformed.
+	 */
+	public ScheduleStore(final List<TimeSlice> timeSlices) {
+		this.snapshot = new AtomicReference<>(new CompiledSchedule(timeSlices));
+	}
+
+	/**
+	 * Get the current snapshot.
+	 *
+	 * @return the current snapshot.
+	 */
+	public CompiledSchedule snapshot() {
+		return snapshot.get();
+	}
+
+	@Override
+	public List<TimeSlice> getTimeSlices() {
+		return snapshot.get().getTimeSlices();
+	}
+
+	/**
+	 * Provides the revision of the current snapshot, counting the published changes.
+	 *
+	 * @return the revision of the time slices.
+	 */
+	@Override
+	public long getRevision() {
+		return snapshot.get().getRevision();
+	}
+
+	/**
+	 * Add a time slice.
+	 *
+	 * @param slice the slice to add
+	 * @throws IllegalArgumentException if a start or end time is malformed.
+	 */
+	public void add(final TimeSlice slice) {
+		update(Collections.<TimeSlice> emptyList(), Collections.singletonList(slice));
+	}
+
+	/**
+	 * Remove a time slice.
+	 *
+	 * @param slice the slice to remove
+	 * @return whether the slice has been contained in the store.
+	 */
+	public boolean remove(final TimeSlice slice) {
+		return replace(slice, Collections.<TimeSlice> emptyList());
+	}
+
+	/**
+	 * Replace a time slice by an edited copy.
+	 *
+	 * @param slice the slice to replace
+	 * @param replacement the edited slice
+	 * @return whether the slice has been contained in the store, the replacement is only added if so.
+	 * @throws IllegalArgumentException if a start or end time of the replacement is malformed.
+	 */
+	public boolean replace(final TimeSlice slice, final TimeSlice replacement) {
+		return replace(slice, Collections.singletonList(replacement));
+	}
+
+	/**
+	 * Remove and add time slices in a single change, so that readers see either all or none of them.
+	 *
+	 * @param removed slices to remove, slices not contained in the store are ignored
+	 * @param added slices to add
+	 * @return the published snapshot.
+	 * @throws IllegalArgumentException if a start or end time of an added slice is malformed.
+	 */
+	public CompiledSchedule update(final Collection<? extends TimeSlice> removed, final Collection<? extends TimeSlice> added) {
+		while (true) {
+			final CompiledSchedule current = snapshot.get();
+			final CompiledSchedule next = current.update(removed, added);
+			if (next == current || snapshot.compareAndSet(current, next)) {
+				return next;
+			}
+		}
+	}
+
+	/**
+	 * Replace a time slice by any number of slices, if it is contained in the store.
+	 *
+	 * @param slice the slice to replace
+	 * @param replacements the slices to add
+	 * @return whether the slice has been contained in the store.
+	 */
+	private boolean replace(final TimeSlice slice, final List<TimeSlice> replacements) {
+		while (true) {
+			final CompiledSchedule current = snapshot.get();
+			if (current.indexOf(slice) < 0) {
+				return false;
+			}
+			if (snapshot.compareAndSet(current, current.update(Collections.singletonList(slice), replacements))) {
+				return true;
+			}
+		}
+	}
+}
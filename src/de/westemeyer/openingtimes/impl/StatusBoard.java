@@ -0,0 +1,301 @@
+package de.westemeyer.openingtimes.impl;
+
+import java.time.Clock;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import de.westemeyer.openingtimes.api.OpenStatus;
+
+/**
+ * Board of the current status of all venues of a {@link VenueRegistry}, for readers that need the status of every venue
+ * without evaluating any time slices.
+ * <p>
+ * The board holds two {@link Snapshot}s of primitive arrays: the status of each venue and the instant until which it holds.
+ * A refresh evaluates all venues at the instant of the clock into the spare snapshot and then swaps it in with a single
+ * volatile write. Readers take the current snapshot and read its arrays, they never block and never create objects. Each
+ * venue keeps its own {@link CompactOpenType}, so refreshing venues whose result stays on the same day costs little more
+ * than a few array reads.
+ * <p>
+ * The spare snapshot is filled again by the refresh after next. Readers should take a snapshot for a single pass over the
+ * venues, not keep it across refreshes. Refresh the board with {@link #refresh()}, or periodically with
+ * {@link #start(ScheduledExecutorService, long)}. Venues registered or removed in the registry appear on the board with the
+ * next refresh.
+ *
+ * @author Sebastian Westemeyer
+ *
+ */
+public class StatusBoard implements AutoCloseable {
+	/** All opening statuses, by code. */
+	private static final OpenStatus[] STATUSES = OpenStatus.values();
+
+	/** The venue registry. */
+	private final VenueRegistry registry;
+	/** The clock. */
+	private final Clock clock;
+	/** The snapshot readers see. */
+	private volatile Snapshot current;
+	/** The snapshot to fill with the next refresh, null if none. */
+	private Snapshot spare;
+	/** Venues of the last refresh. */
+	private VenueRegistry.Venue[] venues;
+	/** Results of the venues of the last refresh, by index. */
+	private CompactOpenType[] results;
+	/** The periodic refresh, null if not started. */
+	private ScheduledFuture<?> refresher;
+
+	/**
+	 * Create new board, filled with the status of all venues currently registered.
+	 *
+	 * @param registry the venue registry
+	 * @param clock clock providing the instant and time zone to evaluate the venues at
+	 */
+	public StatusBoard(final VenueRegistry registry, final Clock clock) {
+		this.registry = registry;
+		this.clock = clock;
+		refresh();
+	}
+
+	/**
+	 * Get the current snapshot, to read the status of many venues consistently.
+	 *
+	 * @return the current snapshot.
+	 */
+	public Snapshot getSnapshot() {
+		return current;
+	}
+
+	/**
+	 * Get the status of a venue from the current snapshot.
+	 *
+	 * @param id id of the venue
+	 * @return the status, or null if the venue has not been on the board at the last refresh.
+	 */
+	public OpenStatus getStatus(final String id) {
+		return current.getStatus(id);
+	}
+
+	/**
+	 * Get the number of venues with a status from the current snapshot.
+	 *
+	 * @param status the status
+	 * @return number of venues with the status.
+	 */
+	public int getCount(final OpenStatus status) {
+		return current.getCount(status);
+	}
+
+	/**
+	 * Evaluate all venues at the current instant of the clock and swap in the results.
+	 */
+	public synchronized void refresh() {
+		final long started = System.nanoTime();
+		final long now = clock.millis();
+		final ZoneId zone = clock.getZone();
+		final VenueRegistry.Venue[] all = registry.venues();
+		if (all != venues) {
+			prepare(all);
+		}
+		final Snapshot target = spare;
+		final int[] counts = target.counts;
+		Arrays.fill(counts, 0);
+		long earliest = Long.MAX_VALUE;
+		for (int i = 0; i < all.length; i++) {
+			final CompactOpenType result = all[i].openingTimes.createOpenType(now, zone, results[i]);
+			final int code = result.getStatus().ordinal();
+			target.statuses[i] = (byte) code;
+			target.transitions[i] = result.getValidUntilMillis();
+			counts[code]++;
+			earliest = Math.min(earliest, result.getValidUntilMillis());
+		}
+		target.earliestTransition = all.length == 0 ? CompactOpenType.NONE : earliest;
+		target.refreshedAt = now;
+		target.refreshNanos = System.nanoTime() - started;
+		spare = current != null && current.ids == target.ids ? current : null;
+		current = target;
+		if (spare == null) {
+			spare = new Snapshot(target.ids, target.indexes);
+		}
+	}
+
+	/**
+	 * Start refreshing the board periodically on an executor.
+	 *
+	 * @param executor the executor
+	 * @param periodMillis time between the end of a refresh and the start of the next one in milliseconds
+	 * @throws IllegalArgumentException if the period is not positive.
+	 */
+	public synchronized void start(final ScheduledExecutorService executor, final long periodMillis) {
+		if (periodMillis <= 0) {
+			throw new IllegalArgumentException("Period has to be positive");
+		}
+		close();
+		refresher = executor.scheduleWithFixedDelay(this::refresh, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Stop refreshing the board periodically. The executor itself is not shut down.
+	 */
+	@Override
+	public synchronized void close() {
+		if (refresher != null) {
+			refresher.cancel(false);
+			refresher = null;
+		}
+	}
+
+	/**
+	 * Prepare the results and the spare snapshot for a new set of venues.
+	 *
+	 * @param all the registered venues
+	 */
+	private void prepare(final VenueRegistry.Venue[] all) {
+		final String[] ids = new String[all.length];
+		final Map<String, Integer> indexes = new HashMap<>();
+		results = new CompactOpenType[all.length];
+		for (int i = 0; i < all.length; i++) {
+			ids[i] = all[i].id;
+			indexes.put(ids[i], i);
+			results[i] = new CompactOpenType();
+		}
+		venues = all;
+		spare = new Snapshot(ids, indexes);
+	}
+
+	/**
+	 * The status of all venues at a single refresh. Venues are indexed in order of registration.
+	 */
+	public static final class Snapshot {
+		/** Ids of the venues, by index. */
+		private final String[] ids;
+		/** Indexes of the venues, by id. */
+		private final Map<String, Integer> indexes;
+		/** Status code of each venue, the ordinal of its status. */
+		private final byte[] statuses;
+		/** Instant until which the status of each venue holds in epoch milliseconds. */
+		private final long[] transitions;
+		/** Number of venues, by status code. */
+		private final int[] counts = new int[STATUSES.length];
+		/** Earliest instant at which the status of any venue may change in epoch milliseconds. */
+		private long earliestTransition = CompactOpenType.NONE;
+		/** Instant of the refresh in epoch milliseconds. */
+		private long refreshedAt;
+		/** Duration of the refresh in nanoseconds. */
+		private long refreshNanos;
+
+		/**
+		 * Create new, empty snapshot.
+		 *
+		 * @param ids ids of the venues, by index
+		 * @param indexes indexes of the venues, by id
+		 */
+		Snapshot(final String[] ids, final Map<String, Integer> indexes) {
+			this.ids = ids;
+			this.indexes = indexes;
+			this.statuses = new byte[ids.length];
+			this.transitions = new long[ids.length];
+		}
+
+		/**
+		 * Get the number of venues.
+		 *
+		 * @return number of venues.
+		 */
+		public int size() {
+			return ids.length;
+		}
+
+		/**
+		 * Get the id of a venue.
+		 *
+		 * @param index index of the venue
+		 * @return the id.
+		 */
+		public String getId(final int index) {
+			return ids[index];
+		}
+
+		/**
+		 * Get the index of a venue.
+		 *
+		 * @param id id of the venue
+		 * @return the index, or -1 if the venue is not on the board.
+		 */
+		public int indexOf(final String id) {
+			final Integer index = indexes.get(id);
+			return index == null ? -1 : index;
+		}
+
+		/**
+		 * Get the status of a venue.
+		 *
+		 * @param index index of the venue
+		 * @return the status.
+		 */
+		public OpenStatus getStatus(final int index) {
+			return STATUSES[statuses[index]];
+		}
+
+		/**
+		 * Get the status of a venue.
+		 *
+		 * @param id id of the venue
+		 * @return the status, or null if the venue is not on the board.
+		 */
+		public OpenStatus getStatus(final String id) {
+			final int index = indexOf(id);
+			return index < 0 ? null : getStatus(index);
+		}
+
+		/**
+		 * Get the instant until which the status of a venue holds, see {@link CompactOpenType#getValidUntilMillis()}.
+		 *
+		 * @param index index of the venue
+		 * @return the instant in epoch milliseconds.
+		 */
+		public long getNextTransition(final int index) {
+			return transitions[index];
+		}
+
+		/**
+		 * Get the earliest instant at which the status of any venue may change, for example to refresh the board right then.
+		 *
+		 * @return the instant in epoch milliseconds, or {@link CompactOpenType#NONE} if there are no venues.
+		 */
+		public long getEarliestTransition() {
+			return earliestTransition;
+		}
+
+		/**
+		 * Get the number of venues with a status.
+		 *
+		 * @param status the status
+		 * @return number of venues with the status.
+		 */
+		public int getCount(final OpenStatus status) {
+			return counts[status.ordinal()];
+		}
+
+		/**
+		 * Get the instant of the refresh, the instant at which all venues have been evaluated.
+		 *
+		 * @return the instant in epoch milliseconds.
+		 */
+		public long getRefreshedAt() {
+			return refreshedAt;
+		}
+
+		/**
+		 * Get the duration of the refresh.
+		 *
+		 * @return the duration in nanoseconds.
+		 */
+		public long getRefreshNanos() {
+			return refreshNanos;
+		}
+	}
+}
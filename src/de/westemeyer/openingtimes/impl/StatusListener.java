@@ -0,0 +1,18 @@
+package de.westemeyer.openingtimes.impl;
+
+/**
+ * Listener for changes of the opening types of venues, see {@link StatusScheduler}.
+ *
+ * @author Sebastian Westemeyer
+ *
+ */
+public interface StatusListener {
+	/**
+	 * Called when the opening type of a venue has changed, for example when it opens or closes.
+	 *
+	 * @param id id of the venue
+	 * @param previous the previous opening type
+	 * @param current the new opening type, checked at the instant of the change
+	 */
+	void statusChanged(String id, OpenType previous, OpenType current);
+}
@@ -0,0 +1,369 @@
+package de.westemeyer.openingtimes.impl;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scheduler pushing changes of the opening types of many venues to listeners, instead of polling every venue.
+ * <p>
+ * Every registered venue is checked once at registration. Its next check is due when its result may change, at
+ * {@link OpenType#getValidUntil()}. The venues are kept in a priority queue by the instant of their next check, so
+ * {@link #runDue()} only checks the venues that are due, in order of their instants, and reschedules each of them with its new
+ * result. Listeners are called when the result of a venue has changed: its status, time slice, opening or next opening. As
+ * results hold until the next day at most, each venue is checked at least once a day, so the work scales with the number of
+ * changes and days, not with the number of venues times a polling rate.
+ * <p>
+ * The time is taken from an injectable {@link Clock}. Call {@link #runDue()} to check the due venues, for example from a test
+ * with a fixed clock, or {@link #start(ScheduledExecutorService)} to run it whenever the next venue is due. Checks use the
+ * time slices at the instant of the check, call {@link #refresh(String)} to check a venue right after changing its slices.
+ * <p>
+ * Methods may be called from different threads. Listeners are called without holding the lock of the scheduler, by the thread
+ * running {@link #runDue()}.
+ *
+ * @author Sebastian Westemeyer
+ *
+ */
+public class StatusScheduler implements AutoCloseable {
+	/** The clock. */
+	private final Clock clock;
+	/** Registered listeners. */
+	private final List<StatusListener> listeners = new CopyOnWriteArrayList<>();
+	/** Registered venues, by id. */
+	private final Map<String, Venue> venues = new HashMap<>();
+	/** Registered venues, by the instant of their next check. */
+	private final PriorityQueue<Venue> queue = new PriorityQueue<>(
+			(first, second) -> Long.compare(first.due, second.due));
+	/** Executor running the checks, null if not started. */
+	private ScheduledExecutorService executor;
+	/** The next run on the executor, null if none. */
+	private ScheduledFuture<?> nextRun;
+	/** Instant of the next run on the executor in epoch seconds. */
+	private long nextRunDue;
+	/** Number of the last run scheduled on the executor. */
+	private long scheduledRuns;
+
+	/**
+	 * Create new scheduler.
+	 *
+	 * @param clock clock providing the current instant, and the time zone of venues registered without one
+	 */
+	public StatusScheduler(final Clock clock) {
+		this.clock = clock;
+	}
+
+	/**
+	 * Add a listener.
+	 *
+	 * @param listener the listener
+	 */
+	public void addListener(final StatusListener listener) {
+		listeners.add(listener);
+	}
+
+	/**
+	 * Remove a listener.
+	 *
+	 * @param listener the listener
+	 */
+	public void removeListener(final StatusListener listener) {
+		listeners.remove(listener);
+	}
+
+	/**
+	 * Register a venue in the time zone of the clock, replacing any venue registered with the same id.
+	 *
+	 * @param id unique id of the venue
+	 * @param openingTimes opening times of the venue
+	 * @return the current opening type of the venue.
+	 */
+	public OpenType register(final String id, final OpeningTimes openingTimes) {
+		return register(id, openingTimes, clock.getZone());
+	}
+
+	/**
+	 * Register a venue, replacing any venue registered with the same id.
+	 *
+	 * @param id unique id of the venue
+	 * @param openingTimes opening times of the venue
+	 * @param zone time zone to check the venue in
+	 * @return the current opening type of the venue.
+	 */
+	public synchronized OpenType register(final String id, final OpeningTimes openingTimes, final ZoneId zone) {
+		final Venue previous = venues.remove(id);
+		if (previous != null) {
+			queue.remove(previous);
+		}
+		final Venue venue = new Venue(id, openingTimes, zone);
+		venue.check(clock.instant().getEpochSecond());
+		venues.put(id, venue);
+		queue.add(venue);
+		scheduleNextRun();
+		return venue.current;
+	}
+
+	/**
+	 * Remove a venue.
+	 *
+	 * @param id id of the venue
+	 * @return whether the venue has been registered.
+	 */
+	public synchronized boolean unregister(final String id) {
+		final Venue venue = venues.remove(id);
+		if (venue == null) {
+			return false;
+		}
+		queue.remove(venue);
+		return true;
+	}
+
+	/**
+	 * Get the current opening type of a venue, as of its last check.
+	 *
+	 * @param id id of the venue
+	 * @return the opening type, or null if there is no venue with this id.
+	 */
+	public synchronized OpenType get(final String id) {
+		final Venue venue = venues.get(id);
+		return venue == null ? null : venue.current;
+	}
+
+	/**
+	 * Get the number of registered venues.
+	 *
+	 * @return number of venues.
+	 */
+	public synchronized int size() {
+		return venues.size();
+	}
+
+	/**
+	 * Get the instant of the next due check.
+	 *
+	 * @return the instant, or null if no venue is registered.
+	 */
+	public synchronized Instant getNextDue() {
+		final Venue next = queue.peek();
+		return next == null ? null : Instant.ofEpochSecond(next.due);
+	}
+
+	/**
+	 * Check a venue now, for example after changing its time slices, notifying the listeners if its result has changed.
+	 *
+	 * @param id id of the venue
+	 * @return whether the venue has been registered.
+	 */
+	public boolean refresh(final String id) {
+		final Change change;
+		synchronized (this) {
+			final Venue venue = venues.get(id);
+			if (venue == null) {
+				return false;
+			}
+			queue.remove(venue);
+			final OpenType previous = venue.current;
+			venue.check(clock.instant().getEpochSecond());
+			queue.add(venue);
+			scheduleNextRun();
+			change = Change.of(venue, previous);
+		}
+		if (change != null) {
+			notifyListeners(change);
+		}
+		return true;
+	}
+
+	/**
+	 * Check all venues that are due, in order of their instants, notifying the listeners of each change. A venue due more than
+	 * once up to now is checked at each of its instants, so listeners see all changes in order.
+	 *
+	 * @return number of changes.
+	 */
+	public int runDue() {
+		final List<Change> changes = new ArrayList<>();
+		synchronized (this) {
+			final long now = clock.instant().getEpochSecond();
+			while (!queue.isEmpty() && queue.peek().due <= now) {
+				final Venue venue = queue.poll();
+				final OpenType previous = venue.current;
+				venue.check(venue.due);
+				queue.add(venue);
+				final Change change = Change.of(venue, previous);
+				if (change != null) {
+					changes.add(change);
+				}
+			}
+			scheduleNextRun();
+		}
+		for (final Change change : changes) {
+			notifyListeners(change);
+		}
+		return changes.size();
+	}
+
+	/**
+	 * Start running {@link #runDue()} on an executor whenever the next venue is due, as measured by the clock.
+	 *
+	 * @param executor the executor
+	 */
+	public synchronized void start(final ScheduledExecutorService executor) {
+		cancelNextRun();
+		this.executor = executor;
+		scheduleNextRun();
+	}
+
+	/**
+	 * Stop running checks on the executor. The executor itself is not shut down.
+	 */
+	@Override
+	public synchronized void close() {
+		cancelNextRun();
+		executor = null;
+	}
+
+	/**
+	 * Schedule a run on the executor for the next due venue, unless a run is scheduled for that instant or earlier.
+	 */
+	private void scheduleNextRun() {
+		final Venue next = queue.peek();
+		if (executor == null || next == null || (nextRun != null && !nextRun.isDone() && nextRunDue <= next.due)) {
+			return;
+		}
+		cancelNextRun();
+		final long delay = Math.max(0, Duration.between(clock.instant(), Instant.ofEpochSecond(next.due)).toMillis());
+		nextRunDue = next.due;
+		final long run = ++scheduledRuns;
+		nextRun = executor.schedule(() -> runScheduled(run), delay, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Run {@link #runDue()} on the executor. The run forgets itself as the next run first, so that it schedules its successor.
+	 *
+	 * @param run number of the run
+	 */
+	private void runScheduled(final long run) {
+		synchronized (this) {
+			// a run replaced in the meantime leaves its successor alone
+			if (run == scheduledRuns) {
+				nextRun = null;
+			}
+		}
+		runDue();
+	}
+
+	/**
+	 * Cancel the next run on the executor, if any.
+	 */
+	private void cancelNextRun() {
+		if (nextRun != null) {
+			nextRun.cancel(false);
+			nextRun = null;
+		}
+	}
+
+	/**
+	 * Notify all listeners of a change.
+	 *
+	 * @param change the change
+	 */
+	private void notifyListeners(final Change change) {
+		for (final StatusListener listener : listeners) {
+			listener.statusChanged(change.id, change.previous, change.current);
+		}
+	}
+
+	/**
+	 * A registered venue.
+	 */
+	private static final class Venue {
+		/** Unique id of the venue. */
+		final String id;
+		/** Opening times of the venue. */
+		final OpeningTimes openingTimes;
+		/** Time zone to check the venue in. */
+		final ZoneId zone;
+		/** Result of the last check. */
+		OpenType current;
+		/** Instant of the next check in epoch seconds. */
+		long due;
+
+		/**
+		 * Create new venue.
+		 *
+		 * @param id unique id of the venue
+		 * @param openingTimes opening times of the venue
+		 * @param zone time zone to check the venue in
+		 */
+		Venue(final String id, final OpeningTimes openingTimes, final ZoneId zone) {
+			this.id = id;
+			this.openingTimes = openingTimes;
+			this.zone = zone;
+		}
+
+		/**
+		 * Check the venue and set the instant of the next check, at the end of the validity of the result.
+		 *
+		 * @param epochSecond the instant to check in epoch seconds
+		 */
+		void check(final long epochSecond) {
+			current = openingTimes.createOpenType(ZonedDateTime.ofInstant(Instant.ofEpochSecond(epochSecond), zone));
+			final Instant validUntil = current.getValidUntil();
+			// results without validity are checked again a minute later
+			due = validUntil == null ? epochSecond + 60 : Math.max(validUntil.getEpochSecond(), epochSecond + 1);
+		}
+	}
+
+	/**
+	 * A change of the result of a venue.
+	 */
+	private static final class Change {
+		/** Id of the venue. */
+		final String id;
+		/** The previous result. */
+		final OpenType previous;
+		/** The new result. */
+		final OpenType current;
+
+		/**
+		 * Create new change.
+		 *
+		 * @param id id of the venue
+		 * @param previous the previous result
+		 * @param current the new result
+		 */
+		private Change(final String id, final OpenType previous, final OpenType current) {
+			this.id = id;
+			this.previous = previous;
+			this.current = current;
+		}
+
+		/**
+		 * Get the change of a venue after a check.
+		 *
+		 * @param venue the venue
+		 * @param previous result before the check
+		 * @return the change, or null if the result is the same.
+		 */
+		static Change of(final Venue venue, final OpenType previous) {
+			final OpenType current = venue.current;
+			if (previous.getStatus() == current.getStatus() && previous.getTimeSlice() == current.getTimeSlice()
+					&& Objects.equals(previous.getDateTime(), current.getDateTime())
+					&& Objects.equals(previous.getNextOpening(), current.getNextOpening())) {
+				return null;
+			}
+			return new Change(venue.id, previous, current);
+		}
+	}
+}
@@ -0,0 +1,64 @@
+package de.westemeyer.openingtimes.impl;
+
+/**
+ * Conversion of "HH:mm" time strings to minutes of the day and back. The value "24:00" is accepted to denote the end of a
+ * day.
+ *
+ * @author Sebastian Westemeyer
+ *
+ */
+public final class TimeOfDay {
+	/** Minutes of a full day, the value of "24:00". */
+	public static final int END_OF_DAY = 24 * 60;
+
+	/** Utility class, no instances. */
+	private TimeOfDay() {
+	}
+
+	/**
+	 * Parse a time string in format "HH:mm" (00:00 to 24:00) to minutes of the day.
+	 *
+	 * @param time time string
+	 * @return minutes of the day, from 0 to {@link #END_OF_DAY}.
+	 * @throws IllegalArgumentException if the time string is malformed.
+	 */
+	public static int parse(final String time) {
+		if (time == null || time.length() != 5 || time.charAt(2) != ':') {
+			throw new IllegalArgumentException("Invalid time of day: " + time);
+		}
+		final int hours = digits(time, 0);
+		final int minutes = digits(time, 3);
+		if (hours < 0 || minutes < 0 || minutes > 59 || hours > 24 || (hours == 24 && minutes != 0)) {
+			throw new IllegalArgumentException("Invalid time of day: " + time);
+		}
+		return hours * 60 + minutes;
+	}
+
+	/**
+	 * Format minutes of the day as "HH:mm".
+	 *
+	 * @param minutes minutes of the day, from 0 to {@link #END_OF_DAY}
+	 * @return time string in format "HH:mm".
+	 */
+	public static String format(final int minutes) {
+		final char[] chars = { (char) ('0' + minutes / 600), (char) ('0' + minutes / 60 % 10), ':', (char) ('0' + minutes % 60 / 10),
+				(char) ('0' + minutes % 10) };
+		return new String(chars);
+	}
+
+	/**
+	 * Parse two decimal digits.
+	 *
+	 * @param time time string
+	 * @param offset offset of the first digit
+	 * @return the parsed number, or -1 if not both characters are digits.
+	 */
+	private static int digits(final String time, final int offset) {
+		final char high = time.charAt(offset);
+		final char low = time.charAt(offset + 1);
+		if (high < '0' || high > '9' || low < '0' || low > '9') {
+			return -1;
+		}
+		return (high - '0') * 10 + (low - '0');
+	}
+}
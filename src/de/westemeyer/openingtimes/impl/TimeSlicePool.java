@@ -0,0 +1,192 @@
+package de.westemeyer.openingtimes.impl;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import de.westemeyer.openingtimes.api.TimeSlice;
+import de.westemeyer.openingtimes.api.WeekDay;
+
+/**
+ * Pool of compact time slices for large schedules, sharing everything but the validity bounds.
+ * <p>
+ * A slice of the pool keeps its validity bounds in epoch seconds and a reference to its shape: the time zones of the bounds,
+ * opening and closing time and the weekdays. Shapes are interned, so all slices with equal shapes, of any venue, share a
+ * single instance, together with its time strings and weekday set. Date/time objects are only created when the bounds of a
+ * slice are requested. {@link CompiledSchedule} copies the compiled values of pooled slices without parsing them again.
+ * <p>
+ * Slice bounds are kept with second precision. A pool is thread-safe.
+ *
+ * @author Sebastian Westemeyer
+ *
+ */
+public final class TimeSlicePool {
+	/** Interned shapes. */
+	private final ConcurrentMap<Shape, Shape> shapes = new ConcurrentHashMap<>();
+
+	/**
+	 * Create a time slice of the pool.
+	 *
+	 * @param from start date/time of the time slice
+	 * @param to end date/time of the time slice, null for an open end
+	 * @param startTime opening time in format "HH:mm"
+	 * @param endTime closing time in format "HH:mm"
+	 * @param weekdays weekdays of the time slice
+	 * @return the time slice.
+	 * @throws IllegalArgumentException if a start or end time is malformed.
+	 */
+	public TimeSlice create(final ZonedDateTime from, final ZonedDateTime to, final String startTime, final String endTime,
+			final Set<WeekDay> weekdays) {
+		final int packed = CompiledSchedule.pack(TimeOfDay.parse(startTime), TimeOfDay.parse(endTime),
+				CompiledSchedule.weekdayMaskOf(weekdays));
+		final Shape shape = intern(new Shape(from.getZone(), to == null ? null : to.getZone(), packed));
+		return new Slice(from.toEpochSecond(), to == null ? Long.MAX_VALUE : to.toEpochSecond(), shape);
+	}
+
+	/**
+	 * Create a time slice of the pool with the values of another time slice.
+	 *
+	 * @param slice the time slice to copy
+	 * @return the time slice of the pool.
+	 * @throws IllegalArgumentException if a start or end time is malformed.
+	 */
+	public TimeSlice copyOf(final TimeSlice slice) {
+		return create(slice.getFrom(), slice.getTo(), slice.getStartTime(), slice.getEndTime(), slice.getWeekdays());
+	}
+
+	/**
+	 * Returns the number of distinct shapes in the pool.
+	 *
+	 * @return the number of shapes.
+	 */
+	public int size() {
+		return shapes.size();
+	}
+
+	/**
+	 * Get the pooled instance of a shape, adding it if necessary.
+	 *
+	 * @param shape the shape
+	 * @return the pooled shape.
+	 */
+	private Shape intern(final Shape shape) {
+		final Shape pooled = shapes.putIfAbsent(shape, shape);
+		return pooled == null ? shape : pooled;
+	}
+
+	/**
+	 * Everything of a time slice but its validity bounds.
+	 */
+	static final class Shape {
+		/** Time zone of the "from" member. */
+		final ZoneId fromZone;
+		/** Time zone of the "to" member, null for an open end. */
+		final ZoneId toZone;
+		/** Opening time, closing time and weekday mask, see {@link CompiledSchedule#pack(int, int, int)}. */
+		final int packed;
+		/** Time of day when we will be open. */
+		final String startTime;
+		/** Time of day when we will be closing. */
+		final String endTime;
+		/** Weekdays of the time slice. */
+		final Set<WeekDay> weekdays;
+
+		/**
+		 * Create new shape.
+		 *
+		 * @param fromZone time zone of the "from" member
+		 * @param toZone time zone of the "to" member, null for an open end
+		 * @param packed opening time, closing time and weekday mask
+		 */
+		Shape(final ZoneId fromZone, final ZoneId toZone, final int packed) {
+			this.fromZone = fromZone;
+			this.toZone = toZone;
+			this.packed = packed;
+			startTime = TimeOfDay.format(CompiledSchedule.startMinuteOf(packed));
+			endTime = TimeOfDay.format(CompiledSchedule.endMinuteOf(packed));
+			final int weekdayMask = CompiledSchedule.weekdayMaskOf(packed);
+			final EnumSet<WeekDay> days = EnumSet.noneOf(WeekDay.class);
+			for (final WeekDay weekDay : WeekDay.values()) {
+				if ((weekdayMask & (1 << weekDay.ordinal())) != 0) {
+					days.add(weekDay);
+				}
+			}
+			weekdays = Collections.unmodifiableSet(days);
+		}
+
+		@Override
+		public boolean equals(final Object obj) {
+			if (!(obj instanceof Shape)) {
+				return false;
+			}
+			final Shape other = (Shape) obj;
+			return packed == other.packed && fromZone.equals(other.fromZone) && Objects.equals(toZone, other.toZone);
+		}
+
+		@Override
+		public int hashCode() {
+			return (packed * 31 + fromZone.hashCode()) * 31 + Objects.hashCode(toZone);
+		}
+	}
+
+	/**
+	 * Time slice of a pool: validity bounds in epoch seconds and a shared shape.
+	 */
+	static final class Slice implements TimeSlice {
+		/** Start of validity in epoch seconds. */
+		final long from;
+		/** End of validity in epoch seconds, {@link Long#MAX_VALUE} for an open end. */
+		final long to;
+		/** The shared shape. */
+		final Shape shape;
+
+		/**
+		 * Create new time slice.
+		 *
+		 * @param from start of validity in epoch seconds
+		 * @param to end of validity in epoch seconds, {@link Long#MAX_VALUE} for an open end
+		 * @param shape the shared shape
+		 */
+		Slice(final long from, final long to, final Shape shape) {
+			this.from = from;
+			this.to = to;
+			this.shape = shape;
+		}
+
+		@Override
+		public ZonedDateTime getFrom() {
+			return ZonedDateTime.ofInstant(Instant.ofEpochSecond(from), shape.fromZone);
+		}
+
+		@Override
+		public ZonedDateTime getTo() {
+			return shape.toZone == null ? null : ZonedDateTime.ofInstant(Instant.ofEpochSecond(to), shape.toZone);
+		}
+
+		@Override
+		public String getStartTime() {
+			return shape.startTime;
+		}
+
+		@Override
+		public String getEndTime() {
+			return shape.endTime;
+		}
+
+		@Override
+		public Set<WeekDay> getWeekdays() {
+			return shape.weekdays;
+		}
+
+		@Override
+		public String toString() {
+			return getFrom() + " - " + getTo() + ": " + shape.startTime + " - " + shape.endTime + ": " + shape.weekdays;
+		}
+	}
+}
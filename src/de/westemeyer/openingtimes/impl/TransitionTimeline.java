@@ -0,0 +1,287 @@
+package de.westemeyer.openingtimes.impl;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Results of a schedule materialised ahead of time for a number of days, in a single time zone.
+ * <p>
+ * The period is split into segments with the same result, by following the validity of each result (see
+ * {@link OpenType#getValidUntil()}), so holidays and zone rules are already applied. The starts of the segments are kept in a
+ * sorted primitive array, and a test date within the period is answered with a binary search. A result holding for its test
+ * date only is followed by a segment starting right after that second, so segment starts are stored as twice the epoch second,
+ * plus one for the segments starting after the second.
+ * <p>
+ * Once a test date reaches the last quarter of the period, the timeline is extended in the background to the given number of
+ * days after that test date, dropping the segments that have ended more than a day before. Test dates outside the period or
+ * in other time zones, and all test dates after a change of {@link de.westemeyer.openingtimes.api.TimeSlicesCollector#getRevision()},
+ * are evaluated directly until the timeline has been rebuilt in the background.
+ *
+ * @author Sebastian Westemeyer
+ *
+ */
+public class TransitionTimeline {
+	/** Default number of days to materialise. */
+	public static final int DEFAULT_DAYS = 400;
+
+	/** Opening times to build the timeline with. */
+	private final OpeningTimes openingTimes;
+	/** The time zone of the timeline. */
+	private final ZoneId zone;
+	/** Number of days to materialise. */
+	private final int days;
+	/** Executor for extensions of the timeline. */
+	private final Executor executor;
+	/** Whether an extension is running. */
+	private final AtomicBoolean extending = new AtomicBoolean();
+	/** The current segments. */
+	private volatile Segments segments;
+
+	/**
+	 * Create new timeline, materialising the results from a start date.
+	 *
+	 * @param openingTimes Opening times to build the timeline with.
+	 * @param start The first test date of the timeline, its time zone is the time zone of the timeline.
+	 * @param days number of days to materialise
+	 * @param executor Executor for extensions of the timeline.
+	 * @throws IllegalArgumentException if the number of days is less than one.
+	 */
+	public TransitionTimeline(final OpeningTimes openingTimes, final ZonedDateTime start, final int days, final Executor executor) {
+		if (days < 1) {
+			throw new IllegalArgumentException("Number of days has to be at least one");
+		}
+		this.openingTimes = openingTimes;
+		this.zone = start.getZone();
+		this.days = days;
+		this.executor = executor;
+		this.segments = build(null, start);
+	}
+
+	/**
+	 * Check a date for upcoming opening times, answering from the timeline if possible.
+	 *
+	 * @param date The test date.
+	 * @return The opening type (open, opening soon or closed).
+	 */
+	public OpenType createOpenType(final ZonedDateTime date) {
+		if (!date.getZone().equals(zone)) {
+			return openingTimes.createOpenType(date);
+		}
+		final Segments current = segments;
+		final long key = key(date);
+		final boolean upToDate = current.revision == openingTimes.revision();
+		// a quarter of the period is half as many keys as seconds
+		if (!upToDate || key >= current.endKey - (long) days * ScheduleEvaluator.SECONDS_PER_DAY / 2) {
+			extend(date);
+		}
+		if (!upToDate || key < current.keys[0] || key >= current.endKey) {
+			return openingTimes.createOpenType(date);
+		}
+		final int index = Arrays.binarySearch(current.keys, key);
+		return current.results[index >= 0 ? index : -index - 2].withCheckedDate(date);
+	}
+
+	/**
+	 * Get the start of the materialised period.
+	 *
+	 * @return the start of the period.
+	 */
+	public Instant getStart() {
+		return instant(segments.keys[0]);
+	}
+
+	/**
+	 * Get the end of the materialised period.
+	 *
+	 * @return the end of the period, exclusive.
+	 */
+	public Instant getEnd() {
+		return instant(segments.endKey);
+	}
+
+	/**
+	 * Get the number of segments with the same result.
+	 *
+	 * @return number of segments.
+	 */
+	public int size() {
+		return segments.keys.length;
+	}
+
+	/**
+	 * Extend or rebuild the timeline in the background, unless an extension is running already.
+	 *
+	 * @param date the test date triggering the extension
+	 */
+	private void extend(final ZonedDateTime date) {
+		if (!extending.compareAndSet(false, true)) {
+			return;
+		}
+		try {
+			executor.execute(() -> {
+				try {
+					segments = build(segments, date);
+				} finally {
+					extending.set(false);
+				}
+			});
+		} catch (final RejectedExecutionException e) {
+			// keep evaluating test dates directly
+			extending.set(false);
+		}
+	}
+
+	/**
+	 * Build segments up to the number of days after a test date, continuing the previous segments if they are up to date and
+	 * cover the test date.
+	 *
+	 * @param previous the previous segments, or null
+	 * @param date the test date
+	 * @return the new segments.
+	 */
+	private Segments build(final Segments previous, final ZonedDateTime date) {
+		// read the revision before evaluating, so that changes while building trigger another rebuild
+		final long revision = openingTimes.revision();
+		final long end = date.toEpochSecond() + (long) days * ScheduleEvaluator.SECONDS_PER_DAY;
+		final long key = key(date);
+		final Builder builder = new Builder();
+		ZonedDateTime next = date;
+		if (previous != null && previous.revision == revision && key >= previous.keys[0] && key < previous.endKey) {
+			final long keep = key - 2L * ScheduleEvaluator.SECONDS_PER_DAY;
+			for (int i = 0; i < previous.keys.length; i++) {
+				if (i + 1 == previous.keys.length || previous.keys[i + 1] > keep) {
+					builder.add(previous.keys[i], previous.results[i]);
+				}
+			}
+			next = previous.end;
+		}
+		next = openingTimes.walk(next, end, builder::add);
+		return builder.build(revision, next);
+	}
+
+	/**
+	 * Get the segment key of a test date.
+	 *
+	 * @param date the test date
+	 * @return twice the epoch second, plus one if the test date is after the start of that second.
+	 */
+	private static long key(final ZonedDateTime date) {
+		return date.toEpochSecond() * 2 + (date.getNano() > 0 ? 1 : 0);
+	}
+
+	/**
+	 * Get the start of a segment as instant.
+	 *
+	 * @param key segment key
+	 * @return the instant, one nanosecond after the second for segments starting after the second.
+	 */
+	private static Instant instant(final long key) {
+		return Instant.ofEpochSecond(key >> 1, key & 1);
+	}
+
+	/**
+	 * Immutable segments of a timeline.
+	 */
+	private static final class Segments {
+		/** Revision of the time slices. */
+		private final long revision;
+		/** Start of each segment, sorted. */
+		private final long[] keys;
+		/** Result of each segment, holding until the end of the segment. */
+		private final OpenType[] results;
+		/** End of the last segment, exclusive. */
+		private final long endKey;
+		/** End of the last segment as test date, to continue the timeline. */
+		private final ZonedDateTime end;
+
+		/**
+		 * Create new segments.
+		 *
+		 * @param revision revision of the time slices
+		 * @param keys start of each segment, sorted
+		 * @param results result of each segment
+		 * @param end end of the last segment as test date
+		 */
+		Segments(final long revision, final long[] keys, final OpenType[] results, final ZonedDateTime end) {
+			this.revision = revision;
+			this.keys = keys;
+			this.results = results;
+			this.endKey = key(end);
+			this.end = end;
+		}
+	}
+
+	/**
+	 * Collector of segments, merging consecutive segments with the same result.
+	 */
+	private static final class Builder {
+		/** Start of each segment. */
+		private long[] keys = new long[256];
+		/** Result of each segment. */
+		private OpenType[] results = new OpenType[256];
+		/** Number of segments. */
+		private int count;
+
+		/**
+		 * Add the result of a test date, starting a new segment if it differs from the last one.
+		 *
+		 * @param date the test date
+		 * @param openType the result
+		 */
+		void add(final ZonedDateTime date, final OpenType openType) {
+			add(key(date), openType);
+		}
+
+		/**
+		 * Add a segment, unless the result is the same as the one of the last segment.
+		 *
+		 * @param key start of the segment
+		 * @param openType the result
+		 */
+		void add(final long key, final OpenType openType) {
+			if (count > 0 && sameResult(results[count - 1], openType)) {
+				return;
+			}
+			if (count == keys.length) {
+				keys = Arrays.copyOf(keys, count * 2);
+				results = Arrays.copyOf(results, count * 2);
+			}
+			keys[count] = key;
+			results[count++] = openType;
+		}
+
+		/**
+		 * Create the segments, with the result of each segment holding until its end.
+		 *
+		 * @param revision revision of the time slices
+		 * @param end end of the last segment as test date
+		 * @return the segments.
+		 */
+		Segments build(final long revision, final ZonedDateTime end) {
+			final long endKey = key(end);
+			for (int i = 0; i < count; i++) {
+				results[i] = results[i].withValidUntil((i + 1 < count ? keys[i + 1] : endKey) >> 1);
+			}
+			return new Segments(revision, Arrays.copyOf(keys, count), Arrays.copyOf(results, count), end);
+		}
+
+		/**
+		 * Check whether two results are the same, apart from their test dates.
+		 *
+		 * @param first the first result
+		 * @param second the second result
+		 * @return whether the results are the same.
+		 */
+		private static boolean sameResult(final OpenType first, final OpenType second) {
+			return first.getStatus() == second.getStatus() && first.getWeekday() == second.getWeekday()
+					&& first.getTimeSlice() == second.getTimeSlice() && Objects.equals(first.getDateTime(), second.getDateTime())
+					&& Objects.equals(first.getNextOpening(), second.getNextOpening());
+		}
+	}
+}
@@ -0,0 +1,501 @@
+package de.westemeyer.openingtimes.impl;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntPredicate;
+import java.util.function.Predicate;
+
+import de.westemeyer.openingtimes.api.HolidayResolver;
+import de.westemeyer.openingtimes.api.OpenStatus;
+
+/**
+ * Inverted index over the venues of a {@link VenueRegistry}, to find open venues with a few bitmap operations instead of
+ * evaluating the time slices of each venue.
+ * <p>
+ * The index covers a range of days in a single time zone. The days are split into seasons, so that no time slice of any venue
+ * starts or ends within a season. For each combination of season, day of week and the set of regions having a bank holiday,
+ * the winning slice of each venue is determined once, following the rule of {@link OpeningTimes#createOpenType}: of all slices
+ * matching the day, the one with the earliest start time wins. The winners are stored as {@link CompressedBitmap}s of venue
+ * indices for each {@value #BUCKET_MINUTES} minute bucket of the day: venues open during the whole bucket, venues opening or
+ * closing within the bucket, and venues whose first opening time lies in the bucket. Buckets partially covered are resolved
+ * with the exact opening and closing minutes of the venues.
+ * <p>
+ * Venues with a matching slice ending during a day, rather than at its end, are evaluated with
+ * {@link OpeningTimes#createOpenType} for that day, as are all venues for queries outside the indexed days or in another time
+ * zone. So the results are always the same as for evaluating each venue. The index reflects the venues and time slices at the
+ * time it has been created, create a new index after changes.
+ *
+ * @author Sebastian Westemeyer
+ *
+ */
+public class VenueIndex {
+	/** Length of the minute-of-day buckets. */
+	static final int BUCKET_MINUTES = 15;
+	/** Number of buckets per day. */
+	private static final int BUCKETS = TimeOfDay.END_OF_DAY / BUCKET_MINUTES;
+	/** Marker for venues without winning slice. */
+	private static final int NONE = -1;
+
+	/** The time zone. */
+	private final ZoneId zone;
+	/** First indexed day. */
+	private final LocalDate firstDate;
+	/** Number of indexed days. */
+	private final int days;
+	/** The indexed venues. */
+	private final VenueRegistry.Venue[] venues;
+	/** Start of each indexed day and the two following ones, in epoch seconds. */
+	private final long[] dayStart;
+	/** Whether the zone offset is the same for a day and the following one. */
+	private final boolean[] steady;
+	/** Whether a day starts at midnight, rather than after a gap in the local time line. */
+	private final boolean[] startsAtMidnight;
+	/** Winners of each indexed day and the following one. */
+	private final DayTable[] tables;
+	/** Number of distinct day tables. */
+	private final int tableCount;
+
+	/**
+	 * Create an index over the venues currently registered.
+	 *
+	 * @param registry the venue registry
+	 * @param zone time zone of the queries
+	 * @param firstDate first day to index
+	 * @param days number of days to index
+	 * @throws IllegalArgumentException if the number of days is less than one.
+	 */
+	public VenueIndex(final VenueRegistry registry, final ZoneId zone, final LocalDate firstDate, final int days) {
+		if (days < 1) {
+			throw new IllegalArgumentException("At least one day has to be indexed");
+		}
+		this.zone = zone;
+		this.firstDate = firstDate;
+		this.days = days;
+		this.venues = registry.venues();
+		final ZoneOffsets offsets = ZoneOffsets.of(zone);
+
+		// start of each day, including the day after the last table
+		dayStart = new long[days + 2];
+		steady = new boolean[days];
+		startsAtMidnight = new boolean[days];
+		for (int day = 0; day < dayStart.length; day++) {
+			dayStart[day] = offsets.dayStart(firstDate.toEpochDay() + day);
+			if (day < days) {
+				startsAtMidnight[day] = offsets.minuteOfDay(dayStart[day]) == 0;
+			}
+		}
+		for (int day = 0; day < days; day++) {
+			steady[day] = offsets.nextTransition(dayStart[day]) > dayStart[day + 2];
+		}
+
+		// compile schedules and fetch the holidays of each region once
+		final CompiledSchedule[] schedules = new CompiledSchedule[venues.length];
+		final int[] regions = new int[venues.length];
+		final Map<HolidayResolver, Integer> regionIndex = new IdentityHashMap<>();
+		final List<BitSet> holidays = new ArrayList<>();
+		final long firstDay = firstDate.toEpochDay();
+		final BitSet seasonStarts = new BitSet();
+		for (int venue = 0; venue < venues.length; venue++) {
+			final CompiledSchedule schedule = CompiledSchedule.of(venues[venue].slices);
+			schedules[venue] = schedule;
+			final HolidayResolver holidayResolver = venues[venue].holidayResolver;
+			Integer region = regionIndex.get(holidayResolver);
+			if (region == null) {
+				region = holidays.size();
+				regionIndex.put(holidayResolver, region);
+				holidays.add(holidayResolver.holidaysBetween(firstDate, firstDate.plusDays(days + 1L), zone));
+			}
+			regions[venue] = region;
+			// a new season starts on the first day of a slice, on its last day and on the day after
+			for (int index = 0; index < schedule.size(); index++) {
+				addSeasonStart(seasonStarts, localDay(offsets, schedule.from(index)) - firstDay);
+				if (schedule.to(index) != Long.MAX_VALUE) {
+					final long lastDay = localDay(offsets, schedule.to(index)) - firstDay;
+					addSeasonStart(seasonStarts, lastDay);
+					addSeasonStart(seasonStarts, lastDay + 1);
+				}
+			}
+		}
+
+		// days of the same season, with the same day of week and the same regions having a holiday, share their table
+		tables = new DayTable[days + 1];
+		final Map<List<Object>, DayTable> distinct = new HashMap<>();
+		int season = 0;
+		for (int day = 0; day <= days; day++) {
+			if (seasonStarts.get(day)) {
+				season++;
+			}
+			final BitSet holidayRegions = new BitSet();
+			for (int region = 0; region < holidays.size(); region++) {
+				if (holidays.get(region).get(day)) {
+					holidayRegions.set(region);
+				}
+			}
+			final int dayOfWeek = (int) Math.floorMod(firstDay + day + 3, 7);
+			final List<Object> key = Arrays.asList(season, dayOfWeek, holidayRegions);
+			DayTable table = distinct.get(key);
+			if (table == null) {
+				table = new DayTable(schedules, regions, holidayRegions, dayOfWeek, dayStart[day], dayStart[day + 1]);
+				distinct.put(key, table);
+			}
+			tables[day] = table;
+		}
+		tableCount = distinct.size();
+	}
+
+	/**
+	 * Find the venues that are open at a date, i.e. venues with status {@link OpenStatus#OPEN}.
+	 *
+	 * @param date The test date.
+	 * @return ids of the open venues, in order of registration.
+	 */
+	public List<String> openAt(final ZonedDateTime date) {
+		final int day = dayIndex(date);
+		if (day < 0) {
+			return evaluateAll(date, openType -> openType.getStatus() == OpenStatus.OPEN);
+		}
+		final DayTable table = tables[day];
+		final int minute = date.getHour() * 60 + date.getMinute();
+		final int bucket = minute / BUCKET_MINUTES;
+		final CompressedBitmap open = table.covered[bucket].or(filter(table.changing[bucket], venue -> table.isOpen(venue, minute)));
+		return ids(open.or(evaluate(table.uncertain, date, openType -> openType.getStatus() == OpenStatus.OPEN)));
+	}
+
+	/**
+	 * Find the venues opening within a number of minutes after a date, i.e. venues with status {@link OpenStatus#OPENING_SOON}
+	 * and an opening time not after the date plus the number of minutes.
+	 *
+	 * @param date The test date.
+	 * @param minutes number of minutes, from 0 to 1440
+	 * @return ids of the venues opening soon, in order of registration.
+	 * @throws IllegalArgumentException if the number of minutes is out of range.
+	 */
+	public List<String> openingWithin(final ZonedDateTime date, final int minutes) {
+		if (minutes < 0 || minutes > TimeOfDay.END_OF_DAY) {
+			throw new IllegalArgumentException("Number of minutes has to be between 0 and " + TimeOfDay.END_OF_DAY);
+		}
+		final ZonedDateTime limit = date.plusMinutes(minutes);
+		final Predicate<OpenType> openingSoon = openType -> openType.getStatus() == OpenStatus.OPENING_SOON
+				&& !openType.getDateTime().isAfter(limit);
+		final int day = dayIndex(date);
+		// minutes of the day only equal durations, if there is no offset transition
+		if (day < 0 || !steady[day]) {
+			return evaluateAll(date, openingSoon);
+		}
+		final DayTable today = tables[day];
+		final int minute = date.getHour() * 60 + date.getMinute();
+		final int last = minute + minutes;
+		// venues opening later today
+		CompressedBitmap result = today.startingBetween(minute, Math.min(last, TimeOfDay.END_OF_DAY));
+		CompressedBitmap uncertain = today.uncertain;
+		if (last >= TimeOfDay.END_OF_DAY) {
+			// venues without further opening times today, opening early tomorrow
+			final DayTable tomorrow = tables[day + 1];
+			final CompressedBitmap active = today.activeThrough[minute / BUCKET_MINUTES]
+					.or(filter(today.lastIn[minute / BUCKET_MINUTES], venue -> today.isActive(venue, minute)));
+			result = result.or(tomorrow.startingBetween(0, last - TimeOfDay.END_OF_DAY).andNot(active).andNot(uncertain));
+			uncertain = uncertain.or(tomorrow.uncertain);
+		}
+		return ids(result.andNot(uncertain).or(evaluate(uncertain, date, openingSoon)));
+	}
+
+	/**
+	 * Find the venues opening on a date, for example on a bank holiday. These are the venues whose next opening time, as of the
+	 * start of the date, lies on the date.
+	 *
+	 * @param date the date
+	 * @return ids of the venues opening on the date, in order of registration.
+	 */
+	public List<String> openOn(final LocalDate date) {
+		final ZonedDateTime start = date.atStartOfDay(zone);
+		final Predicate<OpenType> opening = openType -> openType.getStatus() != OpenStatus.CLOSED
+				&& openType.getDateTime().toLocalDate().equals(date);
+		final int day = dayIndex(start);
+		if (day < 0 || !startsAtMidnight[day]) {
+			return evaluateAll(start, opening);
+		}
+		final DayTable table = tables[day];
+		return ids(table.startingBetween(0, TimeOfDay.END_OF_DAY - 1).or(evaluate(table.uncertain, start, opening)));
+	}
+
+	/**
+	 * Get the number of distinct day tables, one for each combination of season, day of week and regions having a holiday.
+	 *
+	 * @return number of day tables.
+	 */
+	public int tableCount() {
+		return tableCount;
+	}
+
+	/**
+	 * Get the index of the day of a test date.
+	 *
+	 * @param date The test date.
+	 * @return index of the day, or -1 if the date is not covered by the index.
+	 */
+	private int dayIndex(final ZonedDateTime date) {
+		if (!date.getZone().equals(zone)) {
+			return -1;
+		}
+		final long day = date.toLocalDate().toEpochDay() - firstDate.toEpochDay();
+		return day >= 0 && day < days ? (int) day : -1;
+	}
+
+	/**
+	 * Evaluate some of the venues exactly.
+	 *
+	 * @param candidates indices of the venues to evaluate
+	 * @param date The test date.
+	 * @param condition condition for the opening types of the matching venues
+	 * @return indices of the matching venues.
+	 */
+	private CompressedBitmap evaluate(final CompressedBitmap candidates, final ZonedDateTime date,
+			final Predicate<OpenType> condition) {
+		return filter(candidates, venue -> condition.test(venues[venue].openingTimes.createOpenType(date)));
+	}
+
+	/**
+	 * Evaluate all venues exactly, for queries not covered by the index.
+	 *
+	 * @param date The test date.
+	 * @param condition condition for the opening types of the matching venues
+	 * @return ids of the matching venues, in order of registration.
+	 */
+	private List<String> evaluateAll(final ZonedDateTime date, final Predicate<OpenType> condition) {
+		final List<String> ids = new ArrayList<>();
+		for (final VenueRegistry.Venue venue : venues) {
+			if (condition.test(venue.openingTimes.createOpenType(date))) {
+				ids.add(venue.id);
+			}
+		}
+		return ids;
+	}
+
+	/**
+	 * Get the ids of venues.
+	 *
+	 * @param indices indices of the venues
+	 * @return ids of the venues, in order of registration.
+	 */
+	private List<String> ids(final CompressedBitmap indices) {
+		final List<String> ids = new ArrayList<>(indices.cardinality());
+		indices.forEach(venue -> ids.add(venues[venue].id));
+		return ids;
+	}
+
+	/**
+	 * Filter a set of venue indices.
+	 *
+	 * @param indices venue indices
+	 * @param condition condition for the indices to keep
+	 * @return the matching indices.
+	 */
+	private static CompressedBitmap filter(final CompressedBitmap indices, final IntPredicate condition) {
+		final CompressedBitmap.Builder builder = new CompressedBitmap.Builder();
+		indices.forEach(venue -> {
+			if (condition.test(venue)) {
+				builder.add(venue);
+			}
+		});
+		return builder.build();
+	}
+
+	/**
+	 * Mark a day as start of a new season, if it is within the indexed days.
+	 *
+	 * @param seasonStarts days starting a new season
+	 * @param day index of the day
+	 */
+	private void addSeasonStart(final BitSet seasonStarts, final long day) {
+		if (day > 0 && day <= days) {
+			seasonStarts.set((int) day);
+		}
+	}
+
+	/**
+	 * Get the local day of an instant.
+	 *
+	 * @param offsets offsets of the time zone
+	 * @param epochSecond instant in epoch seconds
+	 * @return the local day as epoch day.
+	 */
+	private static long localDay(final ZoneOffsets offsets, final long epochSecond) {
+		return Math.floorDiv(epochSecond + offsets.offsetAt(epochSecond), ScheduleEvaluator.SECONDS_PER_DAY);
+	}
+
+	/**
+	 * Winning slices of all venues for the days of a season with the same day of week and the same regions having a holiday.
+	 */
+	private static final class DayTable {
+		/** Opening and closing minute of the winning slice of each venue, or {@link #NONE}. */
+		private final int[] profile;
+		/** Venues with a matching slice ending during the day, which have to be evaluated exactly. */
+		private final CompressedBitmap uncertain;
+		/** Venues open during the whole bucket. */
+		private final CompressedBitmap[] covered = new CompressedBitmap[BUCKETS];
+		/** Venues opening or closing within the bucket. */
+		private final CompressedBitmap[] changing = new CompressedBitmap[BUCKETS];
+		/** Venues opening in the bucket, the last bucket holding "24:00". */
+		private final CompressedBitmap[] opening = new CompressedBitmap[BUCKETS + 1];
+		/** Venues with an opening or closing minute after the end of the bucket. */
+		private final CompressedBitmap[] activeThrough = new CompressedBitmap[BUCKETS];
+		/** Venues with their later one of opening and closing minute in the bucket. */
+		private final CompressedBitmap[] lastIn = new CompressedBitmap[BUCKETS];
+
+		/**
+		 * Determine the winning slices of a day.
+		 *
+		 * @param schedules compiled schedules of all venues
+		 * @param regions region index of all venues
+		 * @param holidayRegions regions having a holiday on the day
+		 * @param dayOfWeek day of week, monday is 0
+		 * @param start start of the day in epoch seconds
+		 * @param end start of the following day in epoch seconds
+		 */
+		DayTable(final CompiledSchedule[] schedules, final int[] regions, final BitSet holidayRegions, final int dayOfWeek,
+				final long start, final long end) {
+			profile = new int[schedules.length];
+			final CompressedBitmap.Builder uncertainBuilder = new CompressedBitmap.Builder();
+			final CompressedBitmap.Builder[] coveredBuilders = builders(BUCKETS);
+			final CompressedBitmap.Builder[] changingBuilders = builders(BUCKETS);
+			final CompressedBitmap.Builder[] openingBuilders = builders(BUCKETS + 1);
+			final CompressedBitmap.Builder[] activeBuilders = builders(BUCKETS);
+			final CompressedBitmap.Builder[] lastBuilders = builders(BUCKETS);
+			for (int venue = 0; venue < schedules.length; venue++) {
+				final CompiledSchedule schedule = schedules[venue];
+				final int days = 1 << dayOfWeek | (holidayRegions.get(regions[venue]) ? ScheduleEvaluator.HOLIDAY_BIT : 0);
+				int winner = NONE;
+				boolean partial = false;
+				// slices starting before the end of the day and ending after its start
+				final int endIndex = schedule.endIndex(end - 1);
+				for (int index = schedule.firstIndex(start + 1); index < endIndex; index++) {
+					if (schedule.to(index) <= start || (schedule.weekdayMask(index) & days) == 0) {
+						continue;
+					}
+					if (schedule.to(index) < end) {
+						partial = true;
+						break;
+					}
+					if (winner == NONE || schedule.startMinute(winner) > schedule.startMinute(index)) {
+						winner = index;
+					}
+				}
+				profile[venue] = NONE;
+				if (partial) {
+					uncertainBuilder.add(venue);
+				} else if (winner != NONE) {
+					final int opens = schedule.startMinute(winner);
+					final int closes = schedule.endMinute(winner);
+					profile[venue] = opens | closes << 16;
+					openingBuilders[opens / BUCKET_MINUTES].add(venue);
+					// open from the minute after opening up to the closing minute
+					final int firstOpen = opens + 1;
+					final int lastOpen = Math.min(closes, TimeOfDay.END_OF_DAY - 1);
+					final int lastActive = Math.max(opens, closes);
+					for (int bucket = 0; bucket < BUCKETS; bucket++) {
+						final int bucketStart = bucket * BUCKET_MINUTES;
+						final int bucketEnd = bucketStart + BUCKET_MINUTES - 1;
+						if (firstOpen <= bucketStart && lastOpen >= bucketEnd) {
+							coveredBuilders[bucket].add(venue);
+						} else if (firstOpen <= bucketEnd && lastOpen >= bucketStart && firstOpen <= lastOpen) {
+							changingBuilders[bucket].add(venue);
+						}
+						if (lastActive >= bucketEnd) {
+							activeBuilders[bucket].add(venue);
+						} else if (lastActive >= bucketStart) {
+							lastBuilders[bucket].add(venue);
+						}
+					}
+				}
+			}
+			uncertain = uncertainBuilder.build();
+			build(coveredBuilders, covered);
+			build(changingBuilders, changing);
+			build(openingBuilders, opening);
+			build(activeBuilders, activeThrough);
+			build(lastBuilders, lastIn);
+		}
+
+		/**
+		 * Check whether a venue is open at a minute of the day.
+		 *
+		 * @param venue index of the venue
+		 * @param minute minute of the day
+		 * @return whether the winning slice has opened before the minute and closes at the minute or later.
+		 */
+		boolean isOpen(final int venue, final int minute) {
+			final int opens = profile[venue] & 0xFFFF;
+			final int closes = profile[venue] >>> 16;
+			return profile[venue] != NONE && opens < minute && closes >= minute;
+		}
+
+		/**
+		 * Check whether a venue still has an opening time today at a minute of the day, either open or opening later.
+		 *
+		 * @param venue index of the venue
+		 * @param minute minute of the day
+		 * @return whether the opening or closing minute of the winning slice is not before the minute.
+		 */
+		boolean isActive(final int venue, final int minute) {
+			return profile[venue] != NONE && Math.max(profile[venue] & 0xFFFF, profile[venue] >>> 16) >= minute;
+		}
+
+		/**
+		 * Get the venues opening within a range of minutes.
+		 *
+		 * @param first first minute of the range
+		 * @param last last minute of the range, inclusive
+		 * @return indices of the venues.
+		 */
+		CompressedBitmap startingBetween(final int first, final int last) {
+			final int firstBucket = first / BUCKET_MINUTES;
+			final int lastBucket = last / BUCKET_MINUTES;
+			CompressedBitmap result = CompressedBitmap.EMPTY;
+			for (int bucket = firstBucket; bucket <= lastBucket; bucket++) {
+				if (bucket * BUCKET_MINUTES >= first && bucket * BUCKET_MINUTES + BUCKET_MINUTES - 1 <= last) {
+					result = result.or(opening[bucket]);
+				} else {
+					result = result.or(filter(opening[bucket], venue -> {
+						final int opens = profile[venue] & 0xFFFF;
+						return opens >= first && opens <= last;
+					}));
+				}
+			}
+			return result;
+		}
+
+		/**
+		 * Create builders.
+		 *
+		 * @param count number of builders
+		 * @return the builders.
+		 */
+		private static CompressedBitmap.Builder[] builders(final int count) {
+			final CompressedBitmap.Builder[] builders = new CompressedBitmap.Builder[count];
+			for (int i = 0; i < count; i++) {
+				builders[i] = new CompressedBitmap.Builder();
+			}
+			return builders;
+		}
+
+		/**
+		 * Build bitmaps.
+		 *
+		 * @param builders the builders
+		 * @param bitmaps array to store the bitmaps
+		 */
+		private static void build(final CompressedBitmap.Builder[] builders, final CompressedBitmap[] bitmaps) {
+			for (int i = 0; i < builders.length; i++) {
+				bitmaps[i] = builders[i].build();
+			}
+		}
+	}
+}
@@ -0,0 +1,340 @@
+package de.westemeyer.openingtimes.impl;
+
+import java.time.ZonedDateTime;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Function;
+
+import de.westemeyer.openingtimes.api.HolidayResolver;
+import de.westemeyer.openingtimes.api.OpenStatus;
+import de.westemeyer.openingtimes.api.TimeSlicesCollector;
+
+/**
+ * Registry of many venues, each with its own time slices, to check a single date for all of them at once.
+ * <p>
+ * Venues are registered under unique ids, together with the region they belong to. Each region has a single
+ * {@link HolidayResolver}, shared by all of its venues, so a {@link CachingHolidayResolver} resolves the holidays of a region
+ * only once. Queries split the venues into chunks, which are evaluated in parallel on a fork/join pool, either the common
+ * pool or a pool with a configurable parallelism level. As for {@link OpeningTimes}, pass {@link CompiledSchedule}s to avoid
+ * re-indexing the time slices of each venue for every query.
+ * <p>
+ * Registration and queries may be called from different threads. A query evaluates the venues registered when it started.
+ *
+ * @author Sebastian Westemeyer
+ *
+ */
+public class VenueRegistry implements AutoCloseable {
+	/** Minimum number of venues evaluated by a single task. */
+	private static final int MIN_CHUNK_SIZE = 64;
+	/** Number of tasks per thread, so that threads finishing early can steal work from others. */
+	private static final int TASKS_PER_THREAD = 8;
+
+	/** The pool to evaluate venues on. */
+	private final ForkJoinPool pool;
+	/** Whether the pool has been created by this registry. */
+	private final boolean ownPool;
+	/** Holiday resolvers, by region. */
+	private final Map<String, HolidayResolver> regions = new HashMap<>();
+	/** Registered venues, by id, in order of registration. */
+	private final Map<String, Venue> venues = new LinkedHashMap<>();
+	/** Registered venues as array for parallel evaluation, null after changes. */
+	private volatile Venue[] snapshot;
+
+	/**
+	 * Create new registry, evaluating venues on the common fork/join pool.
+	 */
+	public VenueRegistry() {
+		this.pool = ForkJoinPool.commonPool();
+		this.ownPool = false;
+	}
+
+	/**
+	 * Create new registry, evaluating venues on a pool of its own. Close the registry to shut down the pool.
+	 *
+	 * @param parallelism number of threads to evaluate venues in parallel
+	 * @throws IllegalArgumentException if parallelism is less than one.
+	 */
+	public VenueRegistry(final int parallelism) {
+		if (parallelism < 1) {
+			throw new IllegalArgumentException("Parallelism has to be at least one");
+		}
+		this.pool = new ForkJoinPool(parallelism);
+		this.ownPool = true;
+	}
+
+	/**
+	 * Set the holiday resolver of a region. Venues already registered for the region will use the new resolver.
+	 *
+	 * @param region name of the region
+	 * @param holidayResolver Object to check dates for holidays, shared by all venues of the region.
+	 */
+	public synchronized void addRegion(final String region, final HolidayResolver holidayResolver) {
+		regions.put(region, holidayResolver);
+		for (final Map.Entry<String, Venue> entry : venues.entrySet()) {
+			final Venue venue = entry.getValue();
+			if (venue.region.equals(region)) {
+				entry.setValue(new Venue(venue.id, region, venue.slices, holidayResolver));
+			}
+		}
+		snapshot = null;
+	}
+
+	/**
+	 * Register a venue, replacing any venue registered with the same id.
+	 *
+	 * @param id unique id of the venue
+	 * @param region name of the region the venue belongs to
+	 * @param slices List of time slices of the venue.
+	 * @throws IllegalArgumentException if the region is unknown.
+	 */
+	public synchronized void register(final String id, final String region, final TimeSlicesCollector slices) {
+		final HolidayResolver holidayResolver = regions.get(region);
+		if (holidayResolver == null) {
+			throw new IllegalArgumentException("Unknown region: " + region);
+		}
+		venues.put(id, new Venue(id, region, slices, holidayResolver));
+		snapshot = null;
+	}
+
+	/**
+	 * Remove a venue.
+	 *
+	 * @param id id of the venue
+	 * @return whether the venue has been registered.
+	 */
+	public synchronized boolean unregister(final String id) {
+		final boolean removed = venues.remove(id) != null;
+		if (removed) {
+			snapshot = null;
+		}
+		return removed;
+	}
+
+	/**
+	 * Get the opening times of a single venue.
+	 *
+	 * @param id id of the venue
+	 * @return opening times of the venue, or null if there is no venue with this id.
+	 */
+	public synchronized OpeningTimes get(final String id) {
+		final Venue venue = venues.get(id);
+		return venue == null ? null : venue.openingTimes;
+	}
+
+	/**
+	 * Get the number of registered venues.
+	 *
+	 * @return number of venues.
+	 */
+	public synchronized int size() {
+		return venues.size();
+	}
+
+	/**
+	 * Check a date for upcoming opening times of all venues.
+	 *
+	 * @param date The test date.
+	 * @return The opening types of all venues, by id, in order of registration.
+	 */
+	public Map<String, OpenType> createOpenTypes(final ZonedDateTime date) {
+		return evaluate(date, null);
+	}
+
+	/**
+	 * Find the venues that are open at a date.
+	 *
+	 * @param date The test date.
+	 * @return The opening types of all open venues, by id, in order of registration.
+	 */
+	public Map<String, OpenType> openAt(final ZonedDateTime date) {
+		return withStatus(date, OpenStatus.OPEN);
+	}
+
+	/**
+	 * Find the venues with a specific status at a date.
+	 *
+	 * @param date The test date.
+	 * @param status The status to look for.
+	 * @return The opening types of all venues with the status, by id, in order of registration.
+	 */
+	public Map<String, OpenType> withStatus(final ZonedDateTime date, final OpenStatus status) {
+		return evaluate(date, status);
+	}
+
+	/**
+	 * Find the open intervals of all venues within a range of instants, see {@link OpeningTimes#occupancy}. Combine them with
+	 * {@link Occupancy#hourOfWeekHistogram(java.util.Collection)} to find the average number of open venues per hour of the week.
+	 *
+	 * @param start start of the range, its time zone is the time zone of the range
+	 * @param end end of the range, exclusive
+	 * @return the open intervals of all venues, by id, in order of registration.
+	 * @throws IllegalArgumentException if the end is before the start.
+	 */
+	public Map<String, Occupancy> occupancy(final ZonedDateTime start, final ZonedDateTime end) {
+		if (end.isBefore(start)) {
+			throw new IllegalArgumentException("End of range is before its start");
+		}
+		final Venue[] all = venues();
+		final Occupancy[] results = evaluate(all, venue -> venue.openingTimes.occupancy(start, end), new Occupancy[all.length]);
+		final Map<String, Occupancy> occupancies = new LinkedHashMap<>();
+		for (int i = 0; i < all.length; i++) {
+			occupancies.put(all[i].id, results[i]);
+		}
+		return occupancies;
+	}
+
+	/**
+	 * Shut down the pool, if it has been created by this registry.
+	 */
+	@Override
+	public void close() {
+		if (ownPool) {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * Evaluate all venues in parallel.
+	 *
+	 * @param date The test date.
+	 * @param status The status to look for, or null for all venues.
+	 * @return The opening types of all matching venues, by id, in order of registration.
+	 */
+	private Map<String, OpenType> evaluate(final ZonedDateTime date, final OpenStatus status) {
+		final Venue[] all = venues();
+		final OpenType[] results = evaluate(all, venue -> venue.openingTimes.createOpenType(date), new OpenType[all.length]);
+
+		final Map<String, OpenType> matches = new LinkedHashMap<>();
+		for (int i = 0; i < all.length; i++) {
+			final OpenType openType = results[i];
+			if (status == null || openType.getStatus() == status) {
+				matches.put(all[i].id, openType);
+			}
+		}
+		return matches;
+	}
+
+	/**
+	 * Evaluate venues in parallel.
+	 *
+	 * @param all the venues
+	 * @param task evaluation of a single venue
+	 * @param results array for the results, as long as the array of venues
+	 * @param <T> type of the results
+	 * @return the results of all venues, by index.
+	 */
+	private <T> T[] evaluate(final Venue[] all, final Function<Venue, T> task, final T[] results) {
+		final int chunkSize = Math.max(MIN_CHUNK_SIZE, all.length / (pool.getParallelism() * TASKS_PER_THREAD));
+		pool.invoke(new Evaluation<>(all, task, results, 0, all.length, chunkSize));
+		return results;
+	}
+
+	/**
+	 * Get the registered venues as array, creating it after changes.
+	 *
+	 * @return the registered venues.
+	 */
+	Venue[] venues() {
+		final Venue[] current = snapshot;
+		if (current != null) {
+			return current;
+		}
+		synchronized (this) {
+			if (snapshot == null) {
+				snapshot = venues.values().toArray(new Venue[venues.size()]);
+			}
+			return snapshot;
+		}
+	}
+
+	/**
+	 * A registered venue.
+	 */
+	static final class Venue {
+		/** Unique id of the venue. */
+		final String id;
+		/** Name of the region the venue belongs to. */
+		final String region;
+		/** List of time slices. */
+		final TimeSlicesCollector slices;
+		/** Holiday resolver of the region. */
+		final HolidayResolver holidayResolver;
+		/** Opening times of the venue, using the holiday resolver of its region. */
+		final OpeningTimes openingTimes;
+
+		/**
+		 * Create new venue.
+		 *
+		 * @param id unique id of the venue
+		 * @param region name of the region the venue belongs to
+		 * @param slices List of time slices.
+		 * @param holidayResolver holiday resolver of the region
+		 */
+		Venue(final String id, final String region, final TimeSlicesCollector slices, final HolidayResolver holidayResolver) {
+			this.id = id;
+			this.region = region;
+			this.slices = slices;
+			this.holidayResolver = holidayResolver;
+			this.openingTimes = new OpeningTimes(slices, holidayResolver);
+		}
+	}
+
+	/**
+	 * Task evaluating a range of venues, splitting it into halves down to the chunk size.
+	 *
+	 * @param <T> type of the results
+	 */
+	private static final class Evaluation<T> extends RecursiveAction {
+		/** Serial version UID. */
+		private static final long serialVersionUID = 1L;
+
+		/** All venues. */
+		private final Venue[] venues;
+		/** Evaluation of a single venue. */
+		private final Function<Venue, T> task;
+		/** Results of all venues, by index. */
+		private final T[] results;
+		/** First index of the range. */
+		private final int from;
+		/** End index of the range, exclusive. */
+		private final int to;
+		/** Maximum number of venues to evaluate without splitting. */
+		private final int chunkSize;
+
+		/**
+		 * Create new task.
+		 *
+		 * @param venues all venues
+		 * @param task evaluation of a single venue
+		 * @param results results of all venues, by index
+		 * @param from first index of the range
+		 * @param to end index of the range, exclusive
+		 * @param chunkSize maximum number of venues to evaluate without splitting
+		 */
+		Evaluation(final Venue[] venues, final Function<Venue, T> task, final T[] results, final int from, final int to,
+				final int chunkSize) {
+			this.venues = venues;
+			this.task = task;
+			this.results = results;
+			this.from = from;
+			this.to = to;
+			this.chunkSize = chunkSize;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from <= chunkSize) {
+				for (int i = from; i < to; i++) {
+					results[i] = task.apply(venues[i]);
+				}
+				return;
+			}
+			final int middle = (from + to) >>> 1;
+			invokeAll(new Evaluation<>(venues, task, results, from, middle, chunkSize),
+					new Evaluation<>(venues, task, results, middle, to, chunkSize));
+		}
+	}
+}
@@ -0,0 +1,269 @@
+package de.westemeyer.openingtimes.impl;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneRules;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Zone offsets and offset transitions of a time zone, derived once from its {@link ZoneRules}, to convert between instants
+ * and local times with plain arithmetic.
+ * <p>
+ * The transitions of the years {@value #FIRST_YEAR} to {@value #LAST_YEAR} are kept in sorted primitive arrays, shared by all
+ * users of the time zone through {@link #of(ZoneId)}. The offset at an instant is found with a binary search, and a local time
+ * is converted to an instant following the rules of {@link ZonedDateTime#of}: a local time in a gap is moved forward by the
+ * length of the gap, in an overlap the earlier offset is used unless another valid offset is preferred. Instants outside the
+ * covered years are looked up in the zone rules, see {@link #between(ZoneId, long, long)} for tables of other ranges.
+ *
+ * @author Sebastian Westemeyer
+ *
+ */
+final class ZoneOffsets {
+	/** First year covered by the shared tables. */
+	static final int FIRST_YEAR = 1900;
+	/** Last year covered by the shared tables. */
+	static final int LAST_YEAR = 2100;
+	/** Preferred offset matching no valid offset, so that local times in an overlap use the earlier offset. */
+	static final int NO_PREFERRED_OFFSET = Integer.MIN_VALUE;
+	/** Maximum distance of a local time from its instant. */
+	static final int MAX_OFFSET_SECONDS = 18 * 3600;
+	/** First instant covered by the shared tables in epoch seconds. */
+	private static final long SHARED_START = LocalDate.of(FIRST_YEAR, 1, 1).toEpochDay() * ScheduleEvaluator.SECONDS_PER_DAY;
+	/** Last instant covered by the shared tables in epoch seconds. */
+	private static final long SHARED_END = LocalDate.of(LAST_YEAR + 1, 1, 1).toEpochDay() * ScheduleEvaluator.SECONDS_PER_DAY;
+	/** Shared tables, by time zone. */
+	private static final Map<ZoneId, ZoneOffsets> CACHE = new ConcurrentHashMap<>();
+
+	/** The time zone. */
+	private final ZoneId zone;
+	/** Rules of the time zone. */
+	private final ZoneRules rules;
+	/** Whether the zone offset never changes. */
+	private final boolean fixed;
+	/** First covered instant in epoch seconds. */
+	private final long start;
+	/** Last covered instant in epoch seconds. */
+	private final long end;
+	/** Instants of the offset transitions in epoch seconds, ascending. */
+	private final long[] transitions;
+	/** Zone offset in seconds before the first transition, and after each transition. */
+	private final int[] offsets;
+
+	/**
+	 * Derive the offset transitions of a range from the zone rules.
+	 *
+	 * @param zone the time zone
+	 * @param start first covered instant in epoch seconds
+	 * @param end last covered instant in epoch seconds
+	 */
+	private ZoneOffsets(final ZoneId zone, final long start, final long end) {
+		this.zone = zone;
+		this.rules = zone.getRules();
+		this.fixed = rules.isFixedOffset();
+		this.start = start;
+		this.end = end;
+		long[] instants = new long[0];
+		int[] after = { rules.getOffset(Instant.ofEpochSecond(start)).getTotalSeconds() };
+		int count = 0;
+		if (!fixed) {
+			instants = new long[16];
+			after = Arrays.copyOf(after, 17);
+			for (ZoneOffsetTransition transition = rules.nextTransition(Instant.ofEpochSecond(start)); transition != null
+					&& transition.toEpochSecond() <= end; transition = rules.nextTransition(transition.getInstant())) {
+				if (count == instants.length) {
+					instants = Arrays.copyOf(instants, count * 2);
+					after = Arrays.copyOf(after, count * 2 + 1);
+				}
+				instants[count] = transition.toEpochSecond();
+				after[++count] = transition.getOffsetAfter().getTotalSeconds();
+			}
+		}
+		this.transitions = Arrays.copyOf(instants, count);
+		this.offsets = Arrays.copyOf(after, count + 1);
+	}
+
+	/**
+	 * Get the shared table of a time zone, deriving it on first use.
+	 *
+	 * @param zone the time zone
+	 * @return the offsets of the time zone.
+	 */
+	static ZoneOffsets of(final ZoneId zone) {
+		final ZoneOffsets offsets = CACHE.get(zone);
+		return offsets != null ? offsets : CACHE.computeIfAbsent(zone, id -> new ZoneOffsets(id, SHARED_START, SHARED_END));
+	}
+
+	/**
+	 * Get a table of a time zone covering a range, the shared one if it does.
+	 *
+	 * @param zone the time zone
+	 * @param start first instant of the range in epoch seconds
+	 * @param end last instant of the range in epoch seconds
+	 * @return the offsets of the time zone, covering the range.
+	 */
+	static ZoneOffsets between(final ZoneId zone, final long start, final long end) {
+		final ZoneOffsets shared = of(zone);
+		return shared.covers(start, end) ? shared : new ZoneOffsets(zone, start, end);
+	}
+
+	/**
+	 * Check whether the table covers a range of instants.
+	 *
+	 * @param first first instant of the range in epoch seconds
+	 * @param last last instant of the range in epoch seconds
+	 * @return whether all transitions of the range are known.
+	 */
+	boolean covers(final long first, final long last) {
+		return isFixedOffset() || (first >= start && last <= end);
+	}
+
+	/**
+	 * Check whether the time zone has a single offset.
+	 *
+	 * @return whether the zone offset never changes.
+	 */
+	boolean isFixedOffset() {
+		return fixed;
+	}
+
+	/**
+	 * Get the zone offset valid at an instant.
+	 *
+	 * @param epochSecond the instant in epoch seconds
+	 * @return the offset in seconds.
+	 */
+	int offsetAt(final long epochSecond) {
+		if (isFixedOffset()) {
+			return offsets[0];
+		}
+		if (epochSecond < start || epochSecond > end) {
+			return rules.getOffset(Instant.ofEpochSecond(epochSecond)).getTotalSeconds();
+		}
+		return offsets[indexAfter(epochSecond)];
+	}
+
+	/**
+	 * Find the first transition after an instant.
+	 *
+	 * @param epochSecond the instant in epoch seconds
+	 * @return index of the first transition after the instant, the number of transitions if there is none.
+	 */
+	int indexAfter(final long epochSecond) {
+		final int index = Arrays.binarySearch(transitions, epochSecond);
+		return index < 0 ? -index - 1 : index + 1;
+	}
+
+	/**
+	 * Get the first offset transition after an instant.
+	 *
+	 * @param epochSecond the instant in epoch seconds
+	 * @return instant of the transition in epoch seconds, or {@link Long#MAX_VALUE} if there is none.
+	 */
+	long nextTransition(final long epochSecond) {
+		if (isFixedOffset()) {
+			return Long.MAX_VALUE;
+		}
+		if (epochSecond < start || epochSecond >= end) {
+			final ZoneOffsetTransition transition = rules.nextTransition(Instant.ofEpochSecond(epochSecond));
+			return transition == null ? Long.MAX_VALUE : transition.toEpochSecond();
+		}
+		final int index = indexAfter(epochSecond);
+		return index < transitions.length ? transitions[index] : nextTransition(end);
+	}
+
+	/**
+	 * Get the instant of a transition.
+	 *
+	 * @param index index of the transition
+	 * @return the instant in epoch seconds.
+	 */
+	long transition(final int index) {
+		return transitions[index];
+	}
+
+	/**
+	 * Get the zone offset after a transition.
+	 *
+	 * @param index index of the transition
+	 * @return the offset in seconds.
+	 */
+	int offsetAfter(final int index) {
+		return offsets[index + 1];
+	}
+
+	/**
+	 * Convert a local time to an instant: a local time in a gap is moved forward by the length of the gap, in an overlap the
+	 * preferred offset is used if valid, otherwise the earlier one.
+	 *
+	 * @param localSecond local date and time in epoch seconds
+	 * @param preferredOffset preferred offset in seconds, {@link #NO_PREFERRED_OFFSET} for none
+	 * @return the instant in epoch seconds.
+	 */
+	long toEpochSecond(final long localSecond, final int preferredOffset) {
+		if (isFixedOffset()) {
+			return localSecond - offsets[0];
+		}
+		final int before = offsetAt(localSecond - MAX_OFFSET_SECONDS);
+		final int after = offsetAt(localSecond + MAX_OFFSET_SECONDS);
+		if (before == after) {
+			return localSecond - before;
+		}
+		final boolean validBefore = offsetAt(localSecond - before) == before;
+		final boolean validAfter = offsetAt(localSecond - after) == after;
+		if (validBefore && validAfter) {
+			// overlap
+			return localSecond - (preferredOffset == after ? after : before);
+		}
+		// gap or unambiguous
+		return localSecond - (validAfter ? after : before);
+	}
+
+	/**
+	 * Get the start of a day, the same instant as {@link LocalDate#atStartOfDay(ZoneId)}.
+	 *
+	 * @param epochDay the day as epoch day
+	 * @return the instant in epoch seconds.
+	 */
+	long dayStart(final long epochDay) {
+		return toEpochSecond(epochDay * ScheduleEvaluator.SECONDS_PER_DAY, NO_PREFERRED_OFFSET);
+	}
+
+	/**
+	 * Get the local minute of the day of an instant.
+	 *
+	 * @param epochSecond the instant in epoch seconds
+	 * @return minutes since local midnight.
+	 */
+	int minuteOfDay(final long epochSecond) {
+		return (int) Math.floorMod(epochSecond + offsetAt(epochSecond), ScheduleEvaluator.SECONDS_PER_DAY) / 60;
+	}
+
+	/**
+	 * Create the date/time of a time of day, the same as {@link ZonedDateTime#of} for the local date and time.
+	 *
+	 * @param epochDay the day as epoch day
+	 * @param minuteOfDay minutes of the day, "24:00" is midnight of the next day
+	 * @return the date/time.
+	 */
+	ZonedDateTime dateTime(final long epochDay, final int minuteOfDay) {
+		return dateTime(toEpochSecond(epochDay * ScheduleEvaluator.SECONDS_PER_DAY + minuteOfDay * 60L, NO_PREFERRED_OFFSET));
+	}
+
+	/**
+	 * Create the date/time of an instant, passing its known offset, so that the zone rules are at most validated once.
+	 *
+	 * @param epochSecond the instant in epoch seconds
+	 * @return the date/time.
+	 */
+	ZonedDateTime dateTime(final long epochSecond) {
+		final ZoneOffset offset = ZoneOffset.ofTotalSeconds(offsetAt(epochSecond));
+		return ZonedDateTime.ofLocal(LocalDateTime.ofEpochSecond(epochSecond, 0, offset), zone, offset);
+	}
+}
@@ -0,0 +1,190 @@
+package de.westemeyer.openingtimes.jmh;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.westemeyer.openingtimes.api.AsyncHolidayResolver;
+import de.westemeyer.openingtimes.api.AsyncTimeSlicesCollector;
+import de.westemeyer.openingtimes.api.HolidayResolver;
+import de.westemeyer.openingtimes.api.TimeSlice;
+import de.westemeyer.openingtimes.api.TimeSlicesCollector;
+import de.westemeyer.openingtimes.impl.AsyncOpeningTimes;
+import de.westemeyer.openingtimes.impl.OpenType;
+
+/**
+ * Benchmarks for queries of a remote store with a fixed latency, comparing a blocking store waited for on a small pool with an
+ * asynchronous store. Both are queried through {@link AsyncOpeningTimes} with the same windows and the same prefetching, and
+ * each invocation starts with an empty cache, reporting queries per second.
+ *
+ * @author Sebastian Westemeyer
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AsyncOpeningTimesBenchmark {
+	/** Number of queries per invocation, one per day of a year. */
+	private static final int DAYS = 365;
+	/** Number of threads waiting for the blocking store. */
+	private static final int POOL_SIZE = 4;
+
+	/** Latency of each request of the store in milliseconds. */
+	@Param({ "1", "10" })
+	public int latency;
+
+	/** Time slices of the store. */
+	private List<TimeSlice> slices;
+	/** Test dates. */
+	private ZonedDateTime[] dates;
+	/** Threads waiting for the blocking store. */
+	private ExecutorService pool;
+	/** Timer answering the requests of the asynchronous store. */
+	private ScheduledExecutorService timer;
+	/** Opening times over the blocking store. */
+	private AsyncOpeningTimes blocking;
+	/** Opening times over the asynchronous store. */
+	private AsyncOpeningTimes nonBlocking;
+
+	/**
+	 * Create the stores.
+	 */
+	@Setup(Level.Trial)
+	public void setUp() {
+		slices = BenchmarkSchedules.create(100, true, true);
+		dates = new ZonedDateTime[DAYS];
+		for (int i = 0; i < DAYS; i++) {
+			dates[i] = BenchmarkSchedules.FIRST_DAY.atTime(9, 0).atZone(BenchmarkSchedules.ZONE).plusDays(i).plusMinutes(i * 7);
+		}
+		pool = Executors.newFixedThreadPool(POOL_SIZE);
+		timer = Executors.newSingleThreadScheduledExecutor();
+		final SleepingStore sleeping = new SleepingStore();
+		blocking = new AsyncOpeningTimes(AsyncTimeSlicesCollector.of(sleeping, pool), AsyncHolidayResolver.of(sleeping, pool), true);
+		final TimedStore timed = new TimedStore();
+		nonBlocking = new AsyncOpeningTimes(timed, timed, true);
+	}
+
+	/**
+	 * Stop the threads of the stores.
+	 */
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		pool.shutdownNow();
+		timer.shutdownNow();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(DAYS)
+	public OpenType blockingStore() {
+		return queryAll(blocking);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(DAYS)
+	public OpenType asynchronousStore() {
+		return queryAll(nonBlocking);
+	}
+
+	/**
+	 * Query all test dates with an empty cache and wait for the results.
+	 *
+	 * @param openingTimes the opening times to query
+	 * @return the last result.
+	 */
+	private OpenType queryAll(final AsyncOpeningTimes openingTimes) {
+		openingTimes.clear();
+		final CompletableFuture<?>[] futures = new CompletableFuture<?>[DAYS];
+		for (int i = 0; i < DAYS; i++) {
+			futures[i] = openingTimes.createOpenTypeAsync(dates[i]);
+		}
+		CompletableFuture.allOf(futures).join();
+		return (OpenType) futures[DAYS - 1].join();
+	}
+
+	/**
+	 * Blocking store, sleeping for the latency on every request.
+	 */
+	private final class SleepingStore implements TimeSlicesCollector, HolidayResolver {
+		@Override
+		public List<TimeSlice> getTimeSlices() {
+			sleep();
+			return slices;
+		}
+
+		@Override
+		public boolean isHoliday(final ZonedDateTime testDate) {
+			return BenchmarkSchedules.HOLIDAY_HEAVY.isHoliday(testDate);
+		}
+
+		@Override
+		public BitSet holidaysBetween(final LocalDate from, final LocalDate toExclusive, final ZoneId zone) {
+			sleep();
+			return BenchmarkSchedules.HOLIDAY_HEAVY.holidaysBetween(from, toExclusive, zone);
+		}
+
+		/**
+		 * Wait for the latency.
+		 */
+		private void sleep() {
+			try {
+				Thread.sleep(latency);
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	/**
+	 * Asynchronous store, answering every request after the latency without occupying a thread.
+	 */
+	private final class TimedStore implements AsyncTimeSlicesCollector, AsyncHolidayResolver {
+		@Override
+		public CompletableFuture<List<TimeSlice>> getTimeSlicesAsync(final LocalDate from, final LocalDate toExclusive,
+				final ZoneId zone) {
+			return later(slices);
+		}
+
+		@Override
+		public CompletableFuture<BitSet> holidaysBetweenAsync(final LocalDate from, final LocalDate toExclusive, final ZoneId zone) {
+			return later(BenchmarkSchedules.HOLIDAY_HEAVY.holidaysBetween(from, toExclusive, zone));
+		}
+
+		/**
+		 * Answer a request after the latency.
+		 *
+		 * @param value the value of the request
+		 * @param <T> type of the value
+		 * @return future of the value.
+		 */
+		private <T> CompletableFuture<T> later(final T value) {
+			final CompletableFuture<T> future = new CompletableFuture<>();
+			timer.schedule(() -> future.complete(value), latency, TimeUnit.MILLISECONDS);
+			return future;
+		}
+	}
+}
@@ -0,0 +1,87 @@
+package de.westemeyer.openingtimes.jmh;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import de.westemeyer.openingtimes.api.HolidayResolver;
+import de.westemeyer.openingtimes.api.TimeSlice;
+import de.westemeyer.openingtimes.api.WeekDay;
+import de.westemeyer.openingtimes.impl.TimeOfDay;
+
+/**
+ * Generator for benchmark schedules and query dates.
+ *
+ * @author Sebastian Westemeyer
+ *
+ */
+public class BenchmarkSchedules {
+	/** Time zone of schedules and queries. */
+	public static final ZoneId ZONE = ZoneId.of("Europe/Berlin");
+	/** First day of all schedules. */
+	public static final LocalDate FIRST_DAY = LocalDate.of(2014, 1, 1);
+	/** Holiday resolver with every third day as holiday. */
+	public static final HolidayResolver HOLIDAY_HEAVY = d -> d.getDayOfYear() % 3 == 0;
+	/** Holiday resolver without any holidays. */
+	public static final HolidayResolver NO_HOLIDAYS = d -> false;
+	/** Number of query dates, a power of two. */
+	public static final int QUERIES = 1024;
+
+	/**
+	 * Create random time slices.
+	 * <p>
+	 * Dense seasons put all slices into a single year, so that many slices overlap every day. Sparse seasons let a new slice
+	 * begin every day, each valid for up to two weeks, so that the schedule covers years of seasonal history.
+	 *
+	 * @param count number of slices
+	 * @param dense whether to create a dense or a sparse season
+	 * @param holidays whether to add bank holidays to the weekdays of most slices
+	 * @return list of time slices.
+	 */
+	public static List<TimeSlice> create(final int count, final boolean dense, final boolean holidays) {
+		final Random random = new Random(count);
+		final List<TimeSlice> slices = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			final LocalDate from = FIRST_DAY.plusDays(dense ? random.nextInt(365) : i);
+			final LocalDate to = from.plusDays(1 + random.nextInt(dense ? 60 : 14));
+			final int start = 6 * 60 + random.nextInt(8 * 60);
+			final int end = random.nextInt(10) == 0 ? TimeOfDay.END_OF_DAY : start + 60 + random.nextInt(8 * 60);
+			final Set<WeekDay> weekdays = EnumSet.noneOf(WeekDay.class);
+			for (final WeekDay weekDay : WeekDay.values()) {
+				if (weekDay == WeekDay.HOLIDAY ? holidays && random.nextInt(4) != 0 : random.nextBoolean()) {
+					weekdays.add(weekDay);
+				}
+			}
+			slices.add(new BenchmarkTimeSlice(from.atStartOfDay(ZONE), to.atStartOfDay(ZONE).minusSeconds(1), TimeOfDay.format(start),
+					TimeOfDay.format(end), weekdays));
+		}
+		return slices;
+	}
+
+	/**
+	 * Create query dates, either in summer or in weeks crossing the switch from or to daylight saving time.
+	 *
+	 * @param crossingDaylightSavingTime whether the upcoming week of each query should cross a daylight saving time switch
+	 * @return {@link #QUERIES} query dates.
+	 */
+	public static ZonedDateTime[] queries(final boolean crossingDaylightSavingTime) {
+		final Random random = new Random(QUERIES);
+		final ZonedDateTime[] queries = new ZonedDateTime[QUERIES];
+		for (int i = 0; i < QUERIES; i++) {
+			final LocalDate day;
+			if (crossingDaylightSavingTime) {
+				day = (i % 2 == 0 ? LocalDate.of(2014, 3, 24) : LocalDate.of(2014, 10, 20)).plusDays(random.nextInt(7));
+			} else {
+				day = LocalDate.of(2014, 6, 1).plusDays(random.nextInt(60));
+			}
+			queries[i] = ZonedDateTime.of(day, LocalTime.ofSecondOfDay(random.nextInt(86400)), ZONE);
+		}
+		return queries;
+	}
+}
@@ -0,0 +1,69 @@
+package de.westemeyer.openingtimes.jmh;
+
+import java.time.ZonedDateTime;
+import java.util.Set;
+
+import de.westemeyer.openingtimes.api.TimeSlice;
+import de.westemeyer.openingtimes.api.WeekDay;
+
+/**
+ * Plain time slice for benchmarks.
+ *
+ * @author Sebastian Westemeyer
+ *
+ */
+public class BenchmarkTimeSlice implements TimeSlice {
+	/** Start date/time for this time slice. */
+	private final ZonedDateTime from;
+	/** End date/time for this time slice. */
+	private final ZonedDateTime to;
+	/** Time of day when we will be open. */
+	private final String starttime;
+	/** Time of day when we will be closing. */
+	private final String endtime;
+	/** List of weekdays for which this setting will be applied. */
+	private final Set<WeekDay> weekdays;
+
+	/**
+	 * Construct new instance.
+	 *
+	 * @param from Start date/time for this time slice.
+	 * @param to End date/time for this time slice.
+	 * @param starttime Time of day when we will be open.
+	 * @param endtime Time of day when we will be closing.
+	 * @param weekdays List of weekdays for which this setting will be applied.
+	 */
+	public BenchmarkTimeSlice(final ZonedDateTime from, final ZonedDateTime to, final String starttime, final String endtime,
+			final Set<WeekDay> weekdays) {
+		this.from = from;
+		this.to = to;
+		this.starttime = starttime;
+		this.endtime = endtime;
+		this.weekdays = weekdays;
+	}
+
+	@Override
+	public ZonedDateTime getFrom() {
+		return from;
+	}
+
+	@Override
+	public ZonedDateTime getTo() {
+		return to;
+	}
+
+	@Override
+	public String getStartTime() {
+		return starttime;
+	}
+
+	@Override
+	public String getEndTime() {
+		return endtime;
+	}
+
+	@Override
+	public Set<WeekDay> getWeekdays() {
+		return weekdays;
+	}
+}
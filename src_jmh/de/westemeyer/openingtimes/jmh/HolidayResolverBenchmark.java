@@ -0,0 +1,80 @@
+package de.westemeyer.openingtimes.jmh;
+
+import java.time.ZonedDateTime;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.westemeyer.openingtimes.api.HolidayResolver;
+import de.westemeyer.openingtimes.impl.CachingHolidayResolver;
+import de.westemeyer.openingtimes.impl.CompiledSchedule;
+import de.westemeyer.openingtimes.impl.ExampleHolidayResolver;
+import de.westemeyer.openingtimes.impl.ExampleSchedules;
+import de.westemeyer.openingtimes.impl.OpenType;
+import de.westemeyer.openingtimes.impl.OpeningTimes;
+
+/**
+ * Benchmarks for the example schedule, with a jollyday based holiday resolver with and without cache.
+ *
+ * @author Sebastian Westemeyer
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HolidayResolverBenchmark {
+	/** Holiday resolver without ("cold") or with cache. */
+	@Param({ "cold", "cached" })
+	public String resolver;
+
+	/** Holiday resolver to benchmark. */
+	private HolidayResolver holidays;
+	/** Opening times of the example schedule. */
+	private OpeningTimes openingTimes;
+	/** Query dates. */
+	private ZonedDateTime[] queries;
+	/** Index of the next query date. */
+	private int next;
+
+	/**
+	 * Create resolver, schedule and query dates.
+	 */
+	@Setup
+	public void setUp() {
+		holidays = "cached".equals(resolver) ? new CachingHolidayResolver(new ExampleHolidayResolver()) : new ExampleHolidayResolver();
+		openingTimes = new OpeningTimes(new CompiledSchedule(ExampleSchedules.list1()), holidays);
+		queries = BenchmarkSchedules.queries(false);
+	}
+
+	/**
+	 * Get the next query date.
+	 *
+	 * @return query date.
+	 */
+	private ZonedDateTime nextQuery() {
+		return queries[next++ & (BenchmarkSchedules.QUERIES - 1)];
+	}
+
+	@Benchmark
+	public boolean isHoliday() {
+		return holidays.isHoliday(nextQuery());
+	}
+
+	@Benchmark
+	public OpenType createOpenType() {
+		return openingTimes.createOpenType(nextQuery());
+	}
+}
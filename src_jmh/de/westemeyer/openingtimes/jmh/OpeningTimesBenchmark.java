@@ -0,0 +1,144 @@
+package de.westemeyer.openingtimes.jmh;
+
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.westemeyer.openingtimes.api.TimeSlice;
+import de.westemeyer.openingtimes.impl.CachingHolidayResolver;
+import de.westemeyer.openingtimes.impl.CompactOpenType;
+import de.westemeyer.openingtimes.impl.CompiledSchedule;
+import de.westemeyer.openingtimes.impl.ExampleTimeSlicesCollector;
+import de.westemeyer.openingtimes.impl.OpenType;
+import de.westemeyer.openingtimes.impl.OpeningTimes;
+import de.westemeyer.openingtimes.impl.ReferenceOpeningTimes;
+import de.westemeyer.openingtimes.impl.TransitionTimeline;
+
+/**
+ * Benchmarks for single queries against schedules of different sizes and shapes.
+ *
+ * @author Sebastian Westemeyer
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OpeningTimesBenchmark {
+	/** Number of time slices. */
+	@Param({ "10", "100", "1000", "10000", "100000" })
+	public int slices;
+
+	/** Dense seasons with many overlapping slices, or sparse seasons with years of history. */
+	@Param({ "dense", "sparse" })
+	public String season;
+
+	/** Whether most slices include bank holidays and every third day is a holiday. */
+	@Param({ "false", "true" })
+	public boolean holidays;
+
+	/** Whether the upcoming week of each query crosses a daylight saving time switch. */
+	@Param({ "false", "true" })
+	public boolean crossingDaylightSavingTime;
+
+	/** Opening times with compiled schedule. */
+	private OpeningTimes compiled;
+	/** Opening times with plain collector, compiled for each query. */
+	private OpeningTimes plain;
+	/** Unoptimised reference implementation, to compare time and allocation per query. */
+	private ReferenceOpeningTimes reference;
+	/** Timeline covering all query dates. */
+	private TransitionTimeline timeline;
+	/** Query dates. */
+	private ZonedDateTime[] queries;
+	/** Query dates in epoch milliseconds. */
+	private long[] queryMillis;
+	/** Results of batch queries. */
+	private OpenType[] results;
+	/** Reused result of compact queries. */
+	private final CompactOpenType compact = new CompactOpenType();
+	/** Index of the next query date. */
+	private int next;
+
+	/**
+	 * Create schedules and query dates.
+	 */
+	@Setup
+	public void setUp() {
+		final List<TimeSlice> list = BenchmarkSchedules.create(slices, "dense".equals(season), holidays);
+		final CachingHolidayResolver resolver = new CachingHolidayResolver(
+				holidays ? BenchmarkSchedules.HOLIDAY_HEAVY : BenchmarkSchedules.NO_HOLIDAYS);
+		compiled = new OpeningTimes(new CompiledSchedule(list), resolver);
+		plain = new OpeningTimes(new ExampleTimeSlicesCollector(list), resolver);
+		reference = new ReferenceOpeningTimes(new ExampleTimeSlicesCollector(list), resolver);
+		queries = BenchmarkSchedules.queries(crossingDaylightSavingTime);
+		results = new OpenType[queries.length];
+		queryMillis = new long[queries.length];
+		for (int i = 0; i < queries.length; i++) {
+			queryMillis[i] = queries[i].toInstant().toEpochMilli();
+		}
+		timeline = compiled.createTimeline(BenchmarkSchedules.FIRST_DAY.atStartOfDay(BenchmarkSchedules.ZONE),
+				TransitionTimeline.DEFAULT_DAYS);
+	}
+
+	/**
+	 * Get the next query date.
+	 *
+	 * @return query date.
+	 */
+	private ZonedDateTime nextQuery() {
+		return queries[next++ & (BenchmarkSchedules.QUERIES - 1)];
+	}
+
+	@Benchmark
+	public OpenType createOpenType() {
+		return compiled.createOpenType(nextQuery());
+	}
+
+	@Benchmark
+	public CompactOpenType createOpenTypeCompact() {
+		return compiled.createOpenType(queryMillis[next++ & (BenchmarkSchedules.QUERIES - 1)], BenchmarkSchedules.ZONE, compact);
+	}
+
+	@Benchmark
+	public OpenType createOpenTypeUncompiled() {
+		return plain.createOpenType(nextQuery());
+	}
+
+	@Benchmark
+	public OpenType createOpenTypeReference() {
+		return reference.createOpenType(nextQuery());
+	}
+
+	@Benchmark
+	public OpenType createOpenTypeTimeline() {
+		return timeline.createOpenType(nextQuery());
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(BenchmarkSchedules.QUERIES)
+	public OpenType[] createOpenTypes() {
+		compiled.createOpenTypes(queries, results);
+		return results;
+	}
+
+	@Benchmark
+	public List<TimeSlice> relevantSlices() {
+		return compiled.relevantSlices(nextQuery());
+	}
+}
@@ -0,0 +1,76 @@
+package de.westemeyer.openingtimes.jmh;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.ZonedDateTime;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.westemeyer.openingtimes.impl.CompiledSchedule;
+import de.westemeyer.openingtimes.impl.OpenType;
+import de.westemeyer.openingtimes.impl.OpeningTimes;
+import de.westemeyer.openingtimes.impl.ScheduleFile;
+
+/**
+ * Benchmarks for loading saved schedules, from mapping the file to the result of the first query.
+ *
+ * @author Sebastian Westemeyer
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ScheduleFileBenchmark {
+	/** Number of time slices. */
+	@Param({ "1000", "10000", "200000" })
+	public int slices;
+
+	/** The saved schedule. */
+	private Path path;
+	/** Query date. */
+	private ZonedDateTime query;
+
+	/**
+	 * Save a schedule.
+	 *
+	 * @throws IOException if the file cannot be written.
+	 */
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		path = Files.createTempFile("schedule", ".bin");
+		ScheduleFile.write(new CompiledSchedule(BenchmarkSchedules.create(slices, true, false)), path);
+		query = BenchmarkSchedules.queries(false)[0];
+	}
+
+	/**
+	 * Delete the saved schedule.
+	 *
+	 * @throws IOException if the file cannot be deleted.
+	 */
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		Files.deleteIfExists(path);
+	}
+
+	@Benchmark
+	public OpenType loadAndQuery() throws IOException {
+		return new OpeningTimes(ScheduleFile.read(path), BenchmarkSchedules.NO_HOLIDAYS).createOpenType(query);
+	}
+}
@@ -0,0 +1,82 @@
+package de.westemeyer.openingtimes.jmh;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.westemeyer.openingtimes.api.TimeSlice;
+import de.westemeyer.openingtimes.api.WeekDay;
+import de.westemeyer.openingtimes.impl.CompiledSchedule;
+import de.westemeyer.openingtimes.impl.ScheduleImporter;
+
+/**
+ * Benchmarks for streaming imports of time slices, reporting rows per second.
+ *
+ * @author Sebastian Westemeyer
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ScheduleImporterBenchmark {
+	/** Number of rows per import. */
+	private static final int ROWS = 100000;
+
+	/** The input format. */
+	@Param({ "CSV", "JSON_LINES" })
+	public ScheduleImporter.Format format;
+
+	/** The exported time slices. */
+	private byte[] input;
+
+	/**
+	 * Export time slices in the input format.
+	 */
+	@Setup
+	public void setUp() {
+		final boolean csv = format == ScheduleImporter.Format.CSV;
+		final StringBuilder builder = new StringBuilder(csv ? "from,to,startTime,endTime,weekdays\n" : "");
+		for (final TimeSlice slice : BenchmarkSchedules.create(ROWS, true, true)) {
+			// the importer rejects time slices without weekdays
+			final Set<WeekDay> days = slice.getWeekdays().isEmpty() ? EnumSet.of(WeekDay.SUNDAY) : slice.getWeekdays();
+			final StringBuilder weekdays = new StringBuilder();
+			for (final WeekDay weekDay : days) {
+				weekdays.append(weekdays.length() == 0 ? "" : csv ? "|" : "\", \"").append(weekDay.name());
+			}
+			if (csv) {
+				builder.append(slice.getFrom()).append(',').append(slice.getTo()).append(',').append(slice.getStartTime()).append(',')
+						.append(slice.getEndTime()).append(',').append(weekdays).append('\n');
+			} else {
+				builder.append("{\"from\": \"").append(slice.getFrom()).append("\", \"to\": \"").append(slice.getTo())
+						.append("\", \"startTime\": \"").append(slice.getStartTime()).append("\", \"endTime\": \"")
+						.append(slice.getEndTime()).append("\", \"weekdays\": [\"").append(weekdays).append("\"]}\n");
+			}
+		}
+		input = builder.toString().getBytes(StandardCharsets.UTF_8);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(ROWS)
+	public CompiledSchedule readSchedule() throws IOException {
+		return new ScheduleImporter(format, BenchmarkSchedules.ZONE).readSchedule(new ByteArrayInputStream(input));
+	}
+}
@@ -0,0 +1,91 @@
+package de.westemeyer.openingtimes.jmh;
+
+import java.time.LocalDate;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.westemeyer.openingtimes.impl.CachingHolidayResolver;
+import de.westemeyer.openingtimes.impl.CompiledSchedule;
+import de.westemeyer.openingtimes.impl.OpenType;
+import de.westemeyer.openingtimes.impl.VenueIndex;
+import de.westemeyer.openingtimes.impl.VenueRegistry;
+
+/**
+ * Benchmarks for "who is open now" queries across many venues, with different levels of parallelism, and with an inverted
+ * index instead of evaluating each venue.
+ *
+ * @author Sebastian Westemeyer
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VenueRegistryBenchmark {
+	/** Number of venues. */
+	@Param({ "1000", "50000" })
+	public int venues;
+
+	/** Number of threads evaluating venues. */
+	@Param({ "1", "2", "4", "8" })
+	public int parallelism;
+
+	/** The registry. */
+	private VenueRegistry registry;
+	/** Index over the days of all query dates. */
+	private VenueIndex index;
+	/** Query dates. */
+	private ZonedDateTime[] queries;
+	/** Index of the next query date. */
+	private int next;
+
+	/**
+	 * Register venues with 20 slices each, sharing a dense season of holiday-heavy weekdays.
+	 */
+	@Setup
+	public void setUp() {
+		registry = new VenueRegistry(parallelism);
+		registry.addRegion("region", new CachingHolidayResolver(BenchmarkSchedules.HOLIDAY_HEAVY));
+		for (int i = 0; i < venues; i++) {
+			registry.register(Integer.toString(i), "region", new CompiledSchedule(BenchmarkSchedules.create(20 + i % 7, true, true)));
+		}
+		queries = BenchmarkSchedules.queries(false);
+		index = new VenueIndex(registry, BenchmarkSchedules.ZONE, LocalDate.of(2014, 6, 1), 61);
+	}
+
+	/**
+	 * Shut down the pool of the registry.
+	 */
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		registry.close();
+	}
+
+	@Benchmark
+	public Map<String, OpenType> openAt() {
+		return registry.openAt(queries[next++ & (BenchmarkSchedules.QUERIES - 1)]);
+	}
+
+	@Benchmark
+	public List<String> openAtIndexed() {
+		return index.openAt(queries[next++ & (BenchmarkSchedules.QUERIES - 1)]);
+	}
+}
@@ -0,0 +1,272 @@
+package de.westemeyer.openingtimes.impl;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.westemeyer.openingtimes.api.AsyncHolidayResolver;
+import de.westemeyer.openingtimes.api.AsyncTimeSlicesCollector;
+import de.westemeyer.openingtimes.api.HolidayResolver;
+import de.westemeyer.openingtimes.api.OpenStatus;
+import de.westemeyer.openingtimes.api.TimeSlice;
+
+/**
+ * @author Sebastian Westemeyer
+ */
+public class AsyncOpeningTimesTest {
+	/** Time zone of the test dates. */
+	private static final ZoneId ZONE = ZoneId.of("Europe/Berlin");
+	/** First day of a window. */
+	private static final ZonedDateTime WINDOW_START = LocalDate.ofEpochDay(2000 * AsyncOpeningTimes.WINDOW_DAYS).atStartOfDay(ZONE);
+
+	@Test
+	public void testSameResults() {
+		for (final boolean prefetch : new boolean[] { false, true }) {
+			final PendingStore example = new PendingStore(ExampleSchedules.list1(), new ExampleHolidayResolver());
+			final PendingStore random = new PendingStore(RandomSchedules.create(97, 60), RandomSchedules.HOLIDAYS);
+			for (final PendingStore store : new PendingStore[] { example, random }) {
+				final AsyncOpeningTimes async = new AsyncOpeningTimes(store, store, prefetch);
+				final OpeningTimes openingTimes = new OpeningTimes(new CompiledSchedule(store.slices), store.holidays);
+				for (ZonedDateTime date = ZonedDateTime.of(2014, 1, 1, 0, 0, 0, 0, ZONE); date.getYear() == 2014; date = date
+						.plusMinutes(997)) {
+					final OpenType expected = openingTimes.createOpenType(date);
+					final OpenType actual = async.createOpenTypeAsync(date).join();
+					OpenTypeAssert.assertSameResult(date.toString(), expected, actual);
+					Assert.assertEquals(expected.getValidUntil(), actual.getValidUntil());
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testNoBlocking() {
+		final PendingStore store = new PendingStore(ExampleSchedules.list1(), new ExampleHolidayResolver());
+		final AsyncOpeningTimes async = new AsyncOpeningTimes(store, store);
+		final ZonedDateTime date = ZonedDateTime.of(2014, 9, 20, 9, 30, 0, 0, ZONE);
+		store.hold = true;
+
+		// the queries return while the store has not answered yet
+		final CompletableFuture<OpenType> first = async.createOpenTypeAsync(date);
+		final CompletableFuture<OpenType> second = async.createOpenTypeAsync(date.plusHours(5));
+		Assert.assertFalse(first.isDone());
+		Assert.assertFalse(second.isDone());
+		Assert.assertEquals(2, store.pending.size());
+
+		store.release();
+		Assert.assertTrue(first.isDone());
+		Assert.assertTrue(second.isDone());
+		final OpeningTimes openingTimes = new OpeningTimes(new CompiledSchedule(store.slices), store.holidays);
+		OpenTypeAssert.assertSameResult(date.toString(), openingTimes.createOpenType(date), first.join());
+
+		// fetched windows are answered right away
+		Assert.assertTrue(async.createOpenTypeAsync(date.plusHours(1)).isDone());
+		Assert.assertTrue(store.pending.isEmpty());
+	}
+
+	@Test
+	public void testRequestsPerWindow() {
+		final int windows = 5;
+		for (final boolean prefetch : new boolean[] { false, true }) {
+			final PendingStore store = new PendingStore(ExampleSchedules.list1(), new ExampleHolidayResolver());
+			final AsyncOpeningTimes async = new AsyncOpeningTimes(store, store, prefetch);
+			// several test dates per window, moving forward in time
+			for (int hours = 0; hours < windows * AsyncOpeningTimes.WINDOW_DAYS * 24; hours += 7) {
+				async.createOpenTypeAsync(WINDOW_START.plusHours(hours)).join();
+			}
+			final int expected = prefetch ? windows + 1 : windows;
+			Assert.assertEquals(expected, store.sliceRequests.get());
+			Assert.assertEquals(expected, store.holidayRequests.get());
+			Assert.assertEquals(expected, async.size());
+		}
+	}
+
+	@Test
+	public void testInterleavedPeriods() {
+		final PendingStore store = new PendingStore(ExampleSchedules.list1(), new ExampleHolidayResolver());
+		final AsyncOpeningTimes async = new AsyncOpeningTimes(store, store, false, 2);
+		final ZonedDateTime now = ZonedDateTime.of(2014, 6, 2, 10, 0, 0, 0, ZONE);
+		final ZonedDateTime nextMonth = now.plusMonths(1);
+		for (int i = 0; i < 100; i++) {
+			async.createOpenTypeAsync(now.plusMinutes(i)).join();
+			async.createOpenTypeAsync(nextMonth.plusMinutes(i)).join();
+		}
+		Assert.assertEquals(2, store.sliceRequests.get());
+		Assert.assertEquals(2, store.holidayRequests.get());
+	}
+
+	@Test
+	public void testEviction() {
+		final PendingStore store = new PendingStore(ExampleSchedules.list1(), new ExampleHolidayResolver());
+		final AsyncOpeningTimes async = new AsyncOpeningTimes(store, store, false, 2);
+		final ZonedDateTime first = WINDOW_START;
+		final ZonedDateTime second = first.plusDays(AsyncOpeningTimes.WINDOW_DAYS);
+		final ZonedDateTime third = second.plusDays(AsyncOpeningTimes.WINDOW_DAYS);
+		async.createOpenTypeAsync(first).join();
+		async.createOpenTypeAsync(second).join();
+		async.createOpenTypeAsync(first).join();
+
+		// the second window is used least recently
+		async.createOpenTypeAsync(third).join();
+		Assert.assertEquals(2, async.size());
+		Assert.assertEquals(3, store.sliceRequests.get());
+		async.createOpenTypeAsync(first).join();
+		async.createOpenTypeAsync(third).join();
+		Assert.assertEquals(3, store.sliceRequests.get());
+		async.createOpenTypeAsync(second).join();
+		Assert.assertEquals(4, store.sliceRequests.get());
+
+		// windows of all time zones share the maximum
+		async.createOpenTypeAsync(second.withZoneSameLocal(ZoneId.of("America/New_York"))).join();
+		Assert.assertEquals(2, async.size());
+		Assert.assertEquals(5, store.sliceRequests.get());
+
+		try {
+			new AsyncOpeningTimes(store, store, false, 0);
+			Assert.fail("Maximum number of windows has to be checked");
+		} catch (final IllegalArgumentException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testRevision() {
+		final PendingStore store = new PendingStore(ExampleSchedules.list1(), new ExampleHolidayResolver());
+		final AsyncOpeningTimes async = new AsyncOpeningTimes(store, store);
+		final ZonedDateTime date = ZonedDateTime.of(2014, 9, 20, 15, 0, 0, 0, ZONE);
+		Assert.assertEquals(OpenStatus.OPEN, async.createOpenTypeAsync(date).join().getStatus());
+
+		// changed time slices are requested again
+		store.slices = new ArrayList<>();
+		store.revision++;
+		Assert.assertEquals(OpenStatus.CLOSED, async.createOpenTypeAsync(date).join().getStatus());
+		Assert.assertEquals(2, store.sliceRequests.get());
+		async.createOpenTypeAsync(date).join();
+		Assert.assertEquals(2, store.sliceRequests.get());
+
+		// changed holidays are requested again after clearing the cache
+		async.clear();
+		Assert.assertEquals(0, async.size());
+		async.createOpenTypeAsync(date).join();
+		Assert.assertEquals(3, store.holidayRequests.get());
+
+		// adapted blocking collectors pass on their revision
+		final ScheduleStore blocking = new ScheduleStore(ExampleSchedules.list1());
+		final AsyncTimeSlicesCollector adapted = AsyncTimeSlicesCollector.of(blocking, Runnable::run);
+		final long revision = adapted.getRevision();
+		blocking.add(ExampleSchedules.list1().get(0));
+		Assert.assertNotEquals(revision, adapted.getRevision());
+	}
+
+	@Test
+	public void testFailure() {
+		final PendingStore store = new PendingStore(ExampleSchedules.list1(), new ExampleHolidayResolver());
+		final AsyncOpeningTimes async = new AsyncOpeningTimes(store, store);
+		final ZonedDateTime date = ZonedDateTime.of(2014, 9, 20, 15, 0, 0, 0, ZONE);
+		store.failures.set(1);
+		try {
+			async.createOpenTypeAsync(date).join();
+			Assert.fail("Failure of the store expected");
+		} catch (final CompletionException e) {
+			Assert.assertTrue(e.getCause() instanceof IllegalStateException);
+		}
+		// the failed window is requested again
+		Assert.assertEquals(0, async.size());
+		Assert.assertNotNull(async.createOpenTypeAsync(date).join());
+		Assert.assertEquals(2, store.sliceRequests.get());
+	}
+
+	/**
+	 * In-memory stand-in of a remote store of time slices and holidays. Requests are answered right away, or kept pending until
+	 * released while the store is on hold.
+	 */
+	private static final class PendingStore implements AsyncTimeSlicesCollector, AsyncHolidayResolver {
+		/** The time slices. */
+		private List<TimeSlice> slices;
+		/** The holidays. */
+		private final HolidayResolver holidays;
+		/** Revision of the time slices. */
+		private long revision;
+		/** Whether to keep requests pending. */
+		private boolean hold;
+		/** Pending answers. */
+		private final List<Runnable> pending = new ArrayList<>();
+		/** Number of requests of time slices. */
+		private final AtomicInteger sliceRequests = new AtomicInteger();
+		/** Number of requests of holidays. */
+		private final AtomicInteger holidayRequests = new AtomicInteger();
+		/** Number of requests still to fail. */
+		private final AtomicInteger failures = new AtomicInteger();
+
+		/**
+		 * Create new store.
+		 *
+		 * @param slices the time slices
+		 * @param holidays the holidays
+		 */
+		PendingStore(final List<TimeSlice> slices, final HolidayResolver holidays) {
+			this.slices = slices;
+			this.holidays = holidays;
+		}
+
+		@Override
+		public CompletableFuture<List<TimeSlice>> getTimeSlicesAsync(final LocalDate from, final LocalDate toExclusive,
+				final ZoneId zone) {
+			sliceRequests.incrementAndGet();
+			return answer(slices);
+		}
+
+		@Override
+		public CompletableFuture<BitSet> holidaysBetweenAsync(final LocalDate from, final LocalDate toExclusive, final ZoneId zone) {
+			holidayRequests.incrementAndGet();
+			return answer(holidays.holidaysBetween(from, toExclusive, zone));
+		}
+
+		@Override
+		public long getRevision() {
+			return revision;
+		}
+
+		/**
+		 * Answer all pending requests.
+		 */
+		void release() {
+			hold = false;
+			pending.forEach(Runnable::run);
+			pending.clear();
+		}
+
+		/**
+		 * Answer a request, or keep it pending while the store is on hold. Fails the request if failures are pending.
+		 *
+		 * @param value the value of the request
+		 * @param <T> type of the value
+		 * @return future of the value.
+		 */
+		private <T> CompletableFuture<T> answer(final T value) {
+			final boolean fail = failures.getAndUpdate(count -> Math.max(0, count - 1)) > 0;
+			final CompletableFuture<T> future = new CompletableFuture<>();
+			final Runnable completion = () -> {
+				if (fail) {
+					future.completeExceptionally(new IllegalStateException("Store not available"));
+				} else {
+					future.complete(value);
+				}
+			};
+			if (hold) {
+				pending.add(completion);
+			} else {
+				completion.run();
+			}
+			return future;
+		}
+	}
+}
@@ -0,0 +1,125 @@
+package de.westemeyer.openingtimes.impl;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.westemeyer.openingtimes.api.HolidayResolver;
+
+/**
+ * @author Sebastian Westemeyer
+ */
+public class CachingHolidayResolverTest {
+	/** Time zone for the checked dates. */
+	private static final ZoneId ZONE = ZoneId.of("Europe/Berlin");
+
+	@Test
+	public void testSameResults() {
+		final HolidayResolver holidays = new ExampleHolidayResolver();
+		final CachingHolidayResolver cache = new CachingHolidayResolver(holidays);
+		for (LocalDate date = LocalDate.of(2013, 12, 1); date.getYear() < 2016; date = date.plusDays(1)) {
+			final ZonedDateTime dateTime = ZonedDateTime.of(date, LocalTime.of(23, 30), ZONE);
+			Assert.assertEquals(date.toString(), holidays.isHoliday(dateTime), cache.isHoliday(dateTime));
+		}
+	}
+
+	@Test
+	public void testHolidaysBetween() {
+		final HolidayResolver holidays = new ExampleHolidayResolver();
+		final CachingHolidayResolver cache = new CachingHolidayResolver(holidays);
+		final LocalDate from = LocalDate.of(2014, 12, 1);
+		for (LocalDate to = from; to.isBefore(LocalDate.of(2015, 1, 15)); to = to.plusDays(3)) {
+			Assert.assertEquals(to.toString(), holidays.holidaysBetween(from, to, ZONE), cache.holidaysBetween(from, to, ZONE));
+		}
+		// christmas, boxing day and new year
+		Assert.assertEquals("{24, 25, 31}", cache.holidaysBetween(from, LocalDate.of(2015, 1, 2), ZONE).toString());
+	}
+
+	@Test
+	public void testResolvesYearOnce() {
+		final AtomicInteger calls = new AtomicInteger();
+		final CachingHolidayResolver cache = new CachingHolidayResolver(countingResolver(calls), 2);
+		final ZonedDateTime date = ZonedDateTime.of(2016, 5, 1, 12, 0, 0, 0, ZONE);
+		Assert.assertTrue(cache.isHoliday(date));
+		Assert.assertEquals(366, calls.get());
+		Assert.assertFalse(cache.isHoliday(date.plusDays(1)));
+		Assert.assertTrue(cache.isHoliday(ZonedDateTime.of(2016, 12, 1, 0, 0, 0, 0, ZONE)));
+		Assert.assertEquals(366, calls.get());
+		// other time zone is resolved separately
+		Assert.assertTrue(cache.isHoliday(date.withZoneSameLocal(ZoneId.of("UTC"))));
+		Assert.assertEquals(2 * 366, calls.get());
+	}
+
+	@Test
+	public void testEvictsLeastRecentlyUsedYear() {
+		final AtomicInteger calls = new AtomicInteger();
+		final CachingHolidayResolver cache = new CachingHolidayResolver(countingResolver(calls), 2);
+		cache.isHoliday(ZONE, 2014, 1);
+		cache.isHoliday(ZONE, 2015, 1);
+		cache.isHoliday(ZONE, 2016, 1);
+		Assert.assertEquals(365 + 365 + 366, calls.get());
+		// 2016 and 2015 are still cached, 2014 has been evicted
+		cache.isHoliday(ZONE, 2016, 2);
+		cache.isHoliday(ZONE, 2015, 2);
+		Assert.assertEquals(365 + 365 + 366, calls.get());
+		// 2016 is used least recently
+		cache.isHoliday(ZONE, 2014, 2);
+		Assert.assertEquals(2 * 365 + 365 + 366, calls.get());
+		cache.isHoliday(ZONE, 2015, 3);
+		Assert.assertEquals(2 * 365 + 365 + 366, calls.get());
+		cache.isHoliday(ZONE, 2016, 3);
+		Assert.assertEquals(2 * 365 + 365 + 2 * 366, calls.get());
+	}
+
+	@Test
+	public void testAlternatingYears() {
+		final AtomicInteger calls = new AtomicInteger();
+		final CachingHolidayResolver cache = new CachingHolidayResolver(countingResolver(calls));
+		for (int year = 2014; year <= 2017; year++) {
+			cache.isHoliday(ZONE, year, 1);
+		}
+		// a report on a past year, interleaved with queries of the current year
+		for (int day = 1; day <= 100; day++) {
+			cache.isHoliday(ZONE, 2010, day);
+			cache.isHoliday(ZONE, 2017, day);
+		}
+		Assert.assertEquals(365 * 4 + 366, calls.get());
+		// the year used least recently has been evicted
+		cache.isHoliday(ZONE, 2015, 1);
+		cache.isHoliday(ZONE, 2016, 1);
+		Assert.assertEquals(365 * 4 + 366, calls.get());
+		cache.isHoliday(ZONE, 2014, 1);
+		Assert.assertEquals(365 * 5 + 366, calls.get());
+	}
+
+	@Test
+	public void testConcurrentReaders() {
+		final AtomicInteger calls = new AtomicInteger();
+		final CachingHolidayResolver cache = new CachingHolidayResolver(countingResolver(calls));
+		final long holidays = IntStream.range(0, 100000).parallel()
+				.filter(i -> cache.isHoliday(ZONE, 2010 + i % 4, 1 + i % 365)).count();
+		final long expected = IntStream.range(0, 100000).filter(i -> LocalDate.ofYearDay(2010 + i % 4, 1 + i % 365).getDayOfMonth() == 1)
+				.count();
+		Assert.assertEquals(expected, holidays);
+		Assert.assertEquals(365 * 3 + 366, calls.get());
+	}
+
+	/**
+	 * Create a resolver that treats the first day of each month as holiday and counts its calls.
+	 *
+	 * @param calls call counter
+	 * @return the holiday resolver.
+	 */
+	private HolidayResolver countingResolver(final AtomicInteger calls) {
+		return d -> {
+			calls.incrementAndGet();
+			return d.getDayOfMonth() == 1;
+		};
+	}
+}
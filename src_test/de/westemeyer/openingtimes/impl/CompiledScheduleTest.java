@@ -0,0 +1,222 @@
+package de.westemeyer.openingtimes.impl;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.westemeyer.openingtimes.api.HolidayResolver;
+import de.westemeyer.openingtimes.api.TimeSlice;
+import de.westemeyer.openingtimes.api.TimeSlicesCollector;
+
+/**
+ * @author Sebastian Westemeyer
+ */
+public class CompiledScheduleTest {
+	/** Zones to run queries in. */
+	private static final ZoneId[] ZONES = { ZoneId.of("+01:00"), ZoneId.of("Europe/Berlin"), ZoneId.of("America/New_York") };
+
+	@Test
+	public void testExampleSchedules() {
+		final HolidayResolver holidays = new ExampleHolidayResolver();
+		runComparison(ExampleSchedules.list1(), holidays, 193);
+		runComparison(ExampleSchedules.list2(), holidays, 193);
+	}
+
+	@Test
+	public void testRandomSchedule() {
+		runComparison(RandomSchedules.create(42, 300), RandomSchedules.HOLIDAYS, 61);
+	}
+
+	@Test
+	public void testBatch() {
+		final TimeSlicesCollector collector = new ExampleTimeSlicesCollector(RandomSchedules.create(11, 300));
+		final OpeningTimes openingTimes = new OpeningTimes(collector, RandomSchedules.HOLIDAYS);
+		for (final ZoneId zone : ZONES) {
+			// every 15 minutes of the weeks around the switches from and to daylight saving time
+			final TreeSet<ZonedDateTime> dates = new TreeSet<>();
+			for (final ZonedDateTime start : new ZonedDateTime[] { ZonedDateTime.of(2014, 3, 24, 0, 0, 0, 0, zone),
+					ZonedDateTime.of(2014, 10, 20, 0, 0, 0, 0, zone) }) {
+				for (int i = 0; i < 14 * 96; i++) {
+					dates.add(start.plusMinutes(15 * i));
+				}
+			}
+			final List<OpenType> results = openingTimes.createOpenTypes(dates);
+			Assert.assertEquals(dates.size(), results.size());
+			int index = 0;
+			for (final ZonedDateTime date : dates) {
+				OpenTypeAssert.assertSameResult(date.toString(), openingTimes.createOpenType(date), results.get(index++));
+			}
+		}
+	}
+
+	@Test
+	public void testBatchUnsorted() {
+		final OpeningTimes openingTimes = new OpeningTimes(new ExampleTimeSlicesCollector(ExampleSchedules.list1()),
+				new ExampleHolidayResolver());
+		// shuffled test dates in mixed time zones
+		final Random random = new Random(5);
+		final List<ZonedDateTime> list = new ArrayList<>();
+		for (int i = 0; i < 2000; i++) {
+			list.add(ZonedDateTime.of(2014, 1, 1, 0, 0, 0, 0, ZONES[i % ZONES.length]).plusSeconds(random.nextInt(366 * 86400)));
+		}
+		Collections.shuffle(list, random);
+		final ZonedDateTime[] dates = list.toArray(new ZonedDateTime[list.size()]);
+		final OpenType[] results = new OpenType[dates.length + 1];
+		openingTimes.createOpenTypes(dates, results);
+		for (int i = 0; i < dates.length; i++) {
+			OpenTypeAssert.assertSameResult(dates[i].toString(), openingTimes.createOpenType(dates[i]), results[i]);
+		}
+		Assert.assertNull(results[dates.length]);
+	}
+
+	@Test
+	public void testBatchHolidays() {
+		final AtomicInteger rangeCalls = new AtomicInteger();
+		final HolidayResolver holidays = new HolidayResolver() {
+			@Override
+			public boolean isHoliday(final ZonedDateTime testDate) {
+				return RandomSchedules.HOLIDAYS.isHoliday(testDate);
+			}
+
+			@Override
+			public BitSet holidaysBetween(final LocalDate from, final LocalDate toExclusive, final ZoneId zone) {
+				rangeCalls.incrementAndGet();
+				return HolidayResolver.super.holidaysBetween(from, toExclusive, zone);
+			}
+		};
+		final OpeningTimes openingTimes = new OpeningTimes(new CompiledSchedule(RandomSchedules.create(13, 300)), holidays);
+		// every 15 minutes of four weeks, in each time zone
+		final List<ZonedDateTime> list = new ArrayList<>();
+		for (final ZoneId zone : ZONES) {
+			for (int i = 0; i < 28 * 96; i++) {
+				list.add(ZonedDateTime.of(2014, 10, 6, 0, 0, 0, 0, zone).plusMinutes(15 * i));
+			}
+		}
+		final ZonedDateTime[] dates = list.toArray(new ZonedDateTime[list.size()]);
+		final OpenType[] results = new OpenType[dates.length];
+		openingTimes.createOpenTypes(dates, results);
+		// the holidays of all checked periods are fetched at once per time zone
+		Assert.assertEquals(ZONES.length, rangeCalls.get());
+		for (int i = 0; i < dates.length; i++) {
+			OpenTypeAssert.assertSameResult(dates[i].toString(), openingTimes.createOpenType(dates[i]), results[i]);
+			if (results[i].getCheckedDate() != null) {
+				Assert.assertSame(dates[i], results[i].getCheckedDate());
+			}
+		}
+	}
+
+	@Test
+	public void testBatchFarApart() {
+		final OpeningTimes openingTimes = new OpeningTimes(new CompiledSchedule(RandomSchedules.create(17, 300)),
+				RandomSchedules.HOLIDAYS);
+		// centuries apart, and within the same second in reverse order
+		final ZonedDateTime date = ZonedDateTime.of(2014, 6, 1, 10, 0, 0, 0, ZONES[1]);
+		final ZonedDateTime[] dates = { date.withNano(900), date.plusYears(200), date.withNano(100), date.minusYears(150),
+				date.withNano(500), date.plusMinutes(1) };
+		final OpenType[] results = new OpenType[dates.length];
+		openingTimes.createOpenTypes(dates, results);
+		for (int i = 0; i < dates.length; i++) {
+			OpenTypeAssert.assertSameResult(dates[i].toString(), openingTimes.createOpenType(dates[i]), results[i]);
+		}
+		openingTimes.createOpenTypes(new ZonedDateTime[0], new OpenType[0]);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testBatchResultsTooShort() {
+		new OpeningTimes(new ExampleTimeSlicesCollector(ExampleSchedules.list1()), new ExampleHolidayResolver())
+				.createOpenTypes(new ZonedDateTime[2], new OpenType[1]);
+	}
+
+	@Test
+	public void testBuilder() {
+		final TimeSlicePool pool = new TimeSlicePool();
+		final List<TimeSlice> slices = new ArrayList<>();
+		for (final TimeSlice slice : RandomSchedules.create(11, 400)) {
+			slices.add(pool.copyOf(slice));
+			// slices with equal "from" members keep the order they have been added in
+			slices.add(pool.copyOf(slice));
+		}
+		// slices not of the pool are compiled as well
+		slices.addAll(RandomSchedules.create(13, 50));
+		for (final boolean shuffled : new boolean[] { false, true }) {
+			final List<TimeSlice> input = new ArrayList<>(slices);
+			if (shuffled) {
+				Collections.shuffle(input, new Random(17));
+			} else {
+				input.sort(Comparator.comparing(TimeSlice::getFrom));
+			}
+			final CompiledSchedule.Builder builder = new CompiledSchedule.Builder();
+			input.forEach(builder::add);
+			Assert.assertEquals(input.size(), builder.size());
+			assertSameSchedule(new CompiledSchedule(input), builder.build());
+		}
+		Assert.assertEquals(0, new CompiledSchedule.Builder().build().size());
+	}
+
+	@Test
+	public void testRelevantSlices() {
+		final List<TimeSlice> slices = RandomSchedules.create(7, 1000);
+		final CompiledSchedule schedule = new CompiledSchedule(new ExampleTimeSlicesCollector(slices));
+		Assert.assertEquals(slices.size(), schedule.size());
+		for (ZonedDateTime date = ZonedDateTime.of(2013, 12, 1, 0, 0, 0, 0, ZONES[1]); date.getYear() < 2015; date = date.plusHours(29)) {
+			final ZonedDateTime lower = date;
+			final ZonedDateTime upper = date.plusDays(8);
+			final List<TimeSlice> expected = slices.stream().filter(s -> !s.getFrom().isAfter(upper) && !s.getTo().isBefore(lower))
+					.sorted(Comparator.comparing(TimeSlice::getFrom)).collect(Collectors.toList());
+			Assert.assertEquals(date.toString(), expected, schedule.relevantSlices(lower, upper));
+		}
+	}
+
+	/**
+	 * Assert that two schedules hold the same slices in the same order, with the same compiled values.
+	 *
+	 * @param expected the expected schedule
+	 * @param actual the actual schedule
+	 */
+	private static void assertSameSchedule(final CompiledSchedule expected, final CompiledSchedule actual) {
+		Assert.assertEquals(expected.size(), actual.size());
+		for (int i = 0; i < expected.size(); i++) {
+			Assert.assertSame(expected.slice(i), actual.slice(i));
+			Assert.assertEquals(expected.from(i), actual.from(i));
+			Assert.assertEquals(expected.to(i), actual.to(i));
+			Assert.assertEquals(expected.startMinute(i), actual.startMinute(i));
+			Assert.assertEquals(expected.endMinute(i), actual.endMinute(i));
+			Assert.assertEquals(expected.weekdayMask(i), actual.weekdayMask(i));
+			Assert.assertEquals(expected.firstIndex(expected.from(i)), actual.firstIndex(actual.from(i)));
+		}
+	}
+
+	/**
+	 * Compare results of reference implementation, plain and compiled evaluation for many dates in 2014.
+	 *
+	 * @param slices time slices to evaluate
+	 * @param holidays holiday resolver
+	 * @param stepMinutes minutes between two queries
+	 */
+	private void runComparison(final List<TimeSlice> slices, final HolidayResolver holidays, final int stepMinutes) {
+		final TimeSlicesCollector collector = new ExampleTimeSlicesCollector(slices);
+		final ReferenceOpeningTimes reference = new ReferenceOpeningTimes(collector, holidays);
+		final OpeningTimes plain = new OpeningTimes(collector, holidays);
+		final OpeningTimes compiled = new OpeningTimes(new CompiledSchedule(collector), holidays);
+		for (final ZoneId zone : ZONES) {
+			for (ZonedDateTime date = ZonedDateTime.of(2014, 1, 1, 0, 0, 30, 0, zone); date.getYear() < 2015; date = date
+					.plusMinutes(stepMinutes)) {
+				final OpenType expected = reference.createOpenType(date);
+				OpenTypeAssert.assertSameOpenType(date.toString(), expected, plain.createOpenType(date));
+				OpenTypeAssert.assertSameOpenType(date.toString(), expected, compiled.createOpenType(date));
+			}
+		}
+	}
+}
@@ -0,0 +1,99 @@
+package de.westemeyer.openingtimes.impl;
+
+import java.util.BitSet;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author Sebastian Westemeyer
+ */
+public class CompressedBitmapTest {
+	@Test
+	public void testSetOperations() {
+		final Random random = new Random(17);
+		for (int run = 0; run < 200; run++) {
+			// mix of sparse and dense groups
+			final BitSet a = randomSet(random);
+			final BitSet b = randomSet(random);
+			final CompressedBitmap x = bitmap(a);
+			final CompressedBitmap y = bitmap(b);
+			assertEquals(a, x);
+
+			final BitSet or = (BitSet) a.clone();
+			or.or(b);
+			assertEquals(or, x.or(y));
+			final BitSet and = (BitSet) a.clone();
+			and.and(b);
+			assertEquals(and, x.and(y));
+			final BitSet andNot = (BitSet) a.clone();
+			andNot.andNot(b);
+			assertEquals(andNot, x.andNot(y));
+		}
+	}
+
+	@Test
+	public void testEmpty() {
+		final CompressedBitmap bitmap = new CompressedBitmap.Builder().add(3).add(70000).build();
+		Assert.assertTrue(CompressedBitmap.EMPTY.isEmpty());
+		Assert.assertTrue(bitmap.andNot(bitmap).isEmpty());
+		Assert.assertTrue(bitmap.and(CompressedBitmap.EMPTY).isEmpty());
+		Assert.assertSame(bitmap, bitmap.or(CompressedBitmap.EMPTY));
+		Assert.assertTrue(bitmap.contains(70000));
+		Assert.assertFalse(bitmap.contains(4));
+		Assert.assertEquals(2, bitmap.cardinality());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testUnsortedValues() {
+		new CompressedBitmap.Builder().add(5).add(5);
+	}
+
+	/**
+	 * Create a random set of values in three groups, each group empty, sparse or dense.
+	 *
+	 * @param random random generator
+	 * @return the set.
+	 */
+	private BitSet randomSet(final Random random) {
+		final BitSet set = new BitSet();
+		for (int group = 0; group < 3; group++) {
+			final int density = new int[] { 0, 100, 6000, 60000 }[random.nextInt(4)];
+			for (int i = 0; i < density; i++) {
+				set.set(group * 65536 + random.nextInt(65536));
+			}
+		}
+		return set;
+	}
+
+	/**
+	 * Create a compressed bitmap from a bit set.
+	 *
+	 * @param set the bit set
+	 * @return the compressed bitmap.
+	 */
+	private CompressedBitmap bitmap(final BitSet set) {
+		final CompressedBitmap.Builder builder = new CompressedBitmap.Builder();
+		set.stream().forEach(builder::add);
+		return builder.build();
+	}
+
+	/**
+	 * Assert that a compressed bitmap contains exactly the values of a bit set.
+	 *
+	 * @param expected the bit set
+	 * @param actual the compressed bitmap
+	 */
+	private void assertEquals(final BitSet expected, final CompressedBitmap actual) {
+		final BitSet values = new BitSet();
+		actual.forEach(values::set);
+		Assert.assertEquals(expected, values);
+		Assert.assertEquals(expected.cardinality(), actual.cardinality());
+		Assert.assertEquals(expected.isEmpty(), actual.isEmpty());
+		for (int i = 0; i < 100; i++) {
+			final int value = i * 1999;
+			Assert.assertEquals(expected.get(value), actual.contains(value));
+		}
+	}
+}
@@ -17,8 +17,8 @@ import de.westemeyer.openingtimes.api.HolidayResolver;
 public class ExampleHolidayResolver implements HolidayResolver {
 	@Override
 	public boolean isHoliday(final ZonedDateTime testDate) {
-		// create calendar instance from test date
-		Calendar gc = GregorianCalendar.from(testDate);
+		// create calendar instance from local date of test date, jollyday evaluates it in the default time zone
+		Calendar gc = new GregorianCalendar(testDate.getYear(), testDate.getMonthValue() - 1, testDate.getDayOfMonth());
 		// use german holiday manager
 		HolidayManager manager = HolidayManager.getInstance(HolidayCalendar.GERMANY);
 		// check whether date is a holiday in specified region (NRW)
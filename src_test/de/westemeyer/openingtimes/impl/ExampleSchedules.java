@@ -0,0 +1,63 @@
+package de.westemeyer.openingtimes.impl;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+import de.westemeyer.openingtimes.api.TimeSlice;
+import de.westemeyer.openingtimes.api.WeekDay;
+
+/**
+ * Example opening times of two wakeboard lifts in 2014.
+ *
+ * @author Sebastian Westemeyer
+ *
+ */
+public class ExampleSchedules {
+	/** Monday to friday. */
+	private static final Set<WeekDay> WEEKDAY = EnumSet.of(WeekDay.MONDAY, WeekDay.TUESDAY, WeekDay.WEDNESDAY, WeekDay.THURSDAY,
+			WeekDay.FRIDAY);
+	/** All days of the week. */
+	private static final Set<WeekDay> DAILY = EnumSet.of(WeekDay.MONDAY, WeekDay.TUESDAY, WeekDay.WEDNESDAY, WeekDay.THURSDAY,
+			WeekDay.FRIDAY, WeekDay.SATURDAY, WeekDay.SUNDAY);
+	/** Sunday only. */
+	private static final Set<WeekDay> SUNDAY = EnumSet.of(WeekDay.SUNDAY);
+	/** Sunday and bank holidays. */
+	private static final Set<WeekDay> HOLIDAY = EnumSet.of(WeekDay.SUNDAY, WeekDay.HOLIDAY);
+	/** Weekend and bank holidays. */
+	private static final Set<WeekDay> WEEKEND = EnumSet.of(WeekDay.SATURDAY, WeekDay.SUNDAY, WeekDay.HOLIDAY);
+
+	/**
+	 * First example with overlapping slices.
+	 *
+	 * @return list of time slices.
+	 */
+	public static List<TimeSlice> list1() {
+		final List<TimeSlice> list = new ArrayList<>();
+		list.add(new ExampleTimeSliceImpl("2014-08-31 22:00:00", "2014-09-30 21:59:59", "14:00", "20:00", DAILY));
+		list.add(new ExampleTimeSliceImpl("2014-07-07 22:00:00", "2014-08-31 21:59:59", "12:00", "20:00", DAILY));
+		list.add(new ExampleTimeSliceImpl("2014-09-30 22:00:00", "2014-10-31 22:59:59", "14:00", "18:00", WEEKEND));
+		list.add(new ExampleTimeSliceImpl("2014-04-29 22:00:00", "2014-07-07 21:59:59", "12:00", "20:00", WEEKEND));
+		list.add(new ExampleTimeSliceImpl("2014-02-15 23:00:00", "2014-03-31 21:59:59", "14:00", "17:00", SUNDAY));
+		list.add(new ExampleTimeSliceImpl("2014-04-29 22:00:00", "2014-07-07 21:59:59", "14:00", "20:00", WEEKDAY));
+		list.add(new ExampleTimeSliceImpl("2014-10-31 23:00:00", "2014-12-07 22:59:59", "14:00", "17:00", HOLIDAY));
+		list.add(new ExampleTimeSliceImpl("2014-03-31 22:00:00", "2014-04-29 21:59:59", "14:00", "18:00", WEEKEND));
+		return list;
+	}
+
+	/**
+	 * Second example, including a slice open until midnight.
+	 *
+	 * @return list of time slices.
+	 */
+	public static List<TimeSlice> list2() {
+		final List<TimeSlice> list = new ArrayList<>();
+		list.add(new ExampleTimeSliceImpl("2014-02-15 23:00:00", "2014-03-31 21:59:59", "10:00", "18:00", SUNDAY));
+		list.add(new ExampleTimeSliceImpl("2014-10-31 23:00:00", "2014-12-07 22:59:59", "10:00", "18:00", HOLIDAY));
+		list.add(new ExampleTimeSliceImpl("2014-03-31 22:00:00", "2014-04-29 21:59:59", "10:00", "19:00", WEEKEND));
+		list.add(new ExampleTimeSliceImpl("2014-09-30 22:00:00", "2014-10-31 22:59:59", "10:00", "19:00", WEEKEND));
+		list.add(new ExampleTimeSliceImpl("2014-04-29 22:00:00", "2014-09-30 21:59:59", "10:00", "24:00", DAILY));
+		return list;
+	}
+}
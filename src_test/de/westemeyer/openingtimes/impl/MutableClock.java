@@ -0,0 +1,44 @@
+package de.westemeyer.openingtimes.impl;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+
+/**
+ * Clock that can be set by tests.
+ *
+ * @author Sebastian Westemeyer
+ *
+ */
+public class MutableClock extends Clock {
+	/** The current instant. */
+	volatile Instant instant;
+	/** The time zone. */
+	private final ZoneId zone;
+
+	/**
+	 * Create new clock.
+	 *
+	 * @param instant the current instant
+	 * @param zone the time zone
+	 */
+	public MutableClock(final Instant instant, final ZoneId zone) {
+		this.instant = instant;
+		this.zone = zone;
+	}
+
+	@Override
+	public ZoneId getZone() {
+		return zone;
+	}
+
+	@Override
+	public Clock withZone(final ZoneId zone) {
+		return new MutableClock(instant, zone);
+	}
+
+	@Override
+	public Instant instant() {
+		return instant;
+	}
+}
@@ -0,0 +1,139 @@
+package de.westemeyer.openingtimes.impl;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.westemeyer.openingtimes.api.OpenStatus;
+import de.westemeyer.openingtimes.api.WeekDay;
+
+/**
+ * @author Sebastian Westemeyer
+ */
+public class OccupancyTest {
+	/** Time zone for the test dates. */
+	private static final ZoneId ZONE = ZoneId.of("Europe/Berlin");
+
+	@Test
+	public void testOpeningHoursPerMonth() {
+		final OpeningTimes openingTimes = new OpeningTimes(new CompiledSchedule(ExampleSchedules.list1()), new ExampleHolidayResolver());
+		final Occupancy occupancy = openingTimes.occupancy(ZonedDateTime.of(2014, 1, 1, 0, 0, 0, 0, ZONE),
+				ZonedDateTime.of(2015, 1, 1, 0, 0, 0, 0, ZONE));
+		// daily from 14:00 to 20:00
+		Assert.assertEquals(Duration.ofHours(180), occupancy.getOpenDuration(ZonedDateTime.of(2014, 9, 1, 0, 0, 0, 0, ZONE),
+				ZonedDateTime.of(2014, 10, 1, 0, 0, 0, 0, ZONE)));
+		// weekends and the bank holiday on october 3rd, from 14:00 to 18:00
+		Assert.assertEquals(Duration.ofHours(36), occupancy.getOpenDuration(ZonedDateTime.of(2014, 10, 1, 0, 0, 0, 0, ZONE),
+				ZonedDateTime.of(2014, 11, 1, 0, 0, 0, 0, ZONE)));
+		// sundays and the bank holiday on november 1st, from 14:00 to 17:00
+		Assert.assertEquals(Duration.ofHours(18), occupancy.getOpenDuration(ZonedDateTime.of(2014, 11, 1, 0, 0, 0, 0, ZONE),
+				ZonedDateTime.of(2014, 12, 1, 0, 0, 0, 0, ZONE)));
+		Assert.assertEquals(Duration.ofHours(1200), occupancy.getOpenDuration());
+		Assert.assertEquals(Duration.ZERO, occupancy.getOpenDuration(ZonedDateTime.of(2013, 1, 1, 0, 0, 0, 0, ZONE),
+				ZonedDateTime.of(2014, 1, 1, 0, 0, 0, 0, ZONE)));
+
+		final List<OpenInterval> holiday = occupancy.getOpenIntervals(LocalDate.of(2014, 11, 1));
+		Assert.assertEquals(1, holiday.size());
+		Assert.assertEquals(WeekDay.HOLIDAY, holiday.get(0).getWeekday());
+		Assert.assertEquals(Duration.ofHours(3), Duration.between(holiday.get(0).getStart(), holiday.get(0).getEnd()));
+		Assert.assertEquals(WeekDay.SUNDAY, occupancy.getOpenIntervals(LocalDate.of(2014, 10, 26)).get(0).getWeekday());
+		Assert.assertTrue(occupancy.getOpenIntervals(LocalDate.of(2014, 10, 27)).isEmpty());
+		Assert.assertTrue(occupancy.getOpenIntervals(LocalDate.of(2015, 1, 1)).isEmpty());
+	}
+
+	@Test
+	public void testSameAsCreateOpenType() {
+		final Random random = new Random(83);
+		for (final String zone : new String[] { "Europe/Berlin", "America/New_York", "Australia/Sydney" }) {
+			final OpeningTimes openingTimes = new OpeningTimes(new CompiledSchedule(RandomSchedules.create(89, 60)),
+					RandomSchedules.HOLIDAYS);
+			final ZonedDateTime start = ZonedDateTime.of(2014, 1, 1, 0, 0, 0, 0, ZoneId.of(zone));
+			final ZonedDateTime end = start.plusYears(1);
+			final Occupancy occupancy = openingTimes.occupancy(start, end);
+			Assert.assertTrue(occupancy.size() > 100);
+
+			// open at the start and end of each interval, closed in between
+			long total = 0;
+			ZonedDateTime previousEnd = start;
+			for (LocalDate date = start.toLocalDate(); date.isBefore(end.toLocalDate()); date = date.plusDays(1)) {
+				for (final OpenInterval interval : occupancy.getOpenIntervals(date)) {
+					final OpenType first = openingTimes.createOpenType(interval.getStart());
+					Assert.assertEquals(interval.getStart().toString(), OpenStatus.OPEN, first.getStatus());
+					Assert.assertSame(interval.getTimeSlice(), first.getTimeSlice());
+					Assert.assertEquals(OpenStatus.OPEN, openingTimes.createOpenType(interval.getEnd().minusSeconds(1)).getStatus());
+					if (previousEnd.isBefore(interval.getStart())) {
+						Assert.assertNotEquals(OpenStatus.OPEN, openingTimes.createOpenType(previousEnd).getStatus());
+						Assert.assertNotEquals(OpenStatus.OPEN, openingTimes.createOpenType(interval.getStart().minusSeconds(1)).getStatus());
+					}
+					total += Duration.between(interval.getStart(), interval.getEnd()).getSeconds();
+					previousEnd = interval.getEnd();
+				}
+			}
+			Assert.assertEquals(occupancy.getOpenDuration().getSeconds(), total);
+
+			// parts of the range add up
+			for (int i = 0; i < 200; i++) {
+				final ZonedDateTime first = start.plusMinutes(random.nextInt(600_000));
+				final ZonedDateTime middle = first.plusMinutes(random.nextInt(10_000));
+				final ZonedDateTime last = middle.plusMinutes(random.nextInt(10_000));
+				Assert.assertEquals(occupancy.getOpenDuration(first, last),
+						occupancy.getOpenDuration(first, middle).plus(occupancy.getOpenDuration(middle, last)));
+			}
+
+			long perHour = 0;
+			for (final long seconds : occupancy.getOpenSecondsPerHourOfWeek()) {
+				perHour += seconds;
+			}
+			Assert.assertEquals(total, perHour);
+		}
+	}
+
+	@Test
+	public void testHourOfWeekHistogram() {
+		try (VenueRegistry registry = new VenueRegistry(2)) {
+			registry.addRegion("example", new ExampleHolidayResolver());
+			registry.register("first", "example", new CompiledSchedule(ExampleSchedules.list1()));
+			registry.register("second", "example", new CompiledSchedule(ExampleSchedules.list2()));
+			// four weeks of september, a week across the end of daylight saving time
+			for (final ZonedDateTime start : new ZonedDateTime[] { ZonedDateTime.of(2014, 9, 1, 0, 0, 0, 0, ZONE),
+					ZonedDateTime.of(2014, 10, 20, 0, 0, 0, 0, ZONE) }) {
+				final ZonedDateTime end = start.plusWeeks(start.getMonthValue() == 9 ? 4 : 1);
+				final Map<String, Occupancy> occupancies = registry.occupancy(start, end);
+				Assert.assertEquals(2, occupancies.size());
+				for (final Map.Entry<String, Occupancy> entry : occupancies.entrySet()) {
+					Assert.assertEquals(registry.get(entry.getKey()).occupancy(start, end).getOpenDuration(),
+							entry.getValue().getOpenDuration());
+				}
+				final double[] histogram = Occupancy.hourOfWeekHistogram(occupancies.values());
+				// monday, from 13:00 to 14:00 only the second venue is open, from 15:00 to 16:00 both are open in september
+				Assert.assertEquals(start.getMonthValue() == 9 ? 1 : 0, histogram[13], 0.0001);
+				Assert.assertEquals(start.getMonthValue() == 9 ? 2 : 0, histogram[15], 0.0001);
+				// sunday, from 15:00 to 16:00 both are open, the hour from 2:00 is repeated at the end of daylight saving time
+				Assert.assertEquals(2, histogram[6 * 24 + 15], 0.0001);
+				Assert.assertEquals(0, histogram[6 * 24 + 2], 0.0001);
+			}
+		}
+		try (VenueRegistry registry = new VenueRegistry(1)) {
+			registry.addRegion("example", new ExampleHolidayResolver());
+			registry.register("first", "example", new CompiledSchedule(ExampleSchedules.list1()));
+			final ZonedDateTime start = ZonedDateTime.of(2014, 10, 20, 0, 0, 0, 0, ZONE);
+			final Occupancy occupancy = registry.occupancy(start, start.plusWeeks(1)).get("first");
+			// saturday and sunday from 14:00 to 18:00, in a week one hour longer than usual
+			Assert.assertEquals(Duration.ofHours(4 + 4), occupancy.getOpenDuration());
+			Assert.assertEquals(3600, occupancy.getOpenSecondsPerHourOfWeek()[6 * 24 + 15]);
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidRange() {
+		final OpeningTimes openingTimes = new OpeningTimes(new CompiledSchedule(ExampleSchedules.list1()), new ExampleHolidayResolver());
+		openingTimes.occupancy(ZonedDateTime.of(2014, 1, 1, 0, 0, 0, 0, ZONE), ZonedDateTime.of(2013, 1, 1, 0, 0, 0, 0, ZONE));
+	}
+}
@@ -0,0 +1,112 @@
+package de.westemeyer.openingtimes.impl;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.westemeyer.openingtimes.api.OpenStatus;
+import de.westemeyer.openingtimes.api.WeekDay;
+
+/**
+ * @author Sebastian Westemeyer
+ */
+public class OpenIntervalIteratorTest {
+	/** The time zone of the test dates. */
+	private static final ZoneId ZONE = ZoneId.of("Europe/Berlin");
+
+	@Test
+	public void testFirstDay() {
+		final OpeningTimes openingTimes = new OpeningTimes(new CompiledSchedule(RandomSchedules.create(23, 200)),
+				RandomSchedules.HOLIDAYS);
+		final Random random = new Random(23);
+		for (int i = 0; i < 5000; i++) {
+			final ZonedDateTime date = ZonedDateTime.of(2014, 1, 1, 0, 0, 0, 0, ZONE).plusSeconds(random.nextInt(365 * 86400));
+			final OpenType openType = openingTimes.createOpenType(date);
+			final Iterator<OpenInterval> intervals = openingTimes.openIntervalIterator(date);
+			if (openType.getStatus() == OpenStatus.CLOSED) {
+				continue;
+			}
+			Assert.assertTrue(date.toString(), intervals.hasNext());
+			final OpenInterval interval = intervals.next();
+			if (openType.getDateTime().toLocalDate().equals(date.toLocalDate())) {
+				// open today or opening later today
+				Assert.assertEquals(date.toString(), openType.getDateTime(), interval.getStart());
+				Assert.assertSame(date.toString(), openType.getTimeSlice(), interval.getTimeSlice());
+				Assert.assertEquals(date.toString(), openType.getWeekday(), interval.getWeekday());
+				Assert.assertTrue(date.toString(), !interval.getEnd().isBefore(date.withSecond(0)));
+			} else {
+				Assert.assertTrue(date.toString(), interval.getStart().toLocalDate().isAfter(date.toLocalDate()));
+			}
+		}
+	}
+
+	@Test
+	public void testFollowingDays() {
+		final OpeningTimes openingTimes = new OpeningTimes(new CompiledSchedule(RandomSchedules.create(29, 100)),
+				RandomSchedules.HOLIDAYS);
+		final ZonedDateTime date = ZonedDateTime.of(2014, 2, 10, 13, 37, 0, 0, ZONE);
+
+		// opening periods as reported at the start of each day
+		final List<OpenType> expected = new ArrayList<>();
+		for (LocalDate day = date.toLocalDate().plusDays(1); day.getYear() == 2014; day = day.plusDays(1)) {
+			final OpenType openType = openingTimes.createOpenType(day.atStartOfDay(ZONE));
+			if (openType.getStatus() != OpenStatus.CLOSED && openType.getDateTime().toLocalDate().equals(day)) {
+				expected.add(openType);
+			}
+		}
+
+		final List<OpenInterval> actual = openingTimes.openIntervals(date)
+				.filter(interval -> interval.getStart().toLocalDate().isAfter(date.toLocalDate()))
+				.filter(interval -> interval.getStart().getYear() == 2014).collect(Collectors.toList());
+		Assert.assertEquals(expected.size(), actual.size());
+		for (int i = 0; i < expected.size(); i++) {
+			final OpenInterval interval = actual.get(i);
+			Assert.assertEquals(expected.get(i).getDateTime(), interval.getStart());
+			Assert.assertEquals(expected.get(i).getWeekday(), interval.getWeekday());
+			Assert.assertSame(expected.get(i).getTimeSlice(), interval.getTimeSlice());
+			Assert.assertEquals(ScheduleEvaluator.openingDateTime(interval.getStart().toLocalDate().toEpochDay(),
+					TimeOfDay.parse(interval.getTimeSlice().getEndTime()), ZONE), interval.getEnd());
+		}
+	}
+
+	@Test
+	public void testInfiniteStream() {
+		final ExampleTimeSliceImpl slice = new ExampleTimeSliceImpl("2014-01-01 00:00:00", null, "08:00", "18:00",
+				EnumSet.of(WeekDay.MONDAY, WeekDay.HOLIDAY));
+		final OpeningTimes openingTimes = new OpeningTimes(new ExampleTimeSlicesCollector(Collections.singletonList(slice)),
+				new ExampleHolidayResolver());
+		final List<OpenInterval> intervals = openingTimes.openIntervals(ZonedDateTime.of(2014, 12, 22, 9, 0, 0, 0, ZONE))
+				.limit(1000).collect(Collectors.toList());
+		Assert.assertEquals(1000, intervals.size());
+		// open on monday morning already, then on christmas holidays
+		Assert.assertEquals(ZonedDateTime.of(2014, 12, 22, 8, 0, 0, 0, ZONE), intervals.get(0).getStart());
+		Assert.assertEquals(ZonedDateTime.of(2014, 12, 22, 18, 0, 0, 0, ZONE), intervals.get(0).getEnd());
+		Assert.assertEquals(WeekDay.HOLIDAY, intervals.get(1).getWeekday());
+		Assert.assertEquals(ZonedDateTime.of(2014, 12, 25, 8, 0, 0, 0, ZONE), intervals.get(1).getStart());
+	}
+
+	@Test(expected = NoSuchElementException.class)
+	public void testEndOfSlices() {
+		final OpeningTimes openingTimes = new OpeningTimes(new ExampleTimeSlicesCollector(ExampleSchedules.list1()),
+				new ExampleHolidayResolver());
+		final Iterator<OpenInterval> intervals = openingTimes.openIntervalIterator(ZonedDateTime.of(2014, 6, 1, 0, 0, 0, 0, ZONE));
+		int count = 0;
+		while (intervals.hasNext()) {
+			intervals.next();
+			count++;
+		}
+		Assert.assertTrue(count > 0 && count < 366);
+		intervals.next();
+	}
+}
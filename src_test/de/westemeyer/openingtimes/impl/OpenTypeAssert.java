@@ -0,0 +1,39 @@
+package de.westemeyer.openingtimes.impl;
+
+import org.junit.Assert;
+
+/**
+ * Assertions for comparing open types.
+ *
+ * @author Sebastian Westemeyer
+ *
+ */
+public class OpenTypeAssert {
+	/**
+	 * Assert that two open types carry exactly the same information.
+	 *
+	 * @param message message prefix for failures
+	 * @param expected the expected open type
+	 * @param actual the actual open type
+	 */
+	public static void assertSameOpenType(final String message, final OpenType expected, final OpenType actual) {
+		Assert.assertEquals(message + ": status", expected.getStatus(), actual.getStatus());
+		Assert.assertEquals(message + ": weekday", expected.getWeekday(), actual.getWeekday());
+		Assert.assertEquals(message + ": date", expected.getDateTime(), actual.getDateTime());
+		Assert.assertSame(message + ": slice", expected.getTimeSlice(), actual.getTimeSlice());
+		Assert.assertEquals(message + ": checked date", expected.getCheckedDate(), actual.getCheckedDate());
+	}
+
+	/**
+	 * Assert that two open types carry exactly the same information, including closing and next opening.
+	 *
+	 * @param message message prefix for failures
+	 * @param expected the expected open type
+	 * @param actual the actual open type
+	 */
+	public static void assertSameResult(final String message, final OpenType expected, final OpenType actual) {
+		assertSameOpenType(message, expected, actual);
+		Assert.assertEquals(message + ": closing", expected.getClosingDateTime(), actual.getClosingDateTime());
+		Assert.assertEquals(message + ": next opening", expected.getNextOpening(), actual.getNextOpening());
+	}
+}
@@ -0,0 +1,135 @@
+package de.westemeyer.openingtimes.impl;
+
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.westemeyer.openingtimes.api.TimeSlice;
+import de.westemeyer.openingtimes.api.TimeSlicesCollector;
+
+/**
+ * @author Sebastian Westemeyer
+ */
+public class OpenTypeCacheTest {
+	@Test
+	public void testSameResults() {
+		final TimeSlicesCollector collector = new CompiledSchedule(RandomSchedules.create(11, 200));
+		final OpeningTimes openingTimes = new OpeningTimes(collector, RandomSchedules.HOLIDAYS);
+		final OpenTypeCache cache = new OpenTypeCache(collector, RandomSchedules.HOLIDAYS);
+		ZonedDateTime date = ZonedDateTime.of(2014, 1, 1, 0, 0, 0, 0, ZoneId.of("Europe/Berlin"));
+		while (date.getYear() == 2014) {
+			OpenTypeAssert.assertSameResult(date.toString(), openingTimes.createOpenType(date), cache.createOpenType(date));
+			// the same instant in another time zone is a different test date
+			final ZonedDateTime other = date.withZoneSameInstant(ZoneId.of("America/New_York"));
+			OpenTypeAssert.assertSameResult(other.toString(), openingTimes.createOpenType(other), cache.createOpenType(other));
+			date = date.plusSeconds(7 * 60 + 13);
+		}
+		Assert.assertTrue(cache.getHits() > cache.getMisses());
+		Assert.assertEquals(Math.min(cache.getMisses(), OpenTypeCache.DEFAULT_MAXIMUM_SIZE), cache.size());
+	}
+
+	@Test
+	public void testHitsAndMisses() {
+		final OpenTypeCache cache = new OpenTypeCache(new ExampleTimeSlicesCollector(ExampleSchedules.list1()),
+				new ExampleHolidayResolver());
+		final ZonedDateTime date = ZonedDateTime.of(2014, 6, 3, 6, 0, 0, 0, ZoneId.of("Europe/Berlin"));
+		cache.createOpenType(date);
+		Assert.assertEquals(0, cache.getHits());
+		Assert.assertEquals(1, cache.getMisses());
+
+		// answered from the cache, with the new test date
+		final OpenType openType = cache.createOpenType(date.plusMinutes(5));
+		Assert.assertEquals(1, cache.getHits());
+		Assert.assertEquals(1, cache.getMisses());
+		Assert.assertEquals(date.plusMinutes(5), openType.getCheckedDate());
+
+		// before the first cached test date
+		cache.createOpenType(date.minusMinutes(5));
+		Assert.assertEquals(2, cache.getMisses());
+		Assert.assertEquals(2, cache.size());
+
+		cache.invalidate();
+		Assert.assertEquals(0, cache.size());
+		cache.createOpenType(date);
+		Assert.assertEquals(3, cache.getMisses());
+	}
+
+	@Test
+	public void testEviction() {
+		final OpenTypeCache cache = new OpenTypeCache(new ExampleTimeSlicesCollector(ExampleSchedules.list1()),
+				new ExampleHolidayResolver(), 10);
+		ZonedDateTime date = ZonedDateTime.of(2014, 6, 1, 0, 0, 0, 0, ZoneId.of("Europe/Berlin"));
+		for (int i = 0; i < 100; i++) {
+			cache.createOpenType(date);
+			Assert.assertTrue(cache.size() <= 10);
+			date = date.plusDays(1);
+		}
+		Assert.assertEquals(10, cache.size());
+
+		// the latest results are kept
+		cache.createOpenType(date.minusDays(1).plusMinutes(1));
+		Assert.assertEquals(1, cache.getHits());
+	}
+
+	@Test
+	public void testEvictionAcrossZones() {
+		final OpenTypeCache cache = new OpenTypeCache(new ExampleTimeSlicesCollector(ExampleSchedules.list1()),
+				new ExampleHolidayResolver(), 10);
+		final ZonedDateTime berlin = ZonedDateTime.of(2014, 6, 1, 0, 0, 0, 0, ZoneId.of("Europe/Berlin"));
+		for (int i = 0; i < 10; i++) {
+			cache.createOpenType(berlin.plusDays(i));
+		}
+		// a full cache keeps the results of another time zone, evicting the first ones of the full zone
+		final ZonedDateTime newYork = ZonedDateTime.of(2014, 6, 5, 0, 0, 0, 0, ZoneId.of("America/New_York"));
+		cache.createOpenType(newYork);
+		cache.createOpenType(newYork.plusMinutes(1));
+		Assert.assertEquals(1, cache.getHits());
+		cache.createOpenType(berlin.plusMinutes(1));
+		Assert.assertEquals(1, cache.getHits());
+		Assert.assertEquals(10, cache.size());
+
+		// a test date before all cached ones is kept as well
+		cache.createOpenType(berlin.minusDays(10));
+		cache.createOpenType(berlin.minusDays(10).plusMinutes(1));
+		Assert.assertEquals(2, cache.getHits());
+		cache.createOpenType(berlin.plusDays(9).plusMinutes(1));
+		Assert.assertEquals(3, cache.getHits());
+		Assert.assertEquals(10, cache.size());
+	}
+
+	@Test
+	public void testRevisionChange() {
+		final List<TimeSlice> slices = new ArrayList<>(ExampleSchedules.list1());
+		final AtomicLong revision = new AtomicLong();
+		final TimeSlicesCollector collector = new TimeSlicesCollector() {
+			@Override
+			public List<TimeSlice> getTimeSlices() {
+				return slices;
+			}
+
+			@Override
+			public long getRevision() {
+				return revision.get();
+			}
+		};
+		final OpenTypeCache cache = new OpenTypeCache(collector, new ExampleHolidayResolver());
+		final ZonedDateTime date = ZonedDateTime.of(2014, 6, 3, 6, 0, 0, 0, ZoneId.of("Europe/Berlin"));
+		Assert.assertNotNull(cache.createOpenType(date).getTimeSlice());
+
+		slices.clear();
+		revision.incrementAndGet();
+		Assert.assertNull(cache.createOpenType(date.plusMinutes(1)).getTimeSlice());
+		Assert.assertEquals(0, cache.getHits());
+		Assert.assertEquals(1, cache.size());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidMaximumSize() {
+		new OpenTypeCache(new ExampleTimeSlicesCollector(ExampleSchedules.list1()), new ExampleHolidayResolver(), 0);
+	}
+}
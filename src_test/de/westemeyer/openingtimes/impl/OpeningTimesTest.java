@@ -1,19 +1,16 @@
 package de.westemeyer.openingtimes.impl;
 
+import java.time.ZoneId;
+import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
-import java.util.ArrayList;
-import java.util.EnumSet;
-import java.util.List;
-import java.util.Set;
 
 import org.junit.Assert;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
 import de.westemeyer.openingtimes.api.HolidayResolver;
-import de.westemeyer.openingtimes.api.TimeSlice;
-import de.westemeyer.openingtimes.api.WeekDay;
+import de.westemeyer.openingtimes.api.OpenStatus;
 
 /**
  * @author Sebastian Westemeyer
@@ -24,6 +21,9 @@ public class OpeningTimesTest {
 
 	private static final Formatter FORMATTER = new Formatter();
 
+	/** Time zone with daylight saving time. */
+	private static final ZoneId BERLIN = ZoneId.of("Europe/Berlin");
+
 	private static OpeningTimes TIMES1;
 	private static OpeningTimes TIMES2;
 
@@ -32,31 +32,9 @@ public class OpeningTimesTest {
 	 */
 	@BeforeClass
 	public static void setUpBeforeClass() throws Exception {
-		final List<TimeSlice> list1 = new ArrayList<>();
-		final List<TimeSlice> list2 = new ArrayList<>();
-		final Set<WeekDay> weekday = EnumSet.of(WeekDay.MONDAY, WeekDay.TUESDAY, WeekDay.WEDNESDAY, WeekDay.THURSDAY, WeekDay.FRIDAY);
-		final Set<WeekDay> daily = EnumSet.of(WeekDay.MONDAY, WeekDay.TUESDAY, WeekDay.WEDNESDAY, WeekDay.THURSDAY, WeekDay.FRIDAY,
-				WeekDay.SATURDAY, WeekDay.SUNDAY);
-		final Set<WeekDay> sunday = EnumSet.of(WeekDay.SUNDAY);
-		final Set<WeekDay> holiday = EnumSet.of(WeekDay.SUNDAY, WeekDay.HOLIDAY);
-		final Set<WeekDay> weekend = EnumSet.of(WeekDay.SATURDAY, WeekDay.SUNDAY, WeekDay.HOLIDAY);
-		list1.add(new ExampleTimeSliceImpl("2014-08-31 22:00:00", "2014-09-30 21:59:59", "14:00", "20:00", daily));
-		list1.add(new ExampleTimeSliceImpl("2014-07-07 22:00:00", "2014-08-31 21:59:59", "12:00", "20:00", daily));
-		list1.add(new ExampleTimeSliceImpl("2014-09-30 22:00:00", "2014-10-31 22:59:59", "14:00", "18:00", weekend));
-		list1.add(new ExampleTimeSliceImpl("2014-04-29 22:00:00", "2014-07-07 21:59:59", "12:00", "20:00", weekend));
-		list1.add(new ExampleTimeSliceImpl("2014-02-15 23:00:00", "2014-03-31 21:59:59", "14:00", "17:00", sunday));
-		list1.add(new ExampleTimeSliceImpl("2014-04-29 22:00:00", "2014-07-07 21:59:59", "14:00", "20:00", weekday));
-		list1.add(new ExampleTimeSliceImpl("2014-10-31 23:00:00", "2014-12-07 22:59:59", "14:00", "17:00", holiday));
-		list1.add(new ExampleTimeSliceImpl("2014-03-31 22:00:00", "2014-04-29 21:59:59", "14:00", "18:00", weekend));
-		list2.add(new ExampleTimeSliceImpl("2014-02-15 23:00:00", "2014-03-31 21:59:59", "10:00", "18:00", sunday));
-		list2.add(new ExampleTimeSliceImpl("2014-10-31 23:00:00", "2014-12-07 22:59:59", "10:00", "18:00", holiday));
-		list2.add(new ExampleTimeSliceImpl("2014-03-31 22:00:00", "2014-04-29 21:59:59", "10:00", "19:00", weekend));
-		list2.add(new ExampleTimeSliceImpl("2014-09-30 22:00:00", "2014-10-31 22:59:59", "10:00", "19:00", weekend));
-		list2.add(new ExampleTimeSliceImpl("2014-04-29 22:00:00", "2014-09-30 21:59:59", "10:00", "24:00", daily));
-
 		final HolidayResolver holidays = new ExampleHolidayResolver();
-		TIMES1 = new OpeningTimes(new ExampleTimeSlicesCollector(list1), holidays);
-		TIMES2 = new OpeningTimes(new ExampleTimeSlicesCollector(list2), holidays);
+		TIMES1 = new OpeningTimes(new ExampleTimeSlicesCollector(ExampleSchedules.list1()), holidays);
+		TIMES2 = new OpeningTimes(new ExampleTimeSlicesCollector(ExampleSchedules.list2()), holidays);
 	}
 
 	@Test
@@ -113,6 +91,38 @@ public class OpeningTimesTest {
 	@Test
 	public void testBeforeDaylightSavingsTime() {
 		runTestForDate("2014-03-27 23:01:00 +0100", "Sunday, 30.03.2014 at 14:00", "Sunday, 30.03.2014 at 10:00");
+
+		// spring forward in the night to sunday, from 2:00 to 3:00
+		runTestForDate(ZonedDateTime.of(2014, 3, 29, 23, 1, 0, 0, BERLIN), "Sunday, 30.03.2014 at 14:00", "Sunday, 30.03.2014 at 10:00");
+		runTestForDate(ZonedDateTime.of(2014, 3, 30, 1, 59, 0, 0, BERLIN), "Today, 30.03.2014 at 14:00", "Today, 30.03.2014 at 10:00");
+		// within the gap, moved to 3:30
+		runTestForDate(ZonedDateTime.of(2014, 3, 30, 2, 30, 0, 0, BERLIN), "Today, 30.03.2014 at 14:00", "Today, 30.03.2014 at 10:00");
+		runTestForDate(ZonedDateTime.of(2014, 3, 30, 10, 1, 0, 0, BERLIN), "Today, 30.03.2014 at 14:00", "open");
+		final OpenType beforeGap = TIMES1.createOpenType(ZonedDateTime.of(2014, 3, 30, 1, 59, 0, 0, BERLIN));
+		Assert.assertEquals(ZonedDateTime.parse("2014-03-30 14:00:00 +0200", DATE_FORMATTER).toInstant(),
+				beforeGap.getDateTime().toInstant());
+		Assert.assertEquals(ZoneOffset.ofHours(2), beforeGap.getDateTime().getOffset());
+		// the result is checked again at the switch
+		Assert.assertEquals(ZonedDateTime.of(2014, 3, 30, 3, 0, 0, 0, BERLIN).toInstant(), beforeGap.getValidUntil());
+	}
+
+	@Test
+	public void testAfterDaylightSavingsTime() {
+		// fall back in the night to sunday, from 3:00 to 2:00
+		runTestForDate(ZonedDateTime.of(2014, 10, 25, 19, 1, 0, 0, BERLIN), "Sunday, 26.10.2014 at 14:00", "Sunday, 26.10.2014 at 10:00");
+		// the repeated hour, first with summer time, then with standard time
+		final ZonedDateTime overlap = ZonedDateTime.of(2014, 10, 26, 2, 30, 0, 0, BERLIN);
+		runTestForDate(overlap, "Today, 26.10.2014 at 14:00", "Today, 26.10.2014 at 10:00");
+		runTestForDate(overlap.withLaterOffsetAtOverlap(), "Today, 26.10.2014 at 14:00", "Today, 26.10.2014 at 10:00");
+		runTestForDate(ZonedDateTime.of(2014, 10, 26, 18, 1, 0, 0, BERLIN), "Bank holiday:Saturday, 01.11.2014 at 14:00", "open");
+		final OpenType inOverlap = TIMES2.createOpenType(overlap);
+		Assert.assertEquals(ZonedDateTime.parse("2014-10-26 10:00:00 +0100", DATE_FORMATTER).toInstant(),
+				inOverlap.getDateTime().toInstant());
+		Assert.assertEquals(ZonedDateTime.parse("2014-10-26 19:00:00 +0100", DATE_FORMATTER).toInstant(),
+				inOverlap.getClosingDateTime().toInstant());
+		// the result is checked again at the switch
+		Assert.assertEquals(ZonedDateTime.of(2014, 10, 26, 2, 0, 0, 0, BERLIN).withLaterOffsetAtOverlap().toInstant(),
+				inOverlap.getValidUntil());
 	}
 
 	@Test
@@ -120,6 +130,49 @@ public class OpeningTimesTest {
 		runTestForDate("2014-12-20 12:00:00 +0100", "closed", "closed");
 	}
 
+	@Test
+	public void testClosingAndNextOpening() {
+		final ZonedDateTime dateTime = ZonedDateTime.parse("2014-05-06 14:01:00 +0200", DATE_FORMATTER);
+		OpenType openType = TIMES1.createOpenType(dateTime);
+		Assert.assertEquals(ZonedDateTime.parse("2014-05-06 20:00:00 +0200", DATE_FORMATTER).toInstant(),
+				openType.getClosingDateTime().toInstant());
+		Assert.assertEquals("07.05.2014 at 14:00", FORMATTER.formatDateTime(openType.getNextOpening()));
+
+		// open until midnight
+		openType = TIMES2.createOpenType(dateTime);
+		Assert.assertEquals(ZonedDateTime.parse("2014-05-07 00:00:00 +0200", DATE_FORMATTER).toInstant(),
+				openType.getClosingDateTime().toInstant());
+		Assert.assertEquals("07.05.2014 at 10:00", FORMATTER.formatDateTime(openType.getNextOpening()));
+
+		// the next opening of the last day of the season is beyond the checked period
+		openType = TIMES1.createOpenType(ZonedDateTime.parse("2014-12-07 10:00:00 +0100", DATE_FORMATTER));
+		Assert.assertEquals(OpenStatus.OPENING_SOON, openType.getStatus());
+		Assert.assertNull(openType.getNextOpening());
+		Assert.assertNull(TIMES1.createOpenType(ZonedDateTime.parse("2014-12-20 12:00:00 +0100", DATE_FORMATTER)).getClosingDateTime());
+	}
+
+	@Test
+	public void testEndOfSeasonWithHorizon() {
+		runTestForDate("2014-01-05 12:00:00 +0100", 60, "Sunday, 16.02.2014 at 14:00", "Sunday, 16.02.2014 at 10:00");
+		runTestForDate("2014-01-05 12:00:00 +0100", 30, "closed", "closed");
+		runTestForDate("2014-12-20 12:00:00 +0100", 400, "closed", "closed");
+		// same results as without horizon within the week
+		runTestForDate("2014-05-06 10:01:00 +0200", 400, "Today, 06.05.2014 at 14:00", "open");
+	}
+
+	private void runTestForDate(final String timeString, final int days, final String expected1, final String expected2) {
+		ZonedDateTime dateTime = ZonedDateTime.parse(timeString, DATE_FORMATTER);
+		log("===== Test date: " + timeString + ", " + days + " days =====");
+		Assert.assertEquals(expected1, FORMATTER.formatOpenType(TIMES1.createOpenType(dateTime, days)));
+		Assert.assertEquals(expected2, FORMATTER.formatOpenType(TIMES2.createOpenType(dateTime, days)));
+	}
+
+	private void runTestForDate(final ZonedDateTime dateTime, final String expected1, final String expected2) {
+		log("===== Test date: " + dateTime + " =====");
+		runTest(TIMES1, dateTime, expected1);
+		runTest(TIMES2, dateTime, expected2);
+	}
+
 	private void runTestForDate(final String timeString, final String expected1, final String expected2) {
 		ZonedDateTime dateTime = ZonedDateTime.parse(timeString, DATE_FORMATTER);
 		Assert.assertNotNull(dateTime);
@@ -0,0 +1,65 @@
+package de.westemeyer.openingtimes.impl;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import de.westemeyer.openingtimes.api.HolidayResolver;
+import de.westemeyer.openingtimes.api.TimeSlice;
+import de.westemeyer.openingtimes.api.WeekDay;
+
+/**
+ * Generator for random, heavily overlapping time slices.
+ *
+ * @author Sebastian Westemeyer
+ *
+ */
+public class RandomSchedules {
+	/** Date format expected by example time slices. */
+	private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+	/** Holiday resolver with a few "holidays" per month. */
+	public static final HolidayResolver HOLIDAYS = d -> d.getDayOfMonth() == 1 || d.getDayOfYear() % 11 == 0;
+
+	/**
+	 * Create a list of random time slices in 2014.
+	 *
+	 * @param seed seed for the random generator
+	 * @param count number of slices to create
+	 * @return list of time slices.
+	 */
+	public static List<TimeSlice> create(final long seed, final int count) {
+		final Random random = new Random(seed);
+		final List<TimeSlice> list = new ArrayList<>();
+		final LocalDateTime origin = LocalDateTime.of(2014, 1, 1, 0, 0);
+		for (int i = 0; i < count; i++) {
+			// mostly slices starting at local midnight, some at arbitrary times
+			final LocalDateTime from = random.nextInt(4) == 0 ? origin.plusMinutes(random.nextInt(365 * 1440))
+					: origin.plusDays(random.nextInt(365)).minusHours(1);
+			final LocalDateTime to = from.plusDays(1 + random.nextInt(60)).minusSeconds(1);
+			final int start = random.nextInt(20 * 60);
+			final int end = random.nextInt(8) == 0 ? 24 * 60 : start + 1 + random.nextInt(24 * 60 - start - 1);
+			final Set<WeekDay> weekdays = EnumSet.noneOf(WeekDay.class);
+			for (final WeekDay weekDay : WeekDay.values()) {
+				if (random.nextInt(3) == 0) {
+					weekdays.add(weekDay);
+				}
+			}
+			list.add(new ExampleTimeSliceImpl(FORMATTER.format(from), FORMATTER.format(to), time(start), time(end), weekdays));
+		}
+		return list;
+	}
+
+	/**
+	 * Format minutes of the day.
+	 *
+	 * @param minutes minutes of the day
+	 * @return time string in format "HH:mm".
+	 */
+	private static String time(final int minutes) {
+		return String.format("%02d:%02d", minutes / 60, minutes % 60);
+	}
+}
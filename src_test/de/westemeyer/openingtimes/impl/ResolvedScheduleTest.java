@@ -0,0 +1,80 @@
+package de.westemeyer.openingtimes.impl;
+
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.westemeyer.openingtimes.api.TimeSlice;
+import de.westemeyer.openingtimes.api.WeekDay;
+
+/**
+ * @author Sebastian Westemeyer
+ */
+public class ResolvedScheduleTest {
+	@Test
+	public void testShadowedSlices() {
+		final EnumSet<WeekDay> weekdays = EnumSet.of(WeekDay.MONDAY, WeekDay.TUESDAY, WeekDay.WEDNESDAY, WeekDay.HOLIDAY);
+		final TimeSlice year = new ExampleTimeSliceImpl("2014-01-01 00:00:00", "2014-12-31 23:59:59", "08:00", "20:00", weekdays);
+		// same start and end, later opening
+		final TimeSlice duplicate = new ExampleTimeSliceImpl("2014-01-01 00:00:00", "2014-12-31 23:59:59", "09:00", "20:00",
+				EnumSet.of(WeekDay.MONDAY));
+		// same start and opening, comes second
+		final TimeSlice second = new ExampleTimeSliceImpl("2014-01-01 00:00:00", "2014-06-30 23:59:59", "08:00", "12:00",
+				EnumSet.of(WeekDay.HOLIDAY));
+		// within the year, later opening
+		final TimeSlice summer = new ExampleTimeSliceImpl("2014-06-01 00:00:00", "2014-08-31 23:59:59", "10:00", "18:00",
+				EnumSet.of(WeekDay.TUESDAY));
+		// shadowed by both, reported with the effective one
+		final TimeSlice august = new ExampleTimeSliceImpl("2014-08-01 00:00:00", "2014-08-20 23:59:59", "11:00", "18:00",
+				EnumSet.of(WeekDay.TUESDAY));
+		// not shadowed: earlier opening, other weekdays, same end as the year, and a later open end
+		final TimeSlice early = new ExampleTimeSliceImpl("2014-03-01 00:00:00", "2014-03-31 23:59:59", "07:00", "20:00",
+				EnumSet.of(WeekDay.MONDAY));
+		final TimeSlice sunday = new ExampleTimeSliceImpl("2014-03-01 00:00:00", "2014-03-31 23:59:59", "10:00", "20:00",
+				EnumSet.of(WeekDay.MONDAY, WeekDay.SUNDAY));
+		final TimeSlice december = new ExampleTimeSliceImpl("2014-12-01 00:00:00", "2014-12-31 23:59:59", "10:00", "20:00",
+				EnumSet.of(WeekDay.MONDAY));
+		final TimeSlice openEnd = new ExampleTimeSliceImpl("2014-12-01 00:00:00", null, "10:00", "20:00", EnumSet.of(WeekDay.MONDAY));
+		final List<TimeSlice> slices = Arrays.asList(year, duplicate, second, summer, august, early, sunday, december, openEnd);
+
+		final ResolvedSchedule resolved = new ResolvedSchedule(new ExampleTimeSlicesCollector(slices));
+		Assert.assertEquals(Arrays.asList(duplicate, second, summer, august), resolved.getShadowedSlices());
+		Assert.assertSame(year, resolved.getShadowingSlice(duplicate));
+		Assert.assertSame(year, resolved.getShadowingSlice(second));
+		Assert.assertSame(year, resolved.getShadowingSlice(august));
+		Assert.assertNull(resolved.getShadowingSlice(year));
+		Assert.assertNull(resolved.getShadowingSlice(december));
+		Assert.assertEquals(Arrays.asList(year, early, sunday, december, openEnd), resolved.getSchedule().getTimeSlices());
+	}
+
+	@Test
+	public void testSameResults() {
+		final Random random = new Random(67);
+		final List<TimeSlice> slices = new ArrayList<>(RandomSchedules.create(71, 300));
+		// piles of duplicates and long slices behind and in front of the random slices
+		for (final TimeSlice slice : RandomSchedules.create(73, 100)) {
+			slices.add(random.nextBoolean() ? slice : new ExampleTimeSliceImpl("2013-12-01 00:00:00", random.nextBoolean() ? null
+					: "2014-12-31 23:59:59", slice.getStartTime(), slice.getEndTime(), slice.getWeekdays()));
+			slices.add(slices.get(random.nextInt(slices.size())));
+		}
+		final ResolvedSchedule resolved = new ResolvedSchedule(new ExampleTimeSlicesCollector(slices));
+		Assert.assertFalse(resolved.getShadowedSlices().isEmpty());
+		Assert.assertEquals(slices.size(), resolved.getSchedule().size() + resolved.getShadowedSlices().size());
+
+		final OpeningTimes expected = new OpeningTimes(new CompiledSchedule(slices), RandomSchedules.HOLIDAYS);
+		final OpeningTimes actual = new OpeningTimes(resolved.getSchedule(), RandomSchedules.HOLIDAYS);
+		for (final String zone : new String[] { "Europe/Berlin", "America/New_York", "Pacific/Auckland" }) {
+			for (ZonedDateTime date = ZonedDateTime.of(2013, 11, 20, 0, 0, 0, 0, ZoneId.of(zone)); date.getYear() < 2015; date = date
+					.plusMinutes(173)) {
+				OpenTypeAssert.assertSameResult(date.toString(), expected.createOpenType(date), actual.createOpenType(date));
+			}
+		}
+	}
+}
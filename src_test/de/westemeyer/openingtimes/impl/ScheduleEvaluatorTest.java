@@ -0,0 +1,299 @@
+package de.westemeyer.openingtimes.impl;
+
+import java.lang.management.ManagementFactory;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+
+import de.westemeyer.openingtimes.api.HolidayResolver;
+import de.westemeyer.openingtimes.api.OpenStatus;
+import de.westemeyer.openingtimes.api.TimeSlicesCollector;
+import de.westemeyer.openingtimes.api.WeekDay;
+
+/**
+ * @author Sebastian Westemeyer
+ */
+public class ScheduleEvaluatorTest {
+	/** Number of queries per measurement. */
+	private static final int QUERIES = 20000;
+	/**
+	 * Allowed allocation per query: the returned open type and its date, plus the holidays of the checked period, with plenty of
+	 * room for less optimising JIT compilers.
+	 */
+	private static final long MAX_BYTES_PER_QUERY = 2048;
+
+	@Test
+	public void testAllocationPerQuery() {
+		final com.sun.management.ThreadMXBean threads = threadBean();
+		final HolidayResolver noHolidays = new CachingHolidayResolver(d -> false);
+		final TimeSlicesCollector collector = new ExampleTimeSlicesCollector(RandomSchedules.create(3, 200));
+		final OpeningTimes compiled = new OpeningTimes(new CompiledSchedule(collector), noHolidays);
+		final ReferenceOpeningTimes reference = new ReferenceOpeningTimes(collector, noHolidays);
+		final ZonedDateTime[] dates = new ZonedDateTime[QUERIES];
+		for (int i = 0; i < QUERIES; i++) {
+			dates[i] = ZonedDateTime.of(2014, 1, 1, 0, 0, 0, 0, ZoneId.of("+01:00")).plusMinutes(i * 23L);
+		}
+
+		// warm up, so that measurements are not distorted by class loading or interpretation
+		for (int i = 0; i < 5; i++) {
+			measure(threads, dates, compiled::createOpenType);
+		}
+		final long compiledBytes = measure(threads, dates, compiled::createOpenType);
+		final long referenceBytes = measure(threads, dates, reference::createOpenType);
+		Assert.assertTrue("Allocated " + compiledBytes + " bytes per query", compiledBytes <= MAX_BYTES_PER_QUERY);
+		Assert.assertTrue("Allocated " + compiledBytes + " bytes per query, reference " + referenceBytes,
+				compiledBytes * 5 < referenceBytes);
+	}
+
+	@Test
+	public void testCompactResult() {
+		final CompiledSchedule schedule = new CompiledSchedule(RandomSchedules.create(19, 300));
+		final OpeningTimes openingTimes = new OpeningTimes(schedule, RandomSchedules.HOLIDAYS);
+		final Random random = new Random(7);
+		// a single result object for all time zones
+		final CompactOpenType result = new CompactOpenType();
+		for (final ZoneId zone : new ZoneId[] { ZoneId.of("+01:00"), ZoneId.of("Europe/Berlin"), ZoneId.of("America/New_York") }) {
+			long millis = ZonedDateTime.of(2013, 12, 25, 0, 0, 0, 0, zone).toInstant().toEpochMilli();
+			while (millis < ZonedDateTime.of(2015, 1, 5, 0, 0, 0, 0, zone).toInstant().toEpochMilli()) {
+				final OpenType expected = openingTimes.createOpenType(millis, zone);
+				openingTimes.createOpenType(millis, zone, result);
+				final String message = Instant.ofEpochMilli(millis).atZone(zone).toString();
+				Assert.assertEquals(message, expected.getCheckedDate().toInstant().toEpochMilli(), millis);
+				Assert.assertEquals(message, expected.getStatus(), result.getStatus());
+				Assert.assertSame(message, expected.getTimeSlice(), result.getTimeSlice());
+				Assert.assertEquals(message, millis(expected.getDateTime()), result.getOpeningMillis());
+				Assert.assertEquals(message, millis(expected.getClosingDateTime()), result.getClosingMillis());
+				Assert.assertEquals(message, millis(expected.getNextOpening()), result.getNextOpeningMillis());
+				Assert.assertEquals(message, expected.getValidUntil().toEpochMilli(), result.getValidUntilMillis());
+				if (result.getSliceIndex() >= 0) {
+					Assert.assertSame(message, expected.getTimeSlice(), schedule.getTimeSlices().get(result.getSliceIndex()));
+				}
+				millis += random.nextInt(6 * 3600 * 1000);
+			}
+		}
+	}
+
+	@Test
+	public void testSingleHolidayLookupPerQuery() {
+		final AtomicInteger rangeCalls = new AtomicInteger();
+		final HolidayResolver holidays = new HolidayResolver() {
+			@Override
+			public boolean isHoliday(final ZonedDateTime testDate) {
+				throw new UnsupportedOperationException();
+			}
+
+			@Override
+			public BitSet holidaysBetween(final LocalDate from, final LocalDate toExclusive, final ZoneId zone) {
+				rangeCalls.incrementAndGet();
+				Assert.assertEquals(from.plusDays(ScheduleEvaluator.DAYS), toExclusive);
+				return new BitSet();
+			}
+		};
+		final OpeningTimes openingTimes = new OpeningTimes(new ExampleTimeSlicesCollector(ExampleSchedules.list1()), holidays);
+		for (int i = 0; i < 100; i++) {
+			rangeCalls.set(0);
+			openingTimes.createOpenType(ZonedDateTime.of(2014, 11, 1, 10, 0, 0, 0, ZoneId.of("Europe/Berlin")).plusHours(i * 7));
+			Assert.assertTrue(rangeCalls.get() <= 1);
+		}
+	}
+
+	@Test
+	public void testValidUntil() {
+		final OpeningTimes openingTimes = new OpeningTimes(new CompiledSchedule(RandomSchedules.create(5, 300)),
+				RandomSchedules.HOLIDAYS);
+		final Random random = new Random(5);
+		final ZonedDateTime daylightSavings = ZonedDateTime.of(2014, 3, 30, 2, 0, 0, 0, ZoneId.of("Europe/Berlin"));
+		final ZonedDateTime standardTime = ZonedDateTime.of(2014, 10, 26, 3, 0, 0, 0, ZoneId.of("Europe/Berlin"));
+		for (final String zone : new String[] { "Europe/Berlin", "+01:00", "America/New_York" }) {
+			for (int i = 0; i < 3000; i++) {
+				final Instant instant;
+				if (i % 3 == 0) {
+					// close to the offset transitions in europe
+					final ZonedDateTime transition = i % 2 == 0 ? daylightSavings : standardTime;
+					instant = transition.toInstant().plusSeconds(random.nextInt(20 * 86400) - 10 * 86400);
+				} else {
+					instant = Instant.ofEpochSecond(1388534400L + random.nextInt(365 * 86400), random.nextInt(3) == 0 ? 500 : 0);
+				}
+				final ZonedDateTime date = instant.atZone(ZoneId.of(zone));
+				final OpenType openType = openingTimes.createOpenType(date);
+				final Instant validUntil = openType.getValidUntil();
+				Assert.assertNotNull(validUntil);
+				Assert.assertFalse(date + " valid until " + validUntil, validUntil.isBefore(instant));
+				// the result holds right after the test date, just before the end of validity and in between
+				for (final Instant later : new Instant[] { instant.plusNanos(1), validUntil.minusNanos(1),
+						instant.plusSeconds(random.nextInt((int) Math.min(Integer.MAX_VALUE, validUntil.getEpochSecond() - instant.getEpochSecond() + 1))) }) {
+					if (later.isBefore(instant) || !later.isBefore(validUntil)) {
+						continue;
+					}
+					final ZonedDateTime laterDate = later.atZone(date.getZone());
+					OpenTypeAssert.assertSameResult(date + " valid until " + validUntil + ", checked at " + laterDate,
+							openType.withCheckedDate(laterDate), openingTimes.createOpenType(laterDate));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testValidUntilOpeningAndClosing() {
+		final ExampleTimeSliceImpl slice = new ExampleTimeSliceImpl("2014-01-01 00:00:00", "2015-01-01 00:00:00", "08:00", "18:00",
+				EnumSet.of(WeekDay.MONDAY, WeekDay.TUESDAY));
+		final OpeningTimes openingTimes = new OpeningTimes(new ExampleTimeSlicesCollector(Collections.singletonList(slice)),
+				d -> false);
+		final ZonedDateTime monday = ZonedDateTime.of(2014, 6, 2, 7, 0, 0, 0, ZoneId.of("UTC"));
+
+		// opening at eight, open from one minute past eight
+		OpenType openType = openingTimes.createOpenType(monday);
+		Assert.assertEquals(OpenStatus.OPENING_SOON, openType.getStatus());
+		Assert.assertEquals(monday.withHour(8).withMinute(1).toInstant(), openType.getValidUntil());
+
+		// open until six, closed from one minute past six
+		openType = openingTimes.createOpenType(monday.withHour(12));
+		Assert.assertEquals(OpenStatus.OPEN, openType.getStatus());
+		Assert.assertEquals(monday.withHour(18).withMinute(1).toInstant(), openType.getValidUntil());
+
+		// opening tomorrow, holding until midnight
+		openType = openingTimes.createOpenType(monday.withHour(19));
+		Assert.assertEquals(OpenStatus.OPENING_SOON, openType.getStatus());
+		Assert.assertEquals(monday.plusDays(1).withHour(0).toInstant(), openType.getValidUntil());
+
+		// results created elsewhere have no known validity
+		Assert.assertNull(new OpenType().getValidUntil());
+	}
+
+	@Test
+	public void testClosingAndNextOpening() {
+		final OpeningTimes openingTimes = new OpeningTimes(new CompiledSchedule(RandomSchedules.create(37, 200)),
+				RandomSchedules.HOLIDAYS);
+		final Random random = new Random(37);
+		final ZoneId zone = ZoneId.of("+01:00");
+		for (int i = 0; i < 5000; i++) {
+			final ZonedDateTime date = ZonedDateTime.of(2014, 1, 1, 0, 0, 0, 0, zone).plusSeconds(random.nextInt(350 * 86400));
+			final OpenType openType = openingTimes.createOpenType(date);
+			if (openType.getStatus() == OpenStatus.CLOSED) {
+				Assert.assertNull(openType.getClosingDateTime());
+				Assert.assertNull(openType.getNextOpening());
+				continue;
+			}
+			final LocalDate day = openType.getDateTime().toLocalDate();
+			Assert.assertEquals(date.toString(), ScheduleEvaluator.openingDateTime(day.toEpochDay(),
+					TimeOfDay.parse(openType.getTimeSlice().getEndTime()), zone), openType.getClosingDateTime());
+
+			// checking the day after at the same time of day selects the same slices for the following days
+			final int daysLater = (int) (day.toEpochDay() - date.toLocalDate().toEpochDay()) + 1;
+			final OpenType later = openingTimes.createOpenType(date.plusDays(daysLater));
+			final ZonedDateTime nextOpening = openType.getNextOpening();
+			if (later.getStatus() != OpenStatus.CLOSED && later.getDateTime().toLocalDate().equals(day.plusDays(1))) {
+				Assert.assertEquals(date.toString(), later.getDateTime(), nextOpening);
+			} else if (nextOpening == null) {
+				Assert.assertTrue(date.toString(), later.getStatus() == OpenStatus.CLOSED
+						|| later.getDateTime().toLocalDate().isAfter(date.toLocalDate().plusDays(ScheduleEvaluator.DAYS - 1)));
+			} else {
+				Assert.assertTrue(date.toString(), nextOpening.toLocalDate().isAfter(day));
+				Assert.assertFalse(date.toString(), later.getStatus() != OpenStatus.CLOSED && later.getDateTime().isBefore(nextOpening));
+			}
+		}
+	}
+
+	@Test
+	public void testHorizon() {
+		// few slices, leaving off-season periods of several weeks
+		final OpeningTimes openingTimes = new OpeningTimes(new CompiledSchedule(RandomSchedules.create(31, 12)),
+				RandomSchedules.HOLIDAYS);
+		final Random random = new Random(31);
+		final ZoneId zone = ZoneId.of("Europe/Berlin");
+		for (int i = 0; i < 2000; i++) {
+			final ZonedDateTime date = ZonedDateTime.of(2014, 1, 1, 0, 0, 0, 0, zone).plusSeconds(random.nextInt(365 * 86400));
+			final int days = new int[] { 3, 8, 30, 400 }[i % 4];
+			final OpenType openType = openingTimes.createOpenType(date, days);
+			OpenTypeAssert.assertSameOpenType(date + ", " + days + " days", expectedWithHorizon(openingTimes, date, days), openType);
+
+			// the result holds until the end of its validity
+			final ZonedDateTime last = openType.getValidUntil().minusNanos(1).atZone(zone);
+			if (!last.isBefore(date)) {
+				OpenTypeAssert.assertSameResult(last + ", " + days + " days", openType.withCheckedDate(last),
+						openingTimes.createOpenType(last, days));
+			}
+		}
+	}
+
+	/**
+	 * Look for opening times within a number of days by checking the start of each day after the checked period.
+	 *
+	 * @param openingTimes the opening times
+	 * @param date The test date.
+	 * @param days number of days after the test date
+	 * @return the expected opening type.
+	 */
+	private OpenType expectedWithHorizon(final OpeningTimes openingTimes, final ZonedDateTime date, final int days) {
+		final ZonedDateTime horizon = date.plusDays(days);
+		OpenType openType = openingTimes.createOpenType(date);
+		for (LocalDate day = date.toLocalDate().plusDays(ScheduleEvaluator.DAYS); openType.getStatus() == OpenStatus.CLOSED
+				&& days > ScheduleEvaluator.DAYS && !day.isAfter(horizon.toLocalDate()); day = day.plusDays(1)) {
+			final OpenType dayType = openingTimes.createOpenType(day.atStartOfDay(date.getZone()));
+			if (dayType.getStatus() != OpenStatus.CLOSED && dayType.getDateTime().toLocalDate().equals(day)) {
+				openType = new OpenType(dayType.getWeekday(), dayType.getDateTime(), date, dayType.getTimeSlice(), dayType.getStatus());
+			}
+		}
+		if (openType.getStatus() != OpenStatus.CLOSED && openType.getDateTime().isAfter(horizon)) {
+			return new OpenType();
+		}
+		return openType;
+	}
+
+	/**
+	 * Convert an optional date/time to epoch milliseconds.
+	 *
+	 * @param date the date/time, may be null
+	 * @return the instant in epoch milliseconds, or {@link CompactOpenType#NONE} if null.
+	 */
+	private static long millis(final ZonedDateTime date) {
+		return date == null ? CompactOpenType.NONE : date.toInstant().toEpochMilli();
+	}
+
+	/**
+	 * Measure the bytes allocated by the current thread per query.
+	 *
+	 * @param threads thread management bean
+	 * @param dates dates to query
+	 * @param query query to run for each date
+	 * @return average number of bytes allocated per query.
+	 */
+	private long measure(final com.sun.management.ThreadMXBean threads, final ZonedDateTime[] dates,
+			final Function<ZonedDateTime, OpenType> query) {
+		final long threadId = Thread.currentThread().getId();
+		final long before = threads.getThreadAllocatedBytes(threadId);
+		int open = 0;
+		for (final ZonedDateTime date : dates) {
+			if (query.apply(date).getTimeSlice() != null) {
+				open++;
+			}
+		}
+		final long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+		Assert.assertTrue(open > 0);
+		return allocated / dates.length;
+	}
+
+	/**
+	 * Get the thread management bean with support for allocation counters, skipping the test on virtual machines without.
+	 *
+	 * @return the thread management bean.
+	 */
+	private com.sun.management.ThreadMXBean threadBean() {
+		Assume.assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+		final com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		Assume.assumeTrue(threads.isThreadAllocatedMemorySupported());
+		threads.setThreadAllocatedMemoryEnabled(true);
+		return threads;
+	}
+}
@@ -0,0 +1,187 @@
+package de.westemeyer.openingtimes.impl;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import de.westemeyer.openingtimes.api.TimeSlice;
+import de.westemeyer.openingtimes.api.WeekDay;
+
+/**
+ * @author Sebastian Westemeyer
+ */
+public class ScheduleFileTest {
+	/** Number of slices of a large schedule. */
+	private static final int LARGE_SCHEDULE = 200000;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testRoundTrip() throws IOException {
+		final List<TimeSlice> slices = new ArrayList<>(RandomSchedules.create(41, 500));
+		// open end and bounds in other time zones
+		slices.add(new ExampleTimeSliceImpl("2014-06-01 00:00:00", null, "10:00", "24:00", EnumSet.of(WeekDay.SUNDAY, WeekDay.HOLIDAY)));
+		slices.add(slice(ZonedDateTime.of(2014, 3, 1, 0, 0, 0, 0, ZoneId.of("Europe/Berlin")),
+				ZonedDateTime.of(2014, 11, 1, 0, 0, 0, 0, ZoneId.of("America/New_York")), "08:15", "17:45",
+				EnumSet.of(WeekDay.MONDAY, WeekDay.FRIDAY)));
+		final CompiledSchedule compiled = new ScheduleStore(slices).update(slices.subList(0, 1), slices.subList(0, 1));
+		final Path path = folder.getRoot().toPath().resolve("schedule.bin");
+		ScheduleFile.write(compiled, path);
+		final CompiledSchedule mapped = ScheduleFile.read(path);
+
+		Assert.assertEquals(compiled.size(), mapped.size());
+		Assert.assertEquals(1, mapped.getRevision());
+		for (int i = 0; i < compiled.size(); i++) {
+			Assert.assertEquals(compiled.from(i), mapped.from(i));
+			Assert.assertEquals(compiled.to(i), mapped.to(i));
+			Assert.assertEquals(compiled.startMinute(i), mapped.startMinute(i));
+			Assert.assertEquals(compiled.endMinute(i), mapped.endMinute(i));
+			Assert.assertEquals(compiled.weekdayMask(i), mapped.weekdayMask(i));
+			Assert.assertEquals(compiled.firstIndex(compiled.to(i)), mapped.firstIndex(compiled.to(i)));
+			Assert.assertEquals(compiled.endIndex(compiled.from(i)), mapped.endIndex(compiled.from(i)));
+			assertSameSlice(compiled.slice(i), mapped.slice(i));
+			// time slices are created once per index
+			Assert.assertSame(mapped.slice(i), mapped.getTimeSlices().get(i));
+		}
+
+		final OpeningTimes expected = new OpeningTimes(compiled, RandomSchedules.HOLIDAYS);
+		final OpeningTimes actual = new OpeningTimes(mapped, RandomSchedules.HOLIDAYS);
+		for (ZonedDateTime date = ZonedDateTime.of(2014, 1, 1, 0, 0, 0, 0, ZoneId.of("Europe/Berlin")); date.getYear() < 2015; date = date
+				.plusMinutes(89)) {
+			final OpenType expectedType = expected.createOpenType(date);
+			final OpenType actualType = actual.createOpenType(date);
+			final String message = date.toString();
+			Assert.assertEquals(message, expectedType.getStatus(), actualType.getStatus());
+			Assert.assertEquals(message, expectedType.getWeekday(), actualType.getWeekday());
+			Assert.assertEquals(message, expectedType.getDateTime(), actualType.getDateTime());
+			Assert.assertEquals(message, expectedType.getClosingDateTime(), actualType.getClosingDateTime());
+			Assert.assertEquals(message, expectedType.getNextOpening(), actualType.getNextOpening());
+			Assert.assertEquals(message, expectedType.getValidUntil(), actualType.getValidUntil());
+			if (expectedType.getTimeSlice() != null) {
+				assertSameSlice(expectedType.getTimeSlice(), actualType.getTimeSlice());
+			}
+		}
+	}
+
+	@Test
+	public void testInvalidFiles() throws IOException {
+		final Path path = folder.getRoot().toPath().resolve("schedule.bin");
+		ScheduleFile.write(new CompiledSchedule(ExampleSchedules.list1()), path);
+		final byte[] bytes = Files.readAllBytes(path);
+		Assert.assertEquals(ExampleSchedules.list1().size(), ScheduleFile.read(path).size());
+
+		// unsupported version
+		final byte[] version = bytes.clone();
+		version[7] = 2;
+		assertInvalid(version, "Unsupported schedule file version: 2");
+		// no schedule file
+		final byte[] magic = bytes.clone();
+		magic[0] = 'X';
+		assertInvalid(magic, "Not a schedule file");
+		// truncated and empty files
+		assertInvalid(Arrays.copyOf(bytes, bytes.length - 2), "Corrupt schedule file");
+		assertInvalid(new byte[0], "Corrupt schedule file");
+	}
+
+	@Test
+	public void testLargeSchedule() throws IOException {
+		final Path path = folder.getRoot().toPath().resolve("large.bin");
+		ScheduleFile.write(new CompiledSchedule(RandomSchedules.create(43, LARGE_SCHEDULE)), path);
+		final CompiledSchedule mapped = ScheduleFile.read(path);
+		final OpenType openType = new OpeningTimes(mapped, RandomSchedules.HOLIDAYS)
+				.createOpenType(ZonedDateTime.of(2014, 6, 1, 12, 0, 0, 0, ZoneId.of("Europe/Berlin")));
+		Assert.assertEquals(LARGE_SCHEDULE, mapped.size());
+		Assert.assertNotNull(openType.getTimeSlice());
+	}
+
+	/**
+	 * Assert that reading a file fails.
+	 *
+	 * @param bytes content of the file
+	 * @param message expected message of the exception
+	 * @throws IOException if the file cannot be written.
+	 */
+	private void assertInvalid(final byte[] bytes, final String message) throws IOException {
+		final Path path = folder.newFile().toPath();
+		Files.write(path, bytes);
+		try {
+			ScheduleFile.read(path);
+			Assert.fail("Expected exception: " + message);
+		} catch (final IOException e) {
+			Assert.assertEquals(message, e.getMessage());
+		}
+	}
+
+	/**
+	 * Assert that two time slices are equal.
+	 *
+	 * @param expected the expected time slice
+	 * @param actual the actual time slice
+	 */
+	private static void assertSameSlice(final TimeSlice expected, final TimeSlice actual) {
+		Assert.assertTrue(expected.getFrom().isEqual(actual.getFrom()));
+		Assert.assertEquals(expected.getFrom().getZone(), actual.getFrom().getZone());
+		if (expected.getTo() == null) {
+			Assert.assertNull(actual.getTo());
+		} else {
+			Assert.assertTrue(expected.getTo().isEqual(actual.getTo()));
+			Assert.assertEquals(expected.getTo().getZone(), actual.getTo().getZone());
+		}
+		Assert.assertEquals(expected.getStartTime(), actual.getStartTime());
+		Assert.assertEquals(expected.getEndTime(), actual.getEndTime());
+		Assert.assertEquals(expected.getWeekdays(), actual.getWeekdays());
+	}
+
+	/**
+	 * Create a time slice with bounds in any time zone.
+	 *
+	 * @param from start of the slice
+	 * @param to end of the slice
+	 * @param startTime opening time
+	 * @param endTime closing time
+	 * @param weekdays weekdays of the slice
+	 * @return the time slice.
+	 */
+	private static TimeSlice slice(final ZonedDateTime from, final ZonedDateTime to, final String startTime, final String endTime,
+			final Set<WeekDay> weekdays) {
+		return new TimeSlice() {
+			@Override
+			public ZonedDateTime getFrom() {
+				return from;
+			}
+
+			@Override
+			public ZonedDateTime getTo() {
+				return to;
+			}
+
+			@Override
+			public String getStartTime() {
+				return startTime;
+			}
+
+			@Override
+			public String getEndTime() {
+				return endTime;
+			}
+
+			@Override
+			public Set<WeekDay> getWeekdays() {
+				return weekdays;
+			}
+		};
+	}
+}
@@ -0,0 +1,196 @@
+package de.westemeyer.openingtimes.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.westemeyer.openingtimes.api.TimeSlice;
+import de.westemeyer.openingtimes.api.WeekDay;
+
+/**
+ * @author Sebastian Westemeyer
+ */
+public class ScheduleImporterTest {
+	/** Time zone of dates without offset. */
+	private static final ZoneId ZONE = ZoneId.of("Europe/Berlin");
+
+	@Test
+	public void testCsv() throws IOException {
+		final List<TimeSlice> slices = withWeekdays(RandomSchedules.create(53, 400));
+		final StringBuilder csv = new StringBuilder("from,to,startTime,endTime,weekdays,comment\n");
+		for (final TimeSlice slice : slices) {
+			csv.append(slice.getFrom()).append(',').append(slice.getTo()).append(',').append(slice.getStartTime()).append(',')
+					.append(slice.getEndTime()).append(",\"").append(weekdays(slice, "|")).append("\",\"a, \"\"b\"\"\"\n");
+		}
+		final ScheduleImporter importer = new ScheduleImporter(ScheduleImporter.Format.CSV, ZONE);
+		assertSameSchedule(new CompiledSchedule(slices), importer.readSchedule(stream(csv.toString())));
+		Assert.assertEquals(slices.size(), importer.getRowCount());
+		Assert.assertTrue(importer.getRowsPerSecond() > 0);
+	}
+
+	@Test
+	public void testJsonLines() throws IOException {
+		final List<TimeSlice> slices = withWeekdays(RandomSchedules.create(59, 400));
+		final StringBuilder json = new StringBuilder();
+		for (final TimeSlice slice : slices) {
+			json.append("{\"from\": \"").append(slice.getFrom()).append("\", \"to\": \"").append(slice.getTo())
+					.append("\", \"id\": 12, \"tags\": [\"x\", {\"y\": null}], \"startTime\": \"").append(slice.getStartTime())
+					.append("\", \"endTime\": \"").append(slice.getEndTime()).append("\", \"weekdays\": [\"")
+					.append(weekdays(slice, "\", \"")).append("\"]}\n\n");
+		}
+		final ScheduleImporter importer = new ScheduleImporter(ScheduleImporter.Format.JSON_LINES, ZONE);
+		assertSameSchedule(new CompiledSchedule(slices), importer.readSchedule(stream(json.toString())));
+		Assert.assertEquals(slices.size(), importer.getRowCount());
+	}
+
+	@Test
+	public void testDates() throws IOException {
+		final List<TimeSlice> slices = new ArrayList<>();
+		new ScheduleImporter(ScheduleImporter.Format.CSV, ZONE).read(stream("weekdays,endTime,startTime,to,from\n"
+				+ "monday tuesday,18:00,08:00,2014-06-30,2014-06-01\n"
+				+ "Sunday;Holiday,24:00,00:00,,2014-06-01 10:30:00\n"
+				+ "FRIDAY,12:00,09:30,2014-12-31T23:59:59Z,2014-06-01T00:00+02:00[Europe/Berlin]\n"),
+				(venue, slice) -> slices.add(slice));
+		Assert.assertEquals(3, slices.size());
+		Assert.assertEquals(ZonedDateTime.of(2014, 6, 1, 0, 0, 0, 0, ZONE), slices.get(0).getFrom());
+		Assert.assertEquals(ZonedDateTime.of(2014, 6, 30, 0, 0, 0, 0, ZONE), slices.get(0).getTo());
+		Assert.assertEquals(EnumSet.of(WeekDay.MONDAY, WeekDay.TUESDAY), slices.get(0).getWeekdays());
+		Assert.assertEquals(ZonedDateTime.of(2014, 6, 1, 10, 30, 0, 0, ZONE), slices.get(1).getFrom());
+		Assert.assertNull(slices.get(1).getTo());
+		Assert.assertEquals(EnumSet.of(WeekDay.SUNDAY, WeekDay.HOLIDAY), slices.get(1).getWeekdays());
+		Assert.assertEquals("24:00", slices.get(1).getEndTime());
+		Assert.assertEquals(ZonedDateTime.of(2014, 6, 1, 0, 0, 0, 0, ZONE), slices.get(2).getFrom());
+		Assert.assertEquals(ZonedDateTime.of(2014, 12, 31, 23, 59, 59, 0, ZoneId.of("Z")), slices.get(2).getTo());
+	}
+
+	@Test
+	public void testValidation() throws IOException {
+		final String header = "from,to,startTime,endTime,weekdays\n";
+		final String valid = "2014-06-01,2014-06-30,08:00,18:00,MONDAY\n";
+		assertInvalid(header + valid + "2014-06-30,2014-06-01,08:00,18:00,MONDAY\n", "Line 3: \"from\" has to be before \"to\"");
+		assertInvalid(header + valid + "2014-06-01,2014-06-01,08:00,18:00,MONDAY\n", "Line 3: \"from\" has to be before \"to\"");
+		assertInvalid(header + "\n" + valid + "2014-06-01,2014-06-30,08:00,24:01,MONDAY\n", "Line 4: Invalid time of day: 24:01");
+		assertInvalid(header + valid + "2014-06-01,2014-06-30,8:00,18:00,MONDAY\n", "Line 3: Invalid time of day: 8:00");
+		assertInvalid(header + valid + "2014-06-01,2014-06-30,08:00,18:00,\n", "Line 3: Missing weekdays");
+		assertInvalid(header + valid + "2014-06-01,2014-06-30,08:00,18:00,MONDAY|SOMEDAY\n", "Line 3: Invalid weekday: SOMEDAY");
+		assertInvalid(header + valid + ",2014-06-30,08:00,18:00,MONDAY\n", "Line 3: Missing from");
+		assertInvalid(header + valid + "2014-13-01T00:00,2014-06-30,08:00,18:00,MONDAY\n",
+				"Line 3: Invalid value for MonthOfYear (valid values 1 - 12): 13");
+		assertInvalid("from,to,startTime,weekdays\n" + valid, "Line 1: Missing column: endTime");
+		try {
+			new ScheduleImporter(ScheduleImporter.Format.JSON_LINES, ZONE).readSchedule(stream("{\"from\": \"2014-06-01\",}\n"));
+			Assert.fail("Expected exception");
+		} catch (final IOException e) {
+			Assert.assertEquals("Line 1: Invalid JSON at column 23", e.getMessage());
+		}
+	}
+
+	@Test
+	public void testVenues() throws IOException {
+		final String csv = "venue,from,to,startTime,endTime,weekdays\n" + "a,2014-06-01,2014-06-30,08:00,18:00,MONDAY\n"
+				+ "b,2014-06-01,2014-06-30,08:00,18:00,MONDAY\n" + "a,2014-07-01,2014-07-31,09:00,17:00,MONDAY|TUESDAY\n";
+		try (VenueRegistry registry = new VenueRegistry()) {
+			registry.addRegion("example", new ExampleHolidayResolver());
+			final TimeSlicePool pool = new TimeSlicePool();
+			final ScheduleImporter importer = new ScheduleImporter(ScheduleImporter.Format.CSV, ZONE, pool);
+			Assert.assertEquals(2, importer.readVenues(stream(csv), registry, "example"));
+			Assert.assertEquals(3, importer.getRowCount());
+			Assert.assertEquals(2, registry.size());
+			Assert.assertEquals(2, pool.size());
+			final OpenType openType = registry.get("a").createOpenType(ZonedDateTime.of(2014, 7, 7, 12, 0, 0, 0, ZONE));
+			Assert.assertEquals("09:00", openType.getTimeSlice().getStartTime());
+
+			// rows without venue are rejected, the registry is unchanged
+			try {
+				importer.readVenues(stream(csv + ",2014-06-01,2014-06-30,08:00,18:00,MONDAY\n"), registry, "example");
+				Assert.fail("Expected exception");
+			} catch (final IOException e) {
+				Assert.assertEquals("Line 5: Missing venue", e.getMessage());
+			}
+			Assert.assertSame(openType.getTimeSlice(),
+					registry.get("a").createOpenType(ZonedDateTime.of(2014, 7, 7, 12, 0, 0, 0, ZONE)).getTimeSlice());
+		}
+	}
+
+	/**
+	 * Assert that an import fails.
+	 *
+	 * @param csv the CSV input
+	 * @param message expected message of the exception
+	 */
+	private static void assertInvalid(final String csv, final String message) {
+		try {
+			new ScheduleImporter(ScheduleImporter.Format.CSV, ZONE).readSchedule(stream(csv));
+			Assert.fail("Expected exception: " + message);
+		} catch (final IOException e) {
+			Assert.assertEquals(message, e.getMessage());
+		}
+	}
+
+	/**
+	 * Compare the compiled values of two schedules.
+	 *
+	 * @param expected the expected schedule
+	 * @param actual the actual schedule
+	 */
+	private static void assertSameSchedule(final CompiledSchedule expected, final CompiledSchedule actual) {
+		Assert.assertEquals(expected.size(), actual.size());
+		for (int i = 0; i < expected.size(); i++) {
+			Assert.assertEquals(expected.from(i), actual.from(i));
+			Assert.assertEquals(expected.to(i), actual.to(i));
+			Assert.assertEquals(expected.startMinute(i), actual.startMinute(i));
+			Assert.assertEquals(expected.endMinute(i), actual.endMinute(i));
+			Assert.assertEquals(expected.weekdayMask(i), actual.weekdayMask(i));
+		}
+	}
+
+	/**
+	 * Filter time slices without weekdays, which are rejected by the importer.
+	 *
+	 * @param slices the time slices
+	 * @return the time slices with weekdays.
+	 */
+	private static List<TimeSlice> withWeekdays(final List<TimeSlice> slices) {
+		final List<TimeSlice> filtered = new ArrayList<>();
+		for (final TimeSlice slice : slices) {
+			if (!slice.getWeekdays().isEmpty()) {
+				filtered.add(slice);
+			}
+		}
+		return filtered;
+	}
+
+	/**
+	 * Join the weekdays of a time slice.
+	 *
+	 * @param slice the time slice
+	 * @param separator separator between weekdays
+	 * @return the weekday names.
+	 */
+	private static String weekdays(final TimeSlice slice, final String separator) {
+		final StringBuilder builder = new StringBuilder();
+		for (final WeekDay weekDay : slice.getWeekdays()) {
+			builder.append(builder.length() == 0 ? "" : separator).append(weekDay.name());
+		}
+		return builder.toString();
+	}
+
+	/**
+	 * Create an input stream of a string.
+	 *
+	 * @param text the text
+	 * @return the input stream.
+	 */
+	private static InputStream stream(final String text) {
+		return new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8));
+	}
+}
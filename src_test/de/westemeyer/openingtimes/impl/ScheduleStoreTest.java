@@ -0,0 +1,204 @@
+package de.westemeyer.openingtimes.impl;
+
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.westemeyer.openingtimes.api.TimeSlice;
+import de.westemeyer.openingtimes.api.WeekDay;
+
+/**
+ * @author Sebastian Westemeyer
+ */
+public class ScheduleStoreTest {
+	@Test
+	public void testIncrementalUpdates() {
+		final Random random = new Random(3);
+		final List<TimeSlice> pool = RandomSchedules.create(17, 800);
+		final List<TimeSlice> expected = new ArrayList<>(pool.subList(0, 200));
+		final ScheduleStore store = new ScheduleStore(expected);
+		int next = 200;
+		for (int change = 1; change <= 200; change++) {
+			final List<TimeSlice> removed = new ArrayList<>();
+			for (int i = random.nextInt(3); i > 0 && !expected.isEmpty(); i--) {
+				removed.add(expected.remove(random.nextInt(expected.size())));
+			}
+			final List<TimeSlice> added = new ArrayList<>();
+			for (int i = removed.isEmpty() ? 1 + random.nextInt(2) : random.nextInt(3); i > 0; i--) {
+				added.add(pool.get(next++));
+			}
+			expected.addAll(added);
+			final CompiledSchedule snapshot = store.update(removed, added);
+			Assert.assertSame(snapshot, store.snapshot());
+			assertSameSchedule(new CompiledSchedule(expected), snapshot);
+			Assert.assertEquals(change, store.getRevision());
+		}
+	}
+
+	@Test
+	public void testAddRemoveReplace() {
+		final List<TimeSlice> slices = ExampleSchedules.list1();
+		final ScheduleStore store = new ScheduleStore();
+		Assert.assertEquals(0, store.getTimeSlices().size());
+		for (final TimeSlice slice : slices) {
+			store.add(slice);
+		}
+		Assert.assertEquals(slices.size(), store.getRevision());
+		assertSameSchedule(new CompiledSchedule(slices), store.snapshot());
+
+		// an unknown slice is neither removed nor replaced
+		final CompiledSchedule before = store.snapshot();
+		final TimeSlice edited = new ExampleTimeSliceImpl("2014-05-01 00:00:00", "2014-05-31 23:59:59", "09:00", "18:00",
+				slices.get(0).getWeekdays());
+		Assert.assertFalse(store.remove(edited));
+		Assert.assertFalse(store.replace(edited, slices.get(0)));
+		Assert.assertSame(before, store.snapshot());
+
+		Assert.assertTrue(store.replace(slices.get(0), edited));
+		final List<TimeSlice> expected = new ArrayList<>(slices.subList(1, slices.size()));
+		expected.add(edited);
+		assertSameSchedule(new CompiledSchedule(expected), store.snapshot());
+		Assert.assertTrue(store.remove(edited));
+		assertSameSchedule(new CompiledSchedule(expected.subList(0, expected.size() - 1)), store.snapshot());
+		Assert.assertEquals(slices.size() + 2, store.getRevision());
+
+		// the previous snapshot is unchanged
+		assertSameSchedule(new CompiledSchedule(slices), before);
+	}
+
+	@Test
+	public void testSameResults() {
+		final List<TimeSlice> slices = RandomSchedules.create(23, 300);
+		final ScheduleStore store = new ScheduleStore(slices.subList(0, 150));
+		store.update(Collections.<TimeSlice> emptyList(), slices.subList(150, 300));
+		final OpeningTimes expected = new OpeningTimes(new CompiledSchedule(slices), RandomSchedules.HOLIDAYS);
+		final OpeningTimes openingTimes = new OpeningTimes(store, RandomSchedules.HOLIDAYS);
+		for (ZonedDateTime date = ZonedDateTime.of(2014, 1, 1, 0, 0, 0, 0, ZoneId.of("Europe/Berlin")); date.getYear() < 2015; date = date
+				.plusMinutes(97)) {
+			OpenTypeAssert.assertSameResult(date.toString(), expected.createOpenType(date), openingTimes.createOpenType(date));
+		}
+	}
+
+	@Test
+	public void testCacheInvalidation() {
+		final List<TimeSlice> slices = ExampleSchedules.list1();
+		final ScheduleStore store = new ScheduleStore(slices);
+		final OpenTypeCache cache = new OpenTypeCache(store, new ExampleHolidayResolver());
+		final ZonedDateTime date = ZonedDateTime.of(2014, 6, 3, 12, 0, 0, 0, ZoneId.of("Europe/Berlin"));
+		Assert.assertNotNull(cache.createOpenType(date).getTimeSlice());
+
+		// closed after removing all slices, although the previous result is still valid
+		store.update(slices, Collections.<TimeSlice> emptyList());
+		Assert.assertEquals(0, store.getTimeSlices().size());
+		Assert.assertNull(cache.createOpenType(date.plusMinutes(1)).getTimeSlice());
+		Assert.assertEquals(2, cache.getMisses());
+	}
+
+	@Test
+	public void testConcurrentReadsAndWrites() throws InterruptedException {
+		final List<TimeSlice> slices = RandomSchedules.create(29, 200);
+		final ScheduleStore store = new ScheduleStore(slices);
+		final OpeningTimes openingTimes = new OpeningTimes(store, RandomSchedules.HOLIDAYS);
+		final AtomicBoolean done = new AtomicBoolean();
+		final AtomicReference<Throwable> failure = new AtomicReference<>();
+		final Thread reader = new Thread(() -> {
+			try {
+				ZonedDateTime date = ZonedDateTime.of(2014, 1, 1, 0, 0, 0, 0, ZoneId.of("Europe/Berlin"));
+				long revision = 0;
+				while (!done.get()) {
+					// every snapshot is complete and revisions never go back
+					final CompiledSchedule snapshot = store.snapshot();
+					Assert.assertEquals(slices.size(), snapshot.size());
+					Assert.assertTrue(snapshot.getRevision() >= revision);
+					revision = snapshot.getRevision();
+					openingTimes.createOpenType(date);
+					date = date.plusMinutes(53);
+				}
+			} catch (final Throwable e) {
+				failure.set(e);
+			}
+		});
+		reader.start();
+		// edit slices while the reader runs, each replacement keeps the number of slices
+		final Random random = new Random(31);
+		final TimeSlice[] current = slices.toArray(new TimeSlice[slices.size()]);
+		for (int i = 0; i < 500; i++) {
+			final int index = random.nextInt(current.length);
+			final TimeSlice slice = current[index];
+			final TimeSlice edited = withEndTime(slice, "24:00");
+			Assert.assertTrue(store.replace(slice, edited));
+			current[index] = edited;
+		}
+		done.set(true);
+		reader.join();
+		Assert.assertNull(failure.get());
+		Assert.assertEquals(500, store.getRevision());
+		Assert.assertTrue(store.getTimeSlices().containsAll(Arrays.asList(current)));
+	}
+
+	/**
+	 * Create a copy of a time slice with another end time.
+	 *
+	 * @param slice the time slice
+	 * @param endTime the end time of the copy
+	 * @return the copy.
+	 */
+	private static TimeSlice withEndTime(final TimeSlice slice, final String endTime) {
+		return new TimeSlice() {
+			@Override
+			public ZonedDateTime getFrom() {
+				return slice.getFrom();
+			}
+
+			@Override
+			public ZonedDateTime getTo() {
+				return slice.getTo();
+			}
+
+			@Override
+			public String getStartTime() {
+				return slice.getStartTime();
+			}
+
+			@Override
+			public String getEndTime() {
+				return endTime;
+			}
+
+			@Override
+			public Set<WeekDay> getWeekdays() {
+				return slice.getWeekdays();
+			}
+		};
+	}
+
+	/**
+	 * Compare two compiled schedules slice by slice.
+	 *
+	 * @param expected the expected schedule
+	 * @param actual the actual schedule
+	 */
+	private static void assertSameSchedule(final CompiledSchedule expected, final CompiledSchedule actual) {
+		Assert.assertEquals(expected.size(), actual.size());
+		for (int i = 0; i < expected.size(); i++) {
+			Assert.assertSame(expected.slice(i), actual.slice(i));
+			Assert.assertEquals(expected.from(i), actual.from(i));
+			Assert.assertEquals(expected.to(i), actual.to(i));
+			Assert.assertEquals(expected.startMinute(i), actual.startMinute(i));
+			Assert.assertEquals(expected.endMinute(i), actual.endMinute(i));
+			Assert.assertEquals(expected.weekdayMask(i), actual.weekdayMask(i));
+			Assert.assertEquals(expected.firstIndex(expected.to(i)), actual.firstIndex(expected.to(i)));
+		}
+		Assert.assertEquals(expected.getTimeSlices(), actual.getTimeSlices());
+	}
+}
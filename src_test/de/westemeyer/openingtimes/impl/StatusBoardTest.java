@@ -0,0 +1,120 @@
+package de.westemeyer.openingtimes.impl;
+
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.westemeyer.openingtimes.api.OpenStatus;
+
+/**
+ * @author Sebastian Westemeyer
+ */
+public class StatusBoardTest {
+	/** Time zone of the venues. */
+	private static final ZoneId ZONE = ZoneId.of("Europe/Berlin");
+
+	@Test
+	public void testSameResults() {
+		final ZonedDateTime start = ZonedDateTime.of(2014, 3, 1, 9, 0, 0, 0, ZONE);
+		final MutableClock clock = new MutableClock(start.toInstant(), ZONE);
+		try (VenueRegistry registry = createRegistry(300)) {
+			final StatusBoard board = new StatusBoard(registry, clock);
+			for (ZonedDateTime date = start; date.getMonthValue() < 12; date = date.plusMinutes(1117)) {
+				clock.instant = date.toInstant();
+				board.refresh();
+				final StatusBoard.Snapshot snapshot = board.getSnapshot();
+				Assert.assertEquals(300, snapshot.size());
+				Assert.assertEquals(date.toInstant().toEpochMilli(), snapshot.getRefreshedAt());
+				Assert.assertTrue(snapshot.getRefreshNanos() > 0);
+				final int[] counts = new int[OpenStatus.values().length];
+				long earliest = Long.MAX_VALUE;
+				for (int i = 0; i < snapshot.size(); i++) {
+					final String id = snapshot.getId(i);
+					final OpenType expected = registry.get(id).createOpenType(date);
+					Assert.assertEquals(id + " " + date, expected.getStatus(), snapshot.getStatus(i));
+					Assert.assertEquals(expected.getStatus(), board.getStatus(id));
+					Assert.assertEquals(expected.getValidUntil().toEpochMilli(), snapshot.getNextTransition(i));
+					counts[expected.getStatus().ordinal()]++;
+					earliest = Math.min(earliest, snapshot.getNextTransition(i));
+				}
+				for (final OpenStatus status : OpenStatus.values()) {
+					Assert.assertEquals(counts[status.ordinal()], board.getCount(status));
+				}
+				Assert.assertEquals(earliest, snapshot.getEarliestTransition());
+			}
+		}
+	}
+
+	@Test
+	public void testDoubleBuffer() {
+		final MutableClock clock = new MutableClock(ZonedDateTime.of(2014, 9, 20, 9, 30, 0, 0, ZONE).toInstant(), ZONE);
+		try (VenueRegistry registry = createRegistry(10)) {
+			final StatusBoard board = new StatusBoard(registry, clock);
+			final StatusBoard.Snapshot first = board.getSnapshot();
+			Assert.assertEquals(OpenStatus.OPENING_SOON, first.getStatus("venue1"));
+			Assert.assertEquals(1, first.indexOf("venue1"));
+			Assert.assertEquals(-1, first.indexOf("unknown"));
+			Assert.assertNull(board.getStatus("unknown"));
+
+			// the spare snapshot is filled while readers keep the first one
+			clock.instant = ZonedDateTime.of(2014, 9, 20, 15, 0, 0, 0, ZONE).toInstant();
+			board.refresh();
+			final StatusBoard.Snapshot second = board.getSnapshot();
+			Assert.assertNotSame(first, second);
+			Assert.assertEquals(OpenStatus.OPENING_SOON, first.getStatus("venue1"));
+			Assert.assertEquals(OpenStatus.OPEN, second.getStatus("venue1"));
+			board.refresh();
+			Assert.assertSame(first, board.getSnapshot());
+			Assert.assertEquals(OpenStatus.OPEN, first.getStatus("venue1"));
+
+			// changes of the registry appear with the next refresh
+			registry.unregister("venue1");
+			Assert.assertEquals(OpenStatus.OPEN, board.getStatus("venue1"));
+			board.refresh();
+			Assert.assertNull(board.getStatus("venue1"));
+			Assert.assertEquals(9, board.getSnapshot().size());
+			board.refresh();
+			Assert.assertEquals(9, board.getSnapshot().size());
+		}
+	}
+
+	@Test
+	public void testExecutor() throws InterruptedException {
+		final MutableClock clock = new MutableClock(ZonedDateTime.of(2014, 9, 20, 9, 30, 0, 0, ZONE).toInstant(), ZONE);
+		final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+		try (VenueRegistry registry = createRegistry(10)) {
+			final StatusBoard board = new StatusBoard(registry, clock);
+			Assert.assertEquals(0, board.getCount(OpenStatus.OPEN));
+			clock.instant = ZonedDateTime.of(2014, 9, 20, 15, 0, 0, 0, ZONE).toInstant();
+			board.start(executor, 10);
+			for (int i = 0; i < 500 && board.getCount(OpenStatus.OPEN) == 0; i++) {
+				Thread.sleep(10);
+			}
+			board.close();
+			Assert.assertEquals(5, board.getCount(OpenStatus.OPEN));
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Create a registry with venues alternating between random and example time slices.
+	 *
+	 * @param size number of venues
+	 * @return the registry.
+	 */
+	private static VenueRegistry createRegistry(final int size) {
+		final VenueRegistry registry = new VenueRegistry(2);
+		registry.addRegion("random", RandomSchedules.HOLIDAYS);
+		registry.addRegion("example", new ExampleHolidayResolver());
+		for (int i = 0; i < size; i++) {
+			registry.register("venue" + i, i % 2 == 0 ? "random" : "example",
+					new CompiledSchedule(i % 2 == 0 ? RandomSchedules.create(i, 20) : ExampleSchedules.list1()));
+		}
+		return registry;
+	}
+}
@@ -0,0 +1,175 @@
+package de.westemeyer.openingtimes.impl;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.westemeyer.openingtimes.api.OpenStatus;
+
+/**
+ * @author Sebastian Westemeyer
+ */
+public class StatusSchedulerTest {
+	/** Time zone of the venues. */
+	private static final ZoneId ZONE = ZoneId.of("Europe/Berlin");
+
+	@Test
+	public void testSameChangesAsPolling() {
+		final ZonedDateTime start = ZonedDateTime.of(2014, 9, 20, 9, 30, 0, 0, ZONE);
+		final MutableClock clock = new MutableClock(start.toInstant(), ZONE);
+		final Map<String, OpeningTimes> venues = new LinkedHashMap<>();
+		venues.put("example", new OpeningTimes(new CompiledSchedule(ExampleSchedules.list1()), new ExampleHolidayResolver()));
+		venues.put("random", new OpeningTimes(new CompiledSchedule(RandomSchedules.create(79, 40)), RandomSchedules.HOLIDAYS));
+		final StatusScheduler scheduler = new StatusScheduler(clock);
+		final Map<String, List<OpenType>> changes = new HashMap<>();
+		scheduler.addListener((id, previous, current) -> changes.get(id).add(current));
+		for (final Map.Entry<String, OpeningTimes> venue : venues.entrySet()) {
+			changes.put(venue.getKey(), new ArrayList<>());
+			changes.get(venue.getKey()).add(scheduler.register(venue.getKey(), venue.getValue(), ZoneId.of("America/New_York")));
+		}
+		Assert.assertEquals(2, scheduler.size());
+
+		// advance the clock in irregular steps for six weeks, across the end of daylight saving time
+		final Instant end = start.plusWeeks(6).toInstant();
+		while (clock.instant().isBefore(end)) {
+			clock.instant = clock.instant.plusSeconds(3217);
+			scheduler.runDue();
+			Assert.assertTrue(scheduler.getNextDue().isAfter(clock.instant()));
+		}
+
+		for (final Map.Entry<String, OpeningTimes> venue : venues.entrySet()) {
+			final OpeningTimes openingTimes = venue.getValue();
+			final List<OpenType> results = changes.get(venue.getKey());
+			Assert.assertTrue(results.size() > 20);
+			// each change happens at its checked date
+			for (final OpenType change : results.subList(1, results.size())) {
+				final ZonedDateTime date = change.getCheckedDate();
+				Assert.assertTrue(date.toString(), sameResult(change, openingTimes.createOpenType(date)));
+				Assert.assertFalse(date.toString(), sameResult(change, openingTimes.createOpenType(date.minusSeconds(1))));
+			}
+			// polling every minute finds no other changes
+			int index = 0;
+			for (ZonedDateTime date = results.get(0).getCheckedDate(); date.toInstant().isBefore(clock.instant()); date = date
+					.plusMinutes(1)) {
+				while (index + 1 < results.size() && !results.get(index + 1).getCheckedDate().isAfter(date)) {
+					index++;
+				}
+				Assert.assertTrue(date.toString(), sameResult(results.get(index), openingTimes.createOpenType(date)));
+			}
+		}
+	}
+
+	@Test
+	public void testRegistration() {
+		final MutableClock clock = new MutableClock(ZonedDateTime.of(2014, 9, 20, 9, 30, 0, 0, ZONE).toInstant(), ZONE);
+		final OpeningTimes example = new OpeningTimes(new CompiledSchedule(ExampleSchedules.list1()), new ExampleHolidayResolver());
+		final StatusScheduler scheduler = new StatusScheduler(clock);
+		final List<OpenType> changes = new ArrayList<>();
+		final StatusListener listener = (id, previous, current) -> changes.add(current);
+		scheduler.addListener(listener);
+
+		Assert.assertNull(scheduler.getNextDue());
+		Assert.assertEquals(OpenStatus.OPENING_SOON, scheduler.register("a", example).getStatus());
+		Assert.assertEquals(ZonedDateTime.of(2014, 9, 20, 14, 1, 0, 0, ZONE).toInstant(), scheduler.getNextDue());
+		scheduler.register("b", example);
+		Assert.assertTrue(scheduler.unregister("b"));
+		Assert.assertFalse(scheduler.unregister("b"));
+		Assert.assertNull(scheduler.get("b"));
+		Assert.assertEquals(1, scheduler.size());
+
+		// nothing is due before the opening
+		clock.instant = clock.instant.plusSeconds(60);
+		Assert.assertEquals(0, scheduler.runDue());
+		clock.instant = ZonedDateTime.of(2014, 9, 20, 14, 1, 0, 0, ZONE).toInstant();
+		Assert.assertEquals(1, scheduler.runDue());
+		Assert.assertEquals(OpenStatus.OPEN, changes.get(0).getStatus());
+		Assert.assertSame(changes.get(0), scheduler.get("a"));
+
+		// refreshing without a change notifies nobody, removed listeners are not notified
+		Assert.assertTrue(scheduler.refresh("a"));
+		Assert.assertFalse(scheduler.refresh("b"));
+		Assert.assertEquals(1, changes.size());
+		scheduler.removeListener(listener);
+		clock.instant = clock.instant.plusSeconds(86400);
+		Assert.assertTrue(scheduler.runDue() > 0);
+		Assert.assertEquals(1, changes.size());
+	}
+
+	@Test
+	public void testExecutor() throws InterruptedException {
+		final ZonedDateTime start = ZonedDateTime.of(2014, 9, 20, 9, 30, 0, 0, ZONE);
+		final MutableClock clock = new MutableClock(start.toInstant(), ZONE);
+		final StatusScheduler scheduler = new StatusScheduler(clock);
+		final CountDownLatch opened = new CountDownLatch(1);
+		final CountDownLatch closed = new CountDownLatch(1);
+		scheduler.addListener((id, previous, current) -> {
+			if (current.getStatus() == OpenStatus.OPEN) {
+				opened.countDown();
+			} else if (previous.getStatus() == OpenStatus.OPEN) {
+				closed.countDown();
+			}
+		});
+		scheduler.register("a", new OpeningTimes(new CompiledSchedule(ExampleSchedules.list1()), new ExampleHolidayResolver()));
+		final ScheduledExecutorService executor = new FastForwardExecutor();
+		try {
+			// the opening is due right away
+			clock.instant = start.plusHours(5).toInstant();
+			scheduler.start(executor);
+			Assert.assertTrue(opened.await(10, TimeUnit.SECONDS));
+
+			// runs keep being scheduled, until the closing is due
+			final Instant closing = scheduler.get("a").getValidUntil();
+			clock.instant = closing.plusSeconds(60);
+			Assert.assertTrue(closed.await(10, TimeUnit.SECONDS));
+			Assert.assertTrue(scheduler.getNextDue().isAfter(closing));
+			scheduler.close();
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Check whether two results are the same for the listeners of the scheduler.
+	 *
+	 * @param first the first result
+	 * @param second the second result
+	 * @return whether status, time slice, opening and next opening are the same.
+	 */
+	private static boolean sameResult(final OpenType first, final OpenType second) {
+		return first.getStatus() == second.getStatus() && first.getTimeSlice() == second.getTimeSlice()
+				&& Objects.equals(first.getDateTime(), second.getDateTime())
+				&& Objects.equals(first.getNextOpening(), second.getNextOpening());
+	}
+
+	/**
+	 * Executor running scheduled tasks a hundred thousand times earlier, so that runs due in hours follow each other within a
+	 * fraction of a second.
+	 */
+	private static final class FastForwardExecutor extends ScheduledThreadPoolExecutor {
+		/**
+		 * Create new executor with a single thread.
+		 */
+		FastForwardExecutor() {
+			super(1);
+		}
+
+		@Override
+		public ScheduledFuture<?> schedule(final Runnable command, final long delay, final TimeUnit unit) {
+			return super.schedule(command, unit.toMicros(delay) / 100_000, TimeUnit.MICROSECONDS);
+		}
+	}
+}
@@ -0,0 +1,38 @@
+package de.westemeyer.openingtimes.impl;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author Sebastian Westemeyer
+ */
+public class TimeOfDayTest {
+	@Test
+	public void testParse() {
+		Assert.assertEquals(0, TimeOfDay.parse("00:00"));
+		Assert.assertEquals(14 * 60, TimeOfDay.parse("14:00"));
+		Assert.assertEquals(23 * 60 + 59, TimeOfDay.parse("23:59"));
+		Assert.assertEquals(TimeOfDay.END_OF_DAY, TimeOfDay.parse("24:00"));
+	}
+
+	@Test
+	public void testFormat() {
+		for (int minutes = 0; minutes <= TimeOfDay.END_OF_DAY; minutes++) {
+			Assert.assertEquals(minutes, TimeOfDay.parse(TimeOfDay.format(minutes)));
+		}
+		Assert.assertEquals("09:05", TimeOfDay.format(9 * 60 + 5));
+		Assert.assertEquals("24:00", TimeOfDay.format(TimeOfDay.END_OF_DAY));
+	}
+
+	@Test
+	public void testInvalid() {
+		for (final String time : new String[] { null, "", "9:00", "24:01", "25:00", "12:60", "12-00", "1a:00", "12:00:00" }) {
+			try {
+				TimeOfDay.parse(time);
+				Assert.fail("Accepted invalid time " + time);
+			} catch (IllegalArgumentException e) {
+				// expected
+			}
+		}
+	}
+}
@@ -0,0 +1,80 @@
+package de.westemeyer.openingtimes.impl;
+
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.westemeyer.openingtimes.api.TimeSlice;
+import de.westemeyer.openingtimes.api.WeekDay;
+
+/**
+ * @author Sebastian Westemeyer
+ */
+public class TimeSlicePoolTest {
+	@Test
+	public void testSharedShapes() {
+		final TimeSlicePool pool = new TimeSlicePool();
+		final ZonedDateTime from = ZonedDateTime.of(2014, 1, 1, 0, 0, 0, 0, ZoneId.of("Europe/Berlin"));
+		final TimeSlice first = pool.create(from, from.plusMonths(1), "08:00", "18:00", EnumSet.of(WeekDay.MONDAY, WeekDay.HOLIDAY));
+		final TimeSlice second = pool.create(from.plusMonths(1), from.plusMonths(2), "08:00", "18:00",
+				EnumSet.of(WeekDay.HOLIDAY, WeekDay.MONDAY));
+		Assert.assertEquals(1, pool.size());
+		Assert.assertSame(first.getWeekdays(), second.getWeekdays());
+		Assert.assertSame(first.getStartTime(), second.getStartTime());
+		Assert.assertEquals(from.plusMonths(1), second.getFrom());
+
+		// other times, weekdays and time zones have their own shapes
+		pool.create(from, from.plusMonths(1), "08:00", "18:30", EnumSet.of(WeekDay.MONDAY, WeekDay.HOLIDAY));
+		pool.create(from, from.plusMonths(1), "08:00", "18:00", EnumSet.of(WeekDay.MONDAY));
+		pool.create(from, null, "08:00", "18:00", EnumSet.of(WeekDay.MONDAY));
+		pool.create(from.withZoneSameInstant(ZoneId.of("UTC")), null, "08:00", "18:00", EnumSet.of(WeekDay.MONDAY));
+		Assert.assertEquals(5, pool.size());
+	}
+
+	@Test
+	public void testSameResults() {
+		final TimeSlicePool pool = new TimeSlicePool();
+		final List<TimeSlice> slices = RandomSchedules.create(47, 300);
+		final List<TimeSlice> pooled = new ArrayList<>();
+		for (final TimeSlice slice : slices) {
+			final TimeSlice copy = pool.copyOf(slice);
+			Assert.assertTrue(slice.getFrom().isEqual(copy.getFrom()));
+			Assert.assertEquals(slice.getFrom().getZone(), copy.getFrom().getZone());
+			Assert.assertTrue(slice.getTo().isEqual(copy.getTo()));
+			Assert.assertEquals(slice.getStartTime(), copy.getStartTime());
+			Assert.assertEquals(slice.getEndTime(), copy.getEndTime());
+			Assert.assertEquals(slice.getWeekdays(), copy.getWeekdays());
+			pooled.add(copy);
+		}
+
+		final CompiledSchedule compiled = new CompiledSchedule(slices);
+		final CompiledSchedule compiledPool = new CompiledSchedule(pooled);
+		for (int i = 0; i < compiled.size(); i++) {
+			Assert.assertEquals(compiled.from(i), compiledPool.from(i));
+			Assert.assertEquals(compiled.to(i), compiledPool.to(i));
+			Assert.assertEquals(compiled.startMinute(i), compiledPool.startMinute(i));
+			Assert.assertEquals(compiled.endMinute(i), compiledPool.endMinute(i));
+			Assert.assertEquals(compiled.weekdayMask(i), compiledPool.weekdayMask(i));
+		}
+
+		final OpeningTimes expected = new OpeningTimes(compiled, RandomSchedules.HOLIDAYS);
+		final OpeningTimes actual = new OpeningTimes(compiledPool, RandomSchedules.HOLIDAYS);
+		for (ZonedDateTime date = ZonedDateTime.of(2014, 1, 1, 0, 0, 0, 0, ZoneId.of("Europe/Berlin")); date.getYear() < 2015; date = date
+				.plusMinutes(101)) {
+			final OpenType expectedType = expected.createOpenType(date);
+			final OpenType actualType = actual.createOpenType(date);
+			final String message = date.toString();
+			Assert.assertEquals(message, expectedType.getStatus(), actualType.getStatus());
+			Assert.assertEquals(message, expectedType.getDateTime(), actualType.getDateTime());
+			Assert.assertEquals(message, expectedType.getClosingDateTime(), actualType.getClosingDateTime());
+			Assert.assertEquals(message, expectedType.getNextOpening(), actualType.getNextOpening());
+			Assert.assertEquals(message, expectedType.getValidUntil(), actualType.getValidUntil());
+			Assert.assertEquals(message, slices.indexOf(expectedType.getTimeSlice()), pooled.indexOf(actualType.getTimeSlice()));
+		}
+	}
+}
@@ -0,0 +1,136 @@
+package de.westemeyer.openingtimes.impl;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.westemeyer.openingtimes.api.TimeSlice;
+import de.westemeyer.openingtimes.api.TimeSlicesCollector;
+
+/**
+ * @author Sebastian Westemeyer
+ */
+public class TransitionTimelineTest {
+	/** The time zone of the timelines. */
+	private static final ZoneId ZONE = ZoneId.of("Europe/Berlin");
+
+	@Test
+	public void testSameResults() {
+		final OpeningTimes openingTimes = new OpeningTimes(new CompiledSchedule(RandomSchedules.create(13, 300)),
+				RandomSchedules.HOLIDAYS);
+		final ZonedDateTime start = ZonedDateTime.of(2014, 1, 1, 0, 0, 0, 0, ZONE);
+		final TransitionTimeline timeline = new TransitionTimeline(openingTimes, start, 365, Runnable::run);
+		Assert.assertEquals(start.toInstant(), timeline.getStart());
+		Assert.assertFalse(timeline.getEnd().isBefore(start.plusDays(365).toInstant()));
+
+		final Random random = new Random(13);
+		for (int i = 0; i < 20000; i++) {
+			final ZonedDateTime date = start.plusSeconds(random.nextInt(270 * 86400)).plusNanos(random.nextInt(4) == 0 ? 1 : 0);
+			final OpenType openType = timeline.createOpenType(date);
+			OpenTypeAssert.assertSameResult(date.toString(), openingTimes.createOpenType(date), openType);
+			Assert.assertTrue(date.toString(), openType.getValidUntil().isAfter(date.toInstant()));
+		}
+		// no extension before the last quarter
+		Assert.assertEquals(start.toInstant(), timeline.getStart());
+	}
+
+	@Test
+	public void testSegmentBoundaries() {
+		final OpeningTimes openingTimes = new OpeningTimes(new CompiledSchedule(RandomSchedules.create(17, 100)),
+				RandomSchedules.HOLIDAYS);
+		final ZonedDateTime start = ZonedDateTime.of(2014, 3, 1, 0, 0, 0, 0, ZONE);
+		final TransitionTimeline timeline = new TransitionTimeline(openingTimes, start, 90, Runnable::run);
+		// check right before and at the end of validity of each result
+		ZonedDateTime date = start;
+		while (date.isBefore(start.plusDays(60))) {
+			final OpenType openType = timeline.createOpenType(date);
+			OpenTypeAssert.assertSameResult(date.toString(), openingTimes.createOpenType(date), openType);
+			final Instant validUntil = openType.getValidUntil();
+			final ZonedDateTime last = validUntil.minusNanos(1).atZone(ZONE);
+			OpenTypeAssert.assertSameResult(last.toString(), openingTimes.createOpenType(last), timeline.createOpenType(last));
+			date = validUntil.isAfter(date.toInstant()) ? validUntil.atZone(ZONE) : date.plusNanos(1);
+		}
+	}
+
+	@Test
+	public void testExtension() {
+		final OpeningTimes openingTimes = new OpeningTimes(new CompiledSchedule(RandomSchedules.create(19, 100)),
+				RandomSchedules.HOLIDAYS);
+		final ZonedDateTime start = ZonedDateTime.of(2014, 1, 1, 0, 0, 0, 0, ZONE);
+		final TransitionTimeline timeline = new TransitionTimeline(openingTimes, start, 100, Runnable::run);
+		final Instant end = timeline.getEnd();
+
+		// a test date in the last quarter extends the timeline, keeping one day before the test date
+		final ZonedDateTime date = start.plusDays(80);
+		OpenTypeAssert.assertSameResult(date.toString(), openingTimes.createOpenType(date), timeline.createOpenType(date));
+		Assert.assertTrue(timeline.getEnd().isAfter(end));
+		Assert.assertFalse(timeline.getEnd().isBefore(date.plusDays(100).toInstant()));
+		Assert.assertFalse(timeline.getStart().isAfter(date.minusDays(1).toInstant()));
+		Assert.assertTrue(timeline.getStart().isAfter(start.toInstant()));
+
+		// a test date beyond the end rebuilds the timeline
+		final ZonedDateTime later = date.plusDays(300);
+		OpenTypeAssert.assertSameResult(later.toString(), openingTimes.createOpenType(later), timeline.createOpenType(later));
+		Assert.assertEquals(later.toInstant(), timeline.getStart());
+		for (int hours = 0; hours < 24 * 100; hours += 7) {
+			final ZonedDateTime test = later.plusHours(hours);
+			OpenTypeAssert.assertSameResult(test.toString(), openingTimes.createOpenType(test), timeline.createOpenType(test));
+		}
+	}
+
+	@Test
+	public void testRevisionChange() {
+		final List<TimeSlice> slices = new ArrayList<>(ExampleSchedules.list1());
+		final AtomicLong revision = new AtomicLong();
+		final TimeSlicesCollector collector = new TimeSlicesCollector() {
+			@Override
+			public List<TimeSlice> getTimeSlices() {
+				return slices;
+			}
+
+			@Override
+			public long getRevision() {
+				return revision.get();
+			}
+		};
+		final List<Runnable> tasks = new ArrayList<>();
+		final OpeningTimes openingTimes = new OpeningTimes(collector, new ExampleHolidayResolver());
+		final ZonedDateTime start = ZonedDateTime.of(2014, 6, 1, 0, 0, 0, 0, ZONE);
+		final TransitionTimeline timeline = new TransitionTimeline(openingTimes, start, 60, tasks::add);
+		final ZonedDateTime date = start.plusDays(2).plusHours(6);
+		Assert.assertNotNull(timeline.createOpenType(date).getTimeSlice());
+
+		// evaluated directly until the rebuild has finished
+		slices.clear();
+		revision.incrementAndGet();
+		Assert.assertNull(timeline.createOpenType(date).getTimeSlice());
+		Assert.assertEquals(1, tasks.size());
+		Assert.assertNull(timeline.createOpenType(date).getTimeSlice());
+		Assert.assertEquals(1, tasks.size());
+		tasks.get(0).run();
+		Assert.assertEquals(1, timeline.size());
+		Assert.assertNull(timeline.createOpenType(date.plusHours(1)).getTimeSlice());
+	}
+
+	@Test
+	public void testOtherZone() {
+		final OpeningTimes openingTimes = new OpeningTimes(new ExampleTimeSlicesCollector(ExampleSchedules.list1()),
+				new ExampleHolidayResolver());
+		final TransitionTimeline timeline = openingTimes.createTimeline(ZonedDateTime.of(2014, 6, 1, 0, 0, 0, 0, ZONE), 30);
+		final ZonedDateTime date = ZonedDateTime.of(2014, 6, 3, 6, 0, 0, 0, ZoneId.of("America/New_York"));
+		OpenTypeAssert.assertSameResult(date.toString(), openingTimes.createOpenType(date), timeline.createOpenType(date));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidDays() {
+		new OpeningTimes(new ExampleTimeSlicesCollector(ExampleSchedules.list1()), new ExampleHolidayResolver())
+				.createTimeline(ZonedDateTime.of(2014, 6, 1, 0, 0, 0, 0, ZONE), 0);
+	}
+}
@@ -0,0 +1,119 @@
+package de.westemeyer.openingtimes.impl;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import de.westemeyer.openingtimes.api.OpenStatus;
+
+/**
+ * @author Sebastian Westemeyer
+ */
+public class VenueIndexTest {
+	/** Time zone of the index. */
+	private static final ZoneId ZONE = ZoneId.of("Europe/Berlin");
+	/** Registry with venues in two regions. */
+	private static VenueRegistry registry;
+	/** Index over the whole year 2014. */
+	private static VenueIndex index;
+
+	@BeforeClass
+	public static void setUp() {
+		registry = new VenueRegistry(2);
+		registry.addRegion("random", new CachingHolidayResolver(RandomSchedules.HOLIDAYS));
+		registry.addRegion("nrw", new CachingHolidayResolver(new ExampleHolidayResolver()));
+		for (int i = 0; i < 150; i++) {
+			if (i % 3 == 0) {
+				registry.register("example" + i, "nrw", new CompiledSchedule(i % 2 == 0 ? ExampleSchedules.list1() : ExampleSchedules.list2()));
+			} else {
+				registry.register("random" + i, i % 2 == 0 ? "random" : "nrw", new CompiledSchedule(RandomSchedules.create(i, 8)));
+			}
+		}
+		index = new VenueIndex(registry, ZONE, LocalDate.of(2014, 1, 1), 365);
+	}
+
+	@AfterClass
+	public static void tearDown() {
+		registry.close();
+	}
+
+	@Test
+	public void testOpenAt() {
+		for (ZonedDateTime date = ZonedDateTime.of(2013, 12, 30, 0, 7, 13, 0, ZONE); date.getYear() < 2015; date = date.plusMinutes(97)) {
+			Assert.assertEquals(date.toString(), new ArrayList<>(registry.openAt(date).keySet()), index.openAt(date));
+		}
+	}
+
+	@Test
+	public void testOpenAtBucketEdges() {
+		for (ZonedDateTime date = ZonedDateTime.of(2014, 10, 20, 0, 0, 0, 0, ZONE); date.getDayOfMonth() < 28; date = date.plusMinutes(1)) {
+			Assert.assertEquals(date.toString(), new ArrayList<>(registry.openAt(date).keySet()), index.openAt(date));
+		}
+	}
+
+	@Test
+	public void testOpeningWithin() {
+		final int[] minutes = { 0, 1, 14, 15, 60, 599, 1440 };
+		int run = 0;
+		for (ZonedDateTime date = ZonedDateTime.of(2013, 12, 30, 0, 3, 41, 0, ZONE); date.getYear() < 2015; date = date.plusMinutes(211)) {
+			final int within = minutes[run++ % minutes.length];
+			final ZonedDateTime limit = date.plusMinutes(within);
+			final List<String> expected = new ArrayList<>();
+			for (final Map.Entry<String, OpenType> entry : registry.withStatus(date, OpenStatus.OPENING_SOON).entrySet()) {
+				if (!entry.getValue().getDateTime().isAfter(limit)) {
+					expected.add(entry.getKey());
+				}
+			}
+			Assert.assertEquals(date + " + " + within, expected, index.openingWithin(date, within));
+		}
+	}
+
+	@Test
+	public void testOpenOn() {
+		for (LocalDate date = LocalDate.of(2013, 12, 25); date.getYear() < 2015; date = date.plusDays(1)) {
+			final List<String> expected = new ArrayList<>();
+			for (final Map.Entry<String, OpenType> entry : registry.createOpenTypes(date.atStartOfDay(ZONE)).entrySet()) {
+				if (entry.getValue().getStatus() != OpenStatus.CLOSED && entry.getValue().getDateTime().toLocalDate().equals(date)) {
+					expected.add(entry.getKey());
+				}
+			}
+			Assert.assertEquals(date.toString(), expected, index.openOn(date));
+		}
+		// venues of the example schedules open on all saints' day, but not on the day before
+		Assert.assertTrue(index.openOn(LocalDate.of(2014, 11, 1)).contains("example0"));
+		Assert.assertFalse(index.openOn(LocalDate.of(2014, 10, 31)).contains("example0"));
+	}
+
+	@Test
+	public void testOtherZone() {
+		final ZonedDateTime date = ZonedDateTime.of(2014, 7, 1, 15, 0, 0, 0, ZoneId.of("UTC"));
+		Assert.assertEquals(new ArrayList<>(registry.openAt(date).keySet()), index.openAt(date));
+	}
+
+	@Test
+	public void testSharedTables() {
+		final VenueRegistry examples = new VenueRegistry();
+		examples.addRegion("nrw", new ExampleHolidayResolver());
+		examples.register("lift", "nrw", new CompiledSchedule(ExampleSchedules.list1()));
+		final VenueIndex summer = new VenueIndex(examples, ZONE, LocalDate.of(2014, 7, 14), 28);
+		// a single season in summer, one table per day of week
+		Assert.assertEquals(7, summer.tableCount());
+		Assert.assertEquals(new ArrayList<>(examples.openAt(ZonedDateTime.of(2014, 7, 20, 13, 0, 0, 0, ZONE)).keySet()),
+				summer.openAt(ZonedDateTime.of(2014, 7, 20, 13, 0, 0, 0, ZONE)));
+		// days of the same season share their tables, so there are far fewer tables than days
+		Assert.assertTrue(new VenueIndex(examples, ZONE, LocalDate.of(2014, 1, 1), 365).tableCount() < 100);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidMinutes() {
+		index.openingWithin(ZonedDateTime.of(2014, 7, 1, 15, 0, 0, 0, ZONE), 1441);
+	}
+}
@@ -0,0 +1,111 @@
+package de.westemeyer.openingtimes.impl;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.westemeyer.openingtimes.api.HolidayResolver;
+import de.westemeyer.openingtimes.api.OpenStatus;
+import de.westemeyer.openingtimes.api.TimeSlicesCollector;
+import de.westemeyer.openingtimes.api.WeekDay;
+
+/**
+ * @author Sebastian Westemeyer
+ */
+public class VenueRegistryTest {
+	/** Time zone for the test dates. */
+	private static final ZoneId ZONE = ZoneId.of("Europe/Berlin");
+
+	@Test
+	public void testSameResults() {
+		final List<TimeSlicesCollector> schedules = new ArrayList<>();
+		try (VenueRegistry registry = new VenueRegistry(3)) {
+			registry.addRegion("random", RandomSchedules.HOLIDAYS);
+			registry.addRegion("example", new CachingHolidayResolver(new ExampleHolidayResolver()));
+			for (int i = 0; i < 500; i++) {
+				final TimeSlicesCollector schedule = new CompiledSchedule(i % 2 == 0 ? RandomSchedules.create(i, 20) : ExampleSchedules.list1());
+				schedules.add(schedule);
+				registry.register("venue" + i, i % 2 == 0 ? "random" : "example", schedule);
+			}
+			Assert.assertEquals(500, registry.size());
+			for (ZonedDateTime date = ZonedDateTime.of(2014, 3, 1, 9, 0, 0, 0, ZONE); date.getMonthValue() < 12; date = date.plusHours(77)) {
+				final Map<String, OpenType> all = registry.createOpenTypes(date);
+				final Map<String, OpenType> open = registry.openAt(date);
+				Assert.assertEquals(500, all.size());
+				int index = 0;
+				int expectedOpen = 0;
+				for (final Map.Entry<String, OpenType> entry : all.entrySet()) {
+					Assert.assertEquals("venue" + index, entry.getKey());
+					final HolidayResolver holidays = index % 2 == 0 ? RandomSchedules.HOLIDAYS : new ExampleHolidayResolver();
+					final OpenType expected = new OpeningTimes(schedules.get(index), holidays).createOpenType(date);
+					OpenTypeAssert.assertSameOpenType(entry.getKey() + " " + date, expected, entry.getValue());
+					if (expected.getStatus() == OpenStatus.OPEN) {
+						expectedOpen++;
+						OpenTypeAssert.assertSameOpenType(entry.getKey() + " " + date, expected, open.get(entry.getKey()));
+					}
+					index++;
+				}
+				Assert.assertEquals(expectedOpen, open.size());
+				for (final OpenType openType : registry.withStatus(date, OpenStatus.OPENING_SOON).values()) {
+					Assert.assertEquals(OpenStatus.OPENING_SOON, openType.getStatus());
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testSharedRegionResolver() {
+		final AtomicInteger calls = new AtomicInteger();
+		final VenueRegistry registry = new VenueRegistry();
+		registry.addRegion("nrw", new CachingHolidayResolver(d -> {
+			calls.incrementAndGet();
+			return false;
+		}));
+		for (int i = 0; i < 1000; i++) {
+			registry.register(Integer.toString(i), "nrw", new CompiledSchedule(ExampleSchedules.list2()));
+		}
+		registry.createOpenTypes(ZonedDateTime.of(2014, 11, 27, 12, 0, 0, 0, ZONE));
+		// the year has been resolved once for all venues of the region
+		Assert.assertEquals(LocalDate.of(2014, 1, 1).lengthOfYear(), calls.get());
+	}
+
+	@Test
+	public void testReplaceRegionAndVenue() {
+		try (VenueRegistry registry = new VenueRegistry(2)) {
+			// without holidays, the lift opens on sunday, not on all saints' day
+			final ZonedDateTime date = ZonedDateTime.of(2014, 10, 31, 9, 0, 0, 0, ZONE);
+			registry.addRegion("nrw", d -> false);
+			registry.register("lift", "nrw", new ExampleTimeSlicesCollector(ExampleSchedules.list1()));
+			Assert.assertEquals(WeekDay.SUNDAY, registry.get("lift").createOpenType(date).getWeekday());
+			Assert.assertEquals(WeekDay.SUNDAY, registry.createOpenTypes(date).get("lift").getWeekday());
+			// holidays of the region apply to venues registered before
+			registry.addRegion("nrw", new ExampleHolidayResolver());
+			final OpenType openType = registry.createOpenTypes(date).get("lift");
+			Assert.assertEquals(WeekDay.HOLIDAY, openType.getWeekday());
+			Assert.assertEquals(ZonedDateTime.of(2014, 11, 1, 14, 0, 0, 0, ZONE), openType.getDateTime());
+			registry.register("lift", "nrw", new ExampleTimeSlicesCollector(ExampleSchedules.list2()));
+			Assert.assertEquals(1, registry.size());
+			Assert.assertTrue(registry.unregister("lift"));
+			Assert.assertFalse(registry.unregister("lift"));
+			Assert.assertNull(registry.get("lift"));
+			Assert.assertTrue(registry.createOpenTypes(date).isEmpty());
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testUnknownRegion() {
+		new VenueRegistry().register("lift", "nrw", new ExampleTimeSlicesCollector(ExampleSchedules.list1()));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidParallelism() {
+		new VenueRegistry(0).close();
+	}
+}
@@ -0,0 +1,92 @@
+package de.westemeyer.openingtimes.impl;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneRules;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author Sebastian Westemeyer
+ */
+public class ZoneOffsetsTest {
+	/** Time zones with gaps and overlaps at different times of day, a half hour switch and fixed offsets. */
+	private static final String[] ZONES = { "Europe/Berlin", "America/New_York", "America/Sao_Paulo", "Australia/Lord_Howe",
+			"Pacific/Auckland", "Asia/Kolkata", "+05:30", "UTC" };
+
+	@Test
+	public void testSameAsZoneRules() {
+		for (final String id : ZONES) {
+			final ZoneId zone = ZoneId.of(id);
+			final ZoneOffsets offsets = ZoneOffsets.of(zone);
+			Assert.assertSame(offsets, ZoneOffsets.of(zone));
+			for (LocalDate date = LocalDate.of(2013, 1, 1); date.getYear() < 2017; date = date.plusDays(1)) {
+				final long day = date.toEpochDay();
+				final ZonedDateTime start = date.atStartOfDay(zone);
+				Assert.assertEquals(id + " " + date, start.toEpochSecond(), offsets.dayStart(day));
+				Assert.assertEquals(id + " " + date, start.getHour() * 60 + start.getMinute(), offsets.minuteOfDay(start.toEpochSecond()));
+				for (int minute = 0; minute <= TimeOfDay.END_OF_DAY; minute += 15) {
+					final ZonedDateTime expected = minute == TimeOfDay.END_OF_DAY ? date.plusDays(1).atTime(LocalTime.MIDNIGHT).atZone(zone)
+							: ZonedDateTime.of(date, LocalTime.of(minute / 60, minute % 60), zone);
+					Assert.assertEquals(expected, offsets.dateTime(day, minute));
+					Assert.assertEquals(expected, ScheduleEvaluator.openingDateTime(day, minute, zone));
+					Assert.assertEquals(expected.getOffset().getTotalSeconds(), offsets.offsetAt(expected.toEpochSecond()));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testSpringForwardAndFallBack() {
+		final ZoneId zone = ZoneId.of("Europe/Berlin");
+		final ZoneOffsets offsets = ZoneOffsets.of(zone);
+		final long spring = LocalDate.of(2014, 3, 30).toEpochDay();
+		final long fall = LocalDate.of(2014, 10, 26).toEpochDay();
+		// local times in the gap are moved forward by an hour
+		Assert.assertEquals(ZonedDateTime.of(2014, 3, 30, 3, 30, 0, 0, zone), offsets.dateTime(spring, 150));
+		Assert.assertEquals(offsets.dateTime(spring, 180), offsets.dateTime(spring, 120));
+		// local times in the overlap use summer time, unless standard time is preferred
+		final long overlap = fall * ScheduleEvaluator.SECONDS_PER_DAY + 150 * 60;
+		Assert.assertEquals(ZonedDateTime.of(2014, 10, 26, 2, 30, 0, 0, zone), offsets.dateTime(fall, 150));
+		Assert.assertEquals(overlap - 7200, offsets.toEpochSecond(overlap, ZoneOffsets.NO_PREFERRED_OFFSET));
+		Assert.assertEquals(overlap - 3600, offsets.toEpochSecond(overlap, 3600));
+		Assert.assertEquals(overlap - 7200, offsets.toEpochSecond(overlap, 0));
+		// the day of the switch is an hour shorter or longer
+		Assert.assertEquals(23 * 3600, offsets.dayStart(spring + 1) - offsets.dayStart(spring));
+		Assert.assertEquals(25 * 3600, offsets.dayStart(fall + 1) - offsets.dayStart(fall));
+		Assert.assertEquals(ZonedDateTime.of(2014, 3, 30, 3, 0, 0, 0, zone).toEpochSecond(), offsets.nextTransition(offsets.dayStart(spring)));
+
+		// midnight in the gap, the day starts at 1:00
+		final ZoneId saoPaulo = ZoneId.of("America/Sao_Paulo");
+		final long gapAtMidnight = LocalDate.of(2014, 10, 19).toEpochDay();
+		Assert.assertEquals(60, ZoneOffsets.of(saoPaulo).minuteOfDay(ZoneOffsets.of(saoPaulo).dayStart(gapAtMidnight)));
+	}
+
+	@Test
+	public void testOutsideSharedYears() {
+		for (final String id : ZONES) {
+			final ZoneId zone = ZoneId.of(id);
+			final ZoneRules rules = zone.getRules();
+			for (final int year : new int[] { 1850, ZoneOffsets.FIRST_YEAR, ZoneOffsets.LAST_YEAR, 2150 }) {
+				final long start = LocalDate.of(year, 1, 1).atStartOfDay(zone).toEpochSecond();
+				final long end = LocalDate.of(year + 1, 1, 1).atStartOfDay(zone).toEpochSecond();
+				final ZoneOffsets shared = ZoneOffsets.of(zone);
+				final ZoneOffsets range = ZoneOffsets.between(zone, start, end);
+				Assert.assertTrue(range.covers(start, end));
+				Assert.assertEquals(shared.covers(start, end), range == shared);
+				for (long second = start; second < end; second += 7 * 3600 + 13) {
+					final int expected = rules.getOffset(Instant.ofEpochSecond(second)).getTotalSeconds();
+					Assert.assertEquals(id + " " + second, expected, shared.offsetAt(second));
+					Assert.assertEquals(id + " " + second, expected, range.offsetAt(second));
+					final ZoneOffsetTransition transition = rules.nextTransition(Instant.ofEpochSecond(second));
+					Assert.assertEquals(transition == null ? Long.MAX_VALUE : transition.toEpochSecond(), shared.nextTransition(second));
+				}
+			}
+		}
+	}
+}